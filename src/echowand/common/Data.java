@@ -1,5 +1,6 @@
 package echowand.common;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -85,6 +86,16 @@ public class Data {
             System.arraycopy(data, srcOffset, destData, destOffset, length);
     }
     
+    /**
+     * データの一部を指定されたバッファの現在位置にコピーする。
+     * @param srcOffset コピー元の開始位置
+     * @param destBuffer コピー先のバッファ
+     * @param length コピーするデータ長
+     */
+    public void copyBytes(int srcOffset, ByteBuffer destBuffer, int length) {
+        destBuffer.put(data, srcOffset, length);
+    }
+    
     /**
      * データの文字列表現を返す。
      * @return データの文字列表現
@@ -115,6 +115,28 @@ public enum ESV {
         }
     }
     
+    /**
+     * このESVが要求に対する応答であるか示す。
+     * INFは通知にも利用されるため含まない。
+     * @return 応答であればtrue、そうでなければfalse
+     */
+    public boolean isResponse() {
+        switch (this) {
+            case Set_Res:
+            case Get_Res:
+            case INFC_Res:
+            case SetGet_Res:
+            case SetI_SNA:
+            case SetC_SNA:
+            case Get_SNA:
+            case INF_SNA:
+            case SetGet_SNA:
+                return true;
+            default:
+                return false;
+        }
+    }
+    
     /**
      * このESVがSetGetに関するものであるか示す。
      * @return SetGetに関するものであればtrue、そうでなければfalse
@@ -0,0 +1,86 @@
+package echowand.logic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 処理を終了させる期限を表す。
+ * 期限はSystem.nanoTimeの値で保持されるため、システムの時刻の変更の影響を受けない。
+ * Transactionに設定すると、タイムアウトは期限までの残り時間を超えないように調整される。
+ * @author Yoshiki Makino
+ */
+public final class Deadline {
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 現在から指定された時間が経過した時点を期限とするDeadlineを生成する。
+     * @param duration 期限までの時間
+     * @param unit durationの単位
+     * @return 生成したDeadline
+     */
+    public static Deadline after(long duration, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(duration));
+    }
+
+    /**
+     * 現在から指定されたミリ秒が経過した時点を期限とするDeadlineを生成する。
+     * @param millis 期限までの時間(ミリ秒)
+     * @return 生成したDeadline
+     */
+    public static Deadline afterMillis(long millis) {
+        return after(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 期限までの残り時間を返す。期限を過ぎている場合には0以下の値を返す。
+     * @param unit 残り時間の単位
+     * @return 期限までの残り時間
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 期限までの残り時間をミリ秒で返す。期限を過ぎている場合には0を返す。
+     * 端数は切り上げられるため、期限前であれば1以上の値を返す。
+     * @return 期限までの残り時間(ミリ秒)
+     */
+    public int remainingMillis() {
+        long remainingNanos = deadlineNanos - System.nanoTime();
+
+        if (remainingNanos <= 0) {
+            return 0;
+        }
+
+        long millis = (remainingNanos + 999999) / 1000000;
+        return (int)Math.min(millis, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 期限を過ぎているか返す。
+     * @return 期限を過ぎていればtrue、そうでなければfalse
+     */
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * このDeadlineと指定されたDeadlineのうち、早い方を返す。
+     * @param other 比較するDeadline
+     * @return 早い方のDeadline
+     */
+    public Deadline min(Deadline other) {
+        if (other == null || deadlineNanos - other.deadlineNanos <= 0) {
+            return this;
+        }
+        return other;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline(remaining=" + remaining(TimeUnit.MILLISECONDS) + "ms)";
+    }
+}
@@ -1,5 +1,7 @@
 package echowand.logic;
 
+import echowand.common.EOJ;
+import echowand.common.ESV;
 import echowand.net.Frame;
 import echowand.net.Subnet;
 
@@ -8,13 +10,32 @@ import echowand.net.Subnet;
  * このクラスを利用することにより、必要なメソッドの実装のみを行うことでRequestProcessorのサブクラスの生成が可能となる。
  * @author Yoshiki Makino
  */
-public class DefaultRequestProcessor implements RequestProcessor {
+public class DefaultRequestProcessor implements TargetedRequestProcessor {
     
     /**
      * DefaultRequestProcessorを生成する。
      */
     public DefaultRequestProcessor() {}
     
+    /**
+     * 指定されたESVのフレームを処理対象とするか返す。
+     * 常にtrueを返すため、全てのリクエストのESVが処理対象となる。
+     * 特定のESVのみを処理するサブクラスではオーバーライドされる。
+     * @param esv 調べるESV
+     * @return 常にtrue
+     */
+    @Override
+    public boolean isTargetESV(ESV esv) { return true; }
+    
+    /**
+     * 指定されたDEOJのフレームを処理対象とするか返す。
+     * 常にtrueを返すため、全てのDEOJが処理対象となる。
+     * @param deoj 受信したフレームのDEOJ
+     * @return 常にtrue
+     */
+    @Override
+    public boolean isTargetDEOJ(EOJ deoj) { return true; }
+    
     /**
      * ESVがSetIであるフレームを受信した場合に呼び出される。
      * 常にfalseを返すダミーメソッドであり、SetIを処理するサブクラスではオーバーライドされる。
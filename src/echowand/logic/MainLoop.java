@@ -1,10 +1,23 @@
 package echowand.logic;
 
+import echowand.common.ESV;
+import echowand.net.CommonFrame;
+import echowand.net.CommonFrameView;
 import echowand.net.Frame;
+import echowand.net.FrameStage;
+import echowand.net.Node;
+import echowand.net.StandardPayload;
 import echowand.net.Subnet;
 import echowand.net.SubnetException;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import echowand.util.Counter;
+import echowand.util.Gauge;
+import echowand.util.Histogram;
+import echowand.util.ListenerRegistry;
+import echowand.util.MetricsRegistry;
+import echowand.util.Tracer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,25 +25,228 @@ import java.util.logging.Logger;
  * 送受信のメインループを実行する。
  * runメソッドを実行する事で、指定されたサブネットからフレームを受信し、登録されたListenerのprocessメソッドを呼び出す。
  * Runnableインタフェースを実装しているので、Threadとして動作させることができる。
+ * ワーカースレッド数を1以上に設定すると、受信したフレームを送信元ノード毎にワーカースレッドに振り分けて並列に処理する。
+ * この場合でも、同じ送信元ノードからのフレームは受信した順番に処理される。
+ * ワーカースレッドの待ち行列が一杯になると、空きができるまでフレームの受信を停止する。
+ * 受信したフレームには、受信キューから取り出した時刻とListenerによる処理の開始と終了の時刻が記録される。
  * @author Yoshiki Makino
  */
 public class MainLoop implements Runnable {
     private static final Logger logger = Logger.getLogger(MainLoop.class.getName());
     private static final String className = MainLoop.class.getName();
+    private static final Tracer tracer = Tracer.getTracer(MainLoop.class);
+    
+    private static final String[] LATENCY_NAMES = new String[]{
+        "latency.queue", "latency.worker", "latency.dispatch", "latency.response"
+    };
+    
+    private static final String BACKLOG_NAME = "mainloop.backlog";
+    
+    private static final FrameStage[][] LATENCY_STAGES = new FrameStage[][]{
+        {FrameStage.RECEIVED, FrameStage.DEQUEUED},
+        {FrameStage.DEQUEUED, FrameStage.DISPATCH_STARTED},
+        {FrameStage.DISPATCH_STARTED, FrameStage.DISPATCH_FINISHED},
+        {FrameStage.RECEIVED, FrameStage.RESPONDED}
+    };
+    
+    /**
+     * ワーカースレッド毎の待ち行列の容量のデフォルト値
+     */
+    public static final int DEFAULT_WORKER_QUEUE_CAPACITY = 1024;
     
     private Subnet subnet;
-    private LinkedList<Listener> listeners;
+    private ListenerRegistry<Listener> listeners;
+    private TransactionManager transactionManager;
+    private int workerCount;
+    private int workerQueueCapacity;
+    private final ReentrantReadWriteLock exclusiveLock;
+    private MetricsRegistry metricsRegistry;
+    private MetricsRegistry backlogRegistry;
+    private final Gauge backlogGauge;
+    private volatile Counter[] receivedCounters;
+    private volatile Histogram[] latencyHistograms;
+    private volatile Worker[] activeWorkers;
     
     /**
      * MainLoopを生成する。
+     * 受信したフレームは全てrunメソッドを実行するスレッドで処理される。
      */
     public MainLoop() {
-        logger.entering(className, "MainLoop");
+        this(0);
+    }
+    
+    /**
+     * ワーカースレッド数を指定してMainLoopを生成する。
+     * workerCountが0の場合には、受信したフレームは全てrunメソッドを実行するスレッドで処理される。
+     * @param workerCount ワーカースレッド数
+     * @throws IllegalArgumentException workerCountが負の場合
+     */
+    public MainLoop(int workerCount) {
+        logger.entering(className, "MainLoop", workerCount);
         
-        this.listeners = new LinkedList<Listener>();
+        if (workerCount < 0) {
+            throw new IllegalArgumentException("invalid worker count: " + workerCount);
+        }
+        
+        this.listeners = new ListenerRegistry<Listener>(Listener.class);
+        this.workerCount = workerCount;
+        this.workerQueueCapacity = DEFAULT_WORKER_QUEUE_CAPACITY;
+        this.exclusiveLock = new ReentrantReadWriteLock();
+        this.backlogGauge = new Gauge() {
+            @Override
+            public long getValue() {
+                return countBacklog();
+            }
+        };
         
         logger.exiting(className, "MainLoop");
     }
+    
+    /**
+     * ワーカースレッド数を設定する。
+     * runメソッドを呼び出す前に設定する必要がある。
+     * @param workerCount ワーカースレッド数
+     * @throws IllegalArgumentException workerCountが負の場合
+     */
+    public synchronized void setWorkerCount(int workerCount) {
+        if (workerCount < 0) {
+            throw new IllegalArgumentException("invalid worker count: " + workerCount);
+        }
+        
+        this.workerCount = workerCount;
+    }
+    
+    /**
+     * ワーカースレッド数を返す。
+     * @return ワーカースレッド数
+     */
+    public synchronized int getWorkerCount() {
+        return workerCount;
+    }
+    
+    /**
+     * ワーカースレッド毎の待ち行列の容量を設定する。
+     * runメソッドを呼び出す前に設定する必要がある。
+     * @param workerQueueCapacity 待ち行列の容量
+     * @throws IllegalArgumentException workerQueueCapacityが0以下の場合
+     */
+    public synchronized void setWorkerQueueCapacity(int workerQueueCapacity) {
+        if (workerQueueCapacity <= 0) {
+            throw new IllegalArgumentException("invalid worker queue capacity: " + workerQueueCapacity);
+        }
+        
+        this.workerQueueCapacity = workerQueueCapacity;
+    }
+    
+    /**
+     * ワーカースレッド毎の待ち行列の容量を返す。
+     * @return 待ち行列の容量
+     */
+    public synchronized int getWorkerQueueCapacity() {
+        return workerQueueCapacity;
+    }
+    
+    /**
+     * 応答フレームを直接処理させるTransactionManagerを設定する。
+     * ワーカースレッドを利用する場合、処理中のTransactionのTIDを持つ応答フレームは、
+     * 同じ送信元ノードからの処理待ちのフレームが無ければワーカースレッドを経由せずに受信したスレッドで処理される。
+     * この場合でも、ワーカースレッドで処理される場合と同様に登録された全てのListenerが呼び出される。
+     * @param transactionManager 応答フレームを処理させるTransactionManager
+     */
+    public synchronized void setTransactionManager(TransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+    
+    /**
+     * 応答フレームを直接処理させるTransactionManagerを返す。
+     * @return 応答フレームを処理させるTransactionManager
+     */
+    public synchronized TransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    /**
+     * 受信したフレームの統計を記録するMetricsRegistryを設定する。
+     * 受信したフレームの数がESV毎に「frame.received.ESV名」のCounterに記録され、
+     * runメソッドの実行中は、ワーカースレッドの待ち行列中のフレームの数が「mainloop.backlog」のGaugeで公開される。
+     * また、フレームに記録された時刻から、受信から受信キューから取り出すまでの時間が「latency.queue」、
+     * ワーカースレッドの待ち行列での待ち時間が「latency.worker」、Listenerによる処理時間が「latency.dispatch」、
+     * 受信からレスポンスを送信するまでの時間が「latency.response」のHistogramにナノ秒で記録される。
+     * nullを指定した場合には記録を行わない。
+     * @param metricsRegistry 統計を記録するMetricsRegistry
+     */
+    public synchronized void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        logger.entering(className, "setMetricsRegistry", metricsRegistry);
+        
+        boolean registered = (backlogRegistry != null);
+        unregisterBacklogGauge();
+        
+        this.metricsRegistry = metricsRegistry;
+        
+        if (metricsRegistry == null) {
+            receivedCounters = null;
+            latencyHistograms = null;
+        } else {
+            ESV[] esvs = ESV.values();
+            Counter[] counters = new Counter[esvs.length];
+            for (int i=0; i<esvs.length; i++) {
+                counters[i] = metricsRegistry.counter("frame.received." + esvs[i]);
+            }
+            receivedCounters = counters;
+            
+            Histogram[] histograms = new Histogram[LATENCY_NAMES.length];
+            for (int i=0; i<histograms.length; i++) {
+                histograms[i] = metricsRegistry.histogram(LATENCY_NAMES[i]);
+            }
+            latencyHistograms = histograms;
+        }
+        
+        if (registered) {
+            registerBacklogGauge();
+        }
+        
+        logger.exiting(className, "setMetricsRegistry");
+    }
+    
+    private synchronized void registerBacklogGauge() {
+        if (metricsRegistry != null) {
+            metricsRegistry.replaceGauge(BACKLOG_NAME, backlogGauge);
+            backlogRegistry = metricsRegistry;
+        }
+    }
+    
+    private synchronized void unregisterBacklogGauge() {
+        if (backlogRegistry != null) {
+            backlogRegistry.remove(BACKLOG_NAME, backlogGauge);
+            backlogRegistry = null;
+        }
+    }
+    
+    /**
+     * 受信したフレームの統計を記録するMetricsRegistryを返す。
+     * @return 統計を記録するMetricsRegistry
+     */
+    public synchronized MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+    
+    /**
+     * ワーカースレッドの待ち行列中のフレームの数を返す。
+     * ワーカースレッドを利用していない場合には0を返す。
+     * @return 待ち行列中のフレームの数
+     */
+    public int countBacklog() {
+        Worker[] workers = activeWorkers;
+        if (workers == null) {
+            return 0;
+        }
+        
+        int count = 0;
+        for (Worker worker : workers) {
+            count += worker.queue.size();
+        }
+        return count;
+    }
 
     /**
      * サブネットを設定する。
@@ -58,11 +274,17 @@ public class MainLoop implements Runnable {
      * @throws SubnetException 受信に失敗した場合
      */
     public Frame receiveFrame() throws SubnetException {
-        logger.entering(className, "receiveFrame");
+        tracer.entering("receiveFrame");
         
         Frame frame = subnet.receive();
+        frame.markStage(FrameStage.DEQUEUED);
+        
+        Counter[] counters = receivedCounters;
+        if (counters != null) {
+            countReceived(counters, frame);
+        }
         
-        logger.exiting(className, "receiveFrame", frame);
+        tracer.exiting("receiveFrame", frame);
         return frame;
     }
     
@@ -70,7 +292,7 @@ public class MainLoop implements Runnable {
      * 指定されたListenerを登録する
      * @param listener 登録するListener
      */
-    public synchronized void addListener(Listener listener) {
+    public void addListener(Listener listener) {
         logger.entering(className, "addListener", listener);
         
         listeners.add(listener);
@@ -83,7 +305,7 @@ public class MainLoop implements Runnable {
      * @param index 登録するListenerのインデックス
      * @param listener 登録するListener
      */
-    public synchronized void addListener(int index, Listener listener) {
+    public void addListener(int index, Listener listener) {
         logger.entering(className, "addListener", new Object[]{index, listener});
         
         listeners.add(index, listener);
@@ -95,7 +317,7 @@ public class MainLoop implements Runnable {
      * 指定されたListenerの登録を抹消する。
      * @param listener 登録を抹消するListener
      */
-    public synchronized void removeListener(Listener listener) {
+    public void removeListener(Listener listener) {
         logger.entering(className, "removeListener", listener);
         
         listeners.remove(listener);
@@ -107,7 +329,7 @@ public class MainLoop implements Runnable {
      * 登録された全Listener数を返す。
      * @return 登録されているListenerの数
      */
-    public synchronized int countListeners() {
+    public int countListeners() {
         logger.entering(className, "countListeners");
         
         int count = listeners.size();
@@ -121,7 +343,7 @@ public class MainLoop implements Runnable {
      * @param index Listenerのインデックス
      * @return 指定されたListener
      */
-    public synchronized Listener getListener(int index) {
+    public Listener getListener(int index) {
         logger.entering(className, "getListener", index);
         
         Listener listener = listeners.get(index);
@@ -130,38 +352,237 @@ public class MainLoop implements Runnable {
         return listener;
     }
     
-    private synchronized void invokeListeners(Frame frame) {
-        logger.entering(className, "invokeListeners", frame);
+    private void invokeListeners(Frame frame) {
+        tracer.entering("invokeListeners", frame);
         
-        boolean processed = false;
-        for (Listener listener : new ArrayList<Listener>(listeners)) {
-            processed |= listener.process(subnet, frame, processed);
+        Listener[] currentListeners = listeners.getListeners();
+        
+        exclusiveLock.readLock().lock();
+        try {
+            boolean processed = false;
+            for (Listener listener : currentListeners) {
+                processed |= listener.process(subnet, frame, processed);
+            }
+        } finally {
+            exclusiveLock.readLock().unlock();
         }
         
-        logger.exiting(className, "invokeListeners");
+        tracer.exiting("invokeListeners");
+    }
+    
+    /**
+     * 受信したフレームの処理を停止した状態で指定されたRunnableを実行する。
+     * 実行中のフレームの処理が全て終了するまで待機してから実行を開始する。
+     * @param runnable 実行するRunnable
+     */
+    public void runExclusive(Runnable runnable) {
+        logger.entering(className, "runExclusive", runnable);
+        
+        exclusiveLock.writeLock().lock();
+        try {
+            runnable.run();
+        } finally {
+            exclusiveLock.writeLock().unlock();
+        }
+        
+        logger.exiting(className, "runExclusive");
+    }
+    
+    private void recordLatencies(Frame frame) {
+        Histogram[] histograms = latencyHistograms;
+        if (histograms == null) {
+            return;
+        }
+        
+        for (int i=0; i<histograms.length; i++) {
+            long elapsed = frame.getElapsedNanos(LATENCY_STAGES[i][0], LATENCY_STAGES[i][1]);
+            if (elapsed >= 0) {
+                histograms[i].record(elapsed);
+            }
+        }
+    }
+    
+    private void processFrame(Frame frame) {
+        try {
+            frame.markStage(FrameStage.DISPATCH_STARTED);
+            invokeListeners(frame);
+            frame.markStage(FrameStage.DISPATCH_FINISHED);
+            recordLatencies(frame);
+        } finally {
+            frame.getCommonFrame().releaseBuffer();
+        }
+    }
+    
+    private void processFrameSafely(Frame frame) {
+        try {
+            processFrame(frame);
+        } catch (RuntimeException ex) {
+            logger.logp(Level.WARNING, className, "processFrameSafely", "failed to process frame: " + frame, ex);
+        }
+    }
+    
+    private ESV getESV(CommonFrame cf) {
+        CommonFrameView view = cf.getView();
+        if (view != null) {
+            return view.getESV();
+        }
+        
+        StandardPayload payload = cf.getEDATA(StandardPayload.class);
+        if (payload == null) {
+            return null;
+        }
+        
+        return payload.getESV();
+    }
+    
+    private void countReceived(Counter[] counters, Frame frame) {
+        ESV esv = getESV(frame.getCommonFrame());
+        if (esv != null) {
+            counters[esv.ordinal()].increment();
+        }
+    }
+    
+    private boolean isResponse(TransactionManager manager, Frame frame) {
+        if (manager == null) {
+            return false;
+        }
+        
+        CommonFrame cf = frame.getCommonFrame();
+        ESV esv = getESV(cf);
+        if (esv == null || !esv.isResponse()) {
+            return false;
+        }
+        
+        return manager.hasTransaction(cf.getTID());
+    }
+    
+    private class Worker extends Thread {
+        private final LinkedBlockingQueue<Frame> queue;
+        private final AtomicInteger pending;
+        
+        public Worker(int capacity) {
+            queue = new LinkedBlockingQueue<Frame>(capacity);
+            pending = new AtomicInteger(0);
+        }
+        
+        public void dispatch(Frame frame) throws InterruptedException {
+            pending.incrementAndGet();
+            try {
+                queue.put(frame);
+            } catch (InterruptedException ex) {
+                pending.decrementAndGet();
+                throw ex;
+            }
+        }
+        
+        public boolean isIdle() {
+            return pending.get() == 0;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    Frame frame = queue.take();
+                    try {
+                        processFrameSafely(frame);
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                logger.logp(Level.FINE, className, "Worker.run", "interrupted");
+            }
+            
+            for (Frame frame : queue) {
+                frame.getCommonFrame().releaseBuffer();
+            }
+        }
+    }
+    
+    private Worker selectWorker(Worker[] workers, Frame frame) {
+        Node sender = frame.getSender();
+        int hash = (sender == null) ? 0 : sender.hashCode();
+        return workers[(hash & 0x7fffffff) % workers.length];
+    }
+    
+    private void runSerial() throws SubnetException {
+        for (;;) {
+            
+            if (Thread.currentThread().isInterrupted()) {
+                logger.logp(Level.INFO, className, "run", "interrupted");
+                break;
+            }
+            
+            processFrame(receiveFrame());
+        }
+    }
+    
+    private void runParallel(int count, int capacity) throws SubnetException {
+        Worker[] workers = new Worker[count];
+        
+        for (int i=0; i<count; i++) {
+            workers[i] = new Worker(capacity);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        
+        activeWorkers = workers;
+        
+        try {
+            for (;;) {
+
+                if (Thread.currentThread().isInterrupted()) {
+                    logger.logp(Level.INFO, className, "run", "interrupted");
+                    break;
+                }
+
+                Frame frame = receiveFrame();
+                Worker worker = selectWorker(workers, frame);
+                
+                if (worker.isIdle() && isResponse(getTransactionManager(), frame)) {
+                    processFrameSafely(frame);
+                    continue;
+                }
+                
+                try {
+                    worker.dispatch(frame);
+                } catch (InterruptedException ex) {
+                    frame.getCommonFrame().releaseBuffer();
+                    logger.logp(Level.INFO, className, "run", "interrupted");
+                    break;
+                }
+            }
+        } finally {
+            activeWorkers = null;
+            for (Worker worker : workers) {
+                worker.interrupt();
+            }
+        }
     }
 
     /**
      * メインループを実行する。
      * サブネットからフレームを受信し、全てのListenerのprocessを呼び出す。
+     * ワーカースレッド数が1以上の場合には、Listenerの呼び出しはワーカースレッドで行われる。
      */
     @Override
     public void run() {
         logger.entering(className, "run");
 
+        registerBacklogGauge();
+        
         try {
-            for (;;) {
-                
-                if (Thread.currentThread().isInterrupted()) {
-                    logger.logp(Level.INFO, className, "run", "interrupted");
-                    break;
-                }
-                
-                Frame frame = receiveFrame();
-                invokeListeners(frame);
+            int count = getWorkerCount();
+            if (count == 0) {
+                runSerial();
+            } else {
+                runParallel(count, getWorkerQueueCapacity());
             }
         } catch (SubnetException ex) {
             logger.logp(Level.INFO, className, "run", "cannot receive frames", ex);
+        } finally {
+            unregisterBacklogGauge();
         }
         
         logger.exiting(className, "run");
@@ -0,0 +1,190 @@
+package echowand.logic;
+
+import echowand.common.EOJ;
+import echowand.common.ESV;
+import echowand.net.CommonFrame;
+import echowand.net.CommonFrameView;
+import echowand.net.InvalidDataException;
+import echowand.net.Node;
+import echowand.net.StandardPayload;
+import java.util.logging.Logger;
+
+/**
+ * 事前にエンコードしたリクエストフレームを利用するTransactionConfig
+ * 指定されたTransactionConfigのリクエストフレームを生成時に一度だけエンコードし、
+ * 送信時にはエンコード済みのバイト列をコピーせずに共有し、TIDのみを各フレームに設定する。
+ * 同じリクエストを繰り返し送信する場合に、フレームの生成にかかる処理を削減できる。
+ * 生成後は変更できず、設定を変更するメソッドは全てUnsupportedOperationExceptionを発生させる。
+ * このため、一つのPreparedRequestを複数のTransactionで安全に共有することができる。
+ * @author Yoshiki Makino
+ */
+public class PreparedRequest extends TransactionConfig {
+    private static final Logger logger = Logger.getLogger(PreparedRequest.class.getName());
+    private static final String className = PreparedRequest.class.getName();
+    
+    private ESV esv;
+    private RetryPolicy retryPolicy;
+    private CommonFrameView[] views;
+    
+    /**
+     * 指定されたTransactionConfigのリクエストフレームをエンコードしてPreparedRequestを生成する。
+     * 送信ノード、受信ノード、受信するレスポンス数と再送方法も引き継がれる。
+     * @param transactionConfig エンコードするリクエストの設定
+     * @throws IllegalArgumentException リクエストフレームのエンコードに失敗した場合
+     */
+    public PreparedRequest(TransactionConfig transactionConfig) {
+        logger.entering(className, "PreparedRequest", transactionConfig);
+        
+        super.setSenderNode(transactionConfig.getSenderNode());
+        super.setReceiverNode(transactionConfig.getReceiverNode());
+        super.setSourceEOJ(transactionConfig.getSourceEOJ());
+        super.setDestinationEOJ(transactionConfig.getDestinationEOJ());
+        super.setExpectedResponses(transactionConfig.getExpectedResponses());
+        
+        this.esv = transactionConfig.getESV();
+        this.retryPolicy = transactionConfig.getRetryPolicy();
+        
+        int count = transactionConfig.getCountPayloads();
+        views = new CommonFrameView[count];
+        
+        for (int i=0; i<count; i++) {
+            StandardPayload payload = new StandardPayload();
+            payload.setSEOJ(transactionConfig.getSourceEOJ());
+            payload.setDEOJ(transactionConfig.getDestinationEOJ());
+            payload.setESV(esv);
+            transactionConfig.addPayloadProperties(i, payload);
+            
+            CommonFrame cf = new CommonFrame();
+            cf.setEDATA(payload);
+            
+            try {
+                views[i] = new CommonFrameView(cf.toBytes());
+            } catch (InvalidDataException ex) {
+                IllegalArgumentException exception = new IllegalArgumentException("cannot prepare request", ex);
+                logger.throwing(className, "PreparedRequest", exception);
+                throw exception;
+            }
+        }
+        
+        logger.exiting(className, "PreparedRequest");
+    }
+
+    /**
+     * リクエストフレームのESVを返す。
+     * @return リクエストのESV
+     */
+    @Override
+    public ESV getESV() {
+        return esv;
+    }
+
+    /**
+     * リクエストで送信を行なうフレーム数を返す。
+     * @return リクエストのフレーム数
+     */
+    @Override
+    public int getCountPayloads() {
+        return views.length;
+    }
+
+    /**
+     * エンコード済みのフレームのプロパティを指定したStandardPayloadに追加する。
+     * @param index フレームの番号
+     * @param payload プロパティを追加するStandardPayload
+     */
+    @Override
+    public void addPayloadProperties(int index, StandardPayload payload) {
+        CommonFrameView view = views[index];
+        
+        for (int i=0; i<(view.getFirstOPC() & 0xff); i++) {
+            payload.addFirstProperty(view.getFirstPropertyAt(i));
+        }
+        
+        for (int i=0; i<(view.getSecondOPC() & 0xff); i++) {
+            payload.addSecondProperty(view.getSecondPropertyAt(i));
+        }
+    }
+    
+    /**
+     * エンコード済みのフレームを参照し、指定されたTIDを持つフレームを生成する。
+     * エンコード済みのバイト列はコピーされず、生成した全てのフレームで共有される。
+     * TIDはフレームの書き込み時にCommonFrameのTIDで置き換えられる。
+     * @param index フレームの番号
+     * @param tid フレームのTID
+     * @return 生成したフレーム
+     */
+    @Override
+    public CommonFrame createCommonFrame(int index, short tid) {
+        CommonFrame cf = new CommonFrame(views[index]);
+        cf.setTID(tid);
+        return cf;
+    }
+    
+    /**
+     * エンコード済みのフレームのバイト数を返す。
+     * @param index フレームの番号
+     * @return フレームのバイト数
+     */
+    public int getFrameSize(int index) {
+        return views[index].size();
+    }
+    
+    /**
+     * 生成時に引き継いだ再送方法を返す。
+     * @return 再送方法、再送を行わない場合にはnull
+     */
+    @Override
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+    
+    /**
+     * 送信ノードは生成時に引き継いだものから変更できない。
+     * @param senderNode 送信ノード
+     * @throws UnsupportedOperationException 常に発生する
+     */
+    @Override
+    public void setSenderNode(Node senderNode) {
+        throw new UnsupportedOperationException("PreparedRequest is immutable");
+    }
+    
+    /**
+     * 受信ノードは生成時に引き継いだものから変更できない。
+     * @param receiverNode 受信ノード
+     * @throws UnsupportedOperationException 常に発生する
+     */
+    @Override
+    public void setReceiverNode(Node receiverNode) {
+        throw new UnsupportedOperationException("PreparedRequest is immutable");
+    }
+    
+    /**
+     * 送信元EOJはエンコード済みのフレームに含まれるため変更できない。
+     * @param sourceEOJ 送信元EOJ
+     * @throws UnsupportedOperationException 常に発生する
+     */
+    @Override
+    public void setSourceEOJ(EOJ sourceEOJ) {
+        throw new UnsupportedOperationException("PreparedRequest is immutable");
+    }
+    
+    /**
+     * 宛先EOJはエンコード済みのフレームに含まれるため変更できない。
+     * @param destinationEOJ 宛先EOJ
+     * @throws UnsupportedOperationException 常に発生する
+     */
+    @Override
+    public void setDestinationEOJ(EOJ destinationEOJ) {
+        throw new UnsupportedOperationException("PreparedRequest is immutable");
+    }
+    
+    /**
+     * 受信するレスポンス数は生成時に引き継いだものから変更できない。
+     * @param expectedResponses 受信するレスポンス数
+     * @throws UnsupportedOperationException 常に発生する
+     */
+    @Override
+    public void setExpectedResponses(int expectedResponses) {
+        throw new UnsupportedOperationException("PreparedRequest is immutable");
+    }
+}
@@ -0,0 +1,124 @@
+package echowand.logic;
+
+import echowand.net.Node;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ノード毎のRTTを計測し、再送までの時間を求める。
+ * RTTの平滑値と変動からRTO = SRTT + 4 * RTTVARとして再送までの時間を計算する。
+ * 再送を行ったトランザクションのRTTは、どの送信に対する応答か区別できないため計測に利用しない。
+ * @author Yoshiki Makino
+ */
+public class RTTEstimator {
+    
+    /**
+     * 再送までの時間の最小値(ミリ秒)
+     */
+    public static final long MIN_RTO = 50;
+    
+    /**
+     * 再送までの時間の最大値(ミリ秒)
+     */
+    public static final long MAX_RTO = 60000;
+    
+    private static final double ALPHA = 0.125;
+    private static final double BETA = 0.25;
+    
+    private static class Estimate {
+        private double srtt;
+        private double rttvar;
+        private long samples;
+        
+        public synchronized void addSample(double rtt) {
+            if (samples == 0) {
+                srtt = rtt;
+                rttvar = rtt / 2;
+            } else {
+                rttvar = (1 - BETA) * rttvar + BETA * Math.abs(srtt - rtt);
+                srtt = (1 - ALPHA) * srtt + ALPHA * rtt;
+            }
+            samples++;
+        }
+        
+        public synchronized double getSRTT() {
+            return srtt;
+        }
+        
+        public synchronized long getRTO() {
+            long rto = (long)Math.ceil(srtt + 4 * rttvar);
+            return Math.min(MAX_RTO, Math.max(MIN_RTO, rto));
+        }
+    }
+    
+    private ConcurrentHashMap<Node, Estimate> estimates;
+    
+    /**
+     * RTTEstimatorを生成する。
+     */
+    public RTTEstimator() {
+        estimates = new ConcurrentHashMap<Node, Estimate>();
+    }
+    
+    /**
+     * 指定されたノードのRTTの計測値を追加する。
+     * @param node 計測したノード
+     * @param rttMillis RTT(ミリ秒)
+     */
+    public void addSample(Node node, double rttMillis) {
+        Estimate estimate = estimates.get(node);
+        
+        if (estimate == null) {
+            Estimate newEstimate = new Estimate();
+            estimate = estimates.putIfAbsent(node, newEstimate);
+            if (estimate == null) {
+                estimate = newEstimate;
+            }
+        }
+        
+        estimate.addSample(rttMillis);
+    }
+    
+    /**
+     * 指定されたノードのRTTが計測済みであるか返す。
+     * @param node ノード
+     * @return 計測済みであればtrue、そうでなければfalse
+     */
+    public boolean hasEstimate(Node node) {
+        return estimates.containsKey(node);
+    }
+    
+    /**
+     * 指定されたノードのRTTの平滑値を返す。
+     * @param node ノード
+     * @return RTTの平滑値(ミリ秒)、計測されていない場合には負の値
+     */
+    public double getSmoothedRTT(Node node) {
+        Estimate estimate = estimates.get(node);
+        if (estimate == null) {
+            return -1;
+        }
+        return estimate.getSRTT();
+    }
+    
+    /**
+     * 指定されたノードに対する再送までの時間を返す。
+     * @param node ノード
+     * @param defaultTimeout RTTが計測されていない場合に返す値(ミリ秒)
+     * @return 再送までの時間(ミリ秒)
+     */
+    public long getRetransmissionTimeout(Node node, long defaultTimeout) {
+        Estimate estimate = estimates.get(node);
+        if (estimate == null) {
+            return defaultTimeout;
+        }
+        return estimate.getRTO();
+    }
+    
+    /**
+     * 指定されたノードの計測値を破棄する。
+     * @param node ノード
+     */
+    public void reset(Node node) {
+        estimates.remove(node);
+    }
+}
@@ -1,21 +1,64 @@
 package echowand.logic;
 
+import echowand.common.EOJ;
+import echowand.common.ESV;
 import echowand.net.CommonFrame;
+import echowand.net.CommonFrameView;
 import echowand.net.Frame;
 import echowand.net.StandardPayload;
 import echowand.net.Subnet;
+import echowand.util.Histogram;
+import echowand.util.MetricsRegistry;
+import echowand.util.Tracer;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.LinkedList;
 import java.util.logging.Logger;
 
 /**
  * リクエストフレームを受け取り、登録された全てのRequestProcessorの適切なメソッドを呼び出す。
+ * 登録されたRequestProcessorはESV毎の配列に振り分けられ、フレームのESVに対応する配列のみが走査される。
+ * TargetedRequestProcessorは処理対象と宣言したESVの配列にのみ追加され、その他のRequestProcessorは全てのESVの配列に追加される。
+ * MetricsRegistryを設定すると、RequestProcessor毎の処理時間が記録される。
  * @author Yoshiki Makino
  */
 public class RequestDispatcher implements Listener {
     private static final Logger logger = Logger.getLogger(RequestDispatcher.class.getName());
     private static final String className = RequestDispatcher.class.getName();
+    private static final Tracer tracer = Tracer.getTracer(RequestDispatcher.class);
+    
+    private static final ESV[] REQUEST_ESVS = new ESV[]{
+        ESV.SetI, ESV.SetC, ESV.Get, ESV.SetGet, ESV.INF_REQ, ESV.INF, ESV.INFC
+    };
+    
+    private static final Route EMPTY_ROUTE = new Route(new RequestProcessor[0], null);
+    
+    private static class Route {
+        final RequestProcessor[] processors;
+        final Histogram[] histograms;
+        
+        Route(RequestProcessor[] processors, Histogram[] histograms) {
+            this.processors = processors;
+            this.histograms = histograms;
+        }
+        
+        long startTime() {
+            if (histograms == null) {
+                return 0;
+            }
+            return System.nanoTime();
+        }
+        
+        void record(int index, long startTime) {
+            if (histograms != null) {
+                histograms[index].recordSince(startTime);
+            }
+        }
+    }
     
     private LinkedList<RequestProcessor> processors;
+    private MetricsRegistry metricsRegistry;
+    private volatile EnumMap<ESV, Route> routes;
     
     /**
      * RequestDispatcherを生成する。
@@ -24,12 +67,115 @@ public class RequestDispatcher implements Listener {
         logger.entering(className, "RequestDispatcher");
         
         processors = new LinkedList<RequestProcessor>();
+        updateRoutes();
         
         logger.exiting(className, "RequestDispatcher");
     }
     
-    private synchronized LinkedList<RequestProcessor> cloneProcessors() {
-        return new LinkedList<RequestProcessor>(processors);
+    private boolean isTargetESV(RequestProcessor processor, ESV esv) {
+        if (processor instanceof TargetedRequestProcessor) {
+            return ((TargetedRequestProcessor)processor).isTargetESV(esv);
+        }
+        
+        return true;
+    }
+    
+    private Histogram[] createHistograms(ArrayList<RequestProcessor> targets) {
+        if (metricsRegistry == null) {
+            return null;
+        }
+        
+        Histogram[] histograms = new Histogram[targets.size()];
+        for (int i=0; i<histograms.length; i++) {
+            histograms[i] = metricsRegistry.histogram("dispatch." + targets.get(i).getClass().getName());
+        }
+        return histograms;
+    }
+    
+    private synchronized void updateRoutes() {
+        EnumMap<ESV, Route> newRoutes = new EnumMap<ESV, Route>(ESV.class);
+        
+        for (ESV esv : REQUEST_ESVS) {
+            ArrayList<RequestProcessor> targets = new ArrayList<RequestProcessor>();
+            for (RequestProcessor processor : processors) {
+                if (isTargetESV(processor, esv)) {
+                    targets.add(processor);
+                }
+            }
+            RequestProcessor[] targetArray = targets.toArray(new RequestProcessor[targets.size()]);
+            newRoutes.put(esv, new Route(targetArray, createHistograms(targets)));
+        }
+        
+        routes = newRoutes;
+    }
+    
+    private Route getRoute(ESV esv) {
+        Route route = routes.get(esv);
+        
+        if (route == null) {
+            return EMPTY_ROUTE;
+        }
+        
+        return route;
+    }
+    
+    /**
+     * RequestProcessorの処理時間を記録するMetricsRegistryを設定する。
+     * 処理時間はRequestProcessorのクラス毎に「dispatch.クラス名」のHistogramにナノ秒で記録される。
+     * nullを指定した場合には記録を行わない。
+     * @param metricsRegistry 処理時間を記録するMetricsRegistry
+     */
+    public synchronized void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        logger.entering(className, "setMetricsRegistry", metricsRegistry);
+        
+        this.metricsRegistry = metricsRegistry;
+        updateRoutes();
+        
+        logger.exiting(className, "setMetricsRegistry");
+    }
+    
+    /**
+     * RequestProcessorの処理時間を記録するMetricsRegistryを返す。
+     * @return 処理時間を記録するMetricsRegistry
+     */
+    public synchronized MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+    
+    private EOJ getDEOJ(CommonFrame cf) {
+        CommonFrameView view = cf.getView();
+        if (view != null) {
+            return view.getDEOJ();
+        }
+        
+        StandardPayload payload = cf.getEDATA(StandardPayload.class);
+        if (payload == null) {
+            return null;
+        }
+        
+        return payload.getDEOJ();
+    }
+    
+    private boolean isTargetDEOJ(RequestProcessor processor, EOJ deoj) {
+        if (processor instanceof TargetedRequestProcessor) {
+            return ((TargetedRequestProcessor)processor).isTargetDEOJ(deoj);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * 指定されたESVのフレームを受信した場合に呼び出されるRequestProcessorの数を返す。
+     * @param esv 調べるESV
+     * @return 呼び出されるRequestProcessorの数
+     */
+    public int countRequestProcessors(ESV esv) {
+        logger.entering(className, "countRequestProcessors", esv);
+        
+        int count = getRoute(esv).processors.length;
+        
+        logger.exiting(className, "countRequestProcessors", count);
+        return count;
     }
     
     /**
@@ -40,6 +186,7 @@ public class RequestDispatcher implements Listener {
         logger.entering(className, "addRequestProcessor", processor);
         
         processors.add(processor);
+        updateRoutes();
         
         logger.exiting(className, "addRequestProcessor");
     }
@@ -53,6 +200,7 @@ public class RequestDispatcher implements Listener {
         logger.entering(className, "addRequestProcessor", processor);
         
         processors.add(index, processor);
+        updateRoutes();
         
         logger.exiting(className, "addRequestProcessor");
     }
@@ -65,6 +213,7 @@ public class RequestDispatcher implements Listener {
         logger.entering(className, "removeRequestProcessor", processor);
         
         processors.remove(processor);
+        updateRoutes();
         
         logger.exiting(className, "removeRequestProcessor");
     }
@@ -96,6 +245,20 @@ public class RequestDispatcher implements Listener {
         return processor;
     }
     
+    private ESV getESV(CommonFrame cf) {
+        CommonFrameView view = cf.getView();
+        if (view != null) {
+            return view.getESV();
+        }
+        
+        StandardPayload payload = cf.getEDATA(StandardPayload.class);
+        if (payload == null) {
+            return null;
+        }
+        
+        return payload.getESV();
+    }
+    
     /**
      * フレームの種類を判別して、登録されたRequestProcessorの適切なメソッドを呼び出す。
      * すでに処理済みであれば何も行なわない。
@@ -106,28 +269,27 @@ public class RequestDispatcher implements Listener {
      */
     @Override
     public boolean process(Subnet subnet, Frame frame, boolean processed) {
-        logger.entering(className, "process", new Object[]{subnet, frame, processed});
+        tracer.entering("process", subnet, frame, processed);
         
         if (processed) {
-            logger.exiting(className, "process", false);
+            tracer.exiting("process", false);
             return false;
         }
         
         if (!frame.getCommonFrame().isStandardPayload()) {
-            logger.exiting(className, "process", false);
+            tracer.exiting("process", false);
             return false;
         }
         
         boolean success = false;
-        CommonFrame cf = frame.getCommonFrame();
-        StandardPayload payload = cf.getEDATA(StandardPayload.class);
+        ESV esv = getESV(frame.getCommonFrame());
         
-        if (payload == null) {
-            logger.exiting(className, "process", false);
+        if (esv == null) {
+            tracer.exiting("process", false);
             return false;
         }
         
-        switch (payload.getESV()) {
+        switch (esv) {
             case SetI:
                 success = this.processSetI(subnet, frame);
                 break;
@@ -151,7 +313,7 @@ public class RequestDispatcher implements Listener {
                 break;
         }
         
-        logger.exiting(className, "process", success);
+        tracer.exiting("process", success);
         return success;
     }
 
@@ -162,14 +324,24 @@ public class RequestDispatcher implements Listener {
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processSetI(Subnet subnet, Frame frame) {
-        logger.entering(className, "processSetI", new Object[]{subnet, frame});
+        tracer.entering("processSetI", subnet, frame);
         
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processSetI(subnet, frame, processed);
+        Route route = getRoute(ESV.SetI);
+        RequestProcessor[] targets = route.processors;
+        
+        if (targets.length > 0) {
+            EOJ deoj = getDEOJ(frame.getCommonFrame());
+            for (int i=0; i<targets.length; i++) {
+                if (isTargetDEOJ(targets[i], deoj)) {
+                    long startTime = route.startTime();
+                    processed |= targets[i].processSetI(subnet, frame, processed);
+                    route.record(i, startTime);
+                }
+            }
         }
         
-        logger.exiting(className, "processSetI", processed);
+        tracer.exiting("processSetI", processed);
         return processed;
     }
 
@@ -180,14 +352,24 @@ public class RequestDispatcher implements Listener {
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processSetC(Subnet subnet, Frame frame) {
-        logger.entering(className, "processSetC", new Object[]{subnet, frame});
+        tracer.entering("processSetC", subnet, frame);
         
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processSetC(subnet, frame, processed);
+        Route route = getRoute(ESV.SetC);
+        RequestProcessor[] targets = route.processors;
+        
+        if (targets.length > 0) {
+            EOJ deoj = getDEOJ(frame.getCommonFrame());
+            for (int i=0; i<targets.length; i++) {
+                if (isTargetDEOJ(targets[i], deoj)) {
+                    long startTime = route.startTime();
+                    processed |= targets[i].processSetC(subnet, frame, processed);
+                    route.record(i, startTime);
+                }
+            }
         }
         
-        logger.exiting(className, "processSetC", processed);
+        tracer.exiting("processSetC", processed);
         return processed;
     }
     
@@ -198,14 +380,24 @@ public class RequestDispatcher implements Listener {
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processGet(Subnet subnet, Frame frame) {
-        logger.entering(className, "processGet", new Object[]{subnet, frame});
+        tracer.entering("processGet", subnet, frame);
         
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processGet(subnet, frame, processed);
+        Route route = getRoute(ESV.Get);
+        RequestProcessor[] targets = route.processors;
+        
+        if (targets.length > 0) {
+            EOJ deoj = getDEOJ(frame.getCommonFrame());
+            for (int i=0; i<targets.length; i++) {
+                if (isTargetDEOJ(targets[i], deoj)) {
+                    long startTime = route.startTime();
+                    processed |= targets[i].processGet(subnet, frame, processed);
+                    route.record(i, startTime);
+                }
+            }
         }
         
-        logger.exiting(className, "processGet", processed);
+        tracer.exiting("processGet", processed);
         return processed;
     }
     
@@ -216,14 +408,24 @@ public class RequestDispatcher implements Listener {
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processSetGet(Subnet subnet, Frame frame) {
-        logger.entering(className, "processSetGet", new Object[]{subnet, frame});
+        tracer.entering("processSetGet", subnet, frame);
         
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processSetGet(subnet, frame, processed);
+        Route route = getRoute(ESV.SetGet);
+        RequestProcessor[] targets = route.processors;
+        
+        if (targets.length > 0) {
+            EOJ deoj = getDEOJ(frame.getCommonFrame());
+            for (int i=0; i<targets.length; i++) {
+                if (isTargetDEOJ(targets[i], deoj)) {
+                    long startTime = route.startTime();
+                    processed |= targets[i].processSetGet(subnet, frame, processed);
+                    route.record(i, startTime);
+                }
+            }
         }
         
-        logger.exiting(className, "processSetGet", processed);
+        tracer.exiting("processSetGet", processed);
         return processed;
     }
     
@@ -234,14 +436,24 @@ public class RequestDispatcher implements Listener {
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processINF_REQ(Subnet subnet, Frame frame) {
-        logger.entering(className, "processINF_REQ", new Object[]{subnet, frame});
+        tracer.entering("processINF_REQ", subnet, frame);
         
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processINF_REQ(subnet, frame, processed);
+        Route route = getRoute(ESV.INF_REQ);
+        RequestProcessor[] targets = route.processors;
+        
+        if (targets.length > 0) {
+            EOJ deoj = getDEOJ(frame.getCommonFrame());
+            for (int i=0; i<targets.length; i++) {
+                if (isTargetDEOJ(targets[i], deoj)) {
+                    long startTime = route.startTime();
+                    processed |= targets[i].processINF_REQ(subnet, frame, processed);
+                    route.record(i, startTime);
+                }
+            }
         }
         
-        logger.exiting(className, "processINF_REQ", processed);
+        tracer.exiting("processINF_REQ", processed);
         return processed;
     }
     
@@ -252,14 +464,24 @@ public class RequestDispatcher implements Listener {
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processINF(Subnet subnet, Frame frame) {
-        logger.entering(className, "processINF", new Object[]{subnet, frame});
+        tracer.entering("processINF", subnet, frame);
         
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processINF(subnet, frame, processed);
+        Route route = getRoute(ESV.INF);
+        RequestProcessor[] targets = route.processors;
+        
+        if (targets.length > 0) {
+            EOJ deoj = getDEOJ(frame.getCommonFrame());
+            for (int i=0; i<targets.length; i++) {
+                if (isTargetDEOJ(targets[i], deoj)) {
+                    long startTime = route.startTime();
+                    processed |= targets[i].processINF(subnet, frame, processed);
+                    route.record(i, startTime);
+                }
+            }
         }
         
-        logger.exiting(className, "processINF", processed);
+        tracer.exiting("processINF", processed);
         return processed;
     }
     
@@ -270,14 +492,24 @@ public class RequestDispatcher implements Listener {
      * @return 指定されたフレームを処理した場合にはtrue、そうでなければfalse
      */
     public boolean processINFC(Subnet subnet, Frame frame) {
-        logger.entering(className, "processINFC", new Object[]{subnet, frame});
+        tracer.entering("processINFC", subnet, frame);
         
         boolean processed = false;
-        for (RequestProcessor processor : cloneProcessors()) {
-            processed |= processor.processINFC(subnet, frame, processed);
+        Route route = getRoute(ESV.INFC);
+        RequestProcessor[] targets = route.processors;
+        
+        if (targets.length > 0) {
+            EOJ deoj = getDEOJ(frame.getCommonFrame());
+            for (int i=0; i<targets.length; i++) {
+                if (isTargetDEOJ(targets[i], deoj)) {
+                    long startTime = route.startTime();
+                    processed |= targets[i].processINFC(subnet, frame, processed);
+                    route.record(i, startTime);
+                }
+            }
         }
         
-        logger.exiting(className, "processINFC", processed);
+        tracer.exiting("processINFC", processed);
         return processed;
     }
 }
@@ -0,0 +1,141 @@
+package echowand.logic;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * レスポンスを受信できなかった場合の再送方法を表す。
+ * 再送はトランザクションのタイムアウトまでの間に同じTIDで行われる。
+ * @author Yoshiki Makino
+ */
+public class RetryPolicy {
+    
+    /**
+     * 再送回数のデフォルト値
+     */
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    
+    /**
+     * 初回の再送までの時間のデフォルト値(ミリ秒)
+     */
+    public static final int DEFAULT_INITIAL_TIMEOUT = 500;
+    
+    /**
+     * 再送間隔の増加率のデフォルト値
+     */
+    public static final double DEFAULT_BACKOFF = 2.0;
+    
+    /**
+     * 再送間隔に加えるゆらぎの割合のデフォルト値
+     */
+    public static final double DEFAULT_JITTER = 0.1;
+    
+    private final int maxRetries;
+    private final int initialTimeout;
+    private final double backoff;
+    private final double jitter;
+    private final boolean adaptive;
+    
+    /**
+     * デフォルトの設定でRetryPolicyを生成する。
+     * 初回の再送までの時間は、ノード毎に計測したRTTから決定される。
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_TIMEOUT, DEFAULT_BACKOFF, DEFAULT_JITTER, true);
+    }
+    
+    /**
+     * RetryPolicyを生成する。
+     * adaptiveがtrueの場合、RTTが計測済みのノードについてはinitialTimeoutの代わりにRTTから求めた値を利用する。
+     * @param maxRetries 最大の再送回数
+     * @param initialTimeout 初回の再送までの時間(ミリ秒)
+     * @param backoff 再送毎の再送間隔の増加率
+     * @param jitter 再送間隔に加えるゆらぎの割合
+     * @param adaptive 計測したRTTを利用する場合にはtrue、そうでなければfalse
+     * @throws IllegalArgumentException 不正な値が指定された場合
+     */
+    public RetryPolicy(int maxRetries, int initialTimeout, double backoff, double jitter, boolean adaptive) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("invalid maxRetries: " + maxRetries);
+        }
+        
+        if (initialTimeout <= 0) {
+            throw new IllegalArgumentException("invalid initialTimeout: " + initialTimeout);
+        }
+        
+        if (backoff < 1.0) {
+            throw new IllegalArgumentException("invalid backoff: " + backoff);
+        }
+        
+        if (jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("invalid jitter: " + jitter);
+        }
+        
+        this.maxRetries = maxRetries;
+        this.initialTimeout = initialTimeout;
+        this.backoff = backoff;
+        this.jitter = jitter;
+        this.adaptive = adaptive;
+    }
+    
+    /**
+     * 最大の再送回数を返す。
+     * @return 最大の再送回数
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+    
+    /**
+     * 初回の再送までの時間を返す。
+     * @return 初回の再送までの時間(ミリ秒)
+     */
+    public int getInitialTimeout() {
+        return initialTimeout;
+    }
+    
+    /**
+     * 再送毎の再送間隔の増加率を返す。
+     * @return 再送間隔の増加率
+     */
+    public double getBackoff() {
+        return backoff;
+    }
+    
+    /**
+     * 再送間隔に加えるゆらぎの割合を返す。
+     * @return ゆらぎの割合
+     */
+    public double getJitter() {
+        return jitter;
+    }
+    
+    /**
+     * 計測したRTTを利用するか返す。
+     * @return 計測したRTTを利用する場合にはtrue、そうでなければfalse
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+    
+    /**
+     * 指定された回数目の再送までの時間を返す。
+     * @param baseTimeout 初回の再送までの時間(ミリ秒)
+     * @param retry 再送の回数(0から始まる)
+     * @return 再送までの時間(ミリ秒)
+     */
+    public long getRetryTimeout(long baseTimeout, int retry) {
+        double timeout = baseTimeout * Math.pow(backoff, retry);
+        
+        if (jitter > 0) {
+            timeout += timeout * jitter * ThreadLocalRandom.current().nextDouble();
+        }
+        
+        return Math.max(1, (long)timeout);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy(maxRetries=" + maxRetries + ", initialTimeout=" + initialTimeout
+                + ", backoff=" + backoff + ", jitter=" + jitter + ", adaptive=" + adaptive + ")";
+    }
+}
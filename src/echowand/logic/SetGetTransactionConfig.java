@@ -21,6 +21,7 @@ public class SetGetTransactionConfig extends TransactionConfig {
     private LinkedList<EPC> getProperties;
     private boolean responseRequired;
     private boolean announcePreferred;
+    private RetryPolicy retryPolicy;
     
     /**
      * リクエストのESVを返す。
@@ -159,4 +160,26 @@ public class SetGetTransactionConfig extends TransactionConfig {
         
         logger.exiting(className, "addGet");
     }
+    
+    /**
+     * レスポンスを受信できなかった場合の再送方法を設定する。
+     * 再送はユニキャストでレスポンスが必要なリクエストにのみ適用される。
+     * @param retryPolicy 再送方法、再送を行わない場合にはnull
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        logger.entering(className, "setRetryPolicy", retryPolicy);
+        
+        this.retryPolicy = retryPolicy;
+        
+        logger.exiting(className, "setRetryPolicy");
+    }
+    
+    /**
+     * レスポンスを受信できなかった場合の再送方法を返す。
+     * @return 再送方法、再送を行わない場合にはnull
+     */
+    @Override
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
 }
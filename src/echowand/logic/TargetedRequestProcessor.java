@@ -0,0 +1,29 @@
+package echowand.logic;
+
+import echowand.common.EOJ;
+import echowand.common.ESV;
+
+/**
+ * 処理対象のESVとDEOJを宣言するRequestProcessorを表す。
+ * RequestDispatcherは登録時にisTargetESVを調べ、対象となるESVのフレームを受信した場合にのみ
+ * このRequestProcessorのメソッドを呼び出す。
+ * @author Yoshiki Makino
+ */
+public interface TargetedRequestProcessor extends RequestProcessor {
+    
+    /**
+     * 指定されたESVのフレームを処理対象とするか返す。
+     * RequestDispatcherへの登録時に呼び出されるため、登録後に結果を変更してはならない。
+     * @param esv 調べるESV
+     * @return 処理対象であればtrue、そうでなければfalse
+     */
+    public boolean isTargetESV(ESV esv);
+    
+    /**
+     * 指定されたDEOJのフレームを処理対象とするか返す。
+     * フレームを受信する度に呼び出される。
+     * @param deoj 受信したフレームのDEOJ
+     * @return 処理対象であればtrue、そうでなければfalse
+     */
+    public boolean isTargetDEOJ(EOJ deoj);
+}
@@ -3,7 +3,13 @@ package echowand.logic;
 import echowand.common.EOJ;
 import echowand.common.ESV;
 import echowand.net.*;
+import echowand.util.HashedWheelTimer;
+import echowand.util.ListenerRegistry;
+import echowand.util.Pair;
+import echowand.util.Tracer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,6 +20,7 @@ import java.util.logging.Logger;
 public class Transaction {
     private static final Logger logger = Logger.getLogger(Transaction.class.getName());
     private static final String className = Transaction.class.getName();
+    private static final Tracer tracer = Tracer.getTracer(Transaction.class);
     
     private TransactionConfig transactionConfig;
     private static final int DEFAULT_TIMEOUT = 60;
@@ -28,12 +35,20 @@ public class Transaction {
     private int timeout;
     private short tid;
     
-    private Timer timer;
+    private HashedWheelTimer.Timeout timeoutHandle;
+    private TransactionScheduler scheduler;
+    private HashedWheelTimer.Timeout retryHandle;
+    private int countRetries;
+    private long sentTime;
+    private HashSet<Pair<Node, EOJ>> responders;
+    private int expectedResponses;
     private boolean done;
     private boolean waiting;
+    private boolean cancelled;
+    private Deadline deadline;
     private int countResponse;
     
-    private LinkedList<TransactionListener> transactionListeners;
+    private ListenerRegistry<TransactionListener> transactionListeners;
     
     private static EnumMap<ESV, LinkedList<ESV>> responseESVMap = new EnumMap<ESV, LinkedList<ESV>>(ESV.class);
     
@@ -57,11 +72,11 @@ public class Transaction {
         this.subnet = subnet;
         this.transactionManager = transactionManager;
         this.transactionConfig = transactionConfig;
-        this.tid = getNextTID();
+        this.tid = (transactionManager != null) ? transactionManager.allocateTID(this) : getNextTID();
         this.done = false;
         this.countResponse = 0;
         this.timeout = DEFAULT_TIMEOUT;
-        this.transactionListeners = new LinkedList<TransactionListener>();
+        this.transactionListeners = new ListenerRegistry<TransactionListener>(TransactionListener.class);
         initResponseESVMap();
         
         logger.exiting(className, "Transaction");
@@ -113,7 +128,7 @@ public class Transaction {
      * トランザクションのレスポンス処理を行なうTransactionListenerを登録する。
      * @param listener 登録するTransactionListener
      */
-    public synchronized void addTransactionListener(TransactionListener listener) {
+    public void addTransactionListener(TransactionListener listener) {
         logger.entering(className, "addTransactionListener", listener);
         
         transactionListeners.add(listener);
@@ -126,7 +141,7 @@ public class Transaction {
      * トランザクションのレスポンス処理を行なうTransactionListenerの登録を抹消する。
      * @param listener 登録を抹消するTransactionListener
      */
-    public synchronized void removeTransactionListener(TransactionListener listener) {
+    public void removeTransactionListener(TransactionListener listener) {
         logger.entering(className, "removeTransactionListener", listener);
         
         transactionListeners.remove(listener);
@@ -134,55 +149,51 @@ public class Transaction {
         logger.exiting(className, "removeTransactionListener");
     }
     
-    private synchronized List<TransactionListener> cloneTransactionListeners() {
-        return new ArrayList<TransactionListener>(transactionListeners);
-    }
-    
     private void doCallBeginTransactionListeners() {
-        logger.entering(className, "doCallBeginTransactionListeners");
+        tracer.entering("doCallBeginTransactionListeners");
         
-        for (TransactionListener l : cloneTransactionListeners()) {
+        for (TransactionListener l : transactionListeners.getListeners()) {
             l.begin(this);
         }
         
-        logger.exiting(className, "doCallBeginTransactionListeners");
+        tracer.exiting("doCallBeginTransactionListeners");
     }
     
     private void doCallSentTransactionListeners(Frame frame, boolean success) {
-        logger.entering(className, "doCallSentTransactionListeners", frame);
+        tracer.entering("doCallSentTransactionListeners", frame);
         
-        for (TransactionListener l : cloneTransactionListeners()) {
+        for (TransactionListener l : transactionListeners.getListeners()) {
             l.send(this, subnet, frame, success);
         }
         
-        logger.exiting(className, "doCallSentTransactionListeners");
+        tracer.exiting("doCallSentTransactionListeners");
     }
     
     private void doCallReceiveTransactionListeners(Frame frame) {
-        logger.entering(className, "doCallReceiveTransactionListeners", frame);
+        tracer.entering("doCallReceiveTransactionListeners", frame);
         
-        for (TransactionListener l : cloneTransactionListeners()) {
+        for (TransactionListener l : transactionListeners.getListeners()) {
             l.receive(this, subnet, frame);
         }
         
-        logger.exiting(className, "doCallReceiveTransactionListeners");
+        tracer.exiting("doCallReceiveTransactionListeners");
     }
     
     private void doCallFinishTransactionListeners() {
-        logger.entering(className, "doCallFinishTransactionListeners");
+        tracer.entering("doCallFinishTransactionListeners");
         
-        for (TransactionListener l : cloneTransactionListeners()) {
+        for (TransactionListener l : transactionListeners.getListeners()) {
             l.finish(this);
         }
         
-        logger.exiting(className, "doCallFinishTransactionListeners");
+        tracer.exiting("doCallFinishTransactionListeners");
     }
     
     /**
      * 登録済みのTransactionListenerの個数を返す。
      * @return 登録済みのTransactionListener数
      */
-    public synchronized int countTransactionListeners() {
+    public int countTransactionListeners() {
         logger.entering(className, "countTransactionListeners", timeout);
         
         int count = transactionListeners.size();
@@ -211,6 +222,43 @@ public class Transaction {
         return timeout;
     }
     
+    /**
+     * トランザクションの期限を設定する。
+     * 期限を設定すると、開始時のタイムアウトは期限までの残り時間を超えないように調整される。
+     * タイムアウトが負の場合には、期限までの残り時間がタイムアウトとなる。
+     * 開始時に期限を過ぎている場合には、リクエストを送信せずにトランザクションを終了する。
+     * nullを指定した場合には期限を設定しない。
+     * @param deadline トランザクションの期限
+     */
+    public synchronized void setDeadline(Deadline deadline) {
+        logger.entering(className, "setDeadline", deadline);
+        
+        this.deadline = deadline;
+        
+        logger.exiting(className, "setDeadline");
+    }
+    
+    /**
+     * トランザクションの期限を返す。
+     * @return トランザクションの期限、設定されていない場合にはnull
+     */
+    public synchronized Deadline getDeadline() {
+        return deadline;
+    }
+    
+    private int getEffectiveTimeout() {
+        if (deadline == null) {
+            return timeout;
+        }
+        
+        int remaining = deadline.remainingMillis();
+        if (timeout < 0) {
+            return remaining;
+        }
+        
+        return Math.min(timeout, remaining);
+    }
+    
     /**
      * トランザクションのTIDを返す。
      * @return リクエスト処理のTID
@@ -247,11 +295,15 @@ public class Transaction {
         boolean result = true;
         
         for (int i = 0; i < count; i++) {
-            StandardPayload payload = createPayload(i);
+            CommonFrame cf = transactionConfig.createCommonFrame(i, tid);
+            
+            if (cf == null) {
+                StandardPayload payload = createPayload(i);
 
-            CommonFrame cf = new CommonFrame();
-            cf.setEDATA(payload);
-            cf.setTID(tid);
+                cf = new CommonFrame();
+                cf.setEDATA(payload);
+                cf.setTID(tid);
+            }
             Frame frame = new Frame(transactionConfig.getSenderNode(), transactionConfig.getReceiverNode(), cf);
             
             boolean success = true;
@@ -290,30 +342,36 @@ public class Transaction {
      * @param frame 受信したフレーム
      * @return フレームの処理に成功した場合にはtrue、そうでなければfalse
      */
-    public synchronized boolean receiveResponse(Frame frame) {
-        logger.entering(className, "receiveResponse");
+    public boolean receiveResponse(Frame frame) {
+        boolean result = doReceiveResponse(frame);
+        startReleasedTransactions();
+        return result;
+    }
+    
+    private synchronized boolean doReceiveResponse(Frame frame) {
+        tracer.entering("receiveResponse");
         
         if (!this.waiting) {
-            logger.exiting(className, "receiveResponse", false);
+            tracer.exiting("receiveResponse", false);
             return false;
         }
         
         if (!frame.getCommonFrame().isStandardPayload()) {
-            logger.exiting(className, "receiveResponse", false);
+            tracer.exiting("receiveResponse", false);
             return false;
         }
         
         CommonFrame cf = frame.getCommonFrame();
         
         if (cf.getTID() != this.getTID()) {
-            logger.exiting(className, "receiveResponse", false);
+            tracer.exiting("receiveResponse", false);
             return false;
         }
         
         StandardPayload payload = cf.getEDATA(StandardPayload.class);
         
         if (payload == null) {
-            logger.exiting(className, "receiveResponse", false);
+            tracer.exiting("receiveResponse", false);
             return false;
         }
         
@@ -324,17 +382,17 @@ public class Transaction {
         
         if (!responseSEOJ.equals(requestDEOJ)) {
             if (!requestDEOJ.isAllInstance()) {
-                logger.exiting(className, "receiveResponse", false);
+                tracer.exiting("receiveResponse", false);
                 return false;
             }
 
             if (!responseSEOJ.getClassEOJ().equals(requestDEOJ.getClassEOJ())) {
-                logger.exiting(className, "receiveResponse", false);
+                tracer.exiting("receiveResponse", false);
                 return false;
             }
         }
         if (!responseDEOJ.equals(requestSEOJ)) {
-            logger.exiting(className, "receiveResponse", false);
+            tracer.exiting("receiveResponse", false);
             return false;
         }
 
@@ -342,44 +400,136 @@ public class Transaction {
         ESV resESV = payload.getESV();
         
         if (!isValidTransactionESVPair(reqESV, resESV)) {
-            logger.exiting(className, "receiveResponse", false);
+            tracer.exiting("receiveResponse", false);
             return false;
         }
         
+        if (responders != null && !responders.add(new Pair<Node, EOJ>(frame.getSender(), responseSEOJ))) {
+            tracer.exiting("receiveResponse", true);
+            return true;
+        }
+        
+        if (this.countResponse == 0 && this.countRetries == 0) {
+            long rttNanos = System.nanoTime() - sentTime;
+            if (responders != null) {
+                transactionManager.getRTTEstimator().addSample(transactionConfig.getReceiverNode(), rttNanos / 1000000.0);
+            }
+            transactionManager.recordRTT(transactionConfig.getReceiverNode(), rttNanos);
+        }
+        
         this.countResponse++;
         
         doCallReceiveTransactionListeners(frame);
         
-        logger.exiting(className, "receiveResponse", true);
+        if (expectedResponses > 0 && this.countResponse >= expectedResponses) {
+            doFinish();
+        }
+        
+        tracer.exiting("receiveResponse", true);
         return true;
     }
     
     /**
      * トランザクションを終了する。
+     * TransactionSchedulerの待ち行列中のTransactionは、このTransactionのTransactionListenerが呼び出された後に開始される。
      */
-    public synchronized void finish() {
+    public void finish() {
         logger.entering(className, "finish");
         
+        doFinish();
+        startReleasedTransactions();
+        
+        logger.exiting(className, "finish");
+    }
+    
+    private synchronized void doFinish() {
         if (!this.done) {
             this.waiting = false;
             this.done = true;
 
-            if (timer != null) {
-                timer.cancel();
-                timer = null;
+            if (timeoutHandle != null) {
+                timeoutHandle.cancel();
+                timeoutHandle = null;
+            }
+            
+            if (retryHandle != null) {
+                retryHandle.cancel();
+                retryHandle = null;
             }
         
             transactionManager.removeTransaction(this);
             
             doCallFinishTransactionListeners();
             
+            if (scheduler != null) {
+                scheduler.release(this);
+            }
+            
             notifyAll();
         }
+    }
+    
+    private synchronized TransactionScheduler getScheduler() {
+        return scheduler;
+    }
+    
+    private void startReleasedTransactions() {
+        TransactionScheduler currentScheduler = getScheduler();
+        if (currentScheduler != null) {
+            currentScheduler.startReleased();
+        }
+    }
+    
+    /**
+     * トランザクションを取り消す。
+     * タイムアウトと再送の予約を取り消し、TransactionManagerへの登録を抹消してTIDを解放する。
+     * TransactionSchedulerの待ち行列中であれば、待ち行列から取り除かれる。
+     * 登録されたTransactionListenerのfinishは通常の終了と同様に呼び出される。
+     * @return 取り消した場合にはtrue、すでに終了している場合にはfalse
+     */
+    public boolean cancel() {
+        logger.entering(className, "cancel");
+        
+        boolean result;
+        synchronized (this) {
+            result = !this.done;
+            if (result) {
+                this.cancelled = true;
+                doFinish();
+            }
+        }
         
-        logger.exiting(className, "finish");
+        startReleasedTransactions();
+        
+        logger.exiting(className, "cancel", result);
+        return result;
     }
     
-    private static class TimeoutTimerTask extends TimerTask {
+    /**
+     * トランザクションが取り消されたか返す。
+     * @return 取り消されていればtrue、そうでなければfalse
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+    
+    private void timeout() {
+        logger.entering(className, "timeout");
+        
+        synchronized (this) {
+            if (!this.done && expectedResponses > 0 && this.countResponse < expectedResponses) {
+                transactionManager.recordTimeout(transactionConfig.getReceiverNode());
+            }
+            
+            doFinish();
+        }
+        
+        startReleasedTransactions();
+        
+        logger.exiting(className, "timeout");
+    }
+    
+    private static class TimeoutTimerTask implements Runnable {
         public Transaction t;
         public TimeoutTimerTask(Transaction t) {
             this.t = t;
@@ -388,7 +538,7 @@ public class Transaction {
         @Override
         public void run() {
             logger.entering(className, "TimeoutTimerTask.run");
-            t.finish();
+            t.timeout();
             logger.exiting(className, "TimeoutTimerTask.run");
         }
     }
@@ -396,11 +546,20 @@ public class Transaction {
      * トランザクションを開始する。
      * @throws SubnetException フレームの生成や送信に失敗した場合 
      */
-    public synchronized void execute() throws SubnetException {
+    public void execute() throws SubnetException {
         logger.entering(className, "execute");
         
+        try {
+            doExecute();
+        } finally {
+            startReleasedTransactions();
+        }
+        
+        logger.exiting(className, "execute");
+    }
+    
+    private synchronized void doExecute() throws SubnetException {
         if (this.waiting || this.done) {
-            logger.exiting(className, "execute");
             return;
         }
         
@@ -408,24 +567,209 @@ public class Transaction {
 
         this.waiting = true;
         
+        scheduler = getTransactionScheduler();
+        if (scheduler != null && !scheduler.acquire(this)) {
+            return;
+        }
+        
+        start();
+    }
+    
+    private TransactionScheduler getTransactionScheduler() {
+        if (transactionManager == null) {
+            return null;
+        }
+        
+        return transactionManager.getTransactionScheduler();
+    }
+    
+    private void start() throws SubnetException {
+        if (deadline != null && deadline.isExpired()) {
+            logger.logp(Level.FINE, className, "start", "deadline expired: " + this);
+            doFinish();
+            return;
+        }
+        
+        expectedResponses = transactionConfig.resolveExpectedResponses(subnet.getGroupNode());
+        
         transactionManager.addTransaction(this);
         
+        sentTime = System.nanoTime();
         boolean success = sendRequest();
         
-        int timeout = getTimeout();
+        int timeout = getEffectiveTimeout();
         
         if (timeout == 0) {
-            finish();
+            doFinish();
         } else if (timeout > 0) {
-            timer = new Timer(true);
-            timer.schedule(new TimeoutTimerTask(this), timeout);
+            timeoutHandle = HashedWheelTimer.getDefault().newTimeout(new TimeoutTimerTask(this), timeout, TimeUnit.MILLISECONDS);
+        }
+        
+        if (timeout != 0 && isRetryEnabled()) {
+            responders = new HashSet<Pair<Node, EOJ>>();
+            scheduleRetry();
         }
         
         if (!success) {
             throw new SubnetException("sendRequest failed");
         }
+    }
+    
+    private boolean isRetryEnabled() {
+        RetryPolicy retryPolicy = transactionConfig.getRetryPolicy();
+        
+        if (retryPolicy == null || retryPolicy.getMaxRetries() == 0) {
+            return false;
+        }
+        
+        ESV esv = transactionConfig.getESV();
+        if (esv == ESV.SetI || esv == ESV.INF) {
+            return false;
+        }
+        
+        Node receiverNode = transactionConfig.getReceiverNode();
+        return receiverNode != null && !receiverNode.equals(subnet.getGroupNode());
+    }
+    
+    private void scheduleRetry() {
+        RetryPolicy retryPolicy = transactionConfig.getRetryPolicy();
+        
+        long baseTimeout = retryPolicy.getInitialTimeout();
+        if (retryPolicy.isAdaptive()) {
+            RTTEstimator estimator = transactionManager.getRTTEstimator();
+            baseTimeout = estimator.getRetransmissionTimeout(transactionConfig.getReceiverNode(), baseTimeout);
+        }
+        
+        long delay = retryPolicy.getRetryTimeout(baseTimeout, countRetries);
+        retryHandle = HashedWheelTimer.getDefault().newTimeout(new RetryTimerTask(this), delay, TimeUnit.MILLISECONDS);
+    }
+    
+    private synchronized void retry() {
+        logger.entering(className, "retry");
+        
+        retryHandle = null;
+        
+        if (!this.waiting || this.countResponse > 0) {
+            logger.exiting(className, "retry");
+            return;
+        }
+        
+        countRetries++;
+        transactionManager.recordRetry(transactionConfig.getReceiverNode());
+        sendRequest();
+        
+        if (countRetries < transactionConfig.getRetryPolicy().getMaxRetries()) {
+            scheduleRetry();
+        }
+        
+        logger.exiting(className, "retry");
+    }
+    
+    /**
+     * レスポンスを受信できなかったためにリクエストを再送した回数を返す。
+     * @return 再送した回数
+     */
+    public synchronized int countRetries() {
+        return countRetries;
+    }
+    
+    private static class RetryTimerTask implements Runnable {
+        private Transaction t;
+        
+        public RetryTimerTask(Transaction t) {
+            this.t = t;
+        }
 
-        logger.exiting(className, "execute");
+        @Override
+        public void run() {
+            t.retry();
+        }
+    }
+    
+    /**
+     * TransactionSchedulerの待ち行列から取り出されたトランザクションを開始する。
+     */
+    synchronized void startScheduled() {
+        logger.entering(className, "startScheduled");
+        
+        if (this.done) {
+            logger.exiting(className, "startScheduled");
+            return;
+        }
+        
+        try {
+            start();
+        } catch (SubnetException ex) {
+            logger.logp(Level.INFO, className, "startScheduled", "catched exception", ex);
+        }
+        
+        logger.exiting(className, "startScheduled");
+    }
+
+    private static class FutureTransactionListener implements TransactionListener {
+        private final CompletableFuture<List<Frame>> future = new CompletableFuture<List<Frame>>();
+        private final ArrayList<Frame> frames = new ArrayList<Frame>();
+        
+        public CompletableFuture<List<Frame>> getFuture() {
+            return future;
+        }
+        
+        @Override
+        public void begin(Transaction t) {
+        }
+
+        @Override
+        public void send(Transaction t, Subnet subnet, Frame frame, boolean success) {
+        }
+
+        @Override
+        public synchronized void receive(Transaction t, Subnet subnet, Frame frame) {
+            frames.add(frame);
+        }
+
+        @Override
+        public void finish(Transaction t) {
+            List<Frame> result;
+            synchronized (this) {
+                result = Collections.unmodifiableList(new ArrayList<Frame>(frames));
+            }
+            future.complete(result);
+        }
+    }
+    
+    /**
+     * トランザクションを非同期に開始する。
+     * 返されるCompletableFutureは、トランザクションの終了時に受信したレスポンスフレームのリストで完了する。
+     * タイムアウトした場合にも、それまでに受信したフレームのリストで完了する。
+     * 送信に失敗した場合にはSubnetException、すでに開始されたトランザクションの場合にはIllegalStateExceptionにより例外的に完了する。
+     * @return 受信したレスポンスフレームのリストで完了するCompletableFuture
+     */
+    public CompletableFuture<List<Frame>> executeAsync() {
+        logger.entering(className, "executeAsync");
+        
+        FutureTransactionListener listener = new FutureTransactionListener();
+        
+        synchronized (this) {
+            if (this.waiting || this.done) {
+                listener.getFuture().completeExceptionally(new IllegalStateException("already executed"));
+                logger.exiting(className, "executeAsync", listener.getFuture());
+                return listener.getFuture();
+            }
+            
+            addTransactionListener(listener);
+            
+            try {
+                doExecute();
+            } catch (SubnetException ex) {
+                removeTransactionListener(listener);
+                listener.getFuture().completeExceptionally(ex);
+            }
+        }
+        
+        startReleasedTransactions();
+        
+        logger.exiting(className, "executeAsync", listener.getFuture());
+        return listener.getFuture();
     }
 
     /**
@@ -2,6 +2,7 @@ package echowand.logic;
 
 import echowand.common.EOJ;
 import echowand.common.ESV;
+import echowand.net.CommonFrame;
 import echowand.net.Node;
 import echowand.net.StandardPayload;
 import java.util.logging.Logger;
@@ -18,6 +19,17 @@ public abstract class TransactionConfig {
     private Node receiverNode;
     private EOJ sourceEOJ;
     private EOJ destinationEOJ;
+    private int expectedResponses = EXPECTED_RESPONSES_AUTO;
+    
+    /**
+     * 受信するレスポンス数を宛先から自動的に決定することを表す値
+     */
+    public static final int EXPECTED_RESPONSES_AUTO = -1;
+    
+    /**
+     * 受信するレスポンス数を決めずにタイムアウトまで待つことを表す値
+     */
+    public static final int EXPECTED_RESPONSES_UNLIMITED = 0;
     
     /**
      * TransactionConfigを生成する。
@@ -43,6 +55,17 @@ public abstract class TransactionConfig {
      */
     public abstract void addPayloadProperties(int index, StandardPayload payload);
     
+    /**
+     * 指定された番号のリクエストフレームを生成する。
+     * nullを返した場合には、getESVとaddPayloadPropertiesを利用してフレームが生成される。
+     * @param index フレームの番号
+     * @param tid フレームのTID
+     * @return 生成したフレーム、生成しない場合にはnull
+     */
+    public CommonFrame createCommonFrame(int index, short tid) {
+        return null;
+    }
+    
     /**
      * 送信ノードを設定する。
      * @param senderNode 送信ノード
@@ -121,4 +144,70 @@ public abstract class TransactionConfig {
     public EOJ getDestinationEOJ() {
         return destinationEOJ;
     }
+    
+    /**
+     * レスポンスを受信できなかった場合の再送方法を返す。
+     * 再送を行わない場合にはnullを返す。
+     * @return 再送方法
+     */
+    public RetryPolicy getRetryPolicy() {
+        return null;
+    }
+    
+    /**
+     * トランザクションで受信するレスポンス数を設定する。
+     * 指定した数のレスポンスを受信した時点でトランザクションは終了する。
+     * EXPECTED_RESPONSES_AUTOを指定した場合には、宛先が特定のノードの特定のインスタンスであれば
+     * 送信フレーム毎に一つのレスポンスを受信した時点で終了する。
+     * EXPECTED_RESPONSES_UNLIMITEDを指定した場合には、タイムアウトまで終了しない。
+     * @param expectedResponses 受信するレスポンス数
+     * @throws IllegalArgumentException 不正な値が指定された場合
+     */
+    public void setExpectedResponses(int expectedResponses) {
+        logger.entering(className, "setExpectedResponses", expectedResponses);
+        
+        if (expectedResponses < EXPECTED_RESPONSES_AUTO) {
+            throw new IllegalArgumentException("invalid expectedResponses: " + expectedResponses);
+        }
+        
+        this.expectedResponses = expectedResponses;
+        
+        logger.exiting(className, "setExpectedResponses");
+    }
+    
+    /**
+     * トランザクションで受信するレスポンス数の設定を返す。
+     * @return 受信するレスポンス数の設定
+     */
+    public int getExpectedResponses() {
+        return expectedResponses;
+    }
+    
+    /**
+     * 指定されたグループノードを利用して、トランザクションで受信するレスポンス数を決定する。
+     * EXPECTED_RESPONSES_AUTOが設定されている場合、受信ノードがグループノードである場合や
+     * 宛先EOJが全インスタンス指定の場合、レスポンスを必要としないESVの場合にはEXPECTED_RESPONSES_UNLIMITEDを返す。
+     * @param groupNode サブネットのグループノード
+     * @return 受信するレスポンス数
+     */
+    public int resolveExpectedResponses(Node groupNode) {
+        if (expectedResponses != EXPECTED_RESPONSES_AUTO) {
+            return expectedResponses;
+        }
+        
+        if (receiverNode == null || receiverNode.equals(groupNode)) {
+            return EXPECTED_RESPONSES_UNLIMITED;
+        }
+        
+        if (destinationEOJ == null || destinationEOJ.isAllInstance()) {
+            return EXPECTED_RESPONSES_UNLIMITED;
+        }
+        
+        ESV esv = getESV();
+        if (esv == ESV.SetI || esv == ESV.INF) {
+            return EXPECTED_RESPONSES_UNLIMITED;
+        }
+        
+        return getCountPayloads();
+    }
 }
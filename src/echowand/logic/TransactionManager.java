@@ -1,21 +1,83 @@
 package echowand.logic;
 
 import echowand.net.Frame;
+import echowand.net.Node;
 import echowand.net.Subnet;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import echowand.util.Counter;
+import echowand.util.Histogram;
+import echowand.util.MetricsRegistry;
+import echowand.util.Tracer;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Logger;
 
 /**
  * Transactionを管理するし、受信したフレームを適切なTransactionに処理させる。
+ * 処理中のTransactionはTIDをインデックスとした表で管理されるため、受信したフレームに対応するTransactionの検索は
+ * 処理中のTransaction数によらず一定の時間で行われる。
+ * Transactionに割り当てたTIDは、開始前やTransactionSchedulerで待機している間も予約され、
+ * Transactionが終了するかTransactionが参照されなくなるまで他のTransactionに割り当てられない。
  * @author Yoshiki Makino
  */
 public class TransactionManager implements Listener {
     private static final Logger logger = Logger.getLogger(TransactionManager.class.getName());
     private static final String className = TransactionManager.class.getName();
+    private static final Tracer tracer = Tracer.getTracer(TransactionManager.class);
+    
+    private static final int TID_SLOT_SIZE = 0x10000;
+    private static final Transaction[] EMPTY_SLOT = new Transaction[0];
+    
+    private static final String RTT_NAME = "transaction.rtt";
+    private static final String TIMEOUTS_NAME = "transaction.timeouts";
+    private static final String RETRIES_NAME = "transaction.retries";
+    
+    /**
+     * 送信先ノード毎のメトリクスを記録するノード数の上限のデフォルト値
+     */
+    public static final int DEFAULT_MAX_NODE_METRICS = 256;
+    
+    private static class TransactionMetrics {
+        private final MetricsRegistry registry;
+        private final String suffix;
+        private final Histogram rtt;
+        private final Counter timeouts;
+        private final Counter retries;
+        
+        public TransactionMetrics(MetricsRegistry registry, String suffix) {
+            this.registry = registry;
+            this.suffix = suffix;
+            rtt = registry.histogram(RTT_NAME + suffix);
+            timeouts = registry.counter(TIMEOUTS_NAME + suffix);
+            retries = registry.counter(RETRIES_NAME + suffix);
+        }
+        
+        public void remove() {
+            registry.remove(RTT_NAME + suffix, rtt);
+            registry.remove(TIMEOUTS_NAME + suffix, timeouts);
+            registry.remove(RETRIES_NAME + suffix, retries);
+        }
+    }
     
     private Subnet subnet;
-    private LinkedList<Transaction> transactions;
+    private AtomicReferenceArray<Transaction[]> transactionSlots;
+    private AtomicReferenceArray<WeakReference<Transaction>> reservedTIDs;
+    private AtomicInteger transactionCount;
+    
+    private AtomicInteger nextTID;
+    private AtomicLong allocatedTIDCount;
+    private AtomicLong skippedTIDCount;
+    private AtomicLong reusedTIDCount;
+    private AtomicLong wrapCount;
+    
+    private volatile TransactionScheduler transactionScheduler;
+    private volatile MetricsRegistry metricsRegistry;
+    private volatile TransactionMetrics totalMetrics;
+    private final ConcurrentHashMap<Node, TransactionMetrics> nodeMetrics;
+    private volatile int maxNodeMetrics;
+    private RTTEstimator rttEstimator;
     
     /**
      * TransactinManagerを生成する。
@@ -25,23 +87,63 @@ public class TransactionManager implements Listener {
         logger.entering(className, "TransactionManager", subnet);
         
         this.subnet = subnet;
-        transactions = new LinkedList<Transaction>();
+        transactionSlots = new AtomicReferenceArray<Transaction[]>(TID_SLOT_SIZE);
+        reservedTIDs = new AtomicReferenceArray<WeakReference<Transaction>>(TID_SLOT_SIZE);
+        transactionCount = new AtomicInteger(0);
+        
+        nextTID = new AtomicInteger(1);
+        allocatedTIDCount = new AtomicLong(0);
+        skippedTIDCount = new AtomicLong(0);
+        reusedTIDCount = new AtomicLong(0);
+        wrapCount = new AtomicLong(0);
+        
+        nodeMetrics = new ConcurrentHashMap<Node, TransactionMetrics>();
+        maxNodeMetrics = DEFAULT_MAX_NODE_METRICS;
+        
+        rttEstimator = new RTTEstimator();
         
         logger.exiting(className, "TransactionManager");
     }
     
-    private synchronized LinkedList<Transaction> cloneTransactions() {
-        return new LinkedList<Transaction>(transactions);
+    private static int toSlotIndex(short tid) {
+        return tid & 0xffff;
+    }
+    
+    private Transaction[] getSlot(short tid) {
+        Transaction[] slot = transactionSlots.get(toSlotIndex(tid));
+        if (slot == null) {
+            return EMPTY_SLOT;
+        }
+        return slot;
     }
     
     /**
      * Transactionを処理中として登録する。
      * @param t 登録するトランザクション
      */
-    protected synchronized void addTransaction(Transaction t) {
+    protected void addTransaction(Transaction t) {
         logger.entering(className, "addTransaction", t);
         
-        transactions.add(t);
+        int index = toSlotIndex(t.getTID());
+        
+        for (;;) {
+            Transaction[] slot = transactionSlots.get(index);
+            Transaction[] newSlot;
+            
+            if (slot == null) {
+                newSlot = new Transaction[]{t};
+            } else {
+                newSlot = new Transaction[slot.length + 1];
+                System.arraycopy(slot, 0, newSlot, 0, slot.length);
+                newSlot[slot.length] = t;
+            }
+            
+            if (transactionSlots.compareAndSet(index, slot, newSlot)) {
+                break;
+            }
+        }
+        
+        transactionCount.incrementAndGet();
         
         logger.exiting(className, "addTransaction");
     }
@@ -50,20 +152,326 @@ public class TransactionManager implements Listener {
      * Transactionの処理が終了したとして登録を抹消する。
      * @param t 登録を抹消するトランザクション
      */
-    protected synchronized void removeTransaction(Transaction t) {
+    protected void removeTransaction(Transaction t) {
         logger.entering(className, "removeTransaction", t);
         
-        transactions.remove(t);
+        int index = toSlotIndex(t.getTID());
+        
+        for (;;) {
+            Transaction[] slot = transactionSlots.get(index);
+            if (slot == null) {
+                break;
+            }
+            
+            int pos = -1;
+            for (int i=0; i<slot.length; i++) {
+                if (slot[i] == t) {
+                    pos = i;
+                    break;
+                }
+            }
+            
+            if (pos < 0) {
+                break;
+            }
+            
+            Transaction[] newSlot = null;
+            
+            if (slot.length > 1) {
+                newSlot = new Transaction[slot.length - 1];
+                System.arraycopy(slot, 0, newSlot, 0, pos);
+                System.arraycopy(slot, pos + 1, newSlot, pos, slot.length - pos - 1);
+            }
+            
+            if (transactionSlots.compareAndSet(index, slot, newSlot)) {
+                transactionCount.decrementAndGet();
+                break;
+            }
+        }
+        
+        WeakReference<Transaction> reservation = reservedTIDs.get(index);
+        if (reservation != null && reservation.get() == t) {
+            reservedTIDs.compareAndSet(index, reservation, null);
+        }
         
         logger.exiting(className, "removeTransaction");
     }
     
+    private int nextTIDValue() {
+        int value = nextTID.getAndIncrement() & 0xffff;
+        
+        if (value == 0xffff) {
+            wrapCount.incrementAndGet();
+        }
+        
+        return value;
+    }
+    
+    /**
+     * 再送までの時間の計算に利用するノード毎のRTTEstimatorを返す。
+     * @return ノード毎のRTTEstimator
+     */
+    public RTTEstimator getRTTEstimator() {
+        return rttEstimator;
+    }
+    
+    /**
+     * Transactionの同時実行数を制限するTransactionSchedulerを設定する。
+     * nullを指定した場合には制限を行わない。
+     * @param transactionScheduler 設定するTransactionScheduler
+     */
+    public void setTransactionScheduler(TransactionScheduler transactionScheduler) {
+        this.transactionScheduler = transactionScheduler;
+    }
+    
+    /**
+     * 設定されているTransactionSchedulerを返す。
+     * @return 設定されているTransactionScheduler、設定されていない場合にはnull
+     */
+    public TransactionScheduler getTransactionScheduler() {
+        return transactionScheduler;
+    }
+    
+    /**
+     * Transactionの統計を記録するMetricsRegistryを設定する。
+     * 再送が行われなかったTransactionの最初のレスポンスまでの時間が「transaction.rtt」のHistogramにナノ秒で、
+     * 期待した数のレスポンスを受信する前にタイムアウトした回数が「transaction.timeouts」のCounterに、
+     * 再送の回数が「transaction.retries」のCounterに記録される。
+     * それぞれ名前の末尾に「.送信先ノード」を付けたメトリクスにも送信先ノード毎に記録される。
+     * 送信先ノード毎のメトリクスはsetMaxNodeMetricsで指定した数のノードまで記録される。
+     * nullを指定した場合には記録を行わない。
+     * @param metricsRegistry 統計を記録するMetricsRegistry
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        synchronized (nodeMetrics) {
+            this.metricsRegistry = metricsRegistry;
+            nodeMetrics.clear();
+            
+            if (metricsRegistry == null) {
+                totalMetrics = null;
+            } else {
+                totalMetrics = new TransactionMetrics(metricsRegistry, "");
+            }
+        }
+    }
+    
+    /**
+     * Transactionの統計を記録するMetricsRegistryを返す。
+     * @return 統計を記録するMetricsRegistry、設定されていない場合にはnull
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+    
+    /**
+     * 送信先ノード毎のメトリクスを記録するノード数の上限を設定する。
+     * 上限に達した後に現れたノードについては、全体のメトリクスにのみ記録される。
+     * 0を指定した場合には送信先ノード毎のメトリクスを記録しない。
+     * @param maxNodeMetrics ノード数の上限
+     * @throws IllegalArgumentException maxNodeMetricsが負の場合
+     */
+    public void setMaxNodeMetrics(int maxNodeMetrics) {
+        if (maxNodeMetrics < 0) {
+            throw new IllegalArgumentException("invalid max node metrics: " + maxNodeMetrics);
+        }
+        
+        this.maxNodeMetrics = maxNodeMetrics;
+    }
+    
+    /**
+     * 送信先ノード毎のメトリクスを記録するノード数の上限を返す。
+     * @return ノード数の上限
+     */
+    public int getMaxNodeMetrics() {
+        return maxNodeMetrics;
+    }
+    
+    /**
+     * 送信先ノード毎のメトリクスを記録しているノードの数を返す。
+     * @return メトリクスを記録しているノードの数
+     */
+    public int countNodeMetrics() {
+        return nodeMetrics.size();
+    }
+    
+    /**
+     * 指定されたノードのメトリクスをMetricsRegistryから抹消する。
+     * 管理の対象から外れたノードのメトリクスを解放するために利用する。
+     * @param node メトリクスを抹消するノード
+     * @return 抹消した場合はtrue、記録していなかった場合はfalse
+     */
+    public boolean removeNodeMetrics(Node node) {
+        logger.entering(className, "removeNodeMetrics", node);
+        
+        TransactionMetrics metrics;
+        synchronized (nodeMetrics) {
+            metrics = nodeMetrics.remove(node);
+        }
+        
+        if (metrics != null) {
+            metrics.remove();
+        }
+        
+        boolean result = (metrics != null);
+        logger.exiting(className, "removeNodeMetrics", result);
+        return result;
+    }
+    
+    private TransactionMetrics getNodeMetrics(Node node) {
+        TransactionMetrics metrics = nodeMetrics.get(node);
+        if (metrics != null) {
+            return metrics;
+        }
+        
+        synchronized (nodeMetrics) {
+            metrics = nodeMetrics.get(node);
+            MetricsRegistry registry = metricsRegistry;
+            if (metrics == null && registry != null && nodeMetrics.size() < maxNodeMetrics) {
+                metrics = new TransactionMetrics(registry, "." + node);
+                nodeMetrics.put(node, metrics);
+            }
+        }
+        
+        return metrics;
+    }
+    
+    void recordRTT(Node node, long rttNanos) {
+        TransactionMetrics total = totalMetrics;
+        if (total != null) {
+            total.rtt.record(rttNanos);
+            TransactionMetrics metrics = getNodeMetrics(node);
+            if (metrics != null) {
+                metrics.rtt.record(rttNanos);
+            }
+        }
+    }
+    
+    void recordTimeout(Node node) {
+        TransactionMetrics total = totalMetrics;
+        if (total != null) {
+            total.timeouts.increment();
+            TransactionMetrics metrics = getNodeMetrics(node);
+            if (metrics != null) {
+                metrics.timeouts.increment();
+            }
+        }
+    }
+    
+    void recordRetry(Node node) {
+        TransactionMetrics total = totalMetrics;
+        if (total != null) {
+            total.retries.increment();
+            TransactionMetrics metrics = getNodeMetrics(node);
+            if (metrics != null) {
+                metrics.retries.increment();
+            }
+        }
+    }
+    
+    private boolean isReserved(WeakReference<Transaction> reservation) {
+        return reservation != null && reservation.get() != null;
+    }
+    
+    /**
+     * 新しいTransactionに利用するTIDを割り当てる。
+     * 0と処理中のTransactionが利用しているTID、他のTransactionに予約されているTIDは割り当てない。
+     * 割り当てたTIDは予約されないため、Transactionに利用する場合にはcreateTransactionを利用する。
+     * 全てのTIDが利用中の場合には、処理中のTransactionと同じTIDを割り当てる。
+     * @return 割り当てたTID
+     */
+    public short allocateTID() {
+        logger.entering(className, "allocateTID");
+        
+        short tid = allocateTID(null);
+        
+        logger.exiting(className, "allocateTID", tid);
+        return tid;
+    }
+    
+    /**
+     * 指定されたTransactionに利用するTIDを割り当てて予約する。
+     * 予約はTransactionの登録がremoveTransactionで抹消されるか、Transactionが参照されなくなるまで有効である。
+     * @param t TIDを予約するTransaction、予約しない場合にはnull
+     * @return 割り当てたTID
+     */
+    short allocateTID(Transaction t) {
+        int value = 0;
+        
+        for (int i=0; i<TID_SLOT_SIZE; i++) {
+            value = nextTIDValue();
+            
+            if (value == 0) {
+                continue;
+            }
+            
+            WeakReference<Transaction> reservation = reservedTIDs.get(value);
+            if (transactionSlots.get(value) == null && !isReserved(reservation)) {
+                if (t == null || reservedTIDs.compareAndSet(value, reservation, new WeakReference<Transaction>(t))) {
+                    allocatedTIDCount.incrementAndGet();
+                    return (short)value;
+                }
+            }
+            
+            skippedTIDCount.incrementAndGet();
+        }
+        
+        if (value == 0) {
+            value = nextTIDValue();
+        }
+        
+        allocatedTIDCount.incrementAndGet();
+        reusedTIDCount.incrementAndGet();
+        
+        return (short)value;
+    }
+    
+    /**
+     * これまでに割り当てたTIDの数を返す。
+     * @return 割り当てたTIDの数
+     */
+    public long countAllocatedTIDs() {
+        return allocatedTIDCount.get();
+    }
+    
+    /**
+     * 処理中のTransactionが利用していたために割り当てをスキップしたTIDの数を返す。
+     * @return スキップしたTIDの数
+     */
+    public long countSkippedTIDs() {
+        return skippedTIDCount.get();
+    }
+    
+    /**
+     * 全てのTIDが利用中であったために、処理中のTransactionと同じTIDを割り当てた回数を返す。
+     * @return 利用中のTIDを割り当てた回数
+     */
+    public long countReusedTIDs() {
+        return reusedTIDCount.get();
+    }
+    
+    /**
+     * TIDが一巡した回数を返す。
+     * @return TIDが一巡した回数
+     */
+    public long countTIDWraps() {
+        return wrapCount.get();
+    }
+    
     /**
      * 処理中のTransactionの数を返す。
      * @return 処理中のTransaction数
      */
-    public synchronized int countActiveTransactions() {
-        return transactions.size();
+    public int countActiveTransactions() {
+        return transactionCount.get();
+    }
+    
+    /**
+     * 指定されたTIDを持つTransactionが処理中であるか返す。
+     * @param tid 確認するTID
+     * @return 処理中であればtrue、そうでなければfalse
+     */
+    public boolean hasTransaction(short tid) {
+        return transactionSlots.get(toSlotIndex(tid)) != null;
     }
     
     /**
@@ -76,22 +484,20 @@ public class TransactionManager implements Listener {
      */
     @Override
     public boolean process(Subnet subnet, Frame frame, boolean processed) {
-        logger.entering(className, "process", new Object[]{subnet, frame, processed});
+        tracer.entering("process", subnet, frame, processed);
         
         boolean ret = false;
         
         if (processed) {
-            logger.exiting(className, "process", ret);
+            tracer.exiting("process", ret);
             return ret;
         }
         
-        for (Transaction transaction : cloneTransactions()) {
-            if (frame.getCommonFrame().getTID() == transaction.getTID()) {
-                ret |= transaction.receiveResponse(frame);
-            }
+        for (Transaction transaction : getSlot(frame.getCommonFrame().getTID())) {
+            ret |= transaction.receiveResponse(frame);
         }
         
-        logger.exiting(className, "process", ret);
+        tracer.exiting("process", ret);
         return ret;
     }
 
@@ -0,0 +1,418 @@
+package echowand.logic;
+
+import echowand.net.Node;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 送信先ノード毎に同時に実行するTransactionの数を制限する。
+ * TransactionManagerに設定すると、Transactionのexecuteは上限に達している場合には待ち行列に追加され、
+ * 実行中のTransactionが終了した時点で送信先ノード間でラウンドロビンに選択されて開始される。
+ * 待ち行列中のTransactionは、終了したTransactionのロックを解放した後に終了させたスレッドで順番に開始される。
+ * @author Yoshiki Makino
+ */
+public class TransactionScheduler {
+    private static final Logger logger = Logger.getLogger(TransactionScheduler.class.getName());
+    private static final String className = TransactionScheduler.class.getName();
+
+    private static final ThreadLocal<Boolean> starting = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return false;
+        }
+    };
+
+    /**
+     * 同時実行数を制限しないことを表す値
+     */
+    public static final int UNLIMITED = 0;
+
+    private int maxInFlightPerNode;
+    private int maxInFlight;
+
+    private LinkedHashMap<Node, LinkedList<Transaction>> waitingQueues;
+    private HashMap<Node, Integer> inFlightCounts;
+    private IdentityHashMap<Transaction, Long> waitingSince;
+    private IdentityHashMap<Transaction, Long> inFlightSince;
+    private Node lastServedNode;
+    private LinkedList<Transaction> releasedTransactions;
+
+    private long countSubmitted;
+    private long countQueued;
+    private long countDispatched;
+    private long countCompleted;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long totalServiceNanos;
+    private long maxServiceNanos;
+
+    /**
+     * 送信先ノード毎の同時実行数を指定してTransactionSchedulerを生成する。
+     * @param maxInFlightPerNode 送信先ノード毎の同時実行数の上限
+     */
+    public TransactionScheduler(int maxInFlightPerNode) {
+        this(maxInFlightPerNode, UNLIMITED);
+    }
+
+    /**
+     * 送信先ノード毎と全体の同時実行数を指定してTransactionSchedulerを生成する。
+     * UNLIMITEDを指定した場合には制限を行わない。
+     * @param maxInFlightPerNode 送信先ノード毎の同時実行数の上限
+     * @param maxInFlight 全体の同時実行数の上限
+     * @throws IllegalArgumentException 上限に負の値が指定された場合
+     */
+    public TransactionScheduler(int maxInFlightPerNode, int maxInFlight) {
+        logger.entering(className, "TransactionScheduler", new Object[]{maxInFlightPerNode, maxInFlight});
+
+        if (maxInFlightPerNode < 0 || maxInFlight < 0) {
+            throw new IllegalArgumentException("invalid limit: " + maxInFlightPerNode + ", " + maxInFlight);
+        }
+
+        this.maxInFlightPerNode = maxInFlightPerNode;
+        this.maxInFlight = maxInFlight;
+
+        waitingQueues = new LinkedHashMap<Node, LinkedList<Transaction>>();
+        inFlightCounts = new HashMap<Node, Integer>();
+        waitingSince = new IdentityHashMap<Transaction, Long>();
+        inFlightSince = new IdentityHashMap<Transaction, Long>();
+        releasedTransactions = new LinkedList<Transaction>();
+
+        logger.exiting(className, "TransactionScheduler");
+    }
+
+    /**
+     * 送信先ノード毎の同時実行数の上限を返す。
+     * @return 送信先ノード毎の同時実行数の上限
+     */
+    public synchronized int getMaxInFlightPerNode() {
+        return maxInFlightPerNode;
+    }
+
+    /**
+     * 全体の同時実行数の上限を返す。
+     * @return 全体の同時実行数の上限
+     */
+    public synchronized int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    private Node getNode(Transaction transaction) {
+        return transaction.getTransactionConfig().getReceiverNode();
+    }
+
+    private int getInFlightCount(Node node) {
+        Integer count = inFlightCounts.get(node);
+        if (count == null) {
+            return 0;
+        }
+        return count;
+    }
+
+    private boolean isAvailable(Node node) {
+        if (maxInFlight != UNLIMITED && inFlightSince.size() >= maxInFlight) {
+            return false;
+        }
+
+        if (maxInFlightPerNode != UNLIMITED && getInFlightCount(node) >= maxInFlightPerNode) {
+            return false;
+        }
+
+        return true;
+    }
+
+    private void startInFlight(Transaction transaction, Node node, long now) {
+        inFlightCounts.put(node, getInFlightCount(node) + 1);
+        inFlightSince.put(transaction, now);
+        lastServedNode = node;
+        countDispatched++;
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos += waitNanos;
+        if (waitNanos > maxWaitNanos) {
+            maxWaitNanos = waitNanos;
+        }
+    }
+
+    /**
+     * Transactionの実行を要求する。
+     * 実行可能であればtrueを返し、呼び出し側はすぐにTransactionを開始する。
+     * 上限に達している場合には待ち行列に追加してfalseを返し、後でTransactionが開始される。
+     * @param transaction 実行を要求するTransaction
+     * @return すぐに開始できる場合にはtrue、待ち行列に追加された場合にはfalse
+     */
+    synchronized boolean acquire(Transaction transaction) {
+        logger.entering(className, "acquire", transaction);
+
+        Node node = getNode(transaction);
+        long now = System.nanoTime();
+
+        countSubmitted++;
+
+        LinkedList<Transaction> queue = waitingQueues.get(node);
+        boolean result;
+
+        if ((queue == null || queue.isEmpty()) && isAvailable(node)) {
+            startInFlight(transaction, node, now);
+            recordWait(0);
+            result = true;
+        } else {
+            if (queue == null) {
+                queue = new LinkedList<Transaction>();
+                waitingQueues.put(node, queue);
+            }
+            queue.add(transaction);
+            waitingSince.put(transaction, now);
+            countQueued++;
+            result = false;
+        }
+
+        logger.exiting(className, "acquire", result);
+        return result;
+    }
+
+    private Transaction pollNext(long now) {
+        if (waitingQueues.isEmpty()) {
+            return null;
+        }
+
+        ArrayList<Node> nodes = new ArrayList<Node>(waitingQueues.keySet());
+        int start = 0;
+
+        if (lastServedNode != null) {
+            int index = nodes.indexOf(lastServedNode);
+            if (index >= 0) {
+                start = index + 1;
+            }
+        }
+
+        for (int i=0; i<nodes.size(); i++) {
+            Node node = nodes.get((start + i) % nodes.size());
+
+            if (!isAvailable(node)) {
+                continue;
+            }
+
+            LinkedList<Transaction> queue = waitingQueues.get(node);
+            Transaction transaction = queue.poll();
+
+            if (queue.isEmpty()) {
+                waitingQueues.remove(node);
+            }
+
+            if (transaction != null) {
+                recordWait(now - waitingSince.remove(transaction));
+                startInFlight(transaction, node, now);
+                return transaction;
+            }
+        }
+
+        return null;
+    }
+
+    private List<Transaction> doRelease(Transaction transaction) {
+        long now = System.nanoTime();
+
+        if (waitingSince.remove(transaction) != null) {
+            Node node = getNode(transaction);
+            LinkedList<Transaction> queue = waitingQueues.get(node);
+            queue.remove(transaction);
+            if (queue.isEmpty()) {
+                waitingQueues.remove(node);
+            }
+            return new LinkedList<Transaction>();
+        }
+
+        Long since = inFlightSince.remove(transaction);
+        if (since == null) {
+            return new LinkedList<Transaction>();
+        }
+
+        Node node = getNode(transaction);
+        int count = getInFlightCount(node) - 1;
+        if (count > 0) {
+            inFlightCounts.put(node, count);
+        } else {
+            inFlightCounts.remove(node);
+        }
+
+        long serviceNanos = now - since;
+        totalServiceNanos += serviceNanos;
+        if (serviceNanos > maxServiceNanos) {
+            maxServiceNanos = serviceNanos;
+        }
+        countCompleted++;
+
+        LinkedList<Transaction> next = new LinkedList<Transaction>();
+        for (;;) {
+            Transaction t = pollNext(now);
+            if (t == null) {
+                break;
+            }
+            next.add(t);
+        }
+
+        return next;
+    }
+
+    /**
+     * 終了したTransactionを登録から抹消し、開始可能になった待ち行列中のTransactionを開始待ちにする。
+     * 開始待ちのTransactionはstartReleasedの呼び出しにより開始される。
+     * @param transaction 終了したTransaction
+     */
+    synchronized void release(Transaction transaction) {
+        logger.entering(className, "release", transaction);
+
+        releasedTransactions.addAll(doRelease(transaction));
+
+        logger.exiting(className, "release");
+    }
+
+    private synchronized Transaction pollReleased() {
+        return releasedTransactions.poll();
+    }
+
+    /**
+     * 開始待ちのTransactionを順番に開始する。
+     * 開始したTransactionがすぐに終了して新たに開始待ちのTransactionが追加された場合にも、再帰せずに同じループで開始する。
+     * このメソッドの実行中に同じスレッドから呼び出された場合には何も行わない。
+     */
+    void startReleased() {
+        if (starting.get()) {
+            return;
+        }
+
+        starting.set(true);
+        try {
+            for (;;) {
+                Transaction next = pollReleased();
+                if (next == null) {
+                    break;
+                }
+                next.startScheduled();
+            }
+        } finally {
+            starting.set(false);
+        }
+    }
+
+    /**
+     * 実行中のTransactionの数を返す。
+     * @return 実行中のTransactionの数
+     */
+    public synchronized int countInFlight() {
+        return inFlightSince.size();
+    }
+
+    /**
+     * 指定されたノードを送信先とする実行中のTransactionの数を返す。
+     * @param node 送信先ノード
+     * @return 実行中のTransactionの数
+     */
+    public synchronized int countInFlight(Node node) {
+        return getInFlightCount(node);
+    }
+
+    /**
+     * 待ち行列中のTransactionの数を返す。
+     * @return 待ち行列中のTransactionの数
+     */
+    public synchronized int countWaiting() {
+        return waitingSince.size();
+    }
+
+    /**
+     * 指定されたノードを送信先とする待ち行列中のTransactionの数を返す。
+     * @param node 送信先ノード
+     * @return 待ち行列中のTransactionの数
+     */
+    public synchronized int countWaiting(Node node) {
+        LinkedList<Transaction> queue = waitingQueues.get(node);
+        if (queue == null) {
+            return 0;
+        }
+        return queue.size();
+    }
+
+    /**
+     * 実行を要求されたTransactionの総数を返す。
+     * @return 実行を要求されたTransactionの総数
+     */
+    public synchronized long countSubmitted() {
+        return countSubmitted;
+    }
+
+    /**
+     * 待ち行列に追加されたTransactionの総数を返す。
+     * @return 待ち行列に追加されたTransactionの総数
+     */
+    public synchronized long countQueued() {
+        return countQueued;
+    }
+
+    /**
+     * 開始されたTransactionの総数を返す。
+     * @return 開始されたTransactionの総数
+     */
+    public synchronized long countDispatched() {
+        return countDispatched;
+    }
+
+    /**
+     * 終了したTransactionの総数を返す。
+     * @return 終了したTransactionの総数
+     */
+    public synchronized long countCompleted() {
+        return countCompleted;
+    }
+
+    /**
+     * 開始されるまでの待ち時間の平均をナノ秒で返す。
+     * @return 待ち時間の平均(ナノ秒)
+     */
+    public synchronized long getAverageWaitNanos() {
+        if (countDispatched == 0) {
+            return 0;
+        }
+        return totalWaitNanos / countDispatched;
+    }
+
+    /**
+     * 開始されるまでの待ち時間の最大値をナノ秒で返す。
+     * @return 待ち時間の最大値(ナノ秒)
+     */
+    public synchronized long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    /**
+     * 開始から終了までの時間の平均をナノ秒で返す。
+     * @return 開始から終了までの時間の平均(ナノ秒)
+     */
+    public synchronized long getAverageServiceNanos() {
+        if (countCompleted == 0) {
+            return 0;
+        }
+        return totalServiceNanos / countCompleted;
+    }
+
+    /**
+     * 開始から終了までの時間の最大値をナノ秒で返す。
+     * @return 開始から終了までの時間の最大値(ナノ秒)
+     */
+    public synchronized long getMaxServiceNanos() {
+        return maxServiceNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        String format = "TransactionScheduler(perNode=%d, max=%d, inFlight=%d, waiting=%d, submitted=%d, queued=%d, avgWait=%dns, avgService=%dns)";
+        return String.format(format, maxInFlightPerNode, maxInFlight, countInFlight(), countWaiting(),
+                countSubmitted, countQueued, getAverageWaitNanos(), getAverageServiceNanos());
+    }
+}
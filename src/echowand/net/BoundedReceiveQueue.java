@@ -0,0 +1,352 @@
+package echowand.net;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 容量に上限を持つ受信キュー
+ * 受信スレッドは取得側の処理を待たずにデータを追加できるため、一時的な受信の集中を吸収することができる。
+ * キューが一杯の場合の動作はReceiveQueueOverflowPolicyで指定する。
+ * 破棄されたデータはsetDiscardHandlerで設定したConsumerに渡されるため、データが保持する資源を解放することができる。
+ * @param <T> 受け渡すデータの型
+ * @author ymakino
+ */
+public class BoundedReceiveQueue<T> implements ReceiveQueue<T> {
+
+    /**
+     * キューの容量のデフォルト値
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Object[] elements;
+    private final ReceiveQueueOverflowPolicy overflowPolicy;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    private volatile Consumer<? super T> discardHandler = null;
+
+    private int head = 0;
+    private int tail = 0;
+    private volatile int count = 0;
+    private volatile int maxCount = 0;
+    private volatile boolean enabled = true;
+    private volatile long putCount = 0;
+    private volatile long droppedCount = 0;
+
+    /**
+     * デフォルトの容量で、一杯の場合には待機するBoundedReceiveQueueを生成する。
+     */
+    public BoundedReceiveQueue() {
+        this(DEFAULT_CAPACITY, ReceiveQueueOverflowPolicy.BLOCK);
+    }
+
+    /**
+     * 容量と一杯の場合の動作を指定してBoundedReceiveQueueを生成する。
+     * @param capacity キューの容量
+     * @param overflowPolicy キューが一杯の場合の動作
+     * @throws IllegalArgumentException 容量が1未満の場合
+     */
+    public BoundedReceiveQueue(int capacity, ReceiveQueueOverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+
+        this.elements = new Object[capacity];
+        this.overflowPolicy = overflowPolicy;
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+    }
+
+    /**
+     * キューが一杯であったり、キューを利用可能にしたりしたために破棄されたデータを受け取るConsumerを設定する。
+     * Consumerはキューのロックを解放した後に、データを破棄したスレッドで呼び出される。
+     * nullを指定した場合には、破棄されたデータはそのまま捨てられる。
+     * @param discardHandler 破棄されたデータを受け取るConsumer
+     */
+    public void setDiscardHandler(Consumer<? super T> discardHandler) {
+        this.discardHandler = discardHandler;
+    }
+
+    /**
+     * 破棄されたデータを受け取るConsumerを返す。
+     * @return 破棄されたデータを受け取るConsumer
+     */
+    public Consumer<? super T> getDiscardHandler() {
+        return discardHandler;
+    }
+
+    private void discard(T value) {
+        Consumer<? super T> handler = discardHandler;
+        if (handler != null && value != null) {
+            handler.accept(value);
+        }
+    }
+
+    private void discardAll(List<T> values) {
+        for (T value : values) {
+            discard(value);
+        }
+    }
+
+    private void checkEnabled() throws SimpleSynchronousQueueException {
+        if (!enabled) {
+            throw new SimpleSynchronousQueueException("invalid queue");
+        }
+    }
+
+    private void enqueue(T value) {
+        elements[tail] = value;
+        tail = (tail + 1) % elements.length;
+        count++;
+        putCount++;
+
+        if (count > maxCount) {
+            maxCount = count;
+        }
+
+        notEmpty.signal();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T dequeue() {
+        T value = (T)elements[head];
+        elements[head] = null;
+        head = (head + 1) % elements.length;
+        count--;
+
+        notFull.signal();
+        return value;
+    }
+
+    /**
+     * キューからデータを取得する。
+     * データが存在しない場合には、データが追加されるかキューが利用不可能になるまで待機する。
+     * @return 取得したデータ
+     * @throws SimpleSynchronousQueueException キューが利用不可能の場合
+     * @throws InterruptedException 割り込みが発生した場合
+     */
+    @Override
+    public T take() throws SimpleSynchronousQueueException, InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            checkEnabled();
+
+            while (count == 0) {
+                notEmpty.await();
+                checkEnabled();
+            }
+
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * キューからデータを取得する。
+     * データが存在しない場合には、指定された時間まで待機する。
+     * @param timeout 待機する時間
+     * @param unit 待機する時間の単位
+     * @return 取得したデータ、時間内にデータが追加されなかった場合にはnull
+     * @throws SimpleSynchronousQueueException キューが利用不可能の場合
+     * @throws InterruptedException 割り込みが発生した場合
+     */
+    public T poll(long timeout, TimeUnit unit) throws SimpleSynchronousQueueException, InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+        try {
+            checkEnabled();
+
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+                checkEnabled();
+            }
+
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * キューにデータを追加する。
+     * キューが一杯の場合には、ReceiveQueueOverflowPolicyに従って待機するかデータを破棄する。
+     * 破棄したデータは設定されたConsumerに渡される。
+     * @param value 追加するデータ
+     * @throws SimpleSynchronousQueueException キューが利用不可能の場合
+     * @throws InterruptedException 割り込みが発生した場合
+     */
+    @Override
+    public void put(T value) throws SimpleSynchronousQueueException, InterruptedException {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+
+        T discarded = null;
+
+        lock.lockInterruptibly();
+        try {
+            checkEnabled();
+
+            if (count == elements.length) {
+                switch (overflowPolicy) {
+                    case DROP_NEWEST:
+                        droppedCount++;
+                        discarded = value;
+                        return;
+                    case DROP_OLDEST:
+                        discarded = dequeue();
+                        droppedCount++;
+                        break;
+                    default:
+                        while (count == elements.length) {
+                            notFull.await();
+                            checkEnabled();
+                        }
+                        break;
+                }
+            }
+
+            enqueue(value);
+        } finally {
+            lock.unlock();
+            discard(discarded);
+        }
+    }
+
+    private List<T> dequeueAll() {
+        LinkedList<T> values = new LinkedList<T>();
+        while (count > 0) {
+            values.add(dequeue());
+        }
+        return values;
+    }
+
+    /**
+     * キューに格納されている全てのデータを破棄する。
+     * 破棄したデータは設定されたConsumerに渡される。
+     */
+    public void clear() {
+        List<T> values;
+
+        lock.lock();
+        try {
+            values = dequeueAll();
+        } finally {
+            lock.unlock();
+        }
+
+        discardAll(values);
+    }
+
+    /**
+     * このキューを利用可能にする。
+     * 利用不可能であった間に残っていたデータは破棄され、設定されたConsumerに渡される。
+     */
+    @Override
+    public void enable() {
+        List<T> values = null;
+
+        lock.lock();
+        try {
+            if (!enabled) {
+                values = dequeueAll();
+                enabled = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (values != null) {
+            discardAll(values);
+        }
+    }
+
+    /**
+     * このキューを利用不可能にする。
+     * 待機しているスレッドは全て例外により待機を終了する。
+     */
+    @Override
+    public void disable() {
+        lock.lock();
+        try {
+            enabled = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * このキューが利用可能であるか返す。
+     * @return 利用可能であればtrue、利用不可能であればfalse
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * キューの容量を返す。
+     * @return キューの容量
+     */
+    public int getCapacity() {
+        return elements.length;
+    }
+
+    /**
+     * キューが一杯の場合の動作を返す。
+     * @return キューが一杯の場合の動作
+     */
+    public ReceiveQueueOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * キューに格納されているデータ数を返す。
+     * @return 格納されているデータ数
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * これまでにキューに格納されたデータ数の最大値を返す。
+     * @return 格納されたデータ数の最大値
+     */
+    public int getMaxSize() {
+        return maxCount;
+    }
+
+    /**
+     * キューに追加されたデータの総数を返す。
+     * @return 追加されたデータの総数
+     */
+    public long countPut() {
+        return putCount;
+    }
+
+    /**
+     * キューが一杯であったために破棄されたデータの総数を返す。
+     * @return 破棄されたデータの総数
+     */
+    public long countDropped() {
+        return droppedCount;
+    }
+
+    @Override
+    public String toString() {
+        String format = "BoundedReceiveQueue(capacity=%d, policy=%s, size=%d, maxSize=%d, put=%d, dropped=%d)";
+        return String.format(format, getCapacity(), overflowPolicy, size(), getMaxSize(), countPut(), countDropped());
+    }
+}
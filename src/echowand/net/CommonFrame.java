@@ -2,6 +2,7 @@ package echowand.net;
 
 import echowand.common.EOJ;
 import echowand.common.ESV;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 /**
@@ -13,6 +14,8 @@ public class CommonFrame {
     private byte ehd2;
     private short tid;
     private Payload edata;
+    private volatile CommonFrameView view;
+    private ReceiveBuffer receiveBuffer;
     
     /**
      * ECHONET Liteである事を表す共通フレームの1バイト目
@@ -77,6 +80,86 @@ public class CommonFrame {
         }
     }
     
+    /**
+     * CommonFrameを生成する。
+     * 指定されたByteBufferの現在位置からリミットまでをフレームとみなし初期化を行う。
+     * フレームの構造のみを検査し、EDATAは必要になるまで解析されない。
+     * EDATAが解析されるまでバッファの内容を変更してはならない。
+     * @param buffer フレームを格納したバッファ
+     * @throws InvalidDataException バッファの解析に失敗した場合
+     */
+    public CommonFrame(ByteBuffer buffer) throws InvalidDataException {
+        this(new CommonFrameView(buffer));
+    }
+    
+    /**
+     * CommonFrameを生成する。
+     * 指定されたCommonFrameViewの参照するフレームで初期化を行う。
+     * EDATAは必要になるまで解析されない。
+     * @param view フレームのビュー
+     */
+    public CommonFrame(CommonFrameView view) {
+        this.ehd1 = view.getEHD1();
+        this.ehd2 = view.getEHD2();
+        this.tid = view.getTID();
+        this.edata = null;
+        this.view = view;
+    }
+    
+    /**
+     * CommonFrameを生成する。
+     * 指定された受信バッファの内容をフレームとみなし初期化を行う。
+     * 受信バッファはreleaseBufferメソッドが呼ばれるまでこのCommonFrameが所有する。
+     * @param receiveBuffer フレームを格納した受信バッファ
+     * @throws InvalidDataException バッファの解析に失敗した場合
+     */
+    CommonFrame(ReceiveBuffer receiveBuffer) throws InvalidDataException {
+        this(new CommonFrameView(receiveBuffer.getByteBuffer()));
+        this.receiveBuffer = receiveBuffer;
+    }
+    
+    private synchronized void decodeEDATA() {
+        CommonFrameView currentView = view;
+        if (currentView != null) {
+            edata = currentView.toPayload();
+            view = null;
+        }
+        
+        if (receiveBuffer != null) {
+            receiveBuffer.release();
+            receiveBuffer = null;
+        }
+    }
+    
+    /**
+     * このCommonFrameが所有する受信バッファを解放し、プールに返却する。
+     * EDATAが解析されていない場合には、フレームの内容をコピーしてから返却する。
+     * 受信バッファを所有していない場合には何も行わない。
+     * フレームの処理が完了した後に、受信処理を行ったスレッドから呼び出される。
+     */
+    public synchronized void releaseBuffer() {
+        if (receiveBuffer == null) {
+            return;
+        }
+        
+        CommonFrameView currentView = view;
+        if (currentView != null) {
+            view = currentView.copy();
+        }
+        
+        receiveBuffer.release();
+        receiveBuffer = null;
+    }
+    
+    /**
+     * EDATAが解析されていない場合に、このCommonFrameが参照するビューを返す。
+     * EDATAが既に解析されている場合にはnullを返す。
+     * @return このCommonFrameが参照するビュー
+     */
+    public CommonFrameView getView() {
+        return view;
+    }
+    
     /**
      * このCommonFrameの1バイト目を返す。
      * @return このCommonFrameの1バイト目
@@ -115,6 +198,9 @@ public class CommonFrame {
      * @return このCommonFrameのペイロード
      */
     public Payload getEDATA() {
+        if (view != null) {
+            decodeEDATA();
+        }
         return edata;
     }
     
@@ -127,7 +213,7 @@ public class CommonFrame {
      */
     public <P extends Payload> P getEDATA(Class<P> cls) {
         try {
-            return cls.cast(edata);
+            return cls.cast(getEDATA());
         } catch (ClassCastException ex) {
             return null;
         }
@@ -144,6 +230,8 @@ public class CommonFrame {
             ehd2 = EHD2_ARBITRARY_PAYLOAD;
         }
         this.edata = payload;
+        this.view = null;
+        releaseBuffer();
     }
     
     /**
@@ -167,18 +255,63 @@ public class CommonFrame {
      * @return バイト配列に変換されたCommonFrame
      */
     public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(size());
+        writeTo(buffer);
+        return buffer.array();
+    }
+    
+    /**
+     * このCommonFrameをバイト配列に変換したときの長さを返す。
+     * @return バイト配列の長さ
+     */
+    public int size() {
+        CommonFrameView currentView = view;
+        if (currentView != null) {
+            return currentView.size();
+        }
+        
         int len = 4;
         if (edata != null) {
             len += edata.size();
         }
-        ByteBuffer buffer = ByteBuffer.allocate(len);
+        return len;
+    }
+    
+    /**
+     * このCommonFrameを指定されたバッファの現在位置に書き込む。
+     * 中間的なバイト配列を生成せずに、ヘッダとペイロードを一度に書き込む。
+     * EDATAが解析されていない場合には受信したペイロードをそのままコピーする。
+     * バッファの残りが不足している場合には何も書き込まずにBufferOverflowExceptionを発生させる。
+     * @param buffer 書き込み先のバッファ
+     * @return 書き込んだバイト数
+     */
+    public int writeTo(ByteBuffer buffer) {
+        CommonFrameView currentView = view;
+        Payload currentEDATA = edata;
+        
+        int len = 4;
+        if (currentView != null) {
+            len = currentView.size();
+        } else if (currentEDATA != null) {
+            len += currentEDATA.size();
+        }
+        
+        if (buffer.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        
         buffer.put(ehd1);
         buffer.put(ehd2);
-        buffer.putShort(tid);
-        if (edata != null) {
-            buffer.put(edata.toBytes());
+        buffer.put((byte)(tid >> 8));
+        buffer.put((byte)tid);
+        
+        if (currentView != null) {
+            currentView.writePayloadTo(buffer);
+        } else if (currentEDATA != null) {
+            currentEDATA.writeTo(buffer);
         }
-        return buffer.array();
+        
+        return len;
     }
     
     /**
@@ -188,6 +321,6 @@ public class CommonFrame {
     @Override
     public String toString() {
         String format = "EHD1=%02x EHD2=%02x TID=%04x EDATA=[%s]";
-        return String.format(format, ehd1, ehd2, tid, edata);
+        return String.format(format, ehd1, ehd2, tid, getEDATA());
     }
 }
@@ -0,0 +1,399 @@
+package echowand.net;
+
+import echowand.common.Data;
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import java.nio.ByteBuffer;
+
+/**
+ * ByteBufferに格納された共通フレームの読み取り専用ビュー
+ * PropertyやDataを生成せずにSEOJ、DEOJ、ESV、OPC、EPC、EDTを参照することができる。
+ * ビューはバッファの内容をコピーせずに参照するため、ビューを利用している間はバッファの内容を変更してはならない。
+ * @author Yoshiki Makino
+ */
+public class CommonFrameView {
+    private static final int HEADER_SIZE = 4;
+    private static final int EOJ_SIZE = 3;
+    private static final int EDATA_HEADER_SIZE = 7;
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+    private int firstOPCOffset;
+    private int secondOPCOffset;
+
+    /**
+     * 指定されたバイト配列を参照するCommonFrameViewを生成する。
+     * @param bytes フレームのバイト配列
+     * @throws InvalidDataException フレームの構造が不正な場合
+     */
+    public CommonFrameView(byte[] bytes) throws InvalidDataException {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * 指定されたByteBufferの現在位置からリミットまでを参照するCommonFrameViewを生成する。
+     * バッファの位置とリミットは変更されない。
+     * @param buffer フレームを格納したバッファ
+     * @throws InvalidDataException フレームの構造が不正な場合
+     */
+    public CommonFrameView(ByteBuffer buffer) throws InvalidDataException {
+        this.buffer = buffer;
+        this.offset = buffer.position();
+        this.firstOPCOffset = -1;
+        this.secondOPCOffset = -1;
+        this.length = validate(buffer.limit());
+    }
+
+    private int validate(int limit) throws InvalidDataException {
+        int pos = offset;
+
+        if (limit - pos < HEADER_SIZE) {
+            throw new InvalidDataException("invalid data at: " + (limit - offset));
+        }
+
+        if (buffer.get(offset + 1) != CommonFrame.EHD2_STANDARD_PAYLOAD) {
+            return limit - offset;
+        }
+
+        pos += HEADER_SIZE;
+
+        if (limit - pos < EDATA_HEADER_SIZE) {
+            throw new InvalidDataException("invalid data at: " + (limit - offset));
+        }
+
+        pos += EDATA_HEADER_SIZE;
+
+        if (pos < limit) {
+            firstOPCOffset = pos;
+            pos = skipProperties(pos, limit);
+        }
+
+        if (getESV().isSetGet()) {
+            secondOPCOffset = pos;
+            pos = skipProperties(pos, limit);
+        }
+
+        return pos - offset;
+    }
+
+    private int skipProperties(int pos, int limit) throws InvalidDataException {
+        if (pos >= limit) {
+            throw new InvalidDataException("invalid data at: " + (pos - offset));
+        }
+
+        int opc = 0xff & (int)buffer.get(pos++);
+        for (int i=0; i<opc; i++) {
+            if (limit - pos < 2) {
+                throw new InvalidDataException("invalid data at: " + (pos - offset));
+            }
+            int pdc = 0xff & (int)buffer.get(pos + 1);
+            pos += 2 + pdc;
+            if (pos > limit) {
+                throw new InvalidDataException("invalid data at: " + (pos - offset));
+            }
+        }
+
+        return pos;
+    }
+
+    private CommonFrameView(ByteBuffer buffer, int offset, int length, int firstOPCOffset, int secondOPCOffset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.firstOPCOffset = firstOPCOffset;
+        this.secondOPCOffset = secondOPCOffset;
+    }
+
+    /**
+     * このビューが参照するフレームをコピーし、コピーしたデータを参照するCommonFrameViewを生成する。
+     * 元のバッファを再利用する前にビューを切り離すために利用する。
+     * @return コピーしたデータを参照するCommonFrameView
+     */
+    public CommonFrameView copy() {
+        ByteBuffer src = buffer.duplicate();
+        src.limit(offset + length);
+        src.position(offset);
+        ByteBuffer dest = ByteBuffer.allocate(length);
+        dest.put(src);
+        dest.flip();
+
+        int newFirstOPCOffset = firstOPCOffset < 0 ? -1 : firstOPCOffset - offset;
+        int newSecondOPCOffset = secondOPCOffset < 0 ? -1 : secondOPCOffset - offset;
+        return new CommonFrameView(dest, 0, length, newFirstOPCOffset, newSecondOPCOffset);
+    }
+
+    /**
+     * このビューが参照するフレームのバイト数を返す。
+     * @return フレームのバイト数
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * フレームの1バイト目を返す。
+     * @return フレームの1バイト目
+     */
+    public byte getEHD1() {
+        return buffer.get(offset);
+    }
+
+    /**
+     * フレームの2バイト目を返す。
+     * @return フレームの2バイト目
+     */
+    public byte getEHD2() {
+        return buffer.get(offset + 1);
+    }
+
+    /**
+     * フレームのトランザクションID(TID)を返す。
+     * @return フレームのTID
+     */
+    public short getTID() {
+        return (short)(((0xff & (int)buffer.get(offset + 2)) << 8) | (0xff & (int)buffer.get(offset + 3)));
+    }
+
+    /**
+     * フレームがECHONET Liteであるか返す。
+     * @return ECHONET Liteのフレームであればtrue、そうでなければfalse
+     */
+    public boolean isEchonetLite() {
+        return getEHD1() == CommonFrame.EHD1_ECHONET_LITE;
+    }
+
+    /**
+     * フレームのペイロードが標準形式であるか返す。
+     * @return 標準形式であればtrue、そうでなければfalse
+     */
+    public boolean isStandardPayload() {
+        return getEHD2() == CommonFrame.EHD2_STANDARD_PAYLOAD;
+    }
+
+    private EOJ getEOJ(int pos) {
+        return new EOJ(buffer.get(pos), buffer.get(pos + 1), buffer.get(pos + 2));
+    }
+
+    /**
+     * 送信EOJを返す。
+     * 標準ペイロードではない場合にはnullを返す。
+     * @return 送信EOJ
+     */
+    public EOJ getSEOJ() {
+        if (!isStandardPayload()) {
+            return null;
+        }
+        return getEOJ(offset + HEADER_SIZE);
+    }
+
+    /**
+     * 宛先EOJを返す。
+     * 標準ペイロードではない場合にはnullを返す。
+     * @return 宛先EOJ
+     */
+    public EOJ getDEOJ() {
+        if (!isStandardPayload()) {
+            return null;
+        }
+        return getEOJ(offset + HEADER_SIZE + EOJ_SIZE);
+    }
+
+    /**
+     * ESVを返す。
+     * 標準ペイロードではない場合にはESV.Invalidを返す。
+     * @return ESV
+     */
+    public ESV getESV() {
+        if (!isStandardPayload()) {
+            return ESV.Invalid;
+        }
+        return ESV.fromByte(buffer.get(offset + HEADER_SIZE + EOJ_SIZE * 2));
+    }
+
+    private byte getOPC(int opcOffset) {
+        if (opcOffset < 0) {
+            return 0;
+        }
+        return buffer.get(opcOffset);
+    }
+
+    private int getPropertyOffset(int opcOffset, int index) {
+        int opc = 0xff & (int)getOPC(opcOffset);
+        if (index < 0 || index >= opc) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", OPC: " + opc);
+        }
+
+        int pos = opcOffset + 1;
+        for (int i=0; i<index; i++) {
+            pos += 2 + (0xff & (int)buffer.get(pos + 1));
+        }
+        return pos;
+    }
+
+    private Data getEDT(int pos) {
+        int pdc = 0xff & (int)buffer.get(pos + 1);
+        if (buffer.hasArray()) {
+            return new Data(buffer.array(), buffer.arrayOffset() + pos + 2, pdc);
+        }
+
+        byte[] bytes = new byte[pdc];
+        for (int i=0; i<pdc; i++) {
+            bytes[i] = buffer.get(pos + 2 + i);
+        }
+        return new Data(bytes);
+    }
+
+    private Property getProperty(int pos) {
+        return new Property(EPC.fromByte(buffer.get(pos)), getEDT(pos));
+    }
+
+    /**
+     * プロパティ数をバイトで返す(SetGetのGetを除く)。
+     * @return プロパティ数
+     */
+    public byte getFirstOPC() {
+        return getOPC(firstOPCOffset);
+    }
+
+    /**
+     * index番目のプロパティのEPCを返す(SetGetのGetを除く)。
+     * @param index プロパティのインデックス
+     * @return 指定されたプロパティのEPC
+     */
+    public EPC getFirstEPCAt(int index) {
+        return EPC.fromByte(buffer.get(getPropertyOffset(firstOPCOffset, index)));
+    }
+
+    /**
+     * index番目のプロパティのPDCを返す(SetGetのGetを除く)。
+     * @param index プロパティのインデックス
+     * @return 指定されたプロパティのPDC
+     */
+    public byte getFirstPDCAt(int index) {
+        return buffer.get(getPropertyOffset(firstOPCOffset, index) + 1);
+    }
+
+    /**
+     * index番目のプロパティのEDTを返す(SetGetのGetを除く)。
+     * @param index プロパティのインデックス
+     * @return 指定されたプロパティのEDT
+     */
+    public Data getFirstEDTAt(int index) {
+        return getEDT(getPropertyOffset(firstOPCOffset, index));
+    }
+
+    /**
+     * index番目のプロパティを返す(SetGetのGetを除く)。
+     * @param index プロパティのインデックス
+     * @return 指定されたプロパティ
+     */
+    public Property getFirstPropertyAt(int index) {
+        return getProperty(getPropertyOffset(firstOPCOffset, index));
+    }
+
+    /**
+     * SetGetのGetのプロパティ数をバイトで返す。
+     * @return プロパティ数
+     */
+    public byte getSecondOPC() {
+        return getOPC(secondOPCOffset);
+    }
+
+    /**
+     * SetGetのGetのindex番目のプロパティのEPCを返す。
+     * @param index プロパティのインデックス
+     * @return 指定されたプロパティのEPC
+     */
+    public EPC getSecondEPCAt(int index) {
+        return EPC.fromByte(buffer.get(getPropertyOffset(secondOPCOffset, index)));
+    }
+
+    /**
+     * SetGetのGetのindex番目のプロパティのPDCを返す。
+     * @param index プロパティのインデックス
+     * @return 指定されたプロパティのPDC
+     */
+    public byte getSecondPDCAt(int index) {
+        return buffer.get(getPropertyOffset(secondOPCOffset, index) + 1);
+    }
+
+    /**
+     * SetGetのGetのindex番目のプロパティのEDTを返す。
+     * @param index プロパティのインデックス
+     * @return 指定されたプロパティのEDT
+     */
+    public Data getSecondEDTAt(int index) {
+        return getEDT(getPropertyOffset(secondOPCOffset, index));
+    }
+
+    /**
+     * SetGetのGetのindex番目のプロパティを返す。
+     * @param index プロパティのインデックス
+     * @return 指定されたプロパティ
+     */
+    public Property getSecondPropertyAt(int index) {
+        return getProperty(getPropertyOffset(secondOPCOffset, index));
+    }
+
+    /**
+     * このビューが参照するフレームのペイロード部分を指定されたバッファの現在位置にコピーする。
+     * @param dest コピー先のバッファ
+     * @return コピーしたバイト数
+     */
+    public int writePayloadTo(ByteBuffer dest) {
+        ByteBuffer src = buffer.duplicate();
+        src.limit(offset + length);
+        src.position(offset + HEADER_SIZE);
+        dest.put(src);
+        return length - HEADER_SIZE;
+    }
+
+    /**
+     * このビューが参照するペイロードからPayloadを生成する。
+     * 標準ペイロードの場合にはStandardPayload、そうでなければSimplePayloadを生成する。
+     * @return 生成したペイロード
+     */
+    public Payload toPayload() {
+        if (!isStandardPayload()) {
+            byte[] bytes = new byte[length - HEADER_SIZE];
+            for (int i=0; i<bytes.length; i++) {
+                bytes[i] = buffer.get(offset + HEADER_SIZE + i);
+            }
+            return new SimplePayload(bytes);
+        }
+
+        StandardPayload payload = new StandardPayload(getSEOJ(), getDEOJ(), getESV());
+
+        if (firstOPCOffset >= 0) {
+            int pos = firstOPCOffset + 1;
+            int opc = 0xff & (int)getFirstOPC();
+            for (int i=0; i<opc; i++) {
+                payload.addFirstProperty(getProperty(pos));
+                pos += 2 + (0xff & (int)buffer.get(pos + 1));
+            }
+        }
+
+        if (secondOPCOffset >= 0) {
+            int pos = secondOPCOffset + 1;
+            int opc = 0xff & (int)getSecondOPC();
+            for (int i=0; i<opc; i++) {
+                payload.addSecondProperty(getProperty(pos));
+                pos += 2 + (0xff & (int)buffer.get(pos + 1));
+            }
+        }
+
+        return payload;
+    }
+
+    /**
+     * このビューが参照するフレームからCommonFrameを生成する。
+     * @return 生成したCommonFrame
+     */
+    public CommonFrame toCommonFrame() {
+        CommonFrame commonFrame = new CommonFrame(this);
+        commonFrame.getEDATA();
+        return commonFrame;
+    }
+}
@@ -1,14 +1,24 @@
 package echowand.net;
 
+import java.util.Arrays;
+
 /**
  * ネットワークに転送を行うフレーム形式
+ * 受信から処理までの各段階に達した時刻をSystem.nanoTimeの値で記録することができる。
+ * 時刻の記録はフレームを処理しているスレッドで行い、キューなどを経由してスレッド間で受け渡すことを想定している。
+ * これとは別に、System.currentTimeMillisの値でタイムスタンプを一つ記録することができる。
  * @author Yoshiki Makino
  */
 public class Frame {
+    private static final int STAGE_SIZE = FrameStage.values().length;
+    private static final long UNSET = Long.MIN_VALUE;
+    
     private Node sender;
     private Node receiver;
     private CommonFrame commonFrame;
     private Connection connection;
+    private long[] stageTimes;
+    private long timestamp = UNSET;
     
     /**
      * Frameを生成する。
@@ -80,6 +90,111 @@ public class Frame {
         return sender;
     }
     
+    /**
+     * 指定された段階に達した時刻として現在のSystem.nanoTimeの値を記録する。
+     * @param stage 記録する段階
+     */
+    public void markStage(FrameStage stage) {
+        setStageTime(stage, System.nanoTime());
+    }
+    
+    /**
+     * 指定された段階に達した時刻を記録する。
+     * @param stage 記録する段階
+     * @param nanoTime System.nanoTimeで取得した時刻
+     */
+    public void setStageTime(FrameStage stage, long nanoTime) {
+        if (stageTimes == null) {
+            stageTimes = new long[STAGE_SIZE];
+            Arrays.fill(stageTimes, UNSET);
+        }
+        
+        stageTimes[stage.ordinal()] = nanoTime;
+    }
+    
+    /**
+     * 指定された段階の時刻の記録を消去する。
+     * @param stage 消去する段階
+     */
+    public void clearStageTime(FrameStage stage) {
+        if (stageTimes != null) {
+            stageTimes[stage.ordinal()] = UNSET;
+        }
+    }
+    
+    /**
+     * 指定された段階に達した時刻が記録されているか返す。
+     * @param stage 調べる段階
+     * @return 記録されていればtrue、そうでなければfalse
+     */
+    public boolean hasStageTime(FrameStage stage) {
+        return stageTimes != null && stageTimes[stage.ordinal()] != UNSET;
+    }
+    
+    /**
+     * 指定された段階に達した時刻を返す。
+     * @param stage 時刻を取得する段階
+     * @param defaultValue 時刻が記録されていない場合に返す値
+     * @return System.nanoTimeで取得した時刻、記録されていない場合にはdefaultValue
+     */
+    public long getStageTime(FrameStage stage, long defaultValue) {
+        if (!hasStageTime(stage)) {
+            return defaultValue;
+        }
+        
+        return stageTimes[stage.ordinal()];
+    }
+    
+    /**
+     * 二つの段階の間の経過時間をナノ秒で返す。
+     * @param from 開始の段階
+     * @param to 終了の段階
+     * @return 経過時間(ナノ秒)、いずれかの時刻が記録されていない場合には-1
+     */
+    public long getElapsedNanos(FrameStage from, FrameStage to) {
+        if (!hasStageTime(from) || !hasStageTime(to)) {
+            return -1;
+        }
+        
+        return stageTimes[to.ordinal()] - stageTimes[from.ordinal()];
+    }
+    
+    /**
+     * タイムスタンプを記録する。
+     * @param timestamp System.currentTimeMillisで取得した時刻
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+    
+    /**
+     * タイムスタンプの記録を消去する。
+     */
+    public void clearTimestamp() {
+        timestamp = UNSET;
+    }
+    
+    /**
+     * タイムスタンプが記録されているか返す。
+     * @return 記録されていればtrue、そうでなければfalse
+     */
+    public boolean hasTimestamp() {
+        return timestamp != UNSET;
+    }
+    
+    /**
+     * タイムスタンプを返す。
+     * @param defaultValue タイムスタンプが記録されていない場合に返す値
+     * @return System.currentTimeMillisで取得した時刻、記録されていない場合にはdefaultValue
+     */
+    public long getTimestamp(long defaultValue) {
+        if (!hasTimestamp()) {
+            return defaultValue;
+        }
+        
+        return timestamp;
+    }
+    
     /**
      * このフレームを文字列で表現する
      * @return フレームの文字列表現
@@ -0,0 +1,38 @@
+package echowand.net;
+
+/**
+ * Frameの処理の段階
+ * 各段階に達した時刻はFrameにSystem.nanoTimeの値で記録される。
+ * @author ymakino
+ */
+public enum FrameStage {
+    /**
+     * ソケットからフレームを受信した段階を表す。
+     */
+    RECEIVED,
+    
+    /**
+     * 受信キューからフレームを取り出した段階を表す。
+     */
+    DEQUEUED,
+    
+    /**
+     * Listenerによるフレームの処理を開始した段階を表す。
+     */
+    DISPATCH_STARTED,
+    
+    /**
+     * Listenerによるフレームの処理が終了した段階を表す。
+     */
+    DISPATCH_FINISHED,
+    
+    /**
+     * フレームに対するレスポンスを送信した段階を表す。
+     */
+    RESPONDED,
+    
+    /**
+     * CaptureSubnetでフレームの送受信を捕捉した段階を表す。
+     */
+    CAPTURED
+}
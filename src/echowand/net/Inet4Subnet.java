@@ -169,6 +169,95 @@ public class Inet4Subnet extends InetSubnet {
         LOGGER.exiting(CLASS_NAME, "Inet4Subnet");
     }
     
+    /**
+     * 利用するUDPNetworkの種類を指定してInet4Subnetを生成する。
+     * @param udpNetworkType 利用するUDPNetworkの種類
+     * @throws SubnetException 生成に失敗した場合
+     */
+    public Inet4Subnet(UDPNetworkType udpNetworkType) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "Inet4Subnet", udpNetworkType);
+        
+        try {
+            Inet4Address loopbackAddress = (Inet4Address)Inet4Address.getByName(LOOPBACK_ADDRESS);
+            Inet4Address multicastAddress = (Inet4Address)Inet4Address.getByName(MULTICAST_ADDRESS);
+            
+            setUDPNetworkType(udpNetworkType);
+            initialize(loopbackAddress, multicastAddress, DEFAULT_PORT_NUMBER);
+        } catch (UnknownHostException ex) {
+            SubnetException exception = new SubnetException("catched exception", ex);
+            LOGGER.throwing(CLASS_NAME, "Inet4Subnet", exception);
+            throw exception;
+        }
+        
+        LOGGER.exiting(CLASS_NAME, "Inet4Subnet");
+    }
+    
+    /**
+     * 利用するUDPNetworkの種類を指定してInet4Subnetを生成する。
+     * localAddressにより利用するネットワークインタフェースの指定を行う。
+     * また、必要があれば受信用のネットワークインタフェースの指定も行う。
+     * @param udpNetworkType 利用するUDPNetworkの種類
+     * @param localAddress 利用するネットワークインタフェースにつけられたアドレス
+     * @param receiverInterfaces 受信用ネットワークインタフェース
+     * @throws SubnetException 生成に失敗した場合
+     */
+    public Inet4Subnet(UDPNetworkType udpNetworkType, Inet4Address localAddress, NetworkInterface... receiverInterfaces) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "Inet4Subnet", new Object[]{udpNetworkType, localAddress, receiverInterfaces});
+        
+        if (localAddress == null) {
+            SubnetException exception = new SubnetException("invalid address: " + localAddress);
+            LOGGER.throwing(CLASS_NAME, "Inet4Subnet", exception);
+            throw exception;
+        }
+        
+        try {
+            Inet4Address loopbackAddress = (Inet4Address)Inet4Address.getByName(LOOPBACK_ADDRESS);
+            Inet4Address multicastAddress = (Inet4Address)Inet4Address.getByName(MULTICAST_ADDRESS);
+            
+            setUDPNetworkType(udpNetworkType);
+            initialize(localAddress, Arrays.asList(receiverInterfaces), loopbackAddress, multicastAddress, DEFAULT_PORT_NUMBER);
+        } catch (UnknownHostException ex) {
+            SubnetException exception = new SubnetException("catched exception", ex);
+            LOGGER.throwing(CLASS_NAME, "Inet4Subnet", exception);
+            throw exception;
+        }
+        
+        LOGGER.exiting(CLASS_NAME, "Inet4Subnet");
+    }
+    
+    /**
+     * 利用するUDPNetworkの種類を指定してInet4Subnetを生成する。
+     * networkInterfaceにより利用するネットワークインタフェースの指定を行う。
+     * また、必要があれば受信用のネットワークインタフェースの指定も行う。
+     * @param udpNetworkType 利用するUDPNetworkの種類
+     * @param networkInterface 利用するネットワークインタフェース
+     * @param receiverInterfaces 受信用ネットワークインタフェース
+     * @throws SubnetException 生成に失敗した場合
+     */
+    public Inet4Subnet(UDPNetworkType udpNetworkType, NetworkInterface networkInterface, NetworkInterface... receiverInterfaces) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "Inet4Subnet", new Object[]{udpNetworkType, networkInterface, receiverInterfaces});
+        
+        if (networkInterface == null) {
+            SubnetException exception = new SubnetException("invalid network interface: " + networkInterface);
+            LOGGER.throwing(CLASS_NAME, "Inet4Subnet", exception);
+            throw exception;
+        }
+        
+        try {
+            Inet4Address loopbackAddress = (Inet4Address)Inet4Address.getByName(LOOPBACK_ADDRESS);
+            Inet4Address multicastAddress = (Inet4Address)Inet4Address.getByName(MULTICAST_ADDRESS);
+            
+            setUDPNetworkType(udpNetworkType);
+            initialize(networkInterface, Arrays.asList(receiverInterfaces), loopbackAddress, multicastAddress, DEFAULT_PORT_NUMBER);
+        } catch (UnknownHostException ex) {
+            SubnetException exception = new SubnetException("catched exception", ex);
+            LOGGER.throwing(CLASS_NAME, "Inet4Subnet", exception);
+            throw exception;
+        }
+        
+        LOGGER.exiting(CLASS_NAME, "Inet4Subnet");
+    }
+    
     /**
      * Inet4Subnetを生成し、サービスを開始する。
      * @return 生成したInet4Subnet
@@ -168,6 +168,95 @@ public class Inet6Subnet extends InetSubnet {
         LOGGER.exiting(CLASS_NAME, "Inet6Subnet");
     }
     
+    /**
+     * 利用するUDPNetworkの種類を指定してInet6Subnetを生成する。
+     * @param udpNetworkType 利用するUDPNetworkの種類
+     * @throws SubnetException 生成に失敗した場合
+     */
+    public Inet6Subnet(UDPNetworkType udpNetworkType) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "Inet6Subnet", udpNetworkType);
+        
+        try {
+            Inet6Address loopbackAddress = (Inet6Address)Inet6Address.getByName(LOOPBACK_ADDRESS);
+            Inet6Address multicastAddress = (Inet6Address)Inet6Address.getByName(MULTICAST_ADDRESS);
+            
+            setUDPNetworkType(udpNetworkType);
+            initialize(loopbackAddress, multicastAddress, DEFAULT_PORT_NUMBER);
+        } catch (UnknownHostException ex) {
+            SubnetException exception = new SubnetException("catched exception", ex);
+            LOGGER.throwing(CLASS_NAME, "Inet6Subnet", exception);
+            throw exception;
+        }
+        
+        LOGGER.exiting(CLASS_NAME, "Inet6Subnet");
+    }
+    
+    /**
+     * 利用するUDPNetworkの種類を指定してInet6Subnetを生成する。
+     * localAddressにより利用するネットワークインタフェースの指定を行う。
+     * また、必要があれば受信用のネットワークインタフェースの指定も行う。
+     * @param udpNetworkType 利用するUDPNetworkの種類
+     * @param localAddress 利用するネットワークインタフェースにつけられたアドレス
+     * @param receiverInterfaces 受信用ネットワークインタフェース
+     * @throws SubnetException 生成に失敗した場合
+     */
+    public Inet6Subnet(UDPNetworkType udpNetworkType, Inet6Address localAddress, NetworkInterface... receiverInterfaces) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "Inet6Subnet", new Object[]{udpNetworkType, localAddress, receiverInterfaces});
+        
+        if (localAddress == null) {
+            SubnetException exception = new SubnetException("invalid address: " + localAddress);
+            LOGGER.throwing(CLASS_NAME, "Inet6Subnet", exception);
+            throw exception;
+        }
+        
+        try {
+            Inet6Address loopbackAddress = (Inet6Address)Inet6Address.getByName(LOOPBACK_ADDRESS);
+            Inet6Address multicastAddress = (Inet6Address)Inet6Address.getByName(MULTICAST_ADDRESS);
+            
+            setUDPNetworkType(udpNetworkType);
+            initialize(localAddress, Arrays.asList(receiverInterfaces), loopbackAddress, multicastAddress, DEFAULT_PORT_NUMBER);
+        } catch (UnknownHostException ex) {
+            SubnetException exception = new SubnetException("catched exception", ex);
+            LOGGER.throwing(CLASS_NAME, "Inet6Subnet", exception);
+            throw exception;
+        }
+        
+        LOGGER.exiting(CLASS_NAME, "Inet6Subnet");
+    }
+    
+    /**
+     * 利用するUDPNetworkの種類を指定してInet6Subnetを生成する。
+     * networkInterfaceにより利用するネットワークインタフェースの指定を行う。
+     * また、必要があれば受信用のネットワークインタフェースの指定も行う。
+     * @param udpNetworkType 利用するUDPNetworkの種類
+     * @param networkInterface 利用するネットワークインタフェース
+     * @param receiverInterfaces 受信用ネットワークインタフェース
+     * @throws SubnetException 生成に失敗した場合
+     */
+    public Inet6Subnet(UDPNetworkType udpNetworkType, NetworkInterface networkInterface, NetworkInterface... receiverInterfaces) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "Inet6Subnet", new Object[]{udpNetworkType, networkInterface, receiverInterfaces});
+        
+        if (networkInterface == null) {
+            SubnetException exception = new SubnetException("invalid network interface: " + networkInterface);
+            LOGGER.throwing(CLASS_NAME, "Inet6Subnet", exception);
+            throw exception;
+        }
+        
+        try {
+            Inet6Address loopbackAddress = (Inet6Address)Inet6Address.getByName(LOOPBACK_ADDRESS);
+            Inet6Address multicastAddress = (Inet6Address)Inet6Address.getByName(MULTICAST_ADDRESS);
+            
+            setUDPNetworkType(udpNetworkType);
+            initialize(networkInterface, Arrays.asList(receiverInterfaces), loopbackAddress, multicastAddress, DEFAULT_PORT_NUMBER);
+        } catch (UnknownHostException ex) {
+            SubnetException exception = new SubnetException("catched exception", ex);
+            LOGGER.throwing(CLASS_NAME, "Inet6Subnet", exception);
+            throw exception;
+        }
+        
+        LOGGER.exiting(CLASS_NAME, "Inet6Subnet");
+    }
+    
     /**
      * Inet6Subnetを生成し、サービスを開始する。
      * @return 生成したInet6Subnet
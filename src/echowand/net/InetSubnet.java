@@ -1,5 +1,9 @@
 package echowand.net;
 
+import echowand.common.ESV;
+import echowand.util.Counter;
+import echowand.util.Gauge;
+import echowand.util.MetricsRegistry;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
@@ -7,6 +11,7 @@ import java.net.UnknownHostException;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,13 +43,38 @@ public class InetSubnet implements Subnet {
     private InetNode groupNode;
     private InetNode localNode;
 
-    private SimpleSynchronousQueue<Frame> receiveQueue = null;
+    private BoundedReceiveQueue<Frame> receiveQueue = null;
+    private int receiveQueueCapacity = BoundedReceiveQueue.DEFAULT_CAPACITY;
+    private ReceiveQueueOverflowPolicy receiveQueueOverflowPolicy = ReceiveQueueOverflowPolicy.BLOCK;
 
     private InetSubnetUDPReceiverThread udpReceiverThread;
     private InetSubnetTCPReceiverThread tcpReceiverThread;
     private InetSubnetTCPAcceptorThread tcpAcceptorThread;
 
     private boolean tcpAcceptorEnabled = false;
+    
+    private UDPNetworkType udpNetworkType = UDPNetworkType.BLOCKING;
+    
+    private MetricsRegistry metricsRegistry;
+    private volatile Counter[] sentCounters;
+    private volatile Counter decodeFailureCounter;
+    
+    /**
+     * 利用するUDPNetworkの種類を設定する。
+     * initializeを呼び出す前に設定する必要がある。
+     * @param udpNetworkType 利用するUDPNetworkの種類
+     */
+    protected void setUDPNetworkType(UDPNetworkType udpNetworkType) {
+        this.udpNetworkType = udpNetworkType;
+    }
+    
+    /**
+     * 利用するUDPNetworkの種類を返す。
+     * @return 利用するUDPNetworkの種類
+     */
+    public UDPNetworkType getUDPNetworkType() {
+        return udpNetworkType;
+    }
 
     /**
      * InetSubnetの初期化を行う。
@@ -156,14 +186,26 @@ public class InetSubnet implements Subnet {
     private void createUDPNetwork() {
         LOGGER.entering(CLASS_NAME, "createUDPNetwork");
 
-        if (localAddress != null) {
-            udpNetwork = new UDPNetwork(localAddress, receiverInterfaces, multicastAddress, portNumber);
-        } else if (networkInterface != null) {
-            udpNetwork = new UDPNetwork(networkInterface, receiverInterfaces, multicastAddress, portNumber);
-        } else if (!receiverInterfaces.isEmpty()) {
-            udpNetwork = new UDPNetwork(receiverInterfaces, multicastAddress, portNumber);
+        if (udpNetworkType == UDPNetworkType.NIO) {
+            if (localAddress != null) {
+                udpNetwork = new NIOUDPNetwork(localAddress, receiverInterfaces, multicastAddress, portNumber);
+            } else if (networkInterface != null) {
+                udpNetwork = new NIOUDPNetwork(networkInterface, receiverInterfaces, multicastAddress, portNumber);
+            } else if (!receiverInterfaces.isEmpty()) {
+                udpNetwork = new NIOUDPNetwork(receiverInterfaces, multicastAddress, portNumber);
+            } else {
+                udpNetwork = new NIOUDPNetwork(multicastAddress, portNumber);
+            }
         } else {
-            udpNetwork = new UDPNetwork(multicastAddress, portNumber);
+            if (localAddress != null) {
+                udpNetwork = new UDPNetwork(localAddress, receiverInterfaces, multicastAddress, portNumber);
+            } else if (networkInterface != null) {
+                udpNetwork = new UDPNetwork(networkInterface, receiverInterfaces, multicastAddress, portNumber);
+            } else if (!receiverInterfaces.isEmpty()) {
+                udpNetwork = new UDPNetwork(receiverInterfaces, multicastAddress, portNumber);
+            } else {
+                udpNetwork = new UDPNetwork(multicastAddress, portNumber);
+            }
         }
 
         LOGGER.exiting(CLASS_NAME, "createUDPNetwork");
@@ -231,6 +273,157 @@ public class InetSubnet implements Subnet {
         return true;
     }
 
+    /**
+     * 受信キューの容量を設定する。実行中に呼び出した場合には設定は変更されずfalseを返す。
+     *
+     * @param capacity 受信キューの容量
+     * @return 設定の変更を成功した場合にはtrue、それ以外の場合にはfalse
+     * @throws IllegalArgumentException 容量が1未満の場合
+     */
+    public synchronized boolean setReceiveQueueCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+
+        if (isInService()) {
+            return false;
+        }
+
+        receiveQueueCapacity = capacity;
+
+        return true;
+    }
+
+    /**
+     * 受信キューの容量を返す。
+     *
+     * @return 受信キューの容量
+     */
+    public synchronized int getReceiveQueueCapacity() {
+        return receiveQueueCapacity;
+    }
+
+    /**
+     * 受信キューが一杯の場合の動作を設定する。実行中に呼び出した場合には設定は変更されずfalseを返す。
+     *
+     * @param overflowPolicy 受信キューが一杯の場合の動作
+     * @return 設定の変更を成功した場合にはtrue、それ以外の場合にはfalse
+     */
+    public synchronized boolean setReceiveQueueOverflowPolicy(ReceiveQueueOverflowPolicy overflowPolicy) {
+        if (isInService()) {
+            return false;
+        }
+
+        receiveQueueOverflowPolicy = overflowPolicy;
+
+        return true;
+    }
+
+    /**
+     * 受信キューが一杯の場合の動作を返す。
+     *
+     * @return 受信キューが一杯の場合の動作
+     */
+    public synchronized ReceiveQueueOverflowPolicy getReceiveQueueOverflowPolicy() {
+        return receiveQueueOverflowPolicy;
+    }
+
+    /**
+     * 現在利用している受信キューを返す。
+     * 処理を一度も開始していない場合にはnullを返す。
+     *
+     * @return 現在利用している受信キュー
+     */
+    public synchronized BoundedReceiveQueue<Frame> getReceiveQueue() {
+        return receiveQueue;
+    }
+
+    /**
+     * 送受信の統計を記録するMetricsRegistryを設定する。
+     * 送信に成功したフレームの数がESV毎に「frame.sent.ESV名」のCounterに、
+     * 受信したデータのフレームとしての解析に失敗した回数が「frame.decodeFailures」のCounterに記録される。
+     * また、受信キュー中のフレームの数と破棄されたフレームの数が「subnet.receiveQueue.size」と
+     * 「subnet.receiveQueue.dropped」のGaugeで公開される。
+     * nullを指定した場合には記録を行わない。
+     *
+     * @param metricsRegistry 統計を記録するMetricsRegistry
+     */
+    public synchronized void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        LOGGER.entering(CLASS_NAME, "setMetricsRegistry", metricsRegistry);
+
+        this.metricsRegistry = metricsRegistry;
+
+        if (metricsRegistry == null) {
+            sentCounters = null;
+            decodeFailureCounter = null;
+        } else {
+            ESV[] esvs = ESV.values();
+            Counter[] counters = new Counter[esvs.length];
+            for (int i = 0; i < esvs.length; i++) {
+                counters[i] = metricsRegistry.counter("frame.sent." + esvs[i]);
+            }
+            sentCounters = counters;
+            decodeFailureCounter = metricsRegistry.counter("frame.decodeFailures");
+
+            metricsRegistry.gauge("subnet.receiveQueue.size", new Gauge() {
+                @Override
+                public long getValue() {
+                    BoundedReceiveQueue<Frame> queue = getReceiveQueue();
+                    return queue == null ? 0 : queue.size();
+                }
+            });
+
+            metricsRegistry.gauge("subnet.receiveQueue.dropped", new Gauge() {
+                @Override
+                public long getValue() {
+                    BoundedReceiveQueue<Frame> queue = getReceiveQueue();
+                    return queue == null ? 0 : queue.countDropped();
+                }
+            });
+        }
+
+        LOGGER.exiting(CLASS_NAME, "setMetricsRegistry");
+    }
+
+    /**
+     * 送受信の統計を記録するMetricsRegistryを返す。
+     *
+     * @return 統計を記録するMetricsRegistry
+     */
+    public synchronized MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    void recordDecodeFailure() {
+        Counter counter = decodeFailureCounter;
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private void countSent(CommonFrame commonFrame) {
+        Counter[] counters = sentCounters;
+        if (counters == null) {
+            return;
+        }
+
+        ESV esv;
+        CommonFrameView view = commonFrame.getView();
+        if (view != null) {
+            esv = view.getESV();
+        } else {
+            StandardPayload payload = commonFrame.getEDATA(StandardPayload.class);
+            if (payload == null) {
+                return;
+            }
+            esv = payload.getESV();
+        }
+
+        if (esv != null) {
+            counters[esv.ordinal()].increment();
+        }
+    }
+
     /**
      * TCPが有効であるかを返す。
      *
@@ -268,7 +461,13 @@ public class InetSubnet implements Subnet {
     private synchronized void startThreads() {
         LOGGER.entering(CLASS_NAME, "startThreads");
 
-        receiveQueue = new SimpleSynchronousQueue<Frame>();
+        receiveQueue = new BoundedReceiveQueue<Frame>(receiveQueueCapacity, receiveQueueOverflowPolicy);
+        receiveQueue.setDiscardHandler(new Consumer<Frame>() {
+            @Override
+            public void accept(Frame frame) {
+                frame.getCommonFrame().releaseBuffer();
+            }
+        });
 
         udpReceiverThread = new InetSubnetUDPReceiverThread(this, getUDPNetwork(), receiveQueue);
         udpReceiverThread.start();
@@ -302,6 +501,10 @@ public class InetSubnet implements Subnet {
             tcpAcceptorThread = null;
         }
 
+        if (receiveQueue != null) {
+            receiveQueue.clear();
+        }
+
         LOGGER.exiting(CLASS_NAME, "stopThreads");
     }
 
@@ -560,6 +763,8 @@ public class InetSubnet implements Subnet {
             throw exception;
         }
 
+        countSent(frame.getCommonFrame());
+
         LOGGER.exiting(CLASS_NAME, "send");
     }
 
@@ -14,7 +14,7 @@ public class InetSubnetTCPReceiverThread extends Thread {
 
     private InetSubnet subnet;
     private TCPReceiver receiver;
-    private SimpleSynchronousQueue<Frame> queue;
+    private ReceiveQueue<Frame> queue;
 
     /**
      * InetSubnetTCPReceiverThreadを生成する。
@@ -22,7 +22,7 @@ public class InetSubnetTCPReceiverThread extends Thread {
      * @param receiver フレームの受信を行うTCPReceiver
      * @param queue 受信したフレームの登録先となるキュー
      */
-    public InetSubnetTCPReceiverThread(InetSubnet subnet, TCPReceiver receiver, SimpleSynchronousQueue<Frame> queue) {
+    public InetSubnetTCPReceiverThread(InetSubnet subnet, TCPReceiver receiver, ReceiveQueue<Frame> queue) {
         this.subnet = subnet;
         this.receiver = receiver;
         this.queue = queue;
@@ -35,12 +35,16 @@ public class InetSubnetTCPReceiverThread extends Thread {
         
         try {
             Pair<TCPConnection, CommonFrame> pair = receiver.receive();
-            LOGGER.logp(Level.FINE, CLASS_NAME, "runLoop", "receive: " + pair);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.logp(Level.FINE, CLASS_NAME, "runLoop", "receive: " + pair);
+            }
             TCPConnection connection = pair.first;
             CommonFrame commonFrame = pair.second;
             Node localNode = subnet.getLocalNode();
             Node remoteNode = subnet.getRemoteNode(connection.getRemoteNodeInfo());
-            queue.put(new Frame(remoteNode, localNode, commonFrame, connection));
+            Frame frame = new Frame(remoteNode, localNode, commonFrame, connection);
+            frame.markStage(FrameStage.RECEIVED);
+            queue.put(frame);
         } catch (SubnetException ex) {
             LOGGER.logp(Level.INFO, CLASS_NAME, "runLoop", "invalid remoteNode", ex);
         } catch (SimpleSynchronousQueueException ex) {
@@ -15,7 +15,7 @@ public class InetSubnetUDPReceiverThread extends Thread {
 
     private InetSubnet subnet;
     private UDPNetwork network;
-    private SimpleSynchronousQueue<Frame> queue;
+    private ReceiveQueue<Frame> queue;
 
     /**
      * InetSubnetTCPReceiverThreadを生成する。
@@ -23,7 +23,7 @@ public class InetSubnetUDPReceiverThread extends Thread {
      * @param network フレームの受信を行うUDPNetwork
      * @param queue 受信したフレームの登録先となるキュー
      */
-    public InetSubnetUDPReceiverThread(InetSubnet subnet, UDPNetwork network, SimpleSynchronousQueue<Frame> queue) {
+    public InetSubnetUDPReceiverThread(InetSubnet subnet, UDPNetwork network, ReceiveQueue<Frame> queue) {
         this.subnet = subnet;
         this.network = network;
         this.queue = queue;
@@ -34,17 +34,25 @@ public class InetSubnetUDPReceiverThread extends Thread {
         
         boolean repeat = true;
         
+        CommonFrame commonFrame = null;
+        
         try {
             Pair<InetNodeInfo, CommonFrame> pair = network.receive();
-            LOGGER.logp(Level.FINE, CLASS_NAME, "doWork", "receive: " + pair);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.logp(Level.FINE, CLASS_NAME, "doWork", "receive: " + pair);
+            }
             InetNodeInfo nodeInfo = pair.first;
-            CommonFrame commonFrame = pair.second;
+            commonFrame = pair.second;
             Node localNode = subnet.getLocalNode();
             Node remoteNode = subnet.getRemoteNode(nodeInfo);
-            queue.put(new Frame(remoteNode, localNode, commonFrame));
+            Frame frame = new Frame(remoteNode, localNode, commonFrame);
+            frame.markStage(FrameStage.RECEIVED);
+            queue.put(frame);
+            commonFrame = null;
         } catch (SubnetException ex) {
             LOGGER.logp(Level.INFO, CLASS_NAME, "doWork", "invalid remoteNode", ex);
         } catch (InvalidDataException ex) {
+            subnet.recordDecodeFailure();
             LOGGER.logp(Level.INFO, CLASS_NAME, "doWork", "invalid frame", ex);
         } catch (NetworkException ex) {
             LOGGER.logp(Level.FINE, CLASS_NAME, "doWork", "catched exception", ex);
@@ -55,6 +63,10 @@ public class InetSubnetUDPReceiverThread extends Thread {
         } catch (SimpleSynchronousQueueException ex) {
             LOGGER.logp(Level.FINE, CLASS_NAME, "run", "invalid queue", ex);
             repeat = false;
+        } finally {
+            if (commonFrame != null) {
+                commonFrame.releaseBuffer();
+            }
         }
             
         LOGGER.exiting(CLASS_NAME, "doWork", repeat);
@@ -0,0 +1,432 @@
+package echowand.net;
+
+import echowand.util.Pair;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * DatagramChannelとSelectorを利用した通信管理
+ * 受信用の全てのネットワークインタフェースで一つのチャネルをマルチキャストグループに参加させ、
+ * 一つのスレッドで全てのインタフェースからの受信を行う。
+ * 受信データはダイレクトバッファに格納され、コピーせずに解析される。
+ * 送信バッファに空きがない場合には、MulticastSocketと同様に送信できるようになるまで待機する。
+ * @author ymakino
+ */
+public class NIOUDPNetwork extends UDPNetwork {
+    private static final Logger LOGGER = Logger.getLogger(NIOUDPNetwork.class.getName());
+    private static final String CLASS_NAME = NIOUDPNetwork.class.getName();
+
+    /**
+     * 送信できるようになるまで待機する時間のデフォルト値(ミリ秒)
+     */
+    public static final int DEFAULT_SEND_TIMEOUT = 1000;
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private Selector sendSelector;
+    private ByteBuffer sendBuffer;
+    private int sendTimeout = DEFAULT_SEND_TIMEOUT;
+
+    /**
+     * 利用するローカルアドレス、受信インタフェース、マルチキャストアドレスおよびポート番号を指定してNIOUDPNetworkを生成する。
+     * @param localAddress 利用するローカルアドレスの指定
+     * @param receiverInterfaces 受信に利用するネットワークインタフェースの指定
+     * @param multicastAddress 利用するマルチキャストアドレスの指定
+     * @param portNumber 利用するポート番号の指定
+     */
+    public NIOUDPNetwork(InetAddress localAddress, Collection<? extends NetworkInterface> receiverInterfaces, InetAddress multicastAddress, int portNumber) {
+        super(localAddress, receiverInterfaces, multicastAddress, portNumber);
+    }
+
+    /**
+     * 利用するインタフェース、受信インタフェース、マルチキャストアドレスおよびポート番号を指定してNIOUDPNetworkを生成する。
+     * @param networkInterface 利用するネットワークインタフェースの指定
+     * @param receiverInterfaces 受信に利用するネットワークインタフェースの指定
+     * @param multicastAddress 利用するマルチキャストアドレスの指定
+     * @param portNumber 利用するポート番号の指定
+     */
+    public NIOUDPNetwork(NetworkInterface networkInterface, Collection<? extends NetworkInterface> receiverInterfaces, InetAddress multicastAddress, int portNumber) {
+        super(networkInterface, receiverInterfaces, multicastAddress, portNumber);
+    }
+
+    /**
+     * 利用する受信インタフェース、マルチキャストアドレスおよびポート番号を指定してNIOUDPNetworkを生成する。
+     * @param receiverInterfaces 受信に利用するネットワークインタフェースの指定
+     * @param multicastAddress 利用するマルチキャストアドレスの指定
+     * @param portNumber 利用するポート番号の指定
+     */
+    public NIOUDPNetwork(Collection<? extends NetworkInterface> receiverInterfaces, InetAddress multicastAddress, int portNumber) {
+        super(receiverInterfaces, multicastAddress, portNumber);
+    }
+
+    /**
+     * 利用するマルチキャストアドレスおよびポート番号を指定してNIOUDPNetworkを生成する。
+     * @param multicastAddress 利用するマルチキャストアドレスの指定
+     * @param portNumber 利用するポート番号の指定
+     */
+    public NIOUDPNetwork(InetAddress multicastAddress, int portNumber) {
+        super(multicastAddress, portNumber);
+    }
+
+    /**
+     * ダイレクトバッファを利用する受信バッファのプールを生成する。
+     * @param bufferSize 受信バッファのサイズ
+     * @return 生成したプール
+     */
+    @Override
+    protected ReceiveBufferPool createReceiveBufferPool(int bufferSize) {
+        return new ReceiveBufferPool(bufferSize, ReceiveBufferPool.DEFAULT_CAPACITY, true);
+    }
+
+    /**
+     * 送信バッファに空きがない場合に、送信できるようになるまで待機する時間を返す。
+     * @return 待機する時間(ミリ秒)
+     */
+    public int getSendTimeout() {
+        return sendTimeout;
+    }
+
+    /**
+     * 送信バッファに空きがない場合に、送信できるようになるまで待機する時間を設定する。
+     * この時間内に送信できなかった場合には、sendはNetworkExceptionを発生させる。
+     * @param sendTimeout 待機する時間(ミリ秒)
+     * @return 設定に成功した場合はtrue、不正な値が指定された場合はfalse
+     */
+    public synchronized boolean setSendTimeout(int sendTimeout) {
+        LOGGER.entering(CLASS_NAME, "setSendTimeout", sendTimeout);
+
+        if (sendTimeout < 0) {
+            LOGGER.exiting(CLASS_NAME, "setSendTimeout", false);
+            return false;
+        }
+
+        this.sendTimeout = sendTimeout;
+
+        LOGGER.exiting(CLASS_NAME, "setSendTimeout", true);
+        return true;
+    }
+
+    private boolean hasAddressOf(NetworkInterface networkInterface, Class<? extends InetAddress> cls) {
+        Enumeration<InetAddress> addresses = networkInterface.getInetAddresses();
+        while (addresses.hasMoreElements()) {
+            if (cls.isInstance(addresses.nextElement())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private NetworkInterface findDefaultInterface() throws SocketException {
+        if (getNetworkInterface() != null) {
+            return getNetworkInterface();
+        }
+
+        if (getLocalAddress() != null) {
+            NetworkInterface networkInterface = NetworkInterface.getByInetAddress(getLocalAddress());
+            if (networkInterface != null) {
+                return networkInterface;
+            }
+        }
+
+        Class<? extends InetAddress> cls = getMulticastAddress().getClass();
+        NetworkInterface loopbackInterface = null;
+
+        Enumeration<NetworkInterface> networkInterfaces = NetworkInterface.getNetworkInterfaces();
+        while (networkInterfaces != null && networkInterfaces.hasMoreElements()) {
+            NetworkInterface networkInterface = networkInterfaces.nextElement();
+
+            if (!networkInterface.isUp() || !hasAddressOf(networkInterface, cls)) {
+                continue;
+            }
+
+            if (networkInterface.isLoopback()) {
+                loopbackInterface = networkInterface;
+            } else if (networkInterface.supportsMulticast()) {
+                return networkInterface;
+            }
+        }
+
+        return loopbackInterface;
+    }
+
+    private List<NetworkInterface> getJoinInterfaces() throws SocketException {
+        LinkedList<NetworkInterface> joinInterfaces = new LinkedList<NetworkInterface>();
+
+        NetworkInterface defaultInterface = findDefaultInterface();
+        if (defaultInterface != null) {
+            joinInterfaces.add(defaultInterface);
+        }
+
+        for (NetworkInterface receiverInterface : getReceiverInterfaces()) {
+            if (!joinInterfaces.contains(receiverInterface)) {
+                joinInterfaces.add(receiverInterface);
+            }
+        }
+
+        return joinInterfaces;
+    }
+
+    /**
+     * 送受信に利用するチャネルとセレクタを閉じる。
+     */
+    @Override
+    protected synchronized void closeSocket() {
+        LOGGER.entering(CLASS_NAME, "closeSocket");
+
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                LOGGER.logp(Level.INFO, CLASS_NAME, "closeSocket", "catched exception", ex);
+            }
+            selector = null;
+        }
+
+        if (sendSelector != null) {
+            try {
+                sendSelector.close();
+            } catch (IOException ex) {
+                LOGGER.logp(Level.INFO, CLASS_NAME, "closeSocket", "catched exception", ex);
+            }
+            sendSelector = null;
+        }
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                LOGGER.logp(Level.INFO, CLASS_NAME, "closeSocket", "catched exception", ex);
+            }
+            channel = null;
+        }
+
+        LOGGER.exiting(CLASS_NAME, "closeSocket");
+    }
+
+    /**
+     * 送受信に利用するチャネルを開き、全ての受信インタフェースでマルチキャストグループに参加する。
+     * @throws NetworkException チャネルの準備に失敗した場合
+     */
+    @Override
+    protected synchronized void openSocket() throws NetworkException {
+        LOGGER.entering(CLASS_NAME, "openSocket");
+
+        try {
+            ProtocolFamily family;
+            if (getMulticastAddress() instanceof Inet4Address) {
+                family = StandardProtocolFamily.INET;
+            } else {
+                family = StandardProtocolFamily.INET6;
+            }
+
+            channel = DatagramChannel.open(family);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(new InetSocketAddress(getPortNumber()));
+
+            NetworkInterface defaultInterface = findDefaultInterface();
+            if (defaultInterface != null) {
+                channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, defaultInterface);
+            }
+
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+
+            for (NetworkInterface joinInterface : getJoinInterfaces()) {
+                channel.join(getMulticastAddress(), joinInterface);
+            }
+
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+            sendSelector = Selector.open();
+            channel.register(sendSelector, SelectionKey.OP_WRITE);
+        } catch (IOException ex) {
+            closeSocket();
+            NetworkException exception = new NetworkException("catched exception", ex);
+            LOGGER.throwing(CLASS_NAME, "openSocket", exception);
+            throw exception;
+        }
+
+        LOGGER.exiting(CLASS_NAME, "openSocket");
+    }
+
+    private synchronized DatagramChannel getChannel() throws NetworkException {
+        if (channel == null) {
+            throw new NetworkException("not working");
+        }
+        return channel;
+    }
+
+    private synchronized Selector getSelector() throws NetworkException {
+        if (selector == null) {
+            throw new NetworkException("not working");
+        }
+        return selector;
+    }
+
+    /**
+     * 指定されたチャネルでデータグラムを一つ送信する。
+     * @param channel 送信に利用するチャネル
+     * @param buffer 送信するデータ
+     * @param target 送信先のアドレス
+     * @return 送信したバイト数、送信バッファに空きがなく送信できなかった場合には0
+     * @throws IOException I/Oエラーが発生した場合
+     */
+    protected int sendDatagram(DatagramChannel channel, ByteBuffer buffer, SocketAddress target) throws IOException {
+        return channel.send(buffer, target);
+    }
+
+    private void sendBuffer(ByteBuffer buffer, SocketAddress target) throws NetworkException, IOException {
+        DatagramChannel currentChannel = getChannel();
+        long deadline = System.nanoTime() + sendTimeout * 1000000L;
+
+        try {
+            while (sendDatagram(currentChannel, buffer, target) == 0) {
+                long timeout = (deadline - System.nanoTime()) / 1000000;
+                if (timeout <= 0) {
+                    throw new NetworkException("send timeout");
+                }
+
+                sendSelector.select(timeout);
+                sendSelector.selectedKeys().clear();
+            }
+        } catch (ClosedSelectorException ex) {
+            throw new NetworkException("not working", ex);
+        }
+    }
+
+    /**
+     * このNIOUDPNetworkのサブネットにフレームを転送する。
+     * 送信バッファに空きがない場合には、getSendTimeoutの時間まで送信できるようになるのを待つ。
+     * @param remoteNodeInfo 送信先のノード情報
+     * @param commonFrame 送信する共通フレーム
+     * @throws NetworkException 送信に失敗した場合、または待機しても送信できなかった場合
+     * @throws IOException I/Oエラーが発生した場合
+     */
+    @Override
+    public synchronized void send(InetNodeInfo remoteNodeInfo, CommonFrame commonFrame) throws NetworkException, IOException {
+        LOGGER.entering(CLASS_NAME, "send", new Object[]{remoteNodeInfo, commonFrame});
+
+        if (!isInService()) {
+            NetworkException exception = new NetworkException("not working");
+            LOGGER.throwing(CLASS_NAME, "send", exception);
+            throw exception;
+        }
+
+        int size = commonFrame.size();
+
+        if (sendBuffer == null || sendBuffer.capacity() < size) {
+            sendBuffer = ByteBuffer.allocateDirect(Math.max(size, getBufferSize()));
+        }
+
+        sendBuffer.clear();
+        commonFrame.writeTo(sendBuffer);
+        sendBuffer.flip();
+
+        int port = getPortNumber();
+
+        if (remoteNodeInfo.hasPortNumber()) {
+            port = remoteNodeInfo.getPortNumber();
+        }
+
+        try {
+            sendBuffer(sendBuffer, new InetSocketAddress(remoteNodeInfo.getAddress(), port));
+        } catch (NetworkException ex) {
+            LOGGER.throwing(CLASS_NAME, "send", ex);
+            throw ex;
+        }
+
+        LOGGER.exiting(CLASS_NAME, "send");
+    }
+
+    private SocketAddress receiveBuffer(ByteBuffer buffer) throws NetworkException, IOException {
+        DatagramChannel currentChannel = getChannel();
+        Selector currentSelector = getSelector();
+
+        try {
+            for (;;) {
+                SocketAddress address = currentChannel.receive(buffer);
+
+                if (address != null) {
+                    return address;
+                }
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new NetworkException("interrupted");
+                }
+
+                currentSelector.select();
+                currentSelector.selectedKeys().clear();
+
+                if (!isInService()) {
+                    throw new NetworkException("not working");
+                }
+            }
+        } catch (ClosedSelectorException ex) {
+            throw new NetworkException("not working", ex);
+        }
+    }
+
+    /**
+     * このNIOUDPNetworkのサブネットからフレームを受信する。
+     * 受信を行うまで待機する。
+     * 受信したCommonFrameはプールから取得したダイレクトバッファを参照しており、
+     * CommonFrameのreleaseBufferメソッドを呼び出すことでバッファがプールに返却される。
+     * @return 受信したFrame
+     * @throws NetworkException 受信に失敗した場合
+     * @throws InvalidDataException 不正なフレームを受信した場合
+     * @throws IOException I/Oエラーが発生した場合
+     */
+    @Override
+    public Pair<InetNodeInfo, CommonFrame> receive() throws NetworkException, InvalidDataException, IOException {
+        LOGGER.entering(CLASS_NAME, "receive");
+
+        if (!isInService()) {
+            throw new NetworkException("not working");
+        }
+
+        ReceiveBuffer receiveBuffer = getReceiveBufferPool().acquire();
+        InetSocketAddress address;
+        CommonFrame commonFrame;
+
+        try {
+            ByteBuffer buffer = receiveBuffer.getByteBuffer();
+            address = (InetSocketAddress)receiveBuffer(buffer);
+            buffer.flip();
+            commonFrame = new CommonFrame(receiveBuffer);
+        } catch (IOException ex) {
+            receiveBuffer.release();
+            throw ex;
+        } catch (NetworkException ex) {
+            receiveBuffer.release();
+            throw ex;
+        } catch (InvalidDataException ex) {
+            receiveBuffer.release();
+            throw ex;
+        }
+
+        InetNodeInfo nodeInfo = createRemoteNodeInfo(address.getAddress(), address.getPort());
+        Pair<InetNodeInfo, CommonFrame> pair = new Pair<InetNodeInfo, CommonFrame>(nodeInfo, commonFrame);
+
+        LOGGER.exiting(CLASS_NAME, "receive", pair);
+        return pair;
+    }
+}
@@ -1,5 +1,7 @@
 package echowand.net;
 
+import java.nio.ByteBuffer;
+
 /**
  * ペイロードの共通インタフェース
  * @author Yoshiki Makino
@@ -16,4 +18,16 @@ public interface Payload {
      * @return ペイロードのバイト配列
      */
     public byte[] toBytes();
+    
+    /**
+     * ペイロードのバイト列表現を指定されたバッファの現在位置に書き込む。
+     * 標準ではtoBytesの結果を書き込むため、中間的なバイト配列を生成しない実装が必要な場合にはオーバーライドする。
+     * @param buffer 書き込み先のバッファ
+     * @return 書き込んだバイト数
+     */
+    public default int writeTo(ByteBuffer buffer) {
+        byte[] bytes = toBytes();
+        buffer.put(bytes);
+        return bytes.length;
+    }
 }
@@ -2,6 +2,7 @@ package echowand.net;
 
 import echowand.common.Data;
 import echowand.common.EPC;
+import java.nio.ByteBuffer;
 
 /**
  * ペイロードのプロパティ
@@ -115,6 +116,21 @@ public class Property {
         return bytes;
     }
     
+    /**
+     * このPropertyのバイト配列表現を指定されたバッファの現在位置に書き込む。
+     * @param buffer 書き込み先のバッファ
+     * @return 書き込んだバイト数
+     */
+    public int writeTo(ByteBuffer buffer) {
+        int pdc = 0xff & (int)getPDC();
+        buffer.put(epc.toByte());
+        buffer.put(getPDC());
+        if (pdc > 0) {
+            edt.copyBytes(0, buffer, pdc);
+        }
+        return 2 + pdc;
+    }
+    
     /**
      * このPropertyをバイト配列に変換したときの長さを返す。
      * @return バイト配列の長さ
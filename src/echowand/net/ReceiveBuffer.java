@@ -0,0 +1,83 @@
+package echowand.net;
+
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ReceiveBufferPoolが管理する受信バッファ
+ * 受信データを格納するByteBufferと、ヒープバッファの場合にはそれを共有するDatagramPacketを保持する。
+ * @author ymakino
+ */
+public class ReceiveBuffer {
+    private ReceiveBufferPool pool;
+    private ByteBuffer buffer;
+    private DatagramPacket packet;
+    private AtomicBoolean acquired;
+    
+    /**
+     * ReceiveBufferを生成する。
+     * @param pool このバッファを管理するプール
+     * @param buffer 受信データを格納するバッファ
+     */
+    ReceiveBuffer(ReceiveBufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.packet = null;
+        this.acquired = new AtomicBoolean(false);
+    }
+    
+    /**
+     * このバッファを管理するプールを返す。
+     * @return このバッファを管理するプール
+     */
+    public ReceiveBufferPool getPool() {
+        return pool;
+    }
+    
+    /**
+     * 受信データを格納するByteBufferを返す。
+     * @return 受信データを格納するByteBuffer
+     */
+    public ByteBuffer getByteBuffer() {
+        return buffer;
+    }
+    
+    /**
+     * このバッファの領域を共有するDatagramPacketを返す。
+     * 返されるDatagramPacketの長さはバッファの容量に初期化される。
+     * ダイレクトバッファの場合にはnullを返す。
+     * @return このバッファの領域を共有するDatagramPacket
+     */
+    public DatagramPacket getDatagramPacket() {
+        if (!buffer.hasArray()) {
+            return null;
+        }
+        
+        if (packet == null) {
+            packet = new DatagramPacket(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+        } else {
+            packet.setData(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+        }
+        
+        return packet;
+    }
+    
+    boolean acquire() {
+        buffer.clear();
+        return acquired.compareAndSet(false, true);
+    }
+    
+    boolean markReleased() {
+        return acquired.compareAndSet(true, false);
+    }
+    
+    /**
+     * このバッファをプールに返却する。
+     * 返却後はこのバッファの内容を参照してはならない。
+     * 既に返却されている場合には何も行わない。
+     */
+    public void release() {
+        pool.release(this);
+    }
+}
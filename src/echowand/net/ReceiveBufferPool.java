@@ -0,0 +1,166 @@
+package echowand.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 受信バッファのプール
+ * 受信毎のバッファ確保を避けるため、解放されたバッファを一定数まで保持して再利用する。
+ * プールが空の場合には新しいバッファを確保し、プールが一杯の場合には返却されたバッファを破棄する。
+ * @author ymakino
+ */
+public class ReceiveBufferPool {
+    /**
+     * プールが保持するバッファ数のデフォルト値
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+    
+    private int bufferSize;
+    private int capacity;
+    private boolean direct;
+    private ConcurrentLinkedQueue<ReceiveBuffer> buffers;
+    private AtomicInteger available;
+    private AtomicLong hits;
+    private AtomicLong misses;
+    private AtomicLong discards;
+    
+    /**
+     * ヒープバッファを管理するReceiveBufferPoolを生成する。
+     * @param bufferSize バッファのサイズ
+     * @param capacity プールが保持するバッファ数の上限
+     */
+    public ReceiveBufferPool(int bufferSize, int capacity) {
+        this(bufferSize, capacity, false);
+    }
+    
+    /**
+     * ReceiveBufferPoolを生成する。
+     * @param bufferSize バッファのサイズ
+     * @param capacity プールが保持するバッファ数の上限
+     * @param direct ダイレクトバッファを利用する場合にはtrue、そうでなければfalse
+     */
+    public ReceiveBufferPool(int bufferSize, int capacity, boolean direct) {
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+        this.direct = direct;
+        buffers = new ConcurrentLinkedQueue<ReceiveBuffer>();
+        available = new AtomicInteger(0);
+        hits = new AtomicLong(0);
+        misses = new AtomicLong(0);
+        discards = new AtomicLong(0);
+    }
+    
+    /**
+     * バッファのサイズを返す。
+     * @return バッファのサイズ
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+    
+    /**
+     * プールが保持するバッファ数の上限を返す。
+     * @return バッファ数の上限
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * ダイレクトバッファを利用しているか返す。
+     * @return ダイレクトバッファを利用している場合にはtrue、そうでなければfalse
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+    
+    private ReceiveBuffer createBuffer() {
+        ByteBuffer buffer;
+        if (direct) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        } else {
+            buffer = ByteBuffer.allocate(bufferSize);
+        }
+        return new ReceiveBuffer(this, buffer);
+    }
+    
+    /**
+     * プールからバッファを取得する。
+     * プールが空の場合には新しいバッファを確保する。
+     * @return 取得したバッファ
+     */
+    public ReceiveBuffer acquire() {
+        ReceiveBuffer buffer = buffers.poll();
+        
+        if (buffer == null) {
+            misses.incrementAndGet();
+            buffer = createBuffer();
+        } else {
+            available.decrementAndGet();
+            hits.incrementAndGet();
+        }
+        
+        buffer.acquire();
+        return buffer;
+    }
+    
+    /**
+     * バッファをプールに返却する。
+     * プールが一杯の場合にはバッファを破棄する。
+     * このプールのバッファではない場合や、既に返却されている場合には何も行わない。
+     * @param buffer 返却するバッファ
+     */
+    public void release(ReceiveBuffer buffer) {
+        if (buffer.getPool() != this || !buffer.markReleased()) {
+            return;
+        }
+        
+        if (available.incrementAndGet() > capacity) {
+            available.decrementAndGet();
+            discards.incrementAndGet();
+            return;
+        }
+        
+        buffers.offer(buffer);
+    }
+    
+    /**
+     * プールに保持されているバッファ数を返す。
+     * @return 保持されているバッファ数
+     */
+    public int countAvailable() {
+        return available.get();
+    }
+    
+    /**
+     * プールに保持されていたバッファを再利用した回数を返す。
+     * @return 再利用した回数
+     */
+    public long countHits() {
+        return hits.get();
+    }
+    
+    /**
+     * プールが空であったために新しいバッファを確保した回数を返す。
+     * @return 新しいバッファを確保した回数
+     */
+    public long countMisses() {
+        return misses.get();
+    }
+    
+    /**
+     * プールが一杯であったためにバッファを破棄した回数を返す。
+     * @return バッファを破棄した回数
+     */
+    public long countDiscards() {
+        return discards.get();
+    }
+    
+    @Override
+    public String toString() {
+        String format = "ReceiveBufferPool(bufferSize=%d, capacity=%d, available=%d, hits=%d, misses=%d, discards=%d)";
+        return String.format(format, bufferSize, capacity, countAvailable(), countHits(), countMisses(), countDiscards());
+    }
+}
@@ -0,0 +1,43 @@
+package echowand.net;
+
+/**
+ * 受信スレッドから受信したデータを他のスレッドに渡すために利用するキュー
+ * @param <T> 受け渡すデータの型
+ * @author ymakino
+ */
+public interface ReceiveQueue<T> {
+    
+    /**
+     * キューからデータを取得する。
+     * データが存在しない場合には、データが追加されるまで待機する。
+     * @return 取得したデータ
+     * @throws SimpleSynchronousQueueException キューが利用不可能の場合
+     * @throws InterruptedException 割り込みが発生した場合
+     */
+    public T take() throws SimpleSynchronousQueueException, InterruptedException;
+    
+    /**
+     * キューにデータを追加する。
+     * @param value 追加するデータ
+     * @throws SimpleSynchronousQueueException キューが利用不可能の場合
+     * @throws InterruptedException 割り込みが発生した場合
+     */
+    public void put(T value) throws SimpleSynchronousQueueException, InterruptedException;
+    
+    /**
+     * このキューを利用可能にする。
+     */
+    public void enable();
+    
+    /**
+     * このキューを利用不可能にする。
+     * 利用不可能なキューを利用しようとすると例外が発生するようになる。
+     */
+    public void disable();
+    
+    /**
+     * このキューが利用可能であるか返す。
+     * @return 利用可能であればtrue、利用不可能であればfalse
+     */
+    public boolean isEnabled();
+}
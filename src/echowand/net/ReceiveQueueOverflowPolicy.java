@@ -0,0 +1,22 @@
+package echowand.net;
+
+/**
+ * BoundedReceiveQueueが一杯の場合の動作
+ * @author ymakino
+ */
+public enum ReceiveQueueOverflowPolicy {
+    /**
+     * 空きができるまで追加を待機する。
+     */
+    BLOCK,
+    
+    /**
+     * 最も古いデータを破棄して追加する。
+     */
+    DROP_OLDEST,
+    
+    /**
+     * 追加しようとしたデータを破棄する。
+     */
+    DROP_NEWEST
+}
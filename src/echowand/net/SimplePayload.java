@@ -1,5 +1,6 @@
 package echowand.net;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -69,6 +70,17 @@ public class SimplePayload implements Payload {
         return Arrays.copyOf(payload, payload.length);
     }
     
+    /**
+     * このSimplePayloadのバイト配列表現を指定されたバッファの現在位置に書き込む。
+     * @param buffer 書き込み先のバッファ
+     * @return 書き込んだバイト数
+     */
+    @Override
+    public int writeTo(ByteBuffer buffer) {
+        buffer.put(payload);
+        return payload.length;
+    }
+    
     /**
      * このSimplePayloadの文字列表現を返す。
      * @return このSimplePayloadの文字列表現
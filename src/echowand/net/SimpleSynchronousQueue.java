@@ -4,7 +4,7 @@ package echowand.net;
  * データを同期的に他のスレッドに渡すために利用する同期キュー
  * @author ymakino
  */
-public class SimpleSynchronousQueue<T> {
+public class SimpleSynchronousQueue<T> implements ReceiveQueue<T> {
     private boolean enabled = true;
     private boolean processing = false;
     private T currentValue;
@@ -24,6 +24,7 @@ public class SimpleSynchronousQueue<T> {
      * @throws SimpleSynchronousQueueException キューが利用不可能の場合
      * @throws InterruptedException 割り込みが発生した場合
      */
+    @Override
     public synchronized T take() throws SimpleSynchronousQueueException, InterruptedException {
         if (!enabled) {
             throw new SimpleSynchronousQueueException("invalid queue");
@@ -48,6 +49,7 @@ public class SimpleSynchronousQueue<T> {
      * @throws SimpleSynchronousQueueException キューが利用不可能の場合
      * @throws InterruptedException 割り込みが発生した場合
      */
+    @Override
     public synchronized void put(T value) throws SimpleSynchronousQueueException, InterruptedException {
         if (!enabled) {
             throw new SimpleSynchronousQueueException("invalid queue");
@@ -75,6 +77,7 @@ public class SimpleSynchronousQueue<T> {
     /**
      * このキューを利用可能にする。
      */
+    @Override
     public synchronized void enable() {
         if (!enabled) {
             currentValue = null;
@@ -86,6 +89,7 @@ public class SimpleSynchronousQueue<T> {
      * このキューを利用不可能にする。
      * 利用不可能なキューを利用しようとすると例外が発生するようになる。
      */
+    @Override
     public synchronized void disable() {
         enabled = false;
         notifyAll();
@@ -95,6 +99,7 @@ public class SimpleSynchronousQueue<T> {
      * このキューが利用可能であるか返す。
      * @return 利用可能であればtrue、利用不可能であればfalse
      */
+    @Override
     public boolean isEnabled() {
         return enabled;
     }
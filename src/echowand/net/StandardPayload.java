@@ -208,14 +208,17 @@ public class StandardPayload implements Payload {
         return len;
     }
 
-    private byte[] propertiesBytes(Collection<Property> properties) {
-        int len = propertiesLength(properties);
-        ByteBuffer buffer = ByteBuffer.allocate(len);
+    private void writeProperties(Collection<Property> properties, ByteBuffer buffer) {
         buffer.put((byte) properties.size());
         for (Property p : properties) {
-            buffer.put(p.toBytes());
+            p.writeTo(buffer);
         }
-        return buffer.array();
+    }
+    
+    private void writeEOJ(EOJ eoj, ByteBuffer buffer) {
+        buffer.put(eoj.getClassGroupCode());
+        buffer.put(eoj.getClassCode());
+        buffer.put(eoj.getInstanceCode());
     }
     
     /**
@@ -239,14 +242,26 @@ public class StandardPayload implements Payload {
     @Override
     public byte[] toBytes() {
         ByteBuffer buffer = ByteBuffer.allocate(size());
-        buffer.put(seoj.toBytes());
-        buffer.put(deoj.toBytes());
+        writeTo(buffer);
+        return buffer.array();
+    }
+    
+    /**
+     * このStandardPayloadのバイト配列表現を指定されたバッファの現在位置に書き込む。
+     * @param buffer 書き込み先のバッファ
+     * @return 書き込んだバイト数
+     */
+    @Override
+    public int writeTo(ByteBuffer buffer) {
+        int position = buffer.position();
+        writeEOJ(seoj, buffer);
+        writeEOJ(deoj, buffer);
         buffer.put(esv.toByte());
-        buffer.put(propertiesBytes(firstProperties));
+        writeProperties(firstProperties, buffer);
         if (esv.isSetGet()) {
-            buffer.put(propertiesBytes(secondProperties));
+            writeProperties(secondProperties, buffer);
         }
-        return buffer.array();
+        return buffer.position() - position;
     }
     
     private String propertiesToString(LinkedList<Property> properties) {
@@ -2,14 +2,15 @@ package echowand.net;
 
 import echowand.common.EPC;
 import echowand.common.ESV;
+import echowand.util.ListenerRegistry;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,9 +29,11 @@ public class TCPConnection implements Connection {
     private NodeInfo localNodeInfo;
     private NodeInfo remoteNodeInfo;
     private CommonFrameReceiver receiver;
-    private LinkedList<TCPConnectionObserver> observers;
+    private ListenerRegistry<TCPConnectionObserver> observers;
     private boolean inputClosed = false;
     private boolean outputClosed = false;
+    private final Object sendLock = new Object();
+    private ByteBuffer sendBuffer;
 
     /**
      * 新たにTCPコネクションを生成する。
@@ -91,7 +94,7 @@ public class TCPConnection implements Connection {
             throw new NetworkException("I/O error", ex);
         }
         
-        observers = new LinkedList<TCPConnectionObserver>();
+        observers = new ListenerRegistry<TCPConnectionObserver>(TCPConnectionObserver.class);
     }
 
     /**
@@ -112,17 +115,13 @@ public class TCPConnection implements Connection {
             throw new NetworkException("I/O error", ex);
         }
         
-        observers = new LinkedList<TCPConnectionObserver>();
-    }
-
-    private synchronized LinkedList<TCPConnectionObserver> cloneObservers() {
-        return new LinkedList<TCPConnectionObserver>(observers);
+        observers = new ListenerRegistry<TCPConnectionObserver>(TCPConnectionObserver.class);
     }
 
     private void notifySent(CommonFrame commonFrame) {
         LOGGER.entering(CLASS_NAME, "notifySent", commonFrame);
 
-        for (TCPConnectionObserver observer : cloneObservers()) {
+        for (TCPConnectionObserver observer : observers.getListeners()) {
             observer.notifySent(this, commonFrame);
         }
 
@@ -132,7 +131,7 @@ public class TCPConnection implements Connection {
     private void notifyReceived(CommonFrame commonFrame) {
         LOGGER.entering(CLASS_NAME, "notifyReceived", commonFrame);
 
-        for (TCPConnectionObserver observer : cloneObservers()) {
+        for (TCPConnectionObserver observer : observers.getListeners()) {
             observer.notifyReceived(this, commonFrame);
         }
 
@@ -142,7 +141,7 @@ public class TCPConnection implements Connection {
     private void notifyClosed() {
         LOGGER.entering(CLASS_NAME, "notifyClosed");
 
-        for (TCPConnectionObserver observer : cloneObservers()) {
+        for (TCPConnectionObserver observer : observers.getListeners()) {
             observer.notifyClosed(this);
         }
 
@@ -154,7 +153,7 @@ public class TCPConnection implements Connection {
      * @param observer 追加するオブザーバの指定
      * @return 追加に成功した場合にはtrue、そうでなければfalse
      */
-    public synchronized boolean addObserver(TCPConnectionObserver observer) {
+    public boolean addObserver(TCPConnectionObserver observer) {
         return observers.add(observer);
     }
 
@@ -163,7 +162,7 @@ public class TCPConnection implements Connection {
      * @param observer 削除するオブザーバの指定
      * @return 削除に成功した場合にはtrue、そうでなければfalse
      */
-    public synchronized boolean removeObserver(TCPConnectionObserver observer) {
+    public boolean removeObserver(TCPConnectionObserver observer) {
         return observers.remove(observer);
     }
 
@@ -287,9 +286,19 @@ public class TCPConnection implements Connection {
         }
 
         try {
-            OutputStream os = socket.getOutputStream();
-            os.write(commonFrame.toBytes());
-            os.flush();
+            synchronized (sendLock) {
+                int size = commonFrame.size();
+                if (sendBuffer == null || sendBuffer.capacity() < size) {
+                    sendBuffer = ByteBuffer.allocate(Math.max(size, INITIAL_BUFFER_SIZE));
+                }
+                
+                sendBuffer.clear();
+                int length = commonFrame.writeTo(sendBuffer);
+                
+                OutputStream os = socket.getOutputStream();
+                os.write(sendBuffer.array(), 0, length);
+                os.flush();
+            }
         } catch (IOException ex) {
             NetworkException exception = new NetworkException("I/O error", ex);
             LOGGER.throwing(CLASS_NAME, "send", exception);
@@ -464,7 +473,9 @@ public class TCPConnection implements Connection {
                     }
                 }
             } catch (ArrayIndexOutOfBoundsException ex) {
-                LOGGER.logp(Level.FINE, CLASS_NAME, "hasValidEPCsEach", "incompleted yet: " + payload);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.logp(Level.FINE, CLASS_NAME, "hasValidEPCsEach", "incompleted yet: " + payload);
+                }
             }
 
             return true;
@@ -512,7 +523,7 @@ public class TCPConnection implements Connection {
                 }
                 
                 if (isValidStandardPayload(commonFrame.getEDATA())) {
-                    consumeBuffer(commonFrame.toBytes().length);
+                    consumeBuffer(commonFrame.size());
                 } else {
                     commonFrame = null;
                 }
@@ -37,7 +37,9 @@ public class TCPConnectionReceiverThread extends Thread {
             } else {
                 CommonFrame commonFrame = connection.receive();
 
-                LOGGER.logp(Level.FINE, CLASS_NAME, "run", "receive: " + commonFrame);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.logp(Level.FINE, CLASS_NAME, "run", "receive: " + commonFrame);
+                }
 
                 if (commonFrame == null) {
                     repeat = false;
@@ -7,6 +7,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
 import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -34,6 +35,9 @@ public class UDPNetwork {
     private int portNumber;
     private int bufferSize = DEFAULT_BUFFER_SIZE;
     private boolean inService = false;
+    private ReceiveBufferPool receiveBufferPool = createReceiveBufferPool(DEFAULT_BUFFER_SIZE);
+    private ByteBuffer sendBuffer;
+    private DatagramPacket sendPacket;
     
     private boolean remotePortNumberEnabled;
     
@@ -94,20 +98,81 @@ public class UDPNetwork {
         this.portNumber = portNumber;
     }
     
-    private synchronized void closeSocket() {
+    /**
+     * 利用するローカルアドレスを返す。
+     * @return 利用するローカルアドレス、指定されていない場合にはnull
+     */
+    protected InetAddress getLocalAddress() {
+        return localAddress;
+    }
+    
+    /**
+     * 利用するネットワークインタフェースを返す。
+     * @return 利用するネットワークインタフェース、指定されていない場合にはnull
+     */
+    protected NetworkInterface getNetworkInterface() {
+        return networkInterface;
+    }
+    
+    /**
+     * 受信に利用するネットワークインタフェースのリストを返す。
+     * @return 受信に利用するネットワークインタフェースのリスト
+     */
+    protected List<NetworkInterface> getReceiverInterfaces() {
+        return new LinkedList<NetworkInterface>(receiverInterfaces);
+    }
+    
+    /**
+     * 利用するマルチキャストアドレスを返す。
+     * @return 利用するマルチキャストアドレス
+     */
+    protected InetAddress getMulticastAddress() {
+        return multicastAddress;
+    }
+    
+    /**
+     * 受信バッファのプールを生成する。
+     * @param bufferSize 受信バッファのサイズ
+     * @return 生成したプール
+     */
+    protected ReceiveBufferPool createReceiveBufferPool(int bufferSize) {
+        return new ReceiveBufferPool(bufferSize, ReceiveBufferPool.DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * 受信したパケットの送信元からノード情報を生成する。
+     * リモートノードのポート番号を認識する場合にはポート番号もノード情報に含める。
+     * @param address 送信元のアドレス
+     * @param port 送信元のポート番号
+     * @return 生成したノード情報
+     */
+    protected InetNodeInfo createRemoteNodeInfo(InetAddress address, int port) {
+        if (isRemotePortNumberEnabled()) {
+            return new InetNodeInfo(address, port);
+        } else {
+            return new InetNodeInfo(address);
+        }
+    }
+    
+    /**
+     * 送受信に利用するソケットを閉じる。
+     */
+    protected synchronized void closeSocket() {
         LOGGER.entering(CLASS_NAME, "closeSocket");
         
         if (multicastSocket != null) {
             multicastSocket.close();
             multicastSocket = null;
         }
-            
-        inService = false;
         
         LOGGER.exiting(CLASS_NAME, "closeSocket");
     }
     
-    private synchronized void openSocket() throws NetworkException {
+    /**
+     * 送受信に利用するソケットを開き、マルチキャストグループに参加する。
+     * @throws NetworkException ソケットの準備に失敗した場合
+     */
+    protected synchronized void openSocket() throws NetworkException {
         LOGGER.entering(CLASS_NAME, "openSocket");
         
         try {
@@ -132,8 +197,6 @@ public class UDPNetwork {
             
             multicastSocket.setLoopbackMode(false);
             multicastSocket.setReuseAddress(false);
-
-            inService = true;
         } catch (IOException ex) {
             closeSocket();
             NetworkException exception = new NetworkException("catched exception", ex);
@@ -181,6 +244,15 @@ public class UDPNetwork {
      */
     public void setBufferSize(int bufferSize) {
         this.bufferSize = bufferSize;
+        this.receiveBufferPool = createReceiveBufferPool(bufferSize);
+    }
+    
+    /**
+     * 受信に利用するバッファのプールを返す。
+     * @return 受信バッファのプール
+     */
+    public ReceiveBufferPool getReceiveBufferPool() {
+        return receiveBufferPool;
     }
     
     /**
@@ -248,7 +320,8 @@ public class UDPNetwork {
         
         if (inService) {
             closeSocket();
-            result = !inService;
+            inService = false;
+            result = true;
         } else {
             result = false;
         }
@@ -272,7 +345,8 @@ public class UDPNetwork {
         } else {
             closeSocket();
             openSocket();
-            result = inService;
+            inService = true;
+            result = true;
         }
         
         LOGGER.exiting(CLASS_NAME, "startService", result);
@@ -295,7 +369,15 @@ public class UDPNetwork {
             throw exception;
         }
         
-        byte[] data = commonFrame.toBytes();
+        int size = commonFrame.size();
+        
+        if (sendBuffer == null || sendBuffer.capacity() < size) {
+            sendBuffer = ByteBuffer.allocate(Math.max(size, bufferSize));
+            sendPacket = new DatagramPacket(sendBuffer.array(), 0);
+        }
+        
+        sendBuffer.clear();
+        int length = commonFrame.writeTo(sendBuffer);
 
         InetAddress receiver = remoteNodeInfo.getAddress();
         int port = getPortNumber();
@@ -304,34 +386,27 @@ public class UDPNetwork {
             port = remoteNodeInfo.getPortNumber();
         }
 
-        DatagramPacket packet = new DatagramPacket(data, data.length, receiver, port);
+        sendPacket.setData(sendBuffer.array(), 0, length);
+        sendPacket.setAddress(receiver);
+        sendPacket.setPort(port);
 
-        multicastSocket.send(packet);
+        multicastSocket.send(sendPacket);
         
         LOGGER.exiting(CLASS_NAME, "send");
     }
     
-    private DatagramPacket receivePacket() throws IOException {
-        byte[] packetData = new byte[this.bufferSize];
-        DatagramPacket packet = new DatagramPacket(packetData, packetData.length);
+    private DatagramPacket receivePacket(ReceiveBuffer receiveBuffer) throws IOException {
+        DatagramPacket packet = receiveBuffer.getDatagramPacket();
         multicastSocket.receive(packet);
+        receiveBuffer.getByteBuffer().limit(packet.getLength());
         return packet;
     }
     
-    private byte[] getData(DatagramPacket packet) throws IOException {
-        byte[] packetData = packet.getData();
-
-        int len = packet.getLength();
-        byte[] data = new byte[len];
-        
-        System.arraycopy(packetData, 0, data, 0, len);
-
-        return data;
-    }
-    
     /**
      * このUDPNetworkのサブネットからフレームを受信する。
      * 受信を行うまで待機する。
+     * 受信したCommonFrameはプールから取得した受信バッファを参照しており、
+     * CommonFrameのreleaseBufferメソッドを呼び出すことでバッファがプールに返却される。
      * @return 受信したFrame
      * @throws NetworkException 受信に失敗した場合
      * @throws InvalidDataException 不正なフレームを受信した場合
@@ -344,21 +419,23 @@ public class UDPNetwork {
             throw new NetworkException("not working");
         }
         
-        DatagramPacket packet = receivePacket();
-        byte[] data = getData(packet);
-
-        CommonFrame commonFrame = new CommonFrame(data);
-
-        InetAddress addr = packet.getAddress();
-
-        Pair<InetNodeInfo, CommonFrame> pair;
-
-        if (isRemotePortNumberEnabled()) {
-            int port = packet.getPort();
-            pair = new Pair<InetNodeInfo, CommonFrame>(new InetNodeInfo(addr, port), commonFrame);
-        } else {
-            pair = new Pair<InetNodeInfo, CommonFrame>(new InetNodeInfo(addr), commonFrame);
+        ReceiveBuffer receiveBuffer = receiveBufferPool.acquire();
+        DatagramPacket packet;
+        CommonFrame commonFrame;
+        
+        try {
+            packet = receivePacket(receiveBuffer);
+            commonFrame = new CommonFrame(receiveBuffer);
+        } catch (IOException ex) {
+            receiveBuffer.release();
+            throw ex;
+        } catch (InvalidDataException ex) {
+            receiveBuffer.release();
+            throw ex;
         }
+
+        InetNodeInfo nodeInfo = createRemoteNodeInfo(packet.getAddress(), packet.getPort());
+        Pair<InetNodeInfo, CommonFrame> pair = new Pair<InetNodeInfo, CommonFrame>(nodeInfo, commonFrame);
         
         LOGGER.exiting(CLASS_NAME, "receive", pair);
         return pair;
@@ -0,0 +1,17 @@
+package echowand.net;
+
+/**
+ * InetSubnetが利用するUDPNetworkの実装の種類
+ * @author ymakino
+ */
+public enum UDPNetworkType {
+    /**
+     * MulticastSocketを利用してブロッキングI/Oを行うUDPNetwork
+     */
+    BLOCKING,
+    
+    /**
+     * DatagramChannelとSelectorを利用してノンブロッキングI/Oを行うNIOUDPNetwork
+     */
+    NIO
+}
@@ -5,6 +5,7 @@ import echowand.common.ESV;
 import echowand.logic.DefaultRequestProcessor;
 import echowand.net.CommonFrame;
 import echowand.net.Frame;
+import echowand.net.FrameStage;
 import echowand.net.Property;
 import echowand.net.StandardPayload;
 import echowand.net.Subnet;
@@ -40,6 +41,17 @@ public class AnnounceRequestProcessor extends DefaultRequestProcessor {
         logger.exiting(className, "AnnounceRequestProcessor");
     }
     
+    /**
+     * 指定されたESVのフレームを処理対象とするか返す。
+     * INF、INFCのみを処理対象とする。
+     * @param esv 調べるESV
+     * @return 処理対象であればtrue、そうでなければfalse
+     */
+    @Override
+    public boolean isTargetESV(ESV esv) {
+        return esv == ESV.INF || esv == ESV.INFC;
+    }
+    
     
     private StandardPayload updateINForINFC(Frame frame) {
         logger.entering(className, "updateINForINFC", frame);
@@ -80,6 +92,7 @@ public class AnnounceRequestProcessor extends DefaultRequestProcessor {
         Frame replyFrame = new Frame(subnet.getLocalNode(), frame.getSender(), replyCommonFrame, frame.getConnection());
         try {
             subnet.send(replyFrame);
+            frame.markStage(FrameStage.RESPONDED);
         } catch (SubnetException e) {
             e.printStackTrace();
         }
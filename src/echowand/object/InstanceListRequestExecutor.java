@@ -2,6 +2,7 @@ package echowand.object;
 
 import echowand.common.EOJ;
 import echowand.common.EPC;
+import echowand.logic.Deadline;
 import echowand.logic.SetGetTransactionConfig;
 import echowand.logic.Transaction;
 import echowand.logic.TransactionListener;
@@ -23,7 +24,8 @@ public class InstanceListRequestExecutor {
     private Subnet subnet;
     private TransactionManager transactionManager;
     private RemoteObjectManager remoteManager;
-    private Transaction transaction;
+    private volatile Transaction transaction;
+    private Deadline deadline;
     private Node node;
     private int timeout;
     private boolean done;
@@ -59,6 +61,23 @@ public class InstanceListRequestExecutor {
         return timeout;
     }
     
+    /**
+     * トランザクションの期限を設定する。
+     * executeを呼び出す前に設定する必要がある。
+     * @param deadline トランザクションの期限、期限を設定しない場合にはnull
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+    
+    /**
+     * トランザクションの期限を返す。
+     * @return トランザクションの期限
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+    
     public void setNode(Node node) {
         this.node = node;
     }
@@ -104,6 +123,7 @@ public class InstanceListRequestExecutor {
         transactionConfig.addGet(EPC.xD6);
         Transaction newTransaction = transactionManager.createTransaction(transactionConfig);
         newTransaction.setTimeout(timeout);
+        newTransaction.setDeadline(deadline);
         
         NodeProfileObjectListener profileListener = new NodeProfileObjectListener(remoteManager, transactionManager);
         newTransaction.addTransactionListener(profileListener);
@@ -136,6 +156,21 @@ public class InstanceListRequestExecutor {
         return true;
     }
     
+    /**
+     * 実行中のトランザクションを取り消す。
+     * joinで待機しているスレッドがあっても、すぐに取り消しが行われる。
+     * @return 取り消した場合にはtrue、トランザクションの開始前か終了後の場合にはfalse
+     */
+    public boolean cancel() {
+        logger.entering(className, "cancel");
+        
+        Transaction t = transaction;
+        boolean result = (t != null) && t.cancel();
+        
+        logger.exiting(className, "cancel", result);
+        return result;
+    }
+    
     /**
      * トランザクションが終了するまで待機する。
      * @return 成功した場合はtrue、トランザクションの開始前、あるいは複数回joinが呼ばれた時はfalse
@@ -5,6 +5,7 @@ import echowand.common.EPC;
 import echowand.info.ObjectInfo;
 import echowand.info.PropertyInfo;
 import echowand.util.Constraint;
+import echowand.util.Tracer;
 import java.util.EnumMap;
 import java.util.LinkedList;
 import java.util.logging.Logger;
@@ -16,6 +17,7 @@ import java.util.logging.Logger;
 public class LocalObject implements EchonetObject {
     private static final Logger logger = Logger.getLogger(LocalObject.class.getName());
     private static final String className = LocalObject.class.getName();
+    private static final Tracer tracer = Tracer.getTracer(LocalObject.class);
     
     private EOJ eoj;
     private ObjectInfo objectInfo;
@@ -90,14 +92,14 @@ public class LocalObject implements EchonetObject {
      * @return 設定に成功したらtrue、そうでなければfalse
      */
     public synchronized boolean forceSetData(EPC epc, ObjectData data) {
-        logger.entering(className, "forceSetData", new Object[]{epc, data});
+        tracer.entering("forceSetData", epc, data);
         
         ObjectData oldData = this.getData(epc);
 
         LocalObjectDelegate.SetState result = setDataDelegate(epc, data, oldData);
 
         if (result.isFail()) {
-            logger.exiting(className, "forceSetData", false);
+            tracer.exiting("forceSetData", false);
             return false;
         }
         
@@ -107,7 +109,7 @@ public class LocalObject implements EchonetObject {
             notifyDataChanged(epc, result.getNewData(), result.getCurrentData());
         }
 
-        logger.exiting(className, "forceSetData", true);
+        tracer.exiting("forceSetData", true);
         return true;
     }
 
@@ -123,22 +125,22 @@ public class LocalObject implements EchonetObject {
      */
     @Override
     public synchronized boolean setData(EPC epc, ObjectData data) {
-        logger.entering(className, "setData", new Object[]{epc, data});
+        tracer.entering("setData", epc, data);
         
         if (!this.isSettable(epc)) {
-            logger.exiting(className, "setData", false);
+            tracer.exiting("setData", false);
             return false;
         }
 
         PropertyInfo propertyInfo = objectInfo.get(epc);
         Constraint constraint = propertyInfo.constraint;
         if (!constraint.isValid(data.toBytes())) {
-            logger.exiting(className, "setData", false);
+            tracer.exiting("setData", false);
             return false;
         }
         
         boolean ret = forceSetData(epc, data);
-        logger.exiting(className, "setData", ret);
+        tracer.exiting("setData", ret);
         return ret;
     }
 
@@ -149,11 +151,11 @@ public class LocalObject implements EchonetObject {
      * @return プロパティのデータ、存在しない場合にはnull
      */
     public synchronized ObjectData getInternalData(EPC epc) {
-        logger.entering(className, "getInternalData", epc);
+        tracer.entering("getInternalData", epc);
         
         ObjectData data = propertyData.get(epc);
         
-        logger.exiting(className, "getInternalData", data);
+        tracer.exiting("getInternalData", data);
         
         return data;
     }
@@ -168,16 +170,16 @@ public class LocalObject implements EchonetObject {
      * @return プロパティのデータ、存在しない場合にはnull
      */
     public synchronized ObjectData forceGetData(EPC epc) {
-        logger.entering(className, "forceGetData", epc);
+        tracer.entering("forceGetData", epc);
         
         LocalObjectDelegate.GetState result = getDataDelegate(epc);
         
         if (result.isFail()) {
-            logger.exiting(className, "forceGetData", null);
+            tracer.exiting("forceGetData", null);
             return null;
         }
 
-        logger.exiting(className, "forceGetData", result.getGetData());
+        tracer.exiting("forceGetData", result.getGetData());
         return result.getGetData();
     }
 
@@ -192,16 +194,16 @@ public class LocalObject implements EchonetObject {
      */
     @Override
     public synchronized ObjectData getData(EPC epc) {
-        logger.entering(className, "getData", epc);
+        tracer.entering("getData", epc);
         
         if (!this.isGettable(epc)) {
-            logger.exiting(className, "getData", null);
+            tracer.exiting("getData", null);
             return null;
         }
 
         ObjectData data = forceGetData(epc);
         
-        logger.exiting(className, "getData", data);
+        tracer.exiting("getData", data);
         return data;
     }
 
@@ -286,7 +288,7 @@ public class LocalObject implements EchonetObject {
     }
     
     private LocalObjectDelegate.SetState setDataDelegate(EPC epc, ObjectData newData, ObjectData curData) {
-        logger.entering(className, "setDataDelegate", new Object[]{epc, newData, curData});
+        tracer.entering("setDataDelegate", epc, newData, curData);
         
         LocalObjectDelegate.SetState result = new LocalObjectDelegate.SetState(newData, curData);
         for (LocalObjectDelegate delegate: cloneDelegates()) {
@@ -298,12 +300,12 @@ public class LocalObject implements EchonetObject {
         
         logMessages(result);
         
-        logger.exiting(className, "setDataDelegate", result);
+        tracer.exiting("setDataDelegate", result);
         return result;
     }
     
     private LocalObjectDelegate.GetState getDataDelegate(EPC epc) {
-        logger.entering(className, "getDataDelegate", new Object[]{epc});
+        tracer.entering("getDataDelegate", epc);
         
         LocalObjectDelegate.GetState result = new LocalObjectDelegate.GetState(this.getInternalData(epc));
         for (LocalObjectDelegate delegate: cloneDelegates()) {
@@ -315,7 +317,7 @@ public class LocalObject implements EchonetObject {
         
         logMessages(result);
         
-        logger.exiting(className, "getDataDelegate", result);
+        tracer.exiting("getDataDelegate", result);
         return result;
     }
     
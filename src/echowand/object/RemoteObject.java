@@ -4,12 +4,32 @@ import echowand.common.Data;
 import echowand.common.EOJ;
 import echowand.common.EPC;
 import echowand.common.PropertyMap;
+import echowand.logic.RetryPolicy;
 import echowand.logic.SetGetTransactionConfig;
 import echowand.logic.Transaction;
 import echowand.logic.TransactionListener;
 import echowand.logic.TransactionManager;
 import echowand.net.*;
+import echowand.util.ListenerRegistry;
+import echowand.util.SingleFlight;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,14 +61,88 @@ public class RemoteObject implements EchonetObject {
      * AnnoプロパティマップのEPC
      */
     public static final EPC ANNOUNCE_PROPERTYMAP_EPC = EPC.x9D;
+    /**
+     * プロパティマップのキャッシュの有効期間のデフォルト値(ミリ秒)
+     */
+    public static final long DEFAULT_PROPERTYMAP_TTL = 60000;
+    /**
+     * 複数のプロパティをまとめて要求する際に1フレームに含めるプロパティ数の上限のデフォルト値
+     */
+    public static final int DEFAULT_MAX_PROPERTIES_PER_FRAME = 32;
+    /**
+     * 複数のプロパティをまとめてSetする際に1フレームに含めるプロパティのバイト数の上限
+     */
+    public static final int MAX_PROPERTY_BYTES_PER_FRAME = 1024;
+    
+    private static final EPC[] PROPERTYMAP_EPCS = {GET_PROPERTYMAP_EPC, SET_PROPERTYMAP_EPC, ANNOUNCE_PROPERTYMAP_EPC};
+    
+    private static final SingleFlight<Object, Object> DEFAULT_SINGLE_FLIGHT = new SingleFlight<Object, Object>();
     
     private TransactionManager transactionManager;
     private Subnet subnet;
     private Node node;
     private EOJ eoj;
     private int timeout;
+    private RetryPolicy retryPolicy;
+    private int maxPropertiesPerFrame;
+    private volatile SingleFlight<Object, Object> singleFlight;
+    
+    private ListenerRegistry<RemoteObjectObserver> observers;
+    
+    private volatile long propertyMapTTL;
+    private EnumMap<EPC, CachedPropertyMap> propertyMapCache;
+    
+    private static class RequestKey {
+        private final Subnet subnet;
+        private final Node node;
+        private final EOJ eoj;
+        private final boolean multiple;
+        private final Set<EPC> epcs;
+        
+        public RequestKey(Subnet subnet, Node node, EOJ eoj, boolean multiple, Set<EPC> epcs) {
+            this.subnet = subnet;
+            this.node = node;
+            this.eoj = eoj;
+            this.multiple = multiple;
+            this.epcs = epcs;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RequestKey)) {
+                return false;
+            }
+            
+            RequestKey key = (RequestKey)o;
+            return subnet == key.subnet && node.equals(key.node) && eoj.equals(key.eoj)
+                    && multiple == key.multiple && epcs.equals(key.epcs);
+        }
+        
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 31 * hash + node.hashCode();
+            hash = 31 * hash + eoj.hashCode();
+            hash = 31 * hash + (multiple ? 1 : 0);
+            hash = 31 * hash + epcs.hashCode();
+            return hash;
+        }
+        
+        @Override
+        public String toString() {
+            return "RequestKey{Node: " + node + ", EOJ: " + eoj + ", EPC: " + epcs + "}";
+        }
+    }
     
-    private LinkedList<RemoteObjectObserver> observers;
+    private static class CachedPropertyMap {
+        private final PropertyMap propertyMap;
+        private final long time;
+        
+        public CachedPropertyMap(PropertyMap propertyMap, long time) {
+            this.propertyMap = propertyMap;
+            this.time = time;
+        }
+    }
     
     /**
      * RemoteObjectを生成する。
@@ -64,16 +158,16 @@ public class RemoteObject implements EchonetObject {
         this.node = node;
         this.eoj = eoj;
         this.transactionManager = transactionManager;
-        this.observers = new LinkedList<RemoteObjectObserver>();
+        this.observers = new ListenerRegistry<RemoteObjectObserver>(RemoteObjectObserver.class);
         this.timeout = TRANSACTION_TIMEOUT;
+        this.maxPropertiesPerFrame = DEFAULT_MAX_PROPERTIES_PER_FRAME;
+        this.singleFlight = DEFAULT_SINGLE_FLIGHT;
+        this.propertyMapTTL = DEFAULT_PROPERTYMAP_TTL;
+        this.propertyMapCache = new EnumMap<EPC, CachedPropertyMap>(EPC.class);
         
         logger.entering(className, "RemoteObject");
     }
     
-    private synchronized LinkedList<RemoteObjectObserver> cloneObservers() {
-        return new LinkedList<RemoteObjectObserver>(observers);
-    }
-    
     /**
      * 設定されたTransactionManagerを返す。
      * @return 設定されているTransactionManager
@@ -126,6 +220,26 @@ public class RemoteObject implements EchonetObject {
         }
     }
     
+    /**
+     * レスポンスを受信できなかった場合の再送方法を設定する。
+     * @param retryPolicy 再送方法、再送を行わない場合にはnull
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        logger.entering(className, "setRetryPolicy", retryPolicy);
+        
+        this.retryPolicy = retryPolicy;
+        
+        logger.exiting(className, "setRetryPolicy");
+    }
+    
+    /**
+     * レスポンスを受信できなかった場合の再送方法を返す。
+     * @return 再送方法、再送を行わない場合にはnull
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+    
     /**
      * トランザクションのタイムアウト時間を取得する。
      * @return 設定されているタイムアウトの時間(ミリ秒)
@@ -138,6 +252,179 @@ public class RemoteObject implements EchonetObject {
         return timeout;
     }
     
+    /**
+     * 全てのRemoteObjectが標準で共有するSingleFlightを返す。
+     * 同じノードの同じオブジェクトに対する同じEPCのデータの取得は、RemoteObjectのインスタンスが異なっていてもまとめられる。
+     * @return 標準で共有されるSingleFlight
+     */
+    public static SingleFlight<Object, Object> getDefaultSingleFlight() {
+        return DEFAULT_SINGLE_FLIGHT;
+    }
+    
+    /**
+     * 同時に実行されたデータの取得をまとめるために利用するSingleFlightを設定する。
+     * nullを指定した場合には、データの取得はまとめられずに毎回Transactionが実行される。
+     * @param singleFlight 利用するSingleFlight
+     */
+    public void setSingleFlight(SingleFlight<Object, Object> singleFlight) {
+        logger.entering(className, "setSingleFlight", singleFlight);
+        
+        this.singleFlight = singleFlight;
+        
+        logger.exiting(className, "setSingleFlight");
+    }
+    
+    /**
+     * 同時に実行されたデータの取得をまとめるために利用するSingleFlightを返す。
+     * @return 利用するSingleFlight、まとめない場合にはnull
+     */
+    public SingleFlight<Object, Object> getSingleFlight() {
+        return singleFlight;
+    }
+    
+    private RequestKey createRequestKey(boolean multiple, Collection<EPC> epcs) {
+        EnumSet<EPC> epcSet = EnumSet.noneOf(EPC.class);
+        epcSet.addAll(epcs);
+        return new RequestKey(subnet, node, eoj, multiple, epcSet);
+    }
+    
+    private Object executeSingleFlight(SingleFlight<Object, Object> currentSingleFlight, RequestKey key, Callable<Object> callable) throws EchonetObjectException {
+        logger.entering(className, "executeSingleFlight", new Object[]{currentSingleFlight, key, callable});
+        
+        try {
+            Object result = currentSingleFlight.execute(key, callable);
+            logger.exiting(className, "executeSingleFlight", result);
+            return result;
+        } catch (ExecutionException e) {
+            EchonetObjectException exception;
+            if (e.getCause() instanceof EchonetObjectException) {
+                exception = (EchonetObjectException)e.getCause();
+            } else {
+                exception = new EchonetObjectException("failed", e.getCause());
+            }
+            logger.throwing(className, "executeSingleFlight", exception);
+            throw exception;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            EchonetObjectException exception = new EchonetObjectException("interrupted", e);
+            logger.throwing(className, "executeSingleFlight", exception);
+            throw exception;
+        }
+    }
+    
+    /**
+     * 複数のプロパティをまとめて要求する際に1フレームに含めるプロパティ数の上限を設定する。
+     * 上限は1以上255以下で指定する。
+     * @param maxPropertiesPerFrame 1フレームに含めるプロパティ数の上限
+     * @return 設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setMaxPropertiesPerFrame(int maxPropertiesPerFrame) {
+        logger.entering(className, "setMaxPropertiesPerFrame", maxPropertiesPerFrame);
+        
+        if (maxPropertiesPerFrame < 1 || maxPropertiesPerFrame > 255) {
+            logger.exiting(className, "setMaxPropertiesPerFrame", false);
+            return false;
+        }
+        
+        this.maxPropertiesPerFrame = maxPropertiesPerFrame;
+        
+        logger.exiting(className, "setMaxPropertiesPerFrame", true);
+        return true;
+    }
+    
+    /**
+     * 複数のプロパティをまとめて要求する際に1フレームに含めるプロパティ数の上限を返す。
+     * @return 1フレームに含めるプロパティ数の上限
+     */
+    public int getMaxPropertiesPerFrame() {
+        return maxPropertiesPerFrame;
+    }
+    
+    /**
+     * プロパティマップのキャッシュの有効期間を設定する。
+     * 0を指定した場合にはキャッシュを行わない。
+     * @param ttl キャッシュの有効期間(ミリ秒)
+     * @return 設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setPropertyMapTTL(long ttl) {
+        logger.entering(className, "setPropertyMapTTL", ttl);
+        
+        if (ttl < 0) {
+            logger.exiting(className, "setPropertyMapTTL", false);
+            return false;
+        }
+        
+        this.propertyMapTTL = ttl;
+        
+        if (ttl == 0) {
+            invalidatePropertyMaps();
+        }
+        
+        logger.exiting(className, "setPropertyMapTTL", true);
+        return true;
+    }
+    
+    /**
+     * プロパティマップのキャッシュの有効期間を返す。
+     * @return キャッシュの有効期間(ミリ秒)
+     */
+    public long getPropertyMapTTL() {
+        return propertyMapTTL;
+    }
+    
+    private boolean isPropertyMapEPC(EPC epc) {
+        for (EPC propertyMapEPC : PROPERTYMAP_EPCS) {
+            if (epc == propertyMapEPC) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private synchronized PropertyMap getCachedPropertyMap(EPC epc) {
+        CachedPropertyMap cached = propertyMapCache.get(epc);
+        
+        if (cached == null) {
+            return null;
+        }
+        
+        if (System.nanoTime() - cached.time >= propertyMapTTL * 1000000L) {
+            propertyMapCache.remove(epc);
+            return null;
+        }
+        
+        return cached.propertyMap;
+    }
+    
+    private synchronized void putCachedPropertyMap(EPC epc, PropertyMap propertyMap, long time) {
+        if (propertyMapTTL > 0) {
+            propertyMapCache.put(epc, new CachedPropertyMap(propertyMap, time));
+        }
+    }
+    
+    /**
+     * 指定されたEPCのプロパティマップのキャッシュを破棄する。
+     * @param epc プロパティマップのEPC
+     */
+    public synchronized void invalidatePropertyMap(EPC epc) {
+        logger.entering(className, "invalidatePropertyMap", epc);
+        
+        propertyMapCache.remove(epc);
+        
+        logger.exiting(className, "invalidatePropertyMap");
+    }
+    
+    /**
+     * 全てのプロパティマップのキャッシュを破棄する。
+     */
+    public synchronized void invalidatePropertyMaps() {
+        logger.entering(className, "invalidatePropertyMaps");
+        
+        propertyMapCache.clear();
+        
+        logger.exiting(className, "invalidatePropertyMaps");
+    }
+    
     private boolean isValidFrame(Frame frame) {
         logger.entering(className, "isValidFrame", frame);
 
@@ -286,6 +573,54 @@ public class RemoteObject implements EchonetObject {
         }
     }
     
+    class RemoteObjectPropertiesTransactionListener implements TransactionListener {
+        private EnumSet<EPC> epcs;
+        private EnumMap<EPC, Property> properties;
+        
+        public RemoteObjectPropertiesTransactionListener(Collection<EPC> epcs) {
+            this.epcs = EnumSet.copyOf(epcs);
+            this.properties = new EnumMap<EPC, Property>(EPC.class);
+        }
+        
+        public synchronized Map<EPC, Property> getProperties() {
+            return new EnumMap<EPC, Property>(properties);
+        }
+        
+        @Override
+        public void begin(Transaction t) {
+        }
+
+        @Override
+        public void send(Transaction t, Subnet subnet, Frame frame, boolean success) {
+        }
+
+        @Override
+        public synchronized void receive(Transaction t, Subnet subnet, Frame frame) {
+            logger.entering(className, "RemoteObjectPropertiesTransactionListener.receive", new Object[]{t, subnet, frame});
+            
+            if (!isValidFrame(frame)) {
+                logger.exiting(className, "RemoteObjectPropertiesTransactionListener.receive");
+                return;
+            }
+            
+            StandardPayload payload = frame.getCommonFrame().getEDATA(StandardPayload.class);
+            int count = 0xff & payload.getFirstOPC();
+            for (int i=0; i<count; i++) {
+                Property property = payload.getFirstPropertyAt(i);
+                if (epcs.contains(property.getEPC())) {
+                    properties.put(property.getEPC(), property);
+                }
+            }
+            t.finish();
+            
+            logger.exiting(className, "RemoteObjectPropertiesTransactionListener.receive");
+        }
+
+        @Override
+        public void finish(Transaction t) {
+        }
+    }
+    
     private SetGetTransactionConfig createSetGetTransactionConfig() {
         logger.entering(className, "createSetGetTransactionConfig");
         
@@ -295,6 +630,7 @@ public class RemoteObject implements EchonetObject {
         transactionConfig.setReceiverNode(this.getNode());
         transactionConfig.setSourceEOJ(SOURCE_EOJ);
         transactionConfig.setDestinationEOJ(eoj);
+        transactionConfig.setRetryPolicy(retryPolicy);
         
         logger.exiting(className, "createSetGetTransactionConfig", transactionConfig);
         return transactionConfig;
@@ -314,14 +650,36 @@ public class RemoteObject implements EchonetObject {
     /**
      * 指定されたEPCのデータを返す。
      * EPCのデータを取得するためにTransactionを実行する。
+     * 同じEPCのデータの取得が実行中の場合には、新たにTransactionを実行せずにその結果を共有する。
      * @param epc EPCの指定
      * @return 指定したEPCのデータ
      * @throws EchonetObjectException データのGet中にエラーが発生した場合
      */
     @Override
-    public ObjectData getData(EPC epc) throws EchonetObjectException {
+    public ObjectData getData(final EPC epc) throws EchonetObjectException {
         logger.entering(className, "getData", epc);
         
+        ObjectData data;
+        SingleFlight<Object, Object> currentSingleFlight = singleFlight;
+        
+        if (currentSingleFlight == null) {
+            data = doGetData(epc);
+        } else {
+            data = (ObjectData)executeSingleFlight(currentSingleFlight, createRequestKey(false, Arrays.asList(epc)), new Callable<Object>() {
+                @Override
+                public Object call() throws EchonetObjectException {
+                    return doGetData(epc);
+                }
+            });
+        }
+        
+        logger.exiting(className, "getData", data);
+        return data;
+    }
+    
+    private ObjectData doGetData(EPC epc) throws EchonetObjectException {
+        logger.entering(className, "doGetData", epc);
+        
         RemoteObjectGetTransactionListener transactionListener;
 
         SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
@@ -334,7 +692,7 @@ public class RemoteObject implements EchonetObject {
             transaction.execute();
         } catch (SubnetException e) {
             EchonetObjectException exception = new EchonetObjectException("getData failed", e);
-            logger.throwing(className, "getData", exception);
+            logger.throwing(className, "doGetData", exception);
             throw exception;
         }
         
@@ -343,27 +701,95 @@ public class RemoteObject implements EchonetObject {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             EchonetObjectException exception = new EchonetObjectException("interrupted", e);
-            logger.throwing(className, "getData", exception);
+            logger.throwing(className, "doGetData", exception);
             throw exception;
         }
         
         if (transaction.countResponses() == 0) {
             EchonetObjectException exception = new EchonetObjectException("no response");
-            logger.throwing(className, "getData", exception);
+            logger.throwing(className, "doGetData", exception);
             throw exception;
         }
         
         ObjectData data =  transactionListener.getData();
         if (data == null) {
             EchonetObjectException exception = new EchonetObjectException("no valid data");
-            logger.throwing(className, "getData", exception);
+            logger.throwing(className, "doGetData", exception);
             throw exception;
         }
         
-        logger.exiting(className, "getData", data);
+        logger.exiting(className, "doGetData", data);
         return data;
     }
     
+    /**
+     * 指定されたEPCのデータを非同期に取得する。
+     * 同じEPCのデータの取得が実行中の場合には、新たにTransactionを実行せずにその結果を共有する。
+     * 返されるCompletableFutureは、データの取得に成功した場合にはそのデータで完了し、
+     * 失敗した場合にはEchonetObjectExceptionにより例外的に完了する。
+     * @param epc EPCの指定
+     * @return 指定したEPCのデータで完了するCompletableFuture
+     */
+    public CompletableFuture<ObjectData> getDataAsync(final EPC epc) {
+        logger.entering(className, "getDataAsync", epc);
+        
+        CompletableFuture<ObjectData> future;
+        SingleFlight<Object, Object> currentSingleFlight = singleFlight;
+        
+        if (currentSingleFlight == null) {
+            future = doGetDataAsync(epc);
+        } else {
+            future = currentSingleFlight.executeAsync(createRequestKey(false, Arrays.asList(epc)), new Supplier<CompletableFuture<Object>>() {
+                @Override
+                public CompletableFuture<Object> get() {
+                    return doGetDataAsync(epc).thenApply(new Function<ObjectData, Object>() {
+                        @Override
+                        public Object apply(ObjectData data) {
+                            return data;
+                        }
+                    });
+                }
+            }).thenApply(new Function<Object, ObjectData>() {
+                @Override
+                public ObjectData apply(Object data) {
+                    return (ObjectData)data;
+                }
+            });
+        }
+        
+        logger.exiting(className, "getDataAsync", future);
+        return future;
+    }
+    
+    private CompletableFuture<ObjectData> doGetDataAsync(EPC epc) {
+        logger.entering(className, "doGetDataAsync", epc);
+        
+        SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
+        transactionConfig.addGet(epc);
+
+        final RemoteObjectGetTransactionListener transactionListener = new RemoteObjectGetTransactionListener(epc);
+        final Transaction transaction = createSetGetTransaction(transactionConfig, transactionListener);
+        
+        CompletableFuture<ObjectData> future = executeAsync(transaction, "getData failed").thenApply(new Function<List<Frame>, ObjectData>() {
+            @Override
+            public ObjectData apply(List<Frame> frames) {
+                if (transaction.countResponses() == 0) {
+                    throw new CompletionException(new EchonetObjectException("no response"));
+                }
+                
+                ObjectData data = transactionListener.getData();
+                if (data == null) {
+                    throw new CompletionException(new EchonetObjectException("no valid data"));
+                }
+                
+                return data;
+            }
+        });
+        
+        logger.exiting(className, "doGetDataAsync", future);
+        return future;
+    }
+    
     /**
      * 指定されたEPCのデータをアナウンスするように要求する。
      * @param epc EPCの指定
@@ -434,19 +860,330 @@ public class RemoteObject implements EchonetObject {
         return success;
     }
 
+    /**
+     * 指定されたEPCに指定されたデータを非同期にセットする。
+     * 返されるCompletableFutureは、セットを受け付けた場合にはtrue、そうでなければfalseで完了し、
+     * 送信に失敗した場合にはEchonetObjectExceptionにより例外的に完了する。
+     * @param epc EPCの指定
+     * @param data セットするデータの指定
+     * @return セットの結果で完了するCompletableFuture
+     */
+    public CompletableFuture<Boolean> setDataAsync(EPC epc, ObjectData data) {
+        logger.entering(className, "setDataAsync", new Object[]{epc, data});
+        
+        SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
+        transactionConfig.addSet(epc, data.getData());
+
+        final RemoteObjectSetTransactionListener transactionListener = new RemoteObjectSetTransactionListener(epc);
+        Transaction transaction = createSetGetTransaction(transactionConfig, transactionListener);
+        
+        CompletableFuture<Boolean> future = executeAsync(transaction, "setData failed").thenApply(new Function<List<Frame>, Boolean>() {
+            @Override
+            public Boolean apply(List<Frame> frames) {
+                return transactionListener.isSuccess();
+            }
+        });
+        
+        logger.exiting(className, "setDataAsync", future);
+        return future;
+    }
+    
+    private void executeTransactions(List<Transaction> transactions, String methodName) throws EchonetObjectException {
+        logger.entering(className, "executeTransactions", new Object[]{transactions, methodName});
+        
+        for (int i=0; i<transactions.size(); i++) {
+            try {
+                transactions.get(i).execute();
+            } catch (SubnetException e) {
+                for (int j=0; j<i; j++) {
+                    transactions.get(j).cancel();
+                }
+                EchonetObjectException exception = new EchonetObjectException(methodName + " failed", e);
+                logger.throwing(className, "executeTransactions", exception);
+                throw exception;
+            }
+        }
+        
+        try {
+            for (Transaction transaction : transactions) {
+                transaction.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Transaction transaction : transactions) {
+                transaction.cancel();
+            }
+            EchonetObjectException exception = new EchonetObjectException("interrupted", e);
+            logger.throwing(className, "executeTransactions", exception);
+            throw exception;
+        }
+        
+        logger.exiting(className, "executeTransactions");
+    }
+    
+    /**
+     * 指定された複数のEPCのデータをまとめて取得する。
+     * 同じEPCの組み合わせのデータの取得が実行中の場合には、新たにTransactionを実行せずにその結果を共有する。
+     * EPCは1フレームあたりgetMaxPropertiesPerFrameで指定された数までまとめて要求され、全てのフレームは並行して送信される。
+     * 返されるMapには指定された全てのEPCが指定された順番で含まれ、
+     * レスポンスが得られなかったEPCやGet_SNAで拒否されたEPCに対応する値はnullとなる。
+     * @param epcs EPCのリスト
+     * @return EPCとデータのMap
+     * @throws EchonetObjectException フレームの送信に失敗した場合
+     */
+    public Map<EPC, ObjectData> getData(List<EPC> epcs) throws EchonetObjectException {
+        logger.entering(className, "getData", epcs);
+        
+        final LinkedHashSet<EPC> epcSet = new LinkedHashSet<EPC>(epcs);
+        Map<EPC, ObjectData> dataMap;
+        SingleFlight<Object, Object> currentSingleFlight = singleFlight;
+        
+        if (currentSingleFlight == null) {
+            dataMap = doGetData(epcSet);
+        } else {
+            @SuppressWarnings("unchecked")
+            Map<EPC, ObjectData> sharedDataMap = (Map<EPC, ObjectData>)executeSingleFlight(currentSingleFlight, createRequestKey(true, epcSet), new Callable<Object>() {
+                @Override
+                public Object call() throws EchonetObjectException {
+                    return doGetData(epcSet);
+                }
+            });
+            dataMap = sharedDataMap;
+        }
+        
+        LinkedHashMap<EPC, ObjectData> result = new LinkedHashMap<EPC, ObjectData>();
+        for (EPC epc : epcSet) {
+            result.put(epc, dataMap.get(epc));
+        }
+        
+        logger.exiting(className, "getData", result);
+        return result;
+    }
+    
+    private Map<EPC, ObjectData> doGetData(Collection<EPC> epcs) throws EchonetObjectException {
+        logger.entering(className, "doGetData", epcs);
+        
+        LinkedHashMap<EPC, ObjectData> result = new LinkedHashMap<EPC, ObjectData>();
+        
+        ArrayList<List<EPC>> chunks = new ArrayList<List<EPC>>();
+        List<EPC> chunk = null;
+        for (EPC epc : new LinkedHashSet<EPC>(epcs)) {
+            if (chunk == null || chunk.size() >= maxPropertiesPerFrame) {
+                chunk = new ArrayList<EPC>();
+                chunks.add(chunk);
+            }
+            chunk.add(epc);
+            result.put(epc, null);
+        }
+        
+        ArrayList<Transaction> transactions = new ArrayList<Transaction>(chunks.size());
+        ArrayList<RemoteObjectPropertiesTransactionListener> transactionListeners = new ArrayList<RemoteObjectPropertiesTransactionListener>(chunks.size());
+        for (List<EPC> epcChunk : chunks) {
+            SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
+            for (EPC epc : epcChunk) {
+                transactionConfig.addGet(epc);
+            }
+            RemoteObjectPropertiesTransactionListener transactionListener = new RemoteObjectPropertiesTransactionListener(epcChunk);
+            transactionListeners.add(transactionListener);
+            transactions.add(createSetGetTransaction(transactionConfig, transactionListener));
+        }
+        
+        executeTransactions(transactions, "getData");
+        
+        for (RemoteObjectPropertiesTransactionListener transactionListener : transactionListeners) {
+            for (Property property : transactionListener.getProperties().values()) {
+                if (property.getPDC() != 0) {
+                    result.put(property.getEPC(), new ObjectData(property.getEDT()));
+                }
+            }
+        }
+        
+        logger.exiting(className, "doGetData", result);
+        return result;
+    }
+    
+    /**
+     * 指定された複数のEPCにそれぞれのデータをまとめてセットする。
+     * プロパティは1フレームあたりgetMaxPropertiesPerFrameで指定された数まで、
+     * かつMAX_PROPERTY_BYTES_PER_FRAMEのバイト数を超えない範囲でまとめて要求され、全てのフレームは並行して送信される。
+     * 返されるMapには指定された全てのEPCが指定された順番で含まれ、
+     * セットを受け付けたEPCに対応する値はtrue、レスポンスが得られなかったEPCやSetC_SNAで拒否されたEPCに対応する値はfalseとなる。
+     * @param properties EPCとセットするデータのMap
+     * @return EPCとセットの結果のMap
+     * @throws EchonetObjectException フレームの送信に失敗した場合
+     */
+    public Map<EPC, Boolean> setData(Map<EPC, ObjectData> properties) throws EchonetObjectException {
+        logger.entering(className, "setData", properties);
+        
+        LinkedHashMap<EPC, Boolean> result = new LinkedHashMap<EPC, Boolean>();
+        
+        ArrayList<SetGetTransactionConfig> transactionConfigs = new ArrayList<SetGetTransactionConfig>();
+        ArrayList<List<EPC>> chunks = new ArrayList<List<EPC>>();
+        SetGetTransactionConfig transactionConfig = null;
+        List<EPC> chunk = null;
+        int chunkBytes = 0;
+        for (Map.Entry<EPC, ObjectData> entry : properties.entrySet()) {
+            Data data = entry.getValue().getData();
+            int propertyBytes = 2 + data.size();
+            if (chunk == null || chunk.size() >= maxPropertiesPerFrame || chunkBytes + propertyBytes > MAX_PROPERTY_BYTES_PER_FRAME) {
+                transactionConfig = createSetGetTransactionConfig();
+                transactionConfigs.add(transactionConfig);
+                chunk = new ArrayList<EPC>();
+                chunks.add(chunk);
+                chunkBytes = 0;
+            }
+            transactionConfig.addSet(entry.getKey(), data);
+            chunk.add(entry.getKey());
+            chunkBytes += propertyBytes;
+            result.put(entry.getKey(), false);
+        }
+        
+        ArrayList<Transaction> transactions = new ArrayList<Transaction>(chunks.size());
+        ArrayList<RemoteObjectPropertiesTransactionListener> transactionListeners = new ArrayList<RemoteObjectPropertiesTransactionListener>(chunks.size());
+        for (int i=0; i<chunks.size(); i++) {
+            RemoteObjectPropertiesTransactionListener transactionListener = new RemoteObjectPropertiesTransactionListener(chunks.get(i));
+            transactionListeners.add(transactionListener);
+            transactions.add(createSetGetTransaction(transactionConfigs.get(i), transactionListener));
+        }
+        
+        executeTransactions(transactions, "setData");
+        
+        for (RemoteObjectPropertiesTransactionListener transactionListener : transactionListeners) {
+            for (Property property : transactionListener.getProperties().values()) {
+                result.put(property.getEPC(), property.getPDC() == 0);
+            }
+        }
+        
+        logger.exiting(className, "setData", result);
+        return result;
+    }
+    
+    private CompletableFuture<List<Frame>> executeAsync(Transaction transaction, final String message) {
+        final CompletableFuture<List<Frame>> future = new CompletableFuture<List<Frame>>();
+        
+        transaction.executeAsync().whenComplete(new BiConsumer<List<Frame>, Throwable>() {
+            @Override
+            public void accept(List<Frame> frames, Throwable throwable) {
+                if (throwable == null) {
+                    future.complete(frames);
+                } else {
+                    future.completeExceptionally(new EchonetObjectException(message, throwable));
+                }
+            }
+        });
+        
+        return future;
+    }
+
     private PropertyMap getPropertyMap(EPC epc) throws EchonetObjectException {
-        return new PropertyMap(getData(epc).toBytes());
+        PropertyMap propertyMap = getCachedPropertyMap(epc);
+        
+        if (propertyMap == null) {
+            long time = System.nanoTime();
+            propertyMap = new PropertyMap(getData(epc).toBytes());
+            putCachedPropertyMap(epc, propertyMap, time);
+        }
+        
+        return propertyMap;
+    }
+    
+    private Map<EPC, PropertyMap> fetchPropertyMaps() throws EchonetObjectException {
+        logger.entering(className, "fetchPropertyMaps");
+        
+        SetGetTransactionConfig transactionConfig = createSetGetTransactionConfig();
+        for (EPC epc : PROPERTYMAP_EPCS) {
+            transactionConfig.addGet(epc);
+        }
+
+        RemoteObjectPropertiesTransactionListener transactionListener = new RemoteObjectPropertiesTransactionListener(Arrays.asList(PROPERTYMAP_EPCS));
+        Transaction transaction = createSetGetTransaction(transactionConfig, transactionListener);
+        
+        long time = System.nanoTime();
+        
+        try {
+            transaction.execute();
+        } catch (SubnetException e) {
+            EchonetObjectException exception = new EchonetObjectException("fetchPropertyMaps failed", e);
+            logger.throwing(className, "fetchPropertyMaps", exception);
+            throw exception;
+        }
+        
+        try {
+            transaction.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            EchonetObjectException exception = new EchonetObjectException("interrupted", e);
+            logger.throwing(className, "fetchPropertyMaps", exception);
+            throw exception;
+        }
+        
+        if (transaction.countResponses() == 0) {
+            EchonetObjectException exception = new EchonetObjectException("no response");
+            logger.throwing(className, "fetchPropertyMaps", exception);
+            throw exception;
+        }
+        
+        Map<EPC, PropertyMap> propertyMaps = new EnumMap<EPC, PropertyMap>(EPC.class);
+        for (Property property : transactionListener.getProperties().values()) {
+            if (property.getPDC() != 0) {
+                PropertyMap propertyMap = new PropertyMap(property.getEDT().toBytes());
+                propertyMaps.put(property.getEPC(), propertyMap);
+                putCachedPropertyMap(property.getEPC(), propertyMap, time);
+            }
+        }
+        
+        logger.exiting(className, "fetchPropertyMaps", propertyMaps);
+        return propertyMaps;
+    }
+    
+    /**
+     * Get、Set、Annoの3つのプロパティマップを一つのフレームでまとめて取得し、キャッシュに格納する。
+     * キャッシュの有効期間が0の場合には、取得したプロパティマップは格納されない。
+     * @return 3つのプロパティマップを全て取得できた場合にはtrue、そうでなければfalse
+     * @throws EchonetObjectException プロパティマップの取得に失敗した場合
+     */
+    public boolean prefetchPropertyMaps() throws EchonetObjectException {
+        logger.entering(className, "prefetchPropertyMaps");
+        
+        boolean result = fetchPropertyMaps().size() == PROPERTYMAP_EPCS.length;
+        
+        logger.exiting(className, "prefetchPropertyMaps", result);
+        return result;
+    }
+    
+    private boolean isSet(Map<EPC, PropertyMap> propertyMaps, EPC propertyMapEPC, EPC epc) throws EchonetObjectException {
+        PropertyMap propertyMap = propertyMaps.get(propertyMapEPC);
+        
+        if (propertyMap == null) {
+            propertyMap = getPropertyMap(propertyMapEPC);
+        }
+        
+        return propertyMap.isSet(epc);
     }
     
     /**
      * 指定されたEPCのプロパティが存在するかを返す。
+     * プロパティマップがキャッシュされていない場合には、3つのプロパティマップを一つのフレームでまとめて取得する。
      * @param epc EPCの指定
      * @return 存在していればtrue、そうでなければfalse
      * @throws EchonetObjectException データの取得に失敗した場合
      */
     @Override
     public boolean contains(EPC epc) throws EchonetObjectException {
-        return isGettable(epc) || isSettable(epc) || isObservable(epc);
+        Map<EPC, PropertyMap> propertyMaps = new EnumMap<EPC, PropertyMap>(EPC.class);
+        
+        for (EPC propertyMapEPC : PROPERTYMAP_EPCS) {
+            PropertyMap propertyMap = getCachedPropertyMap(propertyMapEPC);
+            if (propertyMap == null) {
+                propertyMaps = fetchPropertyMaps();
+                break;
+            }
+            propertyMaps.put(propertyMapEPC, propertyMap);
+        }
+        
+        return isSet(propertyMaps, GET_PROPERTYMAP_EPC, epc)
+                || isSet(propertyMaps, SET_PROPERTYMAP_EPC, epc)
+                || isSet(propertyMaps, ANNOUNCE_PROPERTYMAP_EPC, epc);
     }
     
     /**
@@ -486,7 +1223,7 @@ public class RemoteObject implements EchonetObject {
      * プロパティデータ変更通知オブザーバを登録する。
      * @param observer 登録するオブザーバ
      */
-    public synchronized void addObserver(RemoteObjectObserver observer) {
+    public void addObserver(RemoteObjectObserver observer) {
         logger.entering(className, "addObserver", observer);
         
         observers.add(observer);
@@ -498,7 +1235,7 @@ public class RemoteObject implements EchonetObject {
      * プロパティデータ変更通知オブザーバの登録を抹消する。
      * @param observer 登録を抹消するオブザーバ
      */
-    public synchronized void removeObserver(RemoteObjectObserver observer) {
+    public void removeObserver(RemoteObjectObserver observer) {
         logger.entering(className, "removeObserver", observer);
         
         observers.remove(observer);
@@ -510,19 +1247,24 @@ public class RemoteObject implements EchonetObject {
      * プロパティデータ変更通知オブザーバの数を返す。
      * @return オブザーバの数
      */
-    public synchronized int countObservers() {
+    public int countObservers() {
         return observers.size();
     }
     
     /**
      * プロパティデータの変更をオブザーバに通知する。
+     * プロパティマップの通知であった場合には、そのプロパティマップのキャッシュを破棄する。
      * @param epc 通知EPC
      * @param data 通知データ
      */
     public void notifyData(EPC epc, ObjectData data) {
         logger.entering(className, "notifyData", new Object[]{epc, data});
         
-        for (RemoteObjectObserver observer : cloneObservers()) {
+        if (isPropertyMapEPC(epc)) {
+            invalidatePropertyMap(epc);
+        }
+        
+        for (RemoteObjectObserver observer : observers.getListeners()) {
             observer.notifyData(this, epc, data);
         }
         
@@ -1,23 +1,56 @@
 package echowand.object;
 
+import echowand.common.ClassEOJ;
 import echowand.common.EOJ;
+import echowand.logic.Listener;
+import echowand.net.Frame;
 import echowand.net.Node;
+import echowand.net.Subnet;
 import echowand.util.Collector;
+import echowand.util.ListenerRegistry;
 import echowand.util.Selector;
-import java.util.HashMap;
+import echowand.util.SingleFlight;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
  * リモートオブジェクトを管理。
+ * RemoteObjectはノード、ClassEOJ、EOJのそれぞれで索引付けされ、検索はロックを取得せずに行われる。
+ * 登録と抹消は排他的に行われる。
+ * Listenerとして登録すると、受信したフレームの送信元ノードの最終受信時刻を更新し、
+ * setNodeTimeoutで指定した時間の間フレームを受信していないノードのRemoteObjectを自動的に抹消する。
+ * ノードが管理の対象から外れると、登録されたRemoteObjectManagerObserverに通知される。
+ * setSingleFlightでSingleFlightを設定すると、標準のSingleFlightを利用している登録されたRemoteObjectにそのSingleFlightを設定する。
  * @author Yoshiki Makino
  */
-public class RemoteObjectManager {
+public class RemoteObjectManager implements Listener {
     private static final Logger logger = Logger.getLogger(RemoteObjectManager.class.getName());
     private static final String className = RemoteObjectManager.class.getName();
     
-    private HashMap<Node, HashMap<EOJ, RemoteObject>> objects;
+    private static class NodeEntry {
+        private final ConcurrentHashMap<EOJ, RemoteObject> objects;
+        private volatile long lastSeen;
+        
+        public NodeEntry() {
+            this.objects = new ConcurrentHashMap<EOJ, RemoteObject>();
+            this.lastSeen = System.nanoTime();
+        }
+    }
+    
+    private final ConcurrentHashMap<Node, NodeEntry> objects;
+    private final ConcurrentHashMap<ClassEOJ, Set<RemoteObject>> classIndex;
+    private final ConcurrentHashMap<EOJ, Set<RemoteObject>> eojIndex;
+    
+    private volatile long nodeTimeout;
+    private final AtomicLong nextEviction;
+    private final ListenerRegistry<RemoteObjectManagerObserver> observers;
+    private volatile SingleFlight<Object, Object> singleFlight;
     
     /**
      * RemoteObjectManagerを生成する。
@@ -25,27 +58,101 @@ public class RemoteObjectManager {
     public RemoteObjectManager() {
         logger.entering(className, "RemoteObjectManager");
         
-        this.objects = new HashMap<Node, HashMap<EOJ, RemoteObject>>();
+        this.objects = new ConcurrentHashMap<Node, NodeEntry>();
+        this.classIndex = new ConcurrentHashMap<ClassEOJ, Set<RemoteObject>>();
+        this.eojIndex = new ConcurrentHashMap<EOJ, Set<RemoteObject>>();
+        this.nodeTimeout = 0;
+        this.nextEviction = new AtomicLong(System.nanoTime());
+        this.observers = new ListenerRegistry<RemoteObjectManagerObserver>(RemoteObjectManagerObserver.class);
+        this.singleFlight = null;
         
         logger.exiting(className, "RemoteObjectManager");
     }
     
-    private synchronized HashMap<EOJ, RemoteObject> getOrCreateNodeHashMap(Node node) {
-        logger.entering(className, "getOrCreateNodeHashMap", node);
+    /**
+     * 登録されるRemoteObjectに設定するSingleFlightを指定する。
+     * RemoteObject.getDefaultSingleFlightを利用しているRemoteObjectのみが対象となり、
+     * 個別にSingleFlightが設定されたRemoteObjectは変更されない。
+     * @param singleFlight 設定するSingleFlight、設定しない場合にはnull
+     */
+    public void setSingleFlight(SingleFlight<Object, Object> singleFlight) {
+        logger.entering(className, "setSingleFlight", singleFlight);
         
-        HashMap<EOJ, RemoteObject> map = objects.get(node);
-        if (map == null) {
-            map = new HashMap<EOJ, RemoteObject>();
-            objects.put(node, map);
-        }
+        this.singleFlight = singleFlight;
+        
+        logger.exiting(className, "setSingleFlight");
+    }
+    
+    /**
+     * 登録されるRemoteObjectに設定するSingleFlightを返す。
+     * @return 設定するSingleFlight、設定しない場合にはnull
+     */
+    public SingleFlight<Object, Object> getSingleFlight() {
+        return singleFlight;
+    }
+    
+    /**
+     * RemoteObjectManagerObserverを登録する。
+     * @param observer 登録するRemoteObjectManagerObserver
+     * @return 登録に成功した場合はtrue、失敗した場合はfalse
+     */
+    public boolean addObserver(RemoteObjectManagerObserver observer) {
+        logger.entering(className, "addObserver", observer);
         
-        logger.exiting(className, "getOrCreateNodeHashMap", map);
-        return map;
+        boolean result = observers.add(observer);
+        
+        logger.exiting(className, "addObserver", result);
+        return result;
+    }
+    
+    /**
+     * RemoteObjectManagerObserverの登録を抹消する。
+     * @param observer 登録を抹消するRemoteObjectManagerObserver
+     * @return 登録の抹消に成功した場合はtrue、失敗した場合はfalse
+     */
+    public boolean removeObserver(RemoteObjectManagerObserver observer) {
+        logger.entering(className, "removeObserver", observer);
+        
+        boolean result = observers.remove(observer);
+        
+        logger.exiting(className, "removeObserver", result);
+        return result;
+    }
+    
+    private void notifyNodeRemoved(Node node) {
+        for (RemoteObjectManagerObserver observer : observers.getListeners()) {
+            observer.notifyNodeRemoved(this, node);
+        }
+    }
+    
+    private static <K> void addToIndex(ConcurrentHashMap<K, Set<RemoteObject>> index, K key, RemoteObject object) {
+        Set<RemoteObject> set = index.get(key);
+        if (set == null) {
+            set = ConcurrentHashMap.<RemoteObject>newKeySet();
+            index.put(key, set);
+        }
+        set.add(object);
+    }
+    
+    private static <K> void removeFromIndex(ConcurrentHashMap<K, Set<RemoteObject>> index, K key, RemoteObject object) {
+        Set<RemoteObject> set = index.get(key);
+        if (set != null) {
+            set.remove(object);
+            if (set.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+    
+    private void removeFromIndexes(RemoteObject object) {
+        removeFromIndex(classIndex, object.getEOJ().getClassEOJ(), object);
+        removeFromIndex(eojIndex, object.getEOJ(), object);
     }
     
     /**
      * 指定されたRemoteObjectを登録する。
      * 既にオブジェクトのEOJが登録済の場合には何も行わない。
+     * 登録したRemoteObjectのノードの最終受信時刻は現在の時刻に更新される。
      * @param object 登録するRemoteObject
      * @return 登録に成功した場合はtrue、失敗した場合はfalse
      */
@@ -54,60 +161,124 @@ public class RemoteObjectManager {
         
         boolean result = false;
         
-        HashMap<EOJ, RemoteObject> map = getOrCreateNodeHashMap(object.getNode());
-        if (!map.containsKey(object.getEOJ())) {
-            map.put(object.getEOJ(), object);
+        NodeEntry entry = objects.get(object.getNode());
+        if (entry == null) {
+            entry = new NodeEntry();
+            objects.put(object.getNode(), entry);
+        }
+        
+        if (!entry.objects.containsKey(object.getEOJ())) {
+            SingleFlight<Object, Object> currentSingleFlight = singleFlight;
+            if (currentSingleFlight != null && object.getSingleFlight() == RemoteObject.getDefaultSingleFlight()) {
+                object.setSingleFlight(currentSingleFlight);
+            }
+            entry.objects.put(object.getEOJ(), object);
+            addToIndex(classIndex, object.getEOJ().getClassEOJ(), object);
+            addToIndex(eojIndex, object.getEOJ(), object);
             result = true;
         }
         
+        entry.lastSeen = System.nanoTime();
+        
         logger.exiting(className, "add", result);
         return result;
     }
     
     /**
      * 指定されたRemoteObjectの登録を抹消する。
+     * ノードのRemoteObjectが全て抹消された場合には、そのノードも管理の対象から外れる。
      * @param object 登録を抹消するRemoteObject
      * @return 登録の抹消に成功した場合はtrue、失敗した場合はfalse
      */
-    public synchronized boolean remove(RemoteObject object) {
+    public boolean remove(RemoteObject object) {
         logger.entering(className, "remove", object);
         
         boolean result = false;
+        boolean nodeRemoved = false;
         
-        HashMap<EOJ, RemoteObject> map = getOrCreateNodeHashMap(object.getNode());
-        if (map.remove(object.getEOJ()) != null) {
-            result = true;
+        synchronized (this) {
+            NodeEntry entry = objects.get(object.getNode());
+            RemoteObject removed = null;
+            if (entry != null) {
+                removed = entry.objects.remove(object.getEOJ());
+            }
+
+            if (removed != null) {
+                removeFromIndexes(removed);
+                if (entry.objects.isEmpty()) {
+                    objects.remove(object.getNode());
+                    nodeRemoved = true;
+                }
+                result = true;
+            }
+        }
+        
+        if (nodeRemoved) {
+            notifyNodeRemoved(object.getNode());
         }
         
         logger.exiting(className, "remove", result);
         return result;
     }
     
+    /**
+     * 指定されたノードの全てのRemoteObjectの登録を抹消する。
+     * @param node ノードの指定
+     * @return 登録を抹消したRemoteObjectの数
+     */
+    public int removeAtNode(Node node) {
+        logger.entering(className, "removeAtNode", node);
+        
+        int count = doRemoveAtNode(node);
+        
+        if (count > 0) {
+            notifyNodeRemoved(node);
+        }
+        
+        logger.exiting(className, "removeAtNode", count);
+        return count;
+    }
+    
+    private synchronized int doRemoveAtNode(Node node) {
+        int count = 0;
+        
+        NodeEntry entry = objects.remove(node);
+        if (entry != null) {
+            for (RemoteObject object : entry.objects.values()) {
+                removeFromIndexes(object);
+                count++;
+            }
+        }
+        
+        return count;
+    }
+    
     /**
      * 指定されたNode内で、指定されたEOJにより識別されるRemoteObjectを取得する。
      * @param node Nodeの指定
      * @param eoj EOJの指定
      * @return 指定したNodeとEOJで検索されたRemoteObject
      */
-    public synchronized RemoteObject get(Node node, EOJ eoj) {
+    public RemoteObject get(Node node, EOJ eoj) {
         logger.entering(className, "get", new Object[]{node, eoj});
         
-        HashMap<EOJ, RemoteObject> map = getOrCreateNodeHashMap(node);
-        RemoteObject object = map.get(eoj);
+        RemoteObject object = null;
+        
+        NodeEntry entry = objects.get(node);
+        if (entry != null) {
+            object = entry.objects.get(eoj);
+        }
         
         logger.exiting(className, "get", object);
         return object;
     }
     
-    private synchronized List<RemoteObject> getAllObjects() {
+    private List<RemoteObject> getAllObjects() {
         logger.entering(className, "getAllObjects");
         
         LinkedList<RemoteObject> newList = new LinkedList<RemoteObject>();
-        for (Node node : objects.keySet()) {
-            HashMap<EOJ, RemoteObject> objectsAtNode = objects.get(node);
-            for (RemoteObject obj : objectsAtNode.values()) {
-                newList.add(obj);
-            }
+        for (NodeEntry entry : objects.values()) {
+            newList.addAll(entry.objects.values());
         }
         
         logger.exiting(className, "getAllObjects", newList);
@@ -119,20 +290,58 @@ public class RemoteObjectManager {
      * @param node Nodeの指定
      * @return 指定したNodeとEOJで検索されたRemoteObject
      */
-    public synchronized List<RemoteObject> getAtNode(final Node node) {
+    public List<RemoteObject> getAtNode(Node node) {
         logger.entering(className, "getAtNode", node);
         
-        List<RemoteObject> objectList = get(new Selector<RemoteObject>() {
-            @Override
-            public boolean match(RemoteObject object) {
-                return object.getNode().equals(node);
-            }
-        });
+        List<RemoteObject> objectList = new ArrayList<RemoteObject>();
+        
+        NodeEntry entry = objects.get(node);
+        if (entry != null) {
+            objectList.addAll(entry.objects.values());
+        }
         
         logger.exiting(className, "getAtNode", objectList);
         return objectList;
     }
     
+    /**
+     * 全てのノードから、指定されたClassEOJのRemoteObjectを取得する。
+     * @param ceoj ClassEOJの指定
+     * @return 指定したClassEOJで検索されたRemoteObjectのリスト
+     */
+    public List<RemoteObject> getAtClassEOJ(ClassEOJ ceoj) {
+        logger.entering(className, "getAtClassEOJ", ceoj);
+        
+        List<RemoteObject> objectList = new ArrayList<RemoteObject>();
+        
+        Set<RemoteObject> set = classIndex.get(ceoj);
+        if (set != null) {
+            objectList.addAll(set);
+        }
+        
+        logger.exiting(className, "getAtClassEOJ", objectList);
+        return objectList;
+    }
+    
+    /**
+     * 全てのノードから、指定されたEOJのRemoteObjectを取得する。
+     * @param eoj EOJの指定
+     * @return 指定したEOJで検索されたRemoteObjectのリスト
+     */
+    public List<RemoteObject> getAtEOJ(EOJ eoj) {
+        logger.entering(className, "getAtEOJ", eoj);
+        
+        List<RemoteObject> objectList = new ArrayList<RemoteObject>();
+        
+        Set<RemoteObject> set = eojIndex.get(eoj);
+        if (set != null) {
+            objectList.addAll(set);
+        }
+        
+        logger.exiting(className, "getAtEOJ", objectList);
+        return objectList;
+    }
+    
     /**
      * Selectorが真を返すリモートオブジェクトを選択し、そのリストを返す。
      * @param selector リモートオブジェクトの選択
@@ -160,4 +369,137 @@ public class RemoteObjectManager {
         logger.exiting(className, "getNodes", nodeList);
         return nodeList;
     }
+    
+    /**
+     * 指定されたノードからフレームを受信したことを記録し、最終受信時刻を更新する。
+     * RemoteObjectが登録されていないノードは記録されない。
+     * @param node フレームを受信したノード
+     */
+    public void touch(Node node) {
+        if (node == null) {
+            return;
+        }
+        
+        long now = System.nanoTime();
+        
+        NodeEntry entry = objects.get(node);
+        if (entry != null) {
+            entry.lastSeen = now;
+        }
+        
+        evictIfNecessary(now);
+    }
+    
+    /**
+     * 指定されたノードから最後にフレームを受信してからの経過時間を返す。
+     * @param node ノードの指定
+     * @return 経過時間(ミリ秒)、ノードが登録されていない場合には-1
+     */
+    public long getIdleTime(Node node) {
+        NodeEntry entry = objects.get(node);
+        
+        if (entry == null) {
+            return -1;
+        }
+        
+        return (System.nanoTime() - entry.lastSeen) / 1000000;
+    }
+    
+    /**
+     * フレームを受信していないノードのRemoteObjectを抹消するまでの時間を設定する。
+     * 0を指定した場合には抹消を行わない。
+     * @param nodeTimeout ノードのRemoteObjectを抹消するまでの時間(ミリ秒)
+     * @return 設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setNodeTimeout(long nodeTimeout) {
+        logger.entering(className, "setNodeTimeout", nodeTimeout);
+        
+        if (nodeTimeout < 0) {
+            logger.exiting(className, "setNodeTimeout", false);
+            return false;
+        }
+        
+        this.nodeTimeout = nodeTimeout;
+        nextEviction.set(System.nanoTime());
+        
+        logger.exiting(className, "setNodeTimeout", true);
+        return true;
+    }
+    
+    /**
+     * フレームを受信していないノードのRemoteObjectを抹消するまでの時間を返す。
+     * @return ノードのRemoteObjectを抹消するまでの時間(ミリ秒)、抹消を行わない場合には0
+     */
+    public long getNodeTimeout() {
+        return nodeTimeout;
+    }
+    
+    private void evictIfNecessary(long now) {
+        long timeout = nodeTimeout;
+        if (timeout == 0) {
+            return;
+        }
+        
+        long next = nextEviction.get();
+        if (now - next < 0) {
+            return;
+        }
+        
+        long interval = Math.max(timeout / 2, 1) * 1000000;
+        if (nextEviction.compareAndSet(next, now + interval)) {
+            evictIdleNodes();
+        }
+    }
+    
+    /**
+     * setNodeTimeoutで指定した時間の間フレームを受信していないノードのRemoteObjectを全て抹消する。
+     * この処理はフレームの受信時にも必要に応じて自動的に行われる。
+     * @return RemoteObjectを抹消したノードのリスト
+     */
+    public List<Node> evictIdleNodes() {
+        logger.entering(className, "evictIdleNodes");
+        
+        List<Node> evictedNodes = doEvictIdleNodes();
+        
+        for (Node node : evictedNodes) {
+            notifyNodeRemoved(node);
+        }
+        
+        logger.exiting(className, "evictIdleNodes", evictedNodes);
+        return evictedNodes;
+    }
+    
+    private synchronized List<Node> doEvictIdleNodes() {
+        LinkedList<Node> evictedNodes = new LinkedList<Node>();
+        long timeout = nodeTimeout;
+        
+        if (timeout > 0) {
+            long now = System.nanoTime();
+            for (Map.Entry<Node, NodeEntry> entry : objects.entrySet()) {
+                if ((now - entry.getValue().lastSeen) / 1000000 >= timeout) {
+                    evictedNodes.add(entry.getKey());
+                }
+            }
+            
+            for (Node node : evictedNodes) {
+                doRemoveAtNode(node);
+            }
+        }
+        
+        return evictedNodes;
+    }
+    
+    /**
+     * 受信したフレームの送信元ノードの最終受信時刻を更新する。
+     * フレームは他のListenerでも処理できるように、常にfalseを返す。
+     * @param subnet 受信したフレームの送受信が行なわれたサブネット
+     * @param frame 受信したフレーム
+     * @param processed 指定されたフレームがすでに処理済みである場合にはtrue、そうでなければfalse
+     * @return 常にfalse
+     */
+    @Override
+    public boolean process(Subnet subnet, Frame frame, boolean processed) {
+        touch(frame.getSender());
+        return false;
+    }
 }
@@ -0,0 +1,16 @@
+package echowand.object;
+
+import echowand.net.Node;
+
+/**
+ * RemoteObjectManagerが外部に情報を伝達するためのオブザーバ
+ * @author Yoshiki Makino
+ */
+public interface RemoteObjectManagerObserver {
+    /**
+     * ノードのRemoteObjectが全て抹消され、ノードが管理の対象から外れた時に呼び出される。
+     * @param manager ノードを管理していたRemoteObjectManager
+     * @param node 管理の対象から外れたノード
+     */
+    public void notifyNodeRemoved(RemoteObjectManager manager, Node node);
+}
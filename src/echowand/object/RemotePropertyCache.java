@@ -0,0 +1,553 @@
+package echowand.object;
+
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.logic.Listener;
+import echowand.net.CommonFrame;
+import echowand.net.CommonFrameView;
+import echowand.net.Frame;
+import echowand.net.FrameStage;
+import echowand.net.Node;
+import echowand.net.Property;
+import echowand.net.StandardPayload;
+import echowand.net.Subnet;
+import echowand.util.Counter;
+import echowand.util.Tracer;
+import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * リモートオブジェクトのプロパティの値を保持するキャッシュ
+ * ノード、EOJ、EPCの組み合わせ毎に最後に受信した値と受信した時刻を保持する。
+ * MainLoopのListenerとして登録すると、INF、INFC、Get_Res、SetGet_Resなどで受信したプロパティの値で自動的に更新される。
+ * getDataは値がmaxAge以内に受信されたものであればそのまま返し、
+ * さらにmaxStale以内であれば保持している値を返すと同時にバックグラウンドで値を取得し直す。
+ * maxAgeとmaxStaleを合わせた期間を過ぎた値はフレームの受信時に定期的に破棄される。
+ * また、保持する値の数はsetMaxEntriesで指定した数に制限される。
+ * @author Yoshiki Makino
+ */
+public class RemotePropertyCache implements Listener {
+    private static final Logger logger = Logger.getLogger(RemotePropertyCache.class.getName());
+    private static final String className = RemotePropertyCache.class.getName();
+    private static final Tracer tracer = Tracer.getTracer(RemotePropertyCache.class);
+
+    /**
+     * 値をそのまま返す期間のデフォルト値(ミリ秒)
+     */
+    public static final long DEFAULT_MAX_AGE = 5000;
+
+    /**
+     * maxAgeを過ぎた値を取得し直しながら返す期間のデフォルト値(ミリ秒)
+     */
+    public static final long DEFAULT_MAX_STALE = 60000;
+
+    /**
+     * 保持する値の数の上限のデフォルト値
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 65536;
+
+    private final ConcurrentHashMap<Key, Entry> entries;
+    private volatile long maxAge;
+    private volatile long maxStale;
+    private volatile int maxEntries;
+    private final AtomicLong nextEviction;
+
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+
+    private static class Key {
+        private final Node node;
+        private final EOJ eoj;
+        private final EPC epc;
+
+        public Key(Node node, EOJ eoj, EPC epc) {
+            this.node = node;
+            this.eoj = eoj;
+            this.epc = epc;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key)o;
+            return node.equals(key.node) && eoj.equals(key.eoj) && epc == key.epc;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 31 * hash + node.hashCode();
+            hash = 31 * hash + eoj.hashCode();
+            hash = 31 * hash + epc.hashCode();
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "Key{Node: " + node + ", EOJ: " + eoj + ", EPC: " + epc + "}";
+        }
+    }
+
+    private static class Entry {
+        private final ObjectData data;
+        private final long time;
+        private final AtomicBoolean refreshing;
+
+        public Entry(ObjectData data, long time) {
+            this.data = data;
+            this.time = time;
+            this.refreshing = new AtomicBoolean(false);
+        }
+    }
+
+    /**
+     * RemotePropertyCacheを生成する。
+     */
+    public RemotePropertyCache() {
+        logger.entering(className, "RemotePropertyCache");
+
+        entries = new ConcurrentHashMap<Key, Entry>();
+        maxAge = DEFAULT_MAX_AGE;
+        maxStale = DEFAULT_MAX_STALE;
+        maxEntries = DEFAULT_MAX_ENTRIES;
+        nextEviction = new AtomicLong(System.nanoTime());
+        hits = new Counter();
+        staleHits = new Counter();
+        misses = new Counter();
+
+        logger.exiting(className, "RemotePropertyCache");
+    }
+
+    /**
+     * 値をそのまま返す期間を設定する。
+     * @param maxAge 値をそのまま返す期間(ミリ秒)
+     * @return 設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setMaxAge(long maxAge) {
+        logger.entering(className, "setMaxAge", maxAge);
+
+        if (maxAge < 0) {
+            logger.exiting(className, "setMaxAge", false);
+            return false;
+        }
+
+        this.maxAge = maxAge;
+
+        logger.exiting(className, "setMaxAge", true);
+        return true;
+    }
+
+    /**
+     * 値をそのまま返す期間を返す。
+     * @return 値をそのまま返す期間(ミリ秒)
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * maxAgeを過ぎた値を取得し直しながら返す期間を設定する。
+     * 0を指定した場合には、maxAgeを過ぎた値は返さずに常に取得し直す。
+     * @param maxStale maxAgeを過ぎた値を返す期間(ミリ秒)
+     * @return 設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setMaxStale(long maxStale) {
+        logger.entering(className, "setMaxStale", maxStale);
+
+        if (maxStale < 0) {
+            logger.exiting(className, "setMaxStale", false);
+            return false;
+        }
+
+        this.maxStale = maxStale;
+
+        logger.exiting(className, "setMaxStale", true);
+        return true;
+    }
+
+    /**
+     * maxAgeを過ぎた値を取得し直しながら返す期間を返す。
+     * @return maxAgeを過ぎた値を返す期間(ミリ秒)
+     */
+    public long getMaxStale() {
+        return maxStale;
+    }
+
+    /**
+     * 保持する値の数の上限を設定する。
+     * 上限に達している場合には、期限を過ぎた値を破棄しても空きができなければ新しいプロパティの値は格納しない。
+     * @param maxEntries 保持する値の数の上限
+     * @return 設定に成功したらtrue、そうでなければfalse
+     */
+    public boolean setMaxEntries(int maxEntries) {
+        logger.entering(className, "setMaxEntries", maxEntries);
+
+        if (maxEntries < 1) {
+            logger.exiting(className, "setMaxEntries", false);
+            return false;
+        }
+
+        this.maxEntries = maxEntries;
+
+        logger.exiting(className, "setMaxEntries", true);
+        return true;
+    }
+
+    /**
+     * 保持する値の数の上限を返す。
+     * @return 保持する値の数の上限
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    private boolean putEntry(Key key, ObjectData data, long time) {
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            evictExpired();
+            if (entries.size() >= maxEntries) {
+                return false;
+            }
+        }
+
+        final Entry newEntry = new Entry(data, time);
+        Entry entry = entries.merge(key, newEntry, new BiFunction<Entry, Entry, Entry>() {
+            @Override
+            public Entry apply(Entry oldEntry, Entry newEntry) {
+                if (newEntry.time - oldEntry.time < 0) {
+                    return oldEntry;
+                }
+                return newEntry;
+            }
+        });
+        return entry == newEntry;
+    }
+
+    /**
+     * 指定されたプロパティの値を現在の時刻で格納する。
+     * @param node ノード
+     * @param eoj オブジェクトのEOJ
+     * @param epc プロパティのEPC
+     * @param data プロパティの値
+     */
+    public void put(Node node, EOJ eoj, EPC epc, ObjectData data) {
+        logger.entering(className, "put", new Object[]{node, eoj, epc, data});
+
+        putEntry(new Key(node, eoj, epc), data, System.nanoTime());
+
+        logger.exiting(className, "put");
+    }
+
+    /**
+     * 指定されたプロパティの値を返す。
+     * maxAgeとmaxStaleを合わせた期間を過ぎた値は返さない。
+     * @param node ノード
+     * @param eoj オブジェクトのEOJ
+     * @param epc プロパティのEPC
+     * @return プロパティの値、保持していない場合にはnull
+     */
+    public ObjectData get(Node node, EOJ eoj, EPC epc) {
+        Entry entry = entries.get(new Key(node, eoj, epc));
+
+        if (entry == null || getAgeMillis(entry) > maxAge + maxStale) {
+            return null;
+        }
+
+        return entry.data;
+    }
+
+    /**
+     * 指定されたプロパティの値がmaxAge以内に受信されたものであるかを返す。
+     * @param node ノード
+     * @param eoj オブジェクトのEOJ
+     * @param epc プロパティのEPC
+     * @return maxAge以内に受信した値を保持していればtrue、そうでなければfalse
+     */
+    public boolean isFresh(Node node, EOJ eoj, EPC epc) {
+        Entry entry = entries.get(new Key(node, eoj, epc));
+        return entry != null && getAgeMillis(entry) <= maxAge;
+    }
+
+    private long getAgeMillis(Entry entry) {
+        return (System.nanoTime() - entry.time) / 1000000;
+    }
+
+    private void refresh(final RemoteObject object, final EPC epc, final Key key, final Entry entry) {
+        logger.entering(className, "refresh", new Object[]{object, epc, key});
+
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            logger.exiting(className, "refresh");
+            return;
+        }
+
+        final long time = System.nanoTime();
+
+        object.getDataAsync(epc).whenComplete(new BiConsumer<ObjectData, Throwable>() {
+            @Override
+            public void accept(ObjectData data, Throwable throwable) {
+                if (throwable == null) {
+                    if (!putEntry(key, data, time)) {
+                        entry.refreshing.set(false);
+                    }
+                } else {
+                    entry.refreshing.set(false);
+                    logger.logp(Level.INFO, className, "refresh", "cannot refresh: " + key, throwable);
+                }
+            }
+        });
+
+        logger.exiting(className, "refresh");
+    }
+
+    /**
+     * 指定されたRemoteObjectの指定されたEPCの値を返す。
+     * maxAge以内に受信した値を保持している場合には、その値を返す。
+     * maxAgeを過ぎていてもmaxStale以内であれば、保持している値を返すと同時にバックグラウンドで値を取得し直す。
+     * それ以外の場合には、RemoteObjectから値を取得して格納してから返す。
+     * @param object 値を取得するRemoteObject
+     * @param epc プロパティのEPC
+     * @return プロパティの値
+     * @throws EchonetObjectException 値の取得に失敗した場合
+     */
+    public ObjectData getData(RemoteObject object, EPC epc) throws EchonetObjectException {
+        logger.entering(className, "getData", new Object[]{object, epc});
+
+        Key key = new Key(object.getNode(), object.getEOJ(), epc);
+        Entry entry = entries.get(key);
+
+        if (entry != null) {
+            long age = getAgeMillis(entry);
+
+            if (age <= maxAge) {
+                hits.increment();
+                logger.exiting(className, "getData", entry.data);
+                return entry.data;
+            }
+
+            if (age <= maxAge + maxStale) {
+                staleHits.increment();
+                refresh(object, epc, key, entry);
+                logger.exiting(className, "getData", entry.data);
+                return entry.data;
+            }
+
+            entries.remove(key, entry);
+        }
+
+        misses.increment();
+
+        long time = System.nanoTime();
+        ObjectData data = object.getData(epc);
+        putEntry(key, data, time);
+
+        logger.exiting(className, "getData", data);
+        return data;
+    }
+
+    /**
+     * 指定されたプロパティの値を破棄する。
+     * @param node ノード
+     * @param eoj オブジェクトのEOJ
+     * @param epc プロパティのEPC
+     */
+    public void invalidate(Node node, EOJ eoj, EPC epc) {
+        logger.entering(className, "invalidate", new Object[]{node, eoj, epc});
+
+        entries.remove(new Key(node, eoj, epc));
+
+        logger.exiting(className, "invalidate");
+    }
+
+    /**
+     * 指定されたノードの全てのプロパティの値を破棄する。
+     * @param node ノード
+     * @return 破棄した値の数
+     */
+    public int invalidateNode(Node node) {
+        logger.entering(className, "invalidateNode", node);
+
+        int count = 0;
+        for (Key key : entries.keySet()) {
+            if (key.node.equals(node) && entries.remove(key) != null) {
+                count++;
+            }
+        }
+
+        logger.exiting(className, "invalidateNode", count);
+        return count;
+    }
+
+    /**
+     * maxAgeとmaxStaleを合わせた期間を過ぎた値を全て破棄する。
+     * この処理はフレームの受信時にも必要に応じて自動的に行われる。
+     * @return 破棄した値の数
+     */
+    public int evictExpired() {
+        logger.entering(className, "evictExpired");
+
+        long limit = maxAge + maxStale;
+        int count = 0;
+        for (Map.Entry<Key, Entry> entry : entries.entrySet()) {
+            if (getAgeMillis(entry.getValue()) > limit && entries.remove(entry.getKey(), entry.getValue())) {
+                count++;
+            }
+        }
+
+        logger.exiting(className, "evictExpired", count);
+        return count;
+    }
+
+    private void evictIfNecessary(long now) {
+        long next = nextEviction.get();
+        if (now - next < 0) {
+            return;
+        }
+
+        long interval = Math.max(maxAge + maxStale, 1000) * 1000000;
+        if (nextEviction.compareAndSet(next, now + interval)) {
+            evictExpired();
+        }
+    }
+
+    /**
+     * 全ての値を破棄する。
+     */
+    public void clear() {
+        logger.entering(className, "clear");
+
+        entries.clear();
+
+        logger.exiting(className, "clear");
+    }
+
+    /**
+     * 保持している値の数を返す。
+     * @return 保持している値の数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * getDataでmaxAge以内の値を返した回数を返す。
+     * @return maxAge以内の値を返した回数
+     */
+    public long countHits() {
+        return hits.getCount();
+    }
+
+    /**
+     * getDataでmaxAgeを過ぎた値を返した回数を返す。
+     * @return maxAgeを過ぎた値を返した回数
+     */
+    public long countStaleHits() {
+        return staleHits.getCount();
+    }
+
+    /**
+     * getDataでRemoteObjectから値を取得した回数を返す。
+     * @return RemoteObjectから値を取得した回数
+     */
+    public long countMisses() {
+        return misses.getCount();
+    }
+
+    private void putProperties(Node node, EOJ eoj, StandardPayload payload, boolean second, long time) {
+        int count = 0xff & (second ? payload.getSecondOPC() : payload.getFirstOPC());
+
+        for (int i=0; i<count; i++) {
+            Property property = second ? payload.getSecondPropertyAt(i) : payload.getFirstPropertyAt(i);
+            if (property.getPDC() != 0) {
+                putEntry(new Key(node, eoj, property.getEPC()), new ObjectData(property.getEDT()), time);
+            }
+        }
+    }
+
+    private ESV getESV(CommonFrame cf) {
+        CommonFrameView view = cf.getView();
+        if (view != null) {
+            return view.getESV();
+        }
+
+        StandardPayload payload = cf.getEDATA(StandardPayload.class);
+        if (payload == null) {
+            return null;
+        }
+
+        return payload.getESV();
+    }
+
+    /**
+     * 受信したフレームに含まれるプロパティの値を格納する。
+     * 格納した時刻にはフレームを受信した時刻が利用される。
+     * プロパティの値を含むレスポンスや通知以外のフレームはEDATAを解析せずに無視する。
+     * フレームは他のListenerでも処理できるように、常にfalseを返す。
+     * @param subnet 受信したフレームの送受信が行なわれたサブネット
+     * @param frame 受信したフレーム
+     * @param processed 指定されたフレームがすでに処理済みである場合にはtrue、そうでなければfalse
+     * @return 常にfalse
+     */
+    @Override
+    public boolean process(Subnet subnet, Frame frame, boolean processed) {
+        tracer.entering("process", subnet, frame, processed);
+
+        CommonFrame cf = frame.getCommonFrame();
+        ESV esv = getESV(cf);
+
+        if (esv == null) {
+            tracer.exiting("process", false);
+            return false;
+        }
+
+        boolean setGet;
+
+        switch (esv) {
+            case Get_Res:
+            case Get_SNA:
+            case INF:
+            case INFC:
+            case INF_SNA:
+                setGet = false;
+                break;
+            case SetGet_Res:
+            case SetGet_SNA:
+                setGet = true;
+                break;
+            default:
+                tracer.exiting("process", false);
+                return false;
+        }
+
+        StandardPayload payload = cf.getEDATA(StandardPayload.class);
+
+        if (payload == null) {
+            tracer.exiting("process", false);
+            return false;
+        }
+
+        long now = System.nanoTime();
+        evictIfNecessary(now);
+
+        long time = frame.getStageTime(FrameStage.RECEIVED, now);
+        putProperties(frame.getSender(), payload.getSEOJ(), payload, setGet, time);
+
+        tracer.exiting("process", false);
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "RemotePropertyCache(size=" + size() + ", maxAge=" + maxAge + ", maxStale=" + maxStale + ")";
+    }
+}
@@ -33,6 +33,17 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
         logger.exiting(className, "SetGetRequestProcessor");
     }
     
+    /**
+     * 指定されたESVのフレームを処理対象とするか返す。
+     * SetI、SetC、Get、SetGet、INF_REQのみを処理対象とする。
+     * @param esv 調べるESV
+     * @return 処理対象であればtrue、そうでなければfalse
+     */
+    @Override
+    public boolean isTargetESV(ESV esv) {
+        return esv == ESV.SetI || esv == ESV.SetC || esv == ESV.Get || esv == ESV.SetGet || esv == ESV.INF_REQ;
+    }
+    
     private void addAllSetFromFirst(LocalSetGetAtomic localSetGetAtomic, StandardPayload payload) {
         logger.entering(className, "addAllSetFromFirst", new Object[]{localSetGetAtomic, payload});
         
@@ -188,6 +199,11 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
         return resFrame;
     }
     
+    private void sendResponse(Subnet subnet, Frame frame, Frame response) throws SubnetException {
+        subnet.send(response);
+        frame.markStage(FrameStage.RESPONDED);
+    }
+    
     private List<LocalObject> getDestinationObject(Frame frame) {
         CommonFrame cf = frame.getCommonFrame();
         StandardPayload payload = cf.getEDATA(StandardPayload.class); 
@@ -211,7 +227,7 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
         if (!doSetAllData(frame, object, res)) {
             res.setESV(ESV.SetI_SNA);
             try {
-                subnet.send(createResponse(subnet.getLocalNode(), frame, object, res));
+                sendResponse(subnet, frame, createResponse(subnet.getLocalNode(), frame, object, res));
             } catch (SubnetException e) {
                 e.printStackTrace();
             }
@@ -230,7 +246,7 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
             res.setESV(ESV.SetC_SNA);
         }
         try {
-            subnet.send(createResponse(subnet.getLocalNode(), frame, object, res));
+            sendResponse(subnet, frame, createResponse(subnet.getLocalNode(), frame, object, res));
         } catch (SubnetException e) {
             e.printStackTrace();
         }
@@ -248,7 +264,7 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
             res.setESV(ESV.Get_SNA);
         }
         try {
-            subnet.send(createResponse(subnet.getLocalNode(), frame, object, res));
+            sendResponse(subnet, frame, createResponse(subnet.getLocalNode(), frame, object, res));
         } catch (SubnetException e) {
             e.printStackTrace();
         }
@@ -266,7 +282,7 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
             res.setESV(ESV.SetGet_SNA);
         }
         try {
-            subnet.send(createResponse(subnet.getLocalNode(), frame, object, res));
+            sendResponse(subnet, frame, createResponse(subnet.getLocalNode(), frame, object, res));
         } catch (SubnetException e) {
             e.printStackTrace();
         }
@@ -288,7 +304,7 @@ public class SetGetRequestProcessor extends DefaultRequestProcessor {
         }
         
         try {
-            subnet.send(createResponse(subnet.getLocalNode(), frame, object, res, useGroup, subnet));
+            sendResponse(subnet, frame, createResponse(subnet.getLocalNode(), frame, object, res, useGroup, subnet));
         } catch (SubnetException e) {
             e.printStackTrace();
         }
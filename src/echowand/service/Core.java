@@ -6,13 +6,20 @@ import echowand.logic.RequestDispatcher;
 import echowand.logic.TooManyObjectsException;
 import echowand.logic.TransactionManager;
 import echowand.net.Inet4Subnet;
+import echowand.net.InetSubnet;
+import echowand.net.Node;
 import echowand.net.Subnet;
 import echowand.net.SubnetException;
 import echowand.object.AnnounceRequestProcessor;
 import echowand.object.LocalObject;
 import echowand.object.LocalObjectManager;
 import echowand.object.RemoteObjectManager;
+import echowand.object.RemoteObjectManagerObserver;
+import echowand.object.RemotePropertyCache;
 import echowand.object.SetGetRequestProcessor;
+import echowand.util.MetricsRegistry;
+import echowand.util.SingleFlight;
+import java.lang.management.ManagementFactory;
 import java.util.LinkedList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -28,6 +35,7 @@ public class Core {
     private Subnet subnet;
     private TransactionManager transactionManager;
     private RemoteObjectManager remoteManager;
+    private RemotePropertyCache remotePropertyCache;
     private LocalObjectManager localManager;
     private LocalObject nodeProfileObject;
     private RequestDispatcher requestDispatcher;
@@ -40,6 +48,9 @@ public class Core {
     private TimestampObserver timestampObserver;
     private CaptureResultObserver captureResultObserver;
     
+    private MetricsRegistry metricsRegistry;
+    private String metricsMBeanDomain = null;
+    
     private NodeProfileObjectConfig nodeProfileObjectConfig;
     private LinkedList<LocalObjectConfig> localObjectConfigs;
     private LinkedList<LocalObjectUpdater> localObjectUpdaters;
@@ -47,6 +58,7 @@ public class Core {
     private boolean initialized = false;
     private boolean inService = false;
     private boolean captureEnabled = false;
+    private int mainLoopWorkerCount = 0;
     
     private Thread mainLoopThread;
     
@@ -65,6 +77,7 @@ public class Core {
         nodeProfileObjectConfig = new NodeProfileObjectConfig();
         localObjectConfigs = new LinkedList<LocalObjectConfig>();
         localObjectUpdaters = new LinkedList<LocalObjectUpdater>();
+        metricsRegistry = new MetricsRegistry();
         
         LOGGER.exiting(CLASS_NAME, "Core");
     }
@@ -83,6 +96,7 @@ public class Core {
         nodeProfileObjectConfig = new NodeProfileObjectConfig();
         localObjectConfigs = new LinkedList<LocalObjectConfig>();
         localObjectUpdaters = new LinkedList<LocalObjectUpdater>();
+        metricsRegistry = new MetricsRegistry();
         
         LOGGER.exiting(CLASS_NAME, "Core");
     }
@@ -103,6 +117,7 @@ public class Core {
         nodeProfileObjectConfig = new NodeProfileObjectConfig();
         localObjectConfigs = new LinkedList<LocalObjectConfig>();
         localObjectUpdaters = new LinkedList<LocalObjectUpdater>();
+        metricsRegistry = new MetricsRegistry();
         
         LOGGER.exiting(CLASS_NAME, "Core");
     }
@@ -167,6 +182,14 @@ public class Core {
         return remoteManager;
     }
     
+    /**
+     * 受信したプロパティの値を保持するRemotePropertyCacheを返す。initializeメソッドを呼び出すまではnullを返す。
+     * @return 利用中のRemotePropertyCache
+     */
+    public RemotePropertyCache getRemotePropertyCache() {
+        return remotePropertyCache;
+    }
+    
     /**
      * 利用中のLocalObjectManagerを返す。initializeメソッドを呼び出すまではnullを返す。
      * @return 利用中のLocalObjectManager
@@ -236,10 +259,43 @@ public class Core {
         return captureResultObserver;
     }
     
+    /**
+     * 送受信やTransactionの統計を記録するMetricsRegistryを返す。
+     * @return 統計を記録するMetricsRegistry
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+    
+    /**
+     * MetricsRegistryのメトリクスをMBeanとして公開する場合のドメインを設定する。
+     * nullでなければ、startServiceでプラットフォームのMBeanServerに登録され、stopServiceで登録が抹消される。
+     * 実行中に呼び出した場合には設定は変更されずfalseを返す。
+     * @param domain MBeanのドメイン、公開しない場合にはnull
+     * @return 設定の変更に成功した場合にはtrue、それ以外の場合にはfalse
+     */
+    public boolean setMetricsMBeanDomain(String domain) {
+        if (inService) {
+            return false;
+        }
+        
+        metricsMBeanDomain = domain;
+        return true;
+    }
+    
+    /**
+     * MetricsRegistryのメトリクスをMBeanとして公開する場合のドメインを返す。
+     * @return MBeanのドメイン、公開しない場合にはnull
+     */
+    public String getMetricsMBeanDomain() {
+        return metricsMBeanDomain;
+    }
+    
     private TransactionManager createTransactionManager(Subnet subnet) {
         LOGGER.entering(CLASS_NAME, "createTransactionManager", new Object[]{subnet});
         
         TransactionManager transactionManager = new TransactionManager(subnet);
+        transactionManager.setMetricsRegistry(metricsRegistry);
         
         LOGGER.exiting(CLASS_NAME, "createTransactionManager", transactionManager);
         return transactionManager;
@@ -248,12 +304,31 @@ public class Core {
     private RemoteObjectManager createRemoteObjectManager() {
         LOGGER.entering(CLASS_NAME, "createRemoteObjectManager");
         
+        SingleFlight<Object, Object> singleFlight = new SingleFlight<Object, Object>();
+        singleFlight.registerMetrics(metricsRegistry, "remoteobject.singleflight");
+        
         RemoteObjectManager remoteManager = new RemoteObjectManager();
+        remoteManager.setSingleFlight(singleFlight);
         
         LOGGER.exiting(CLASS_NAME, "createRemoteObjectManager", remoteManager);
         return remoteManager;
     }
     
+    private RemoteObjectManagerObserver createRemoteObjectManagerObserver(final RemotePropertyCache remotePropertyCache, final TransactionManager transactionManager) {
+        LOGGER.entering(CLASS_NAME, "createRemoteObjectManagerObserver", new Object[]{remotePropertyCache, transactionManager});
+        
+        RemoteObjectManagerObserver observer = new RemoteObjectManagerObserver() {
+            @Override
+            public void notifyNodeRemoved(RemoteObjectManager manager, Node node) {
+                remotePropertyCache.invalidateNode(node);
+                transactionManager.removeNodeMetrics(node);
+            }
+        };
+        
+        LOGGER.exiting(CLASS_NAME, "createRemoteObjectManagerObserver", observer);
+        return observer;
+    }
+    
     private LocalObjectManager createLocalObjectManager() {
         LOGGER.entering(CLASS_NAME, "createLocalObjectManager");
         
@@ -267,6 +342,7 @@ public class Core {
         LOGGER.entering(CLASS_NAME, "createRequestDispatcher");
         
         RequestDispatcher requestDispatcher = new RequestDispatcher();
+        requestDispatcher.setMetricsRegistry(metricsRegistry);
         
         LOGGER.exiting(CLASS_NAME, "createRequestDispatcher", requestDispatcher);
         return requestDispatcher;
@@ -320,8 +396,10 @@ public class Core {
     private MainLoop createMainLoop(Subnet subnet, Listener... listeners) {
         LOGGER.entering(CLASS_NAME, "createMainLoop", new Object[]{subnet, listeners});
         
-        MainLoop mainLoop = new MainLoop();
+        MainLoop mainLoop = new MainLoop(mainLoopWorkerCount);
         mainLoop.setSubnet(subnet);
+        mainLoop.setMetricsRegistry(metricsRegistry);
+        mainLoop.setTransactionManager(transactionManager);
         for (Listener listener: listeners) {
             mainLoop.addListener(listener);
         }
@@ -330,6 +408,35 @@ public class Core {
         return mainLoop;
     }
     
+    /**
+     * MainLoopが利用するワーカースレッド数を設定する。
+     * 0を指定した場合には、受信したフレームはMainLoopのスレッドで逐次処理される。
+     * 実行中に呼び出した場合には設定は変更されずfalseを返す。
+     * @param workerCount ワーカースレッド数
+     * @return 設定の変更に成功した場合にはtrue、それ以外の場合にはfalse
+     * @throws IllegalArgumentException workerCountが負の場合
+     */
+    public boolean setMainLoopWorkerCount(int workerCount) {
+        if (workerCount < 0) {
+            throw new IllegalArgumentException("invalid worker count: " + workerCount);
+        }
+        
+        if (inService) {
+            return false;
+        }
+        
+        mainLoopWorkerCount = workerCount;
+        return true;
+    }
+    
+    /**
+     * MainLoopが利用するワーカースレッド数を返す。
+     * @return ワーカースレッド数
+     */
+    public int getMainLoopWorkerCount() {
+        return mainLoopWorkerCount;
+    }
+    
     /**
      * Coreが初期化済みであるか返す。
      * @return 初期化済みであればtrue、初期化済みでなければfalse
@@ -367,6 +474,16 @@ public class Core {
             return null;
         }
     }
+    
+    private InetSubnet getInetSubnet() {
+        if (subnet instanceof InetSubnet) {
+            return (InetSubnet)subnet;
+        } else if (subnet instanceof ExtendedSubnet) {
+            return ((ExtendedSubnet)subnet).getSubnet(InetSubnet.class);
+        } else {
+            return null;
+        }
+    }
 
     /**
      * Coreを初期化する。
@@ -382,6 +499,8 @@ public class Core {
         
         transactionManager = createTransactionManager(subnet);
         remoteManager = createRemoteObjectManager();
+        remotePropertyCache = new RemotePropertyCache();
+        remoteManager.addObserver(createRemoteObjectManagerObserver(remotePropertyCache, transactionManager));
         localManager = createLocalObjectManager();
 
         setGetRequestProcessor = createSetGetRequestProcessor(localManager);
@@ -404,6 +523,11 @@ public class Core {
             captureEnabled = true;
         }
         
+        InetSubnet inetSubnet = getInetSubnet();
+        if (inetSubnet != null) {
+            inetSubnet.setMetricsRegistry(metricsRegistry);
+        }
+        
         try {
             LocalObjectCreatorResult creatorResult = new LocalObjectCreator(nodeProfileObjectConfig).create(this);
             nodeProfileObject = creatorResult.object;
@@ -444,7 +568,7 @@ public class Core {
     private void startMainLoopThread() {
         LOGGER.entering(CLASS_NAME, "startMainLoopThread");
         
-        mainLoop = createMainLoop(subnet, requestDispatcher, transactionManager);
+        mainLoop = createMainLoop(subnet, remoteManager, requestDispatcher, transactionManager, remotePropertyCache);
         mainLoopThread = new Thread(mainLoop);
         mainLoopThread.start();
         
@@ -514,6 +638,10 @@ public class Core {
         }
         
         startThreads();
+        
+        if (metricsMBeanDomain != null) {
+            metricsRegistry.registerMBeans(ManagementFactory.getPlatformMBeanServer(), metricsMBeanDomain);
+        }
 
         LOGGER.exiting(CLASS_NAME, "startService", true);
         return true;
@@ -535,6 +663,8 @@ public class Core {
         stopUpdateThreads();
         stopMainLoopThread();
         
+        metricsRegistry.unregisterMBeans();
+        
         if (managedSubnet) {
             if (!subnet.stopService()) {
                 LOGGER.logp(Level.WARNING, CLASS_NAME, "startService", "has already stopped");
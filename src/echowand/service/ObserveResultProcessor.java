@@ -1,6 +1,7 @@
 package echowand.service;
 
 import echowand.service.result.ObserveResult;
+import echowand.common.ESV;
 import echowand.logic.DefaultRequestProcessor;
 import echowand.net.Frame;
 import echowand.net.Subnet;
@@ -56,6 +57,17 @@ public class ObserveResultProcessor extends DefaultRequestProcessor {
     private synchronized List<ObserveResult> cloneResultNotifies() {
         return new ArrayList<ObserveResult>(observeResults);
     }
+
+    /**
+     * 指定されたESVのフレームを処理対象とするか返す。
+     * INF、INFCのみを処理対象とする。
+     * @param esv 調べるESV
+     * @return 処理対象であればtrue、そうでなければfalse
+     */
+    @Override
+    public boolean isTargetESV(ESV esv) {
+        return esv == ESV.INF || esv == ESV.INFC;
+    }
     
     /**
      * ESVがINFであるフレームの処理を行う。
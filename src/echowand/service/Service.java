@@ -5,6 +5,8 @@ import echowand.common.Data;
 import echowand.common.EOJ;
 import echowand.common.EPC;
 import echowand.logic.AnnounceTransactionConfig;
+import echowand.logic.Deadline;
+import echowand.logic.PreparedRequest;
 import echowand.logic.SetGetTransactionConfig;
 import echowand.logic.Transaction;
 import echowand.logic.TransactionListener;
@@ -22,6 +24,7 @@ import echowand.object.LocalObjectManager;
 import echowand.object.ObjectData;
 import echowand.object.RemoteObject;
 import echowand.object.RemoteObjectManager;
+import echowand.object.RemotePropertyCache;
 import echowand.service.result.CaptureListener;
 import echowand.service.result.CaptureResult;
 import echowand.service.result.ResultBase;
@@ -102,6 +105,14 @@ public class Service {
         return core.getRemoteObjectManager();
     }
     
+    /**
+     * 受信したプロパティの値を保持するRemotePropertyCacheを返す。
+     * @return 利用するRemotePropertyCache
+     */
+    public RemotePropertyCache getRemotePropertyCache() {
+        return core.getRemotePropertyCache();
+    }
+    
     /**
      * 利用するTransactionManagerを返す。
      * @return 利用するTransactionManager
@@ -288,9 +299,7 @@ public class Service {
         return new Thread() {
             @Override
             public void run() {
-                synchronized (getCore().getMainLoop()) {
-                    runnable.run();
-                }
+                getCore().getMainLoop().runExclusive(runnable);
             }
         };
     }
@@ -301,9 +310,7 @@ public class Service {
         return th;
     }
     
-    public GetResult doGet(Node node, EOJ eoj, List<EPC> epcs, int timeout, GetListener getListener) throws SubnetException {
-        LOGGER.entering(CLASS_NAME, "doGet", new Object[]{node, eoj, epcs, timeout, getListener});
-        
+    private GetResult doGet(Node node, EOJ eoj, List<EPC> epcs, int timeout, Deadline deadline, GetListener getListener) throws SubnetException {
         GetResult getResult = new GetResult(core.getTimestampManager());
         getResult.setGetListener(getListener);
         
@@ -311,18 +318,82 @@ public class Service {
         
         Transaction transaction = new Transaction(getSubnet(), getTransactionManager(), transactionConfig);
         transaction.setTimeout(timeout);
+        transaction.setDeadline(deadline);
         
         transaction.addTransactionListener(new ResultBaseTransactionListener(getResult));
+        getResult.setTransaction(transaction);
         
         transaction.execute();
         
+        return getResult;
+    }
+    
+    public GetResult doGet(Node node, EOJ eoj, List<EPC> epcs, int timeout, GetListener getListener) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "doGet", new Object[]{node, eoj, epcs, timeout, getListener});
+        
+        GetResult getResult = doGet(node, eoj, epcs, timeout, null, getListener);
+        
         LOGGER.exiting(CLASS_NAME, "doGet", getResult);
         return getResult;
     }
     
-    public SetResult doSet(Node node, EOJ eoj, List<Pair<EPC, Data>> properties, int timeout, boolean responseRequired, SetListener setListener) throws SubnetException {
-        LOGGER.entering(CLASS_NAME, "doSet", new Object[]{node, eoj, properties, timeout, responseRequired, setListener});
+    /**
+     * 期限を指定してプロパティの読み出しを行う。
+     * トランザクションは期限に達した時点で終了する。
+     * @param node 読み出しを行うノード
+     * @param eoj 読み出しを行うオブジェクトのEOJ
+     * @param epcs 読み出しを行うプロパティのEPCのリスト
+     * @param deadline トランザクションの期限
+     * @param getListener 結果を受け取るGetListener
+     * @return 読み出しの結果を表すGetResult
+     * @throws SubnetException 送信に失敗した場合
+     */
+    public GetResult doGet(Node node, EOJ eoj, List<EPC> epcs, Deadline deadline, GetListener getListener) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "doGet", new Object[]{node, eoj, epcs, deadline, getListener});
+        
+        GetResult getResult = doGet(node, eoj, epcs, -1, deadline, getListener);
+        
+        LOGGER.exiting(CLASS_NAME, "doGet", getResult);
+        return getResult;
+    }
+    
+    public PreparedRequest prepareGet(Node node, EOJ eoj, List<EPC> epcs) {
+        LOGGER.entering(CLASS_NAME, "prepareGet", new Object[]{node, eoj, epcs});
         
+        PreparedRequest preparedRequest = new PreparedRequest(createGetTransactionConfig(node, eoj, epcs));
+        
+        LOGGER.exiting(CLASS_NAME, "prepareGet", preparedRequest);
+        return preparedRequest;
+    }
+    
+    public GetResult doGet(PreparedRequest preparedRequest, int timeout, GetListener getListener) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "doGet", new Object[]{preparedRequest, timeout, getListener});
+        
+        GetResult getResult = new GetResult(core.getTimestampManager());
+        getResult.setGetListener(getListener);
+        
+        Transaction transaction = new Transaction(getSubnet(), getTransactionManager(), preparedRequest);
+        transaction.setTimeout(timeout);
+        
+        transaction.addTransactionListener(new ResultBaseTransactionListener(getResult));
+        getResult.setTransaction(transaction);
+        
+        transaction.execute();
+        
+        LOGGER.exiting(CLASS_NAME, "doGet", getResult);
+        return getResult;
+    }
+    
+    public GetResult doGet(PreparedRequest preparedRequest, int timeout) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "doGet", new Object[]{preparedRequest, timeout});
+        
+        GetResult getResult = doGet(preparedRequest, timeout, null);
+        
+        LOGGER.exiting(CLASS_NAME, "doGet", getResult);
+        return getResult;
+    }
+    
+    private SetResult doSet(Node node, EOJ eoj, List<Pair<EPC, Data>> properties, int timeout, Deadline deadline, boolean responseRequired, SetListener setListener) throws SubnetException {
         SetResult setResult = new SetResult(responseRequired, core.getTimestampManager());
         setResult.setSetListener(setListener);
         
@@ -331,18 +402,47 @@ public class Service {
         
         Transaction transaction = new Transaction(getSubnet(), getTransactionManager(), transactionConfig);
         transaction.setTimeout(timeout);
+        transaction.setDeadline(deadline);
         
         transaction.addTransactionListener(new ResultBaseTransactionListener(setResult));
+        setResult.setTransaction(transaction);
         
         transaction.execute();
+        
+        return setResult;
+    }
+    
+    public SetResult doSet(Node node, EOJ eoj, List<Pair<EPC, Data>> properties, int timeout, boolean responseRequired, SetListener setListener) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "doSet", new Object[]{node, eoj, properties, timeout, responseRequired, setListener});
+        
+        SetResult setResult = doSet(node, eoj, properties, timeout, null, responseRequired, setListener);
 
         LOGGER.exiting(CLASS_NAME, "doSet", setResult);
         return setResult;
     }
     
-    public SetGetResult doSetGet(Node node, EOJ eoj, List<Pair<EPC, Data>> properties, List<EPC> epcs, int timeout, SetGetListener setGetListener) throws SubnetException {
-        LOGGER.entering(CLASS_NAME, "doSetGet", new Object[]{node, eoj, properties, epcs, timeout, setGetListener});
+    /**
+     * 期限を指定してプロパティの書き込みを行う。
+     * トランザクションは期限に達した時点で終了する。
+     * @param node 書き込みを行うノード
+     * @param eoj 書き込みを行うオブジェクトのEOJ
+     * @param properties 書き込みを行うプロパティのEPCとデータのリスト
+     * @param deadline トランザクションの期限
+     * @param responseRequired 応答を要求する場合にはtrue、そうでなければfalse
+     * @param setListener 結果を受け取るSetListener
+     * @return 書き込みの結果を表すSetResult
+     * @throws SubnetException 送信に失敗した場合
+     */
+    public SetResult doSet(Node node, EOJ eoj, List<Pair<EPC, Data>> properties, Deadline deadline, boolean responseRequired, SetListener setListener) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "doSet", new Object[]{node, eoj, properties, deadline, responseRequired, setListener});
         
+        SetResult setResult = doSet(node, eoj, properties, -1, deadline, responseRequired, setListener);
+
+        LOGGER.exiting(CLASS_NAME, "doSet", setResult);
+        return setResult;
+    }
+    
+    private SetGetResult doSetGet(Node node, EOJ eoj, List<Pair<EPC, Data>> properties, List<EPC> epcs, int timeout, Deadline deadline, SetGetListener setGetListener) throws SubnetException {
         SetGetResult setGetResult = new SetGetResult(core.getTimestampManager());
         setGetResult.setSetGetListener(setGetListener);
         
@@ -350,10 +450,41 @@ public class Service {
         
         Transaction transaction = new Transaction(getSubnet(), getTransactionManager(), transactionConfig);
         transaction.setTimeout(timeout);
+        transaction.setDeadline(deadline);
         
         transaction.addTransactionListener(new ResultBaseTransactionListener(setGetResult));
+        setGetResult.setTransaction(transaction);
         
         transaction.execute();
+        
+        return setGetResult;
+    }
+    
+    public SetGetResult doSetGet(Node node, EOJ eoj, List<Pair<EPC, Data>> properties, List<EPC> epcs, int timeout, SetGetListener setGetListener) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "doSetGet", new Object[]{node, eoj, properties, epcs, timeout, setGetListener});
+        
+        SetGetResult setGetResult = doSetGet(node, eoj, properties, epcs, timeout, null, setGetListener);
+
+        LOGGER.exiting(CLASS_NAME, "doSetGet", setGetResult);
+        return setGetResult;
+    }
+    
+    /**
+     * 期限を指定してプロパティの書き込みと読み出しを行う。
+     * トランザクションは期限に達した時点で終了する。
+     * @param node 書き込みと読み出しを行うノード
+     * @param eoj 書き込みと読み出しを行うオブジェクトのEOJ
+     * @param properties 書き込みを行うプロパティのEPCとデータのリスト
+     * @param epcs 読み出しを行うプロパティのEPCのリスト
+     * @param deadline トランザクションの期限
+     * @param setGetListener 結果を受け取るSetGetListener
+     * @return 書き込みと読み出しの結果を表すSetGetResult
+     * @throws SubnetException 送信に失敗した場合
+     */
+    public SetGetResult doSetGet(Node node, EOJ eoj, List<Pair<EPC, Data>> properties, List<EPC> epcs, Deadline deadline, SetGetListener setGetListener) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "doSetGet", new Object[]{node, eoj, properties, epcs, deadline, setGetListener});
+        
+        SetGetResult setGetResult = doSetGet(node, eoj, properties, epcs, -1, deadline, setGetListener);
 
         LOGGER.exiting(CLASS_NAME, "doSetGet", setGetResult);
         return setGetResult;
@@ -386,13 +517,12 @@ public class Service {
         return updateRemoteInfoResult;
     }
     
-    public UpdateRemoteInfoResult doUpdateRemoteInfo(Node node, int timeout, UpdateRemoteInfoListener updateRemoteInfoListener) throws SubnetException {
-        LOGGER.entering(CLASS_NAME, "doUpdateRemoteInfo", new Object[]{node, timeout, updateRemoteInfoListener});
-        
+    private UpdateRemoteInfoResult doUpdateRemoteInfo(Node node, int timeout, Deadline deadline, UpdateRemoteInfoListener updateRemoteInfoListener) throws SubnetException {
         InstanceListRequestExecutor executor = new InstanceListRequestExecutor(
                 getSubnet(), getTransactionManager(), getRemoteObjectManager());
         
         executor.setNode(node);
+        executor.setDeadline(deadline);
         
         UpdateRemoteInfoResult updateRemoteInfoResult = new UpdateRemoteInfoResult(executor, core.getTimestampManager());
         
@@ -406,6 +536,32 @@ public class Service {
         
         executor.execute();
         
+        return updateRemoteInfoResult;
+    }
+    
+    public UpdateRemoteInfoResult doUpdateRemoteInfo(Node node, int timeout, UpdateRemoteInfoListener updateRemoteInfoListener) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "doUpdateRemoteInfo", new Object[]{node, timeout, updateRemoteInfoListener});
+        
+        UpdateRemoteInfoResult updateRemoteInfoResult = doUpdateRemoteInfo(node, timeout, null, updateRemoteInfoListener);
+        
+        LOGGER.exiting(CLASS_NAME, "doUpdateRemoteInfo", updateRemoteInfoResult);
+        return updateRemoteInfoResult;
+    }
+    
+    /**
+     * 期限を指定して指定されたノードのインスタンスリストを要求し、リモートオブジェクトの情報を更新する。
+     * トランザクションは期限に達した時点で終了する。
+     * @param node インスタンスリストを要求するノード
+     * @param deadline トランザクションの期限
+     * @param updateRemoteInfoListener 結果を受け取るUpdateRemoteInfoListener
+     * @return 更新の結果を表すUpdateRemoteInfoResult
+     * @throws SubnetException 送信に失敗した場合
+     */
+    public UpdateRemoteInfoResult doUpdateRemoteInfo(Node node, Deadline deadline, UpdateRemoteInfoListener updateRemoteInfoListener) throws SubnetException {
+        LOGGER.entering(CLASS_NAME, "doUpdateRemoteInfo", new Object[]{node, deadline, updateRemoteInfoListener});
+        
+        UpdateRemoteInfoResult updateRemoteInfoResult = doUpdateRemoteInfo(node, -1, deadline, updateRemoteInfoListener);
+        
         LOGGER.exiting(CLASS_NAME, "doUpdateRemoteInfo", updateRemoteInfoResult);
         return updateRemoteInfoResult;
     }
@@ -1,74 +1,66 @@
 package echowand.service;
 
 import echowand.net.Frame;
-import java.util.WeakHashMap;
+import echowand.net.FrameStage;
 import java.util.logging.Logger;
 
 /**
- *
+ * Frameのタイムスタンプを管理する。
+ * タイムスタンプはSystem.currentTimeMillisの値でFrameに記録される。
+ * markはこれに加えてFrameのCAPTUREDの段階の時刻をSystem.nanoTimeの値で記録する。
  * @author ymakino
  */
 public class TimestampManager {
-    private static final Logger LOGGER = Logger.getLogger(TimestampObserver.class.getName());
-    private static final String CLASS_NAME = TimestampObserver.class.getName();
-    
-    private WeakHashMap<Frame, Long> timestampMap;
+    private static final Logger LOGGER = Logger.getLogger(TimestampManager.class.getName());
+    private static final String CLASS_NAME = TimestampManager.class.getName();
     
     public TimestampManager() {
         LOGGER.entering(CLASS_NAME, "TimestampManager");
-        
-        timestampMap = new WeakHashMap<Frame, Long>();
-        
         LOGGER.exiting(CLASS_NAME, "TimestampManager");
     }
     
-    public synchronized long put(Frame frame, long timestamp) {
+    /**
+     * 指定されたFrameに現在の時刻をタイムスタンプとして記録する。
+     * @param frame タイムスタンプを記録するFrame
+     */
+    public void mark(Frame frame) {
+        frame.markStage(FrameStage.CAPTURED);
+        frame.setTimestamp(System.currentTimeMillis());
+    }
+    
+    public long put(Frame frame, long timestamp) {
         LOGGER.entering(CLASS_NAME, "put", new Object[]{frame, timestamp});
         
-        Long prev = timestampMap.put(frame, timestamp);
-        
-        if (prev == null) {
-            return -1;
-        }
+        long prev = frame.getTimestamp(-1);
+        frame.setTimestamp(timestamp);
         
         LOGGER.exiting(CLASS_NAME, "put", prev);
         return prev;
     }
     
-    public synchronized long get(Frame frame) {
-        LOGGER.entering(CLASS_NAME, "get",  frame);
-        
-        Long timestamp = timestampMap.get(frame);
+    public long get(Frame frame) {
+        LOGGER.entering(CLASS_NAME, "get", frame);
         
-        if (timestamp == null) {
-            return -1;
-        }
+        long timestamp = frame.getTimestamp(-1);
         
-        LOGGER.exiting(CLASS_NAME, "put", timestamp);
+        LOGGER.exiting(CLASS_NAME, "get", timestamp);
         return timestamp;
     }
     
-    public synchronized long get(Frame frame, long defaultValue) {
-        LOGGER.entering(CLASS_NAME, "get",  new Object[]{frame, defaultValue});
+    public long get(Frame frame, long defaultValue) {
+        LOGGER.entering(CLASS_NAME, "get", new Object[]{frame, defaultValue});
         
-        Long timestamp = timestampMap.get(frame);
-        
-        if (timestamp == null) {
-            timestamp = defaultValue;
-        }
+        long timestamp = frame.getTimestamp(defaultValue);
         
         LOGGER.exiting(CLASS_NAME, "get", timestamp);
         return timestamp;
     }
     
-    public synchronized long remove(Frame frame) {
-        LOGGER.entering(CLASS_NAME, "remove",  frame);
-        
-        Long timestamp = timestampMap.remove(frame);
+    public long remove(Frame frame) {
+        LOGGER.entering(CLASS_NAME, "remove", frame);
         
-        if (timestamp == null) {
-            timestamp = (long)-1;
-        }
+        long timestamp = frame.getTimestamp(-1);
+        frame.clearTimestamp();
         
         LOGGER.exiting(CLASS_NAME, "remove", timestamp);
         return timestamp;
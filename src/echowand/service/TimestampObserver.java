@@ -52,8 +52,7 @@ public class TimestampObserver implements CaptureSubnetObserver {
     public void notifySent(Frame frame, boolean success) {
         LOGGER.entering(CLASS_NAME, "notifySent", new Object[]{frame, success});
         
-        long timestamp = System.currentTimeMillis();
-        timestampManager.put(frame, timestamp);
+        timestampManager.mark(frame);
         
         LOGGER.exiting(CLASS_NAME, "notifySent");
     }
@@ -62,8 +61,7 @@ public class TimestampObserver implements CaptureSubnetObserver {
     public void notifyReceived(Frame frame) {
         LOGGER.entering(CLASS_NAME, "notifyReceived", frame);
         
-        long timestamp = System.currentTimeMillis();
-        timestampManager.put(frame, timestamp);
+        timestampManager.mark(frame);
         
         LOGGER.exiting(CLASS_NAME, "notifyReceived");
     }
@@ -4,6 +4,7 @@ import echowand.common.Data;
 import echowand.common.EOJ;
 import echowand.common.EPC;
 import echowand.common.ESV;
+import echowand.logic.Transaction;
 import echowand.net.CommonFrame;
 import echowand.net.Frame;
 import echowand.net.Node;
@@ -121,6 +122,8 @@ public abstract class ResultBase<ResultType extends ResultBase> {
     private Class<ResultType> cls;
     private TimestampManager timestampManager;
     private ResultListener<ResultType> listener;
+    private Transaction transaction;
+    private boolean cancelled;
     
     public ResultBase(Class<ResultType> cls, TimestampManager timestampManager) {
         LOGGER.entering(CLASS_NAME, "ResultBase", new Object[]{cls, timestampManager});
@@ -183,6 +186,55 @@ public abstract class ResultBase<ResultType extends ResultBase> {
         LOGGER.exiting(CLASS_NAME, "finish");
     }
     
+    /**
+     * この結果を生成するTransactionを設定する。
+     * 設定したTransactionはcancelを呼び出した時に取り消される。
+     * @param transaction この結果を生成するTransaction
+     */
+    public synchronized void setTransaction(Transaction transaction) {
+        LOGGER.entering(CLASS_NAME, "setTransaction", transaction);
+        
+        this.transaction = transaction;
+        
+        LOGGER.exiting(CLASS_NAME, "setTransaction");
+    }
+    
+    /**
+     * 処理を取り消す。
+     * Transactionが設定されている場合にはそのTransactionを取り消し、結果を終了させる。
+     * @return 取り消した場合にはtrue、すでに終了している場合にはfalse
+     */
+    public boolean cancel() {
+        LOGGER.entering(CLASS_NAME, "cancel");
+        
+        Transaction t;
+        synchronized (this) {
+            if (done) {
+                LOGGER.exiting(CLASS_NAME, "cancel", false);
+                return false;
+            }
+            cancelled = true;
+            t = transaction;
+        }
+        
+        if (t != null) {
+            t.cancel();
+        }
+        
+        finish();
+        
+        LOGGER.exiting(CLASS_NAME, "cancel", true);
+        return true;
+    }
+    
+    /**
+     * 処理が取り消されたか返す。
+     * @return 取り消されていればtrue、そうでなければfalse
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+    
     public synchronized boolean isDone() {
         LOGGER.entering(CLASS_NAME, "isDone");
         
@@ -73,6 +73,19 @@ public class UpdateRemoteInfoResult {
         return result;
     }
 
+    /**
+     * インスタンスリストの要求を取り消す。
+     * @return 取り消した場合にはtrue、開始前か終了後の場合にはfalse
+     */
+    public boolean cancel() {
+        LOGGER.entering(CLASS_NAME, "cancel");
+
+        boolean result = executor.cancel();
+
+        LOGGER.exiting(CLASS_NAME, "cancel", result);
+        return result;
+    }
+
     public void join() throws InterruptedException {
         LOGGER.entering(CLASS_NAME, "join");
 
@@ -0,0 +1,41 @@
+package echowand.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 単調に増加するカウンタ
+ * 複数のスレッドから同時に更新されても競合が起きにくいようにLongAdderで値を保持する。
+ * @author ymakino
+ */
+public class Counter implements CounterMBean {
+    private final LongAdder count = new LongAdder();
+    
+    /**
+     * カウンタを1増やす。
+     */
+    public void increment() {
+        count.increment();
+    }
+    
+    /**
+     * カウンタを指定された値だけ増やす。
+     * @param n 増やす値
+     */
+    public void add(long n) {
+        count.add(n);
+    }
+    
+    /**
+     * 現在の値を返す。
+     * @return 現在の値
+     */
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+    
+    @Override
+    public String toString() {
+        return "Counter(" + getCount() + ")";
+    }
+}
@@ -0,0 +1,14 @@
+package echowand.util;
+
+/**
+ * JMXで公開するCounterの属性
+ * @author ymakino
+ */
+public interface CounterMBean {
+    
+    /**
+     * 現在の値を返す。
+     * @return 現在の値
+     */
+    public long getCount();
+}
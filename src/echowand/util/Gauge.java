@@ -0,0 +1,15 @@
+package echowand.util;
+
+/**
+ * 参照した時点の値を返すメトリクス
+ * キューの長さなど、他のオブジェクトが保持している値を公開するために利用する。
+ * @author ymakino
+ */
+public interface Gauge {
+    
+    /**
+     * 現在の値を返す。
+     * @return 現在の値
+     */
+    public long getValue();
+}
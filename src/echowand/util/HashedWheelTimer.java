@@ -0,0 +1,414 @@
+package echowand.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 多数のタイムアウトを一つのスレッドで管理するタイマー
+ * 時間をtickDuration毎のスロットに分割したホイールでタイムアウトを管理するため、登録と取り消しは一定の時間で行われる。
+ * スロットの処理中は次の期限まで待機するため、タスクは期限より前に実行されることはなく、期限の直後に実行される。
+ * ただし、待機中に登録された期限の近いタスクの実行は最大でtickDurationだけ遅れる場合がある。期限に達したタスクはExecutorで実行される。
+ * @author ymakino
+ */
+public class HashedWheelTimer {
+    private static final Logger LOGGER = Logger.getLogger(HashedWheelTimer.class.getName());
+    private static final String CLASS_NAME = HashedWheelTimer.class.getName();
+
+    /**
+     * tickDurationのデフォルト値(ミリ秒)
+     */
+    public static final long DEFAULT_TICK_DURATION = 5;
+
+    /**
+     * ホイールのスロット数のデフォルト値
+     */
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    private static HashedWheelTimer defaultTimer;
+
+    private static final int STATE_INIT = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime;
+    private final Executor executor;
+
+    private final ConcurrentLinkedQueue<Timeout> newTimeouts;
+    private final ConcurrentLinkedQueue<Timeout> cancelledTimeouts;
+    private final AtomicInteger pendingCount;
+
+    private final Thread workerThread;
+    private volatile boolean stopped = false;
+
+    /**
+     * タイマーに登録されたタスクを表す。
+     * cancelを呼び出すことでタスクの実行を取り消すことができる。
+     */
+    public static class Timeout {
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 登録されたタスクを返す。
+         * @return 登録されたタスク
+         */
+        public Runnable getTask() {
+            return task;
+        }
+
+        /**
+         * タスクの実行を取り消す。
+         * @return 取り消しに成功した場合にはtrue、すでに実行されているか取り消されている場合にはfalse
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_INIT, STATE_CANCELLED)) {
+                return false;
+            }
+
+            timer.pendingCount.decrementAndGet();
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        /**
+         * タスクの実行が取り消されたか返す。
+         * @return 取り消されていればtrue、そうでなければfalse
+         */
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        /**
+         * タスクが期限に達したか返す。
+         * @return 期限に達していればtrue、そうでなければfalse
+         */
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+                return;
+            }
+
+            timer.pendingCount.decrementAndGet();
+
+            try {
+                timer.executor.execute(task);
+            } catch (RuntimeException ex) {
+                LOGGER.logp(Level.WARNING, CLASS_NAME, "Timeout.expire", "cannot execute task: " + task, ex);
+            }
+        }
+    }
+
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        public void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        public Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+
+            if (timeout == head) {
+                head = next;
+            }
+
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+
+        public long expireTimeouts(long now) {
+            long next = -1;
+            Timeout timeout = head;
+
+            while (timeout != null) {
+                if (timeout.isCancelled()) {
+                    timeout = remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+                    Timeout nextTimeout = remove(timeout);
+                    timeout.expire();
+                    timeout = nextTimeout;
+                } else {
+                    if (timeout.remainingRounds <= 0 && (next < 0 || timeout.deadline < next)) {
+                        next = timeout.deadline;
+                    }
+                    timeout = timeout.next;
+                }
+            }
+
+            return next;
+        }
+
+        public void decrementRounds() {
+            for (Timeout timeout = head; timeout != null; timeout = timeout.next) {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        public DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * 全体で共有されるHashedWheelTimerを返す。
+     * 期限に達したタスクはデーモンスレッドのスレッドプールで実行される。
+     * @return 共有されるHashedWheelTimer
+     */
+    public static synchronized HashedWheelTimer getDefault() {
+        if (defaultTimer == null) {
+            ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory("HashedWheelTimer-executor"));
+            defaultTimer = new HashedWheelTimer(DEFAULT_TICK_DURATION, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL, executor);
+        }
+        return defaultTimer;
+    }
+
+    /**
+     * 期限に達したタスクをタイマーのスレッドで実行するHashedWheelTimerを生成する。
+     * @param tickDuration スロット一つ分の時間
+     * @param unit tickDurationの単位
+     * @param ticksPerWheel ホイールのスロット数
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        this(tickDuration, unit, ticksPerWheel, null);
+    }
+
+    /**
+     * HashedWheelTimerを生成する。
+     * executorにnullを指定した場合には、期限に達したタスクはタイマーのスレッドで実行される。
+     * @param tickDuration スロット一つ分の時間
+     * @param unit tickDurationの単位
+     * @param ticksPerWheel ホイールのスロット数
+     * @param executor 期限に達したタスクを実行するExecutor
+     * @throws IllegalArgumentException tickDurationかticksPerWheelが1未満の場合
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel, Executor executor) {
+        if (tickDuration < 1) {
+            throw new IllegalArgumentException("invalid tickDuration: " + tickDuration);
+        }
+
+        if (ticksPerWheel < 1 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("invalid ticksPerWheel: " + ticksPerWheel);
+        }
+
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        for (int i=0; i<size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+
+        if (executor == null) {
+            this.executor = new Executor() {
+                @Override
+                public void execute(Runnable runnable) {
+                    runnable.run();
+                }
+            };
+        } else {
+            this.executor = executor;
+        }
+
+        this.newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+        this.cancelledTimeouts = new ConcurrentLinkedQueue<Timeout>();
+        this.pendingCount = new AtomicInteger(0);
+
+        this.startTime = System.nanoTime();
+        this.workerThread = new DaemonThreadFactory("HashedWheelTimer").newThread(new Worker());
+        this.workerThread.start();
+    }
+
+    /**
+     * 指定された時間の経過後に実行されるタスクを登録する。
+     * @param task 実行するタスク
+     * @param delay タスクを実行するまでの時間
+     * @param unit delayの単位
+     * @return 登録されたタスクを表すTimeout
+     * @throws IllegalStateException タイマーが停止している場合
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+
+        if (stopped) {
+            throw new IllegalStateException("timer is stopped");
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        pendingCount.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 実行待ちのタスク数を返す。
+     * @return 実行待ちのタスク数
+     */
+    public int countPendingTimeouts() {
+        return pendingCount.get();
+    }
+
+    /**
+     * タイマーを停止する。登録されていたタスクは実行されない。
+     */
+    public void stop() {
+        stopped = true;
+        workerThread.interrupt();
+    }
+
+    /**
+     * タイマーが停止しているか返す。
+     * @return 停止していればtrue、そうでなければfalse
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private class Worker implements Runnable {
+        private long tick = 0;
+
+        private void transferTimeouts() {
+            for (int i=0; i<100000; i++) {
+                Timeout timeout = newTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+
+                if (timeout.isCancelled()) {
+                    continue;
+                }
+
+                long calculated = timeout.deadline / tickNanos;
+                timeout.remainingRounds = (calculated - tick) / wheel.length;
+                long ticks = Math.max(calculated, tick);
+                wheel[(int)(ticks & mask)].add(timeout);
+            }
+        }
+
+        private void removeCancelledTimeouts() {
+            for (;;) {
+                Timeout timeout = cancelledTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+        }
+
+        private long currentTime() {
+            return System.nanoTime() - startTime;
+        }
+
+        private void sleepUntil(long deadline) throws InterruptedException {
+            for (;;) {
+                long sleepNanos = deadline - currentTime();
+
+                if (sleepNanos <= 0) {
+                    return;
+                }
+
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            }
+        }
+
+        private void processTick() throws InterruptedException {
+            Bucket bucket = wheel[(int)(tick & mask)];
+
+            for (;;) {
+                removeCancelledTimeouts();
+                transferTimeouts();
+
+                long next = bucket.expireTimeouts(currentTime());
+                if (next < 0 || stopped) {
+                    break;
+                }
+
+                sleepUntil(next);
+            }
+
+            bucket.decrementRounds();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    sleepUntil(tickNanos * tick);
+                    processTick();
+                    tick++;
+                }
+            } catch (InterruptedException ex) {
+                LOGGER.logp(Level.FINE, CLASS_NAME, "Worker.run", "interrupted");
+            }
+        }
+    }
+}
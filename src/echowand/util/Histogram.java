@@ -0,0 +1,135 @@
+package echowand.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 処理時間などの分布を記録するヒストグラム
+ * 値は2のべき乗毎のバケットで数えられるため、記録は一定の時間で行われメモリ使用量も一定である。
+ * パーセンタイルは該当するバケットの上限値で近似される。
+ * @author ymakino
+ */
+public class Histogram implements HistogramMBean {
+    private static final int BUCKET_SIZE = 64;
+    
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_SIZE);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong(0);
+    
+    private static int getBucketIndex(long value) {
+        return 63 - Long.numberOfLeadingZeros(value | 1);
+    }
+    
+    private static long getBucketUpperBound(int index) {
+        if (index >= 62) {
+            return Long.MAX_VALUE;
+        }
+        return (1L << (index + 1)) - 1;
+    }
+    
+    /**
+     * 値を記録する。負の値は0として記録される。
+     * @param value 記録する値
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        
+        buckets.incrementAndGet(getBucketIndex(value));
+        count.increment();
+        sum.add(value);
+        
+        long current = max.get();
+        while (value > current) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+            current = max.get();
+        }
+    }
+    
+    /**
+     * 指定された時刻からの経過時間をナノ秒で記録する。
+     * @param startNanos System.nanoTimeで取得した開始時刻
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+    
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+    
+    @Override
+    public long getMean() {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        return sum.sum() / n;
+    }
+    
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+    
+    /**
+     * 記録された値の指定されたパーセンタイルの近似値を返す。
+     * @param percentile 0から100までのパーセンタイル
+     * @return パーセンタイルの近似値、値が記録されていない場合には0
+     * @throws IllegalArgumentException percentileが範囲外の場合
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("invalid percentile: " + percentile);
+        }
+        
+        long total = 0;
+        long[] counts = new long[BUCKET_SIZE];
+        for (int i=0; i<BUCKET_SIZE; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        
+        if (total == 0) {
+            return 0;
+        }
+        
+        long threshold = (long)Math.ceil(total * percentile / 100.0);
+        long cumulative = 0;
+        for (int i=0; i<BUCKET_SIZE; i++) {
+            cumulative += counts[i];
+            if (cumulative >= threshold && cumulative > 0) {
+                return Math.min(getBucketUpperBound(i), getMax());
+            }
+        }
+        
+        return getMax();
+    }
+    
+    @Override
+    public long getPercentile50() {
+        return getPercentile(50);
+    }
+    
+    @Override
+    public long getPercentile90() {
+        return getPercentile(90);
+    }
+    
+    @Override
+    public long getPercentile99() {
+        return getPercentile(99);
+    }
+    
+    @Override
+    public String toString() {
+        String format = "Histogram(count=%d, mean=%d, p50=%d, p99=%d, max=%d)";
+        return String.format(format, getCount(), getMean(), getPercentile50(), getPercentile99(), getMax());
+    }
+}
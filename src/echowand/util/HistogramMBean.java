@@ -0,0 +1,45 @@
+package echowand.util;
+
+/**
+ * JMXで公開するHistogramの属性
+ * 値はHistogramに記録された単位(通常はナノ秒)で返される。
+ * @author ymakino
+ */
+public interface HistogramMBean {
+    
+    /**
+     * 記録された値の数を返す。
+     * @return 記録された値の数
+     */
+    public long getCount();
+    
+    /**
+     * 記録された値の平均を返す。
+     * @return 記録された値の平均
+     */
+    public long getMean();
+    
+    /**
+     * 記録された値の最大値を返す。
+     * @return 記録された値の最大値
+     */
+    public long getMax();
+    
+    /**
+     * 記録された値の50パーセンタイルの近似値を返す。
+     * @return 50パーセンタイルの近似値
+     */
+    public long getPercentile50();
+    
+    /**
+     * 記録された値の90パーセンタイルの近似値を返す。
+     * @return 90パーセンタイルの近似値
+     */
+    public long getPercentile90();
+    
+    /**
+     * 記録された値の99パーセンタイルの近似値を返す。
+     * @return 99パーセンタイルの近似値
+     */
+    public long getPercentile99();
+}
@@ -0,0 +1,154 @@
+package echowand.util;
+
+import java.lang.reflect.Array;
+
+/**
+ * 登録の変更時に配列をコピーするリスナの登録簿
+ * 登録と抹消は排他的に行われ、その度に新しい配列が作成される。
+ * getListenersは現在の配列をそのまま返すため、リスナの呼び出し時にはロックもコピーも行われない。
+ * 登録の変更が少なく、呼び出しが頻繁に行われるリスナの管理に利用する。
+ * @param <T> 登録するリスナの型
+ * @author ymakino
+ */
+public class ListenerRegistry<T> {
+    private final Class<T> cls;
+    private volatile T[] listeners;
+
+    /**
+     * 指定された型のリスナを登録するListenerRegistryを生成する。
+     * @param cls 登録するリスナの型
+     */
+    public ListenerRegistry(Class<T> cls) {
+        this.cls = cls;
+        this.listeners = newArray(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] newArray(int size) {
+        return (T[])Array.newInstance(cls, size);
+    }
+
+    /**
+     * 指定されたリスナを末尾に登録する。
+     * @param listener 登録するリスナ
+     * @return 常にtrue
+     */
+    public synchronized boolean add(T listener) {
+        return add(listeners.length, listener);
+    }
+
+    /**
+     * 指定されたリスナを指定された位置に登録する。
+     * @param index 登録する位置
+     * @param listener 登録するリスナ
+     * @return 常にtrue
+     * @throws IndexOutOfBoundsException indexが範囲外の場合
+     */
+    public synchronized boolean add(int index, T listener) {
+        T[] current = listeners;
+
+        if (index < 0 || index > current.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.length);
+        }
+
+        T[] newListeners = newArray(current.length + 1);
+        System.arraycopy(current, 0, newListeners, 0, index);
+        newListeners[index] = listener;
+        System.arraycopy(current, index, newListeners, index + 1, current.length - index);
+        listeners = newListeners;
+        return true;
+    }
+
+    private int indexOf(T[] current, Object listener) {
+        for (int i=0; i<current.length; i++) {
+            if (listener == null ? current[i] == null : listener.equals(current[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 指定されたリスナの登録を抹消する。
+     * 同じリスナが複数登録されている場合には、最初に見つかったものを抹消する。
+     * @param listener 登録を抹消するリスナ
+     * @return 抹消に成功した場合にはtrue、登録されていない場合にはfalse
+     */
+    public synchronized boolean remove(Object listener) {
+        T[] current = listeners;
+        int index = indexOf(current, listener);
+
+        if (index < 0) {
+            return false;
+        }
+
+        T[] newListeners = newArray(current.length - 1);
+        System.arraycopy(current, 0, newListeners, 0, index);
+        System.arraycopy(current, index + 1, newListeners, index, current.length - index - 1);
+        listeners = newListeners;
+        return true;
+    }
+
+    /**
+     * 全てのリスナの登録を抹消する。
+     */
+    public synchronized void clear() {
+        listeners = newArray(0);
+    }
+
+    /**
+     * 指定されたリスナが登録されているか返す。
+     * @param listener 調べるリスナ
+     * @return 登録されていればtrue、そうでなければfalse
+     */
+    public boolean contains(Object listener) {
+        return indexOf(listeners, listener) >= 0;
+    }
+
+    /**
+     * 登録されているリスナの数を返す。
+     * @return 登録されているリスナの数
+     */
+    public int size() {
+        return listeners.length;
+    }
+
+    /**
+     * 登録されているリスナが存在しないか返す。
+     * @return リスナが存在しなければtrue、そうでなければfalse
+     */
+    public boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+    /**
+     * index番目に登録されているリスナを返す。
+     * @param index リスナのインデックス
+     * @return 指定されたリスナ
+     * @throws IndexOutOfBoundsException indexが範囲外の場合
+     */
+    public T get(int index) {
+        T[] current = listeners;
+
+        if (index < 0 || index >= current.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.length);
+        }
+
+        return current[index];
+    }
+
+    /**
+     * 現在登録されているリスナの配列を返す。
+     * 返される配列は登録が変更されても変化しないため、そのまま走査することができる。
+     * 返された配列の内容を変更してはならない。
+     * @return 登録されているリスナの配列
+     */
+    public T[] getListeners() {
+        return listeners;
+    }
+
+    @Override
+    public String toString() {
+        return "ListenerRegistry(size=" + size() + ")";
+    }
+}
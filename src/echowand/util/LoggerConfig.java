@@ -47,5 +47,6 @@ public class LoggerConfig {
     public synchronized static void changeLogLevel(Level level, String name) {
         getLogger(name).setLevel(level);
         getLogger(name).addHandler(getHandler());
+        Tracer.refresh();
     }
 }
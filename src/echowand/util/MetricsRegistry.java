@@ -0,0 +1,283 @@
+package echowand.util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * 名前をつけたCounter、Histogram、Gaugeを管理する。
+ * registerMBeansを呼び出すと、登録済みのメトリクスと以後に生成されたメトリクスがMBeanとして公開される。
+ * @author ymakino
+ */
+public class MetricsRegistry {
+    private static final Logger LOGGER = Logger.getLogger(MetricsRegistry.class.getName());
+    private static final String CLASS_NAME = MetricsRegistry.class.getName();
+
+    /**
+     * MBeanのドメインのデフォルト値
+     */
+    public static final String DEFAULT_DOMAIN = "echowand";
+
+    private final ConcurrentHashMap<String, Object> metrics;
+    private MBeanServer mbeanServer;
+    private String domain;
+
+    /**
+     * MetricsRegistryを生成する。
+     */
+    public MetricsRegistry() {
+        metrics = new ConcurrentHashMap<String, Object>();
+    }
+
+    private <T> T getMetric(String name, Class<T> cls) {
+        Object metric = metrics.get(name);
+
+        if (metric == null) {
+            return null;
+        }
+
+        if (!cls.isInstance(metric)) {
+            throw new IllegalArgumentException("invalid metric type: " + name + " is " + metric.getClass().getSimpleName());
+        }
+
+        return cls.cast(metric);
+    }
+
+    private synchronized <T> T addMetric(String name, Class<T> cls, T metric) {
+        T current = getMetric(name, cls);
+        if (current != null) {
+            return current;
+        }
+
+        metrics.put(name, metric);
+
+        if (mbeanServer != null) {
+            registerMBean(name, metric);
+        }
+
+        return metric;
+    }
+
+    /**
+     * 指定された名前のCounterを返す。存在しない場合には生成する。
+     * @param name Counterの名前
+     * @return 指定された名前のCounter
+     * @throws IllegalArgumentException 同じ名前の異なる種類のメトリクスが存在する場合
+     */
+    public Counter counter(String name) {
+        Counter counter = getMetric(name, Counter.class);
+        if (counter == null) {
+            counter = addMetric(name, Counter.class, new Counter());
+        }
+        return counter;
+    }
+
+    /**
+     * 指定された名前のHistogramを返す。存在しない場合には生成する。
+     * @param name Histogramの名前
+     * @return 指定された名前のHistogram
+     * @throws IllegalArgumentException 同じ名前の異なる種類のメトリクスが存在する場合
+     */
+    public Histogram histogram(String name) {
+        Histogram histogram = getMetric(name, Histogram.class);
+        if (histogram == null) {
+            histogram = addMetric(name, Histogram.class, new Histogram());
+        }
+        return histogram;
+    }
+
+    /**
+     * 指定された名前でGaugeを登録する。
+     * すでに同じ名前のGaugeが存在する場合には、登録済みのGaugeを返す。
+     * @param name Gaugeの名前
+     * @param gauge 登録するGauge
+     * @return 指定された名前のGauge
+     * @throws IllegalArgumentException 同じ名前の異なる種類のメトリクスが存在する場合
+     */
+    public Gauge gauge(String name, Gauge gauge) {
+        return addMetric(name, Gauge.class, gauge);
+    }
+
+    /**
+     * 指定された名前でGaugeを登録する。
+     * すでに同じ名前のGaugeが存在する場合には、指定されたGaugeで置き換える。
+     * 生成し直されるオブジェクトが同じ名前でGaugeを公開する場合に利用する。
+     * @param name Gaugeの名前
+     * @param gauge 登録するGauge
+     * @throws IllegalArgumentException 同じ名前の異なる種類のメトリクスが存在する場合
+     */
+    public synchronized void replaceGauge(String name, Gauge gauge) {
+        Gauge current = getMetric(name, Gauge.class);
+
+        if (current != null && mbeanServer != null) {
+            unregisterMBean(name, current);
+        }
+
+        metrics.put(name, gauge);
+
+        if (mbeanServer != null) {
+            registerMBean(name, gauge);
+        }
+    }
+
+    /**
+     * 指定された名前のメトリクスが指定されたオブジェクトである場合に、その登録を抹消する。
+     * MBeanとして公開されている場合には、MBeanの登録も抹消する。
+     * @param name メトリクスの名前
+     * @param metric 抹消するメトリクス
+     * @return 抹消した場合にはtrue、そうでなければfalse
+     */
+    public synchronized boolean remove(String name, Object metric) {
+        if (!metrics.remove(name, metric)) {
+            return false;
+        }
+
+        if (mbeanServer != null) {
+            unregisterMBean(name, metric);
+        }
+
+        return true;
+    }
+
+    /**
+     * 指定された名前のCounterを返す。
+     * @param name Counterの名前
+     * @return 指定された名前のCounter、存在しない場合にはnull
+     */
+    public Counter getCounter(String name) {
+        return getMetric(name, Counter.class);
+    }
+
+    /**
+     * 指定された名前のHistogramを返す。
+     * @param name Histogramの名前
+     * @return 指定された名前のHistogram、存在しない場合にはnull
+     */
+    public Histogram getHistogram(String name) {
+        return getMetric(name, Histogram.class);
+    }
+
+    /**
+     * 指定された名前のGaugeを返す。
+     * @param name Gaugeの名前
+     * @return 指定された名前のGauge、存在しない場合にはnull
+     */
+    public Gauge getGauge(String name) {
+        return getMetric(name, Gauge.class);
+    }
+
+    /**
+     * 登録されているメトリクスの名前を返す。
+     * @return メトリクスの名前の集合
+     */
+    public Set<String> getNames() {
+        return new TreeSet<String>(metrics.keySet());
+    }
+
+    private ObjectName createObjectName(String name, Object metric) throws JMException {
+        String type;
+        if (metric instanceof Counter) {
+            type = "Counter";
+        } else if (metric instanceof Histogram) {
+            type = "Histogram";
+        } else {
+            type = "Gauge";
+        }
+
+        return new ObjectName(domain + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+
+    private Object createMBean(Object metric) throws JMException {
+        if (metric instanceof Counter) {
+            return new StandardMBean((Counter)metric, CounterMBean.class);
+        } else if (metric instanceof Histogram) {
+            return new StandardMBean((Histogram)metric, HistogramMBean.class);
+        } else {
+            return new StandardMBean((Gauge)metric, Gauge.class);
+        }
+    }
+
+    private void registerMBean(String name, Object metric) {
+        try {
+            mbeanServer.registerMBean(createMBean(metric), createObjectName(name, metric));
+        } catch (JMException ex) {
+            LOGGER.logp(Level.WARNING, CLASS_NAME, "registerMBean", "cannot register: " + name, ex);
+        }
+    }
+
+    private void unregisterMBean(String name, Object metric) {
+        try {
+            mbeanServer.unregisterMBean(createObjectName(name, metric));
+        } catch (JMException ex) {
+            LOGGER.logp(Level.WARNING, CLASS_NAME, "unregisterMBean", "cannot unregister: " + name, ex);
+        }
+    }
+
+    /**
+     * 全てのメトリクスをMBeanとして指定されたMBeanServerに登録する。
+     * 以後に生成されたメトリクスも自動的に登録される。
+     * MBeanの名前は「domain:type=種類,name="メトリクスの名前"」となる。
+     * @param server 登録先のMBeanServer
+     * @param domain MBeanのドメイン
+     * @return 登録した場合にはtrue、すでに登録済みの場合にはfalse
+     */
+    public synchronized boolean registerMBeans(MBeanServer server, String domain) {
+        LOGGER.entering(CLASS_NAME, "registerMBeans", new Object[]{server, domain});
+
+        if (mbeanServer != null) {
+            LOGGER.exiting(CLASS_NAME, "registerMBeans", false);
+            return false;
+        }
+
+        this.mbeanServer = server;
+        this.domain = domain;
+
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            registerMBean(entry.getKey(), entry.getValue());
+        }
+
+        LOGGER.exiting(CLASS_NAME, "registerMBeans", true);
+        return true;
+    }
+
+    /**
+     * registerMBeansで登録した全てのMBeanの登録を抹消する。
+     * @return 抹消した場合にはtrue、登録されていない場合にはfalse
+     */
+    public synchronized boolean unregisterMBeans() {
+        LOGGER.entering(CLASS_NAME, "unregisterMBeans");
+
+        if (mbeanServer == null) {
+            LOGGER.exiting(CLASS_NAME, "unregisterMBeans", false);
+            return false;
+        }
+
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            unregisterMBean(entry.getKey(), entry.getValue());
+        }
+
+        mbeanServer = null;
+        domain = null;
+
+        LOGGER.exiting(CLASS_NAME, "unregisterMBeans", true);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("MetricsRegistry(");
+        String separator = "";
+        for (String name : getNames()) {
+            builder.append(separator).append(name).append('=').append(metrics.get(name));
+            separator = ", ";
+        }
+        return builder.append(')').toString();
+    }
+}
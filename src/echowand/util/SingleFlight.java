@@ -0,0 +1,201 @@
+package echowand.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * 同じキーに対する同時の処理を一つにまとめる。
+ * あるキーの処理の実行中に同じキーの処理が要求された場合には、新たに処理を実行せずに実行中の処理の結果を共有する。
+ * 処理が完了するとキーは登録から外されるため、結果が保存されることはない。
+ * @param <K> 処理を識別するキーの型
+ * @param <V> 処理の結果の型
+ * @author ymakino
+ */
+public class SingleFlight<K, V> {
+    private static final Logger LOGGER = Logger.getLogger(SingleFlight.class.getName());
+    private static final String CLASS_NAME = SingleFlight.class.getName();
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight;
+    private final Counter executions;
+    private final Counter collapsed;
+
+    /**
+     * SingleFlightを生成する。
+     */
+    public SingleFlight() {
+        inFlight = new ConcurrentHashMap<K, CompletableFuture<V>>();
+        executions = new Counter();
+        collapsed = new Counter();
+    }
+
+    private CompletableFuture<V> share(CompletableFuture<V> future) {
+        return future.thenApply(new Function<V, V>() {
+            @Override
+            public V apply(V value) {
+                return value;
+            }
+        });
+    }
+
+    /**
+     * 指定されたキーの処理を同期的に実行する。
+     * 同じキーの処理が実行中の場合には、その処理の完了を待ってその結果を返す。
+     * @param key 処理を識別するキー
+     * @param callable 実行する処理
+     * @return 処理の結果
+     * @throws ExecutionException 処理が例外を発生させた場合、原因にその例外が設定される
+     * @throws InterruptedException 実行中の処理の完了を待っている間に割り込まれた場合
+     */
+    public V execute(K key, Callable<V> callable) throws ExecutionException, InterruptedException {
+        LOGGER.entering(CLASS_NAME, "execute", new Object[]{key, callable});
+
+        CompletableFuture<V> future = new CompletableFuture<V>();
+        CompletableFuture<V> current = inFlight.putIfAbsent(key, future);
+
+        if (current != null) {
+            collapsed.increment();
+            V value = current.get();
+            LOGGER.exiting(CLASS_NAME, "execute", value);
+            return value;
+        }
+
+        executions.increment();
+
+        V value;
+        try {
+            value = callable.call();
+            future.complete(value);
+        } catch (Exception ex) {
+            future.completeExceptionally(ex);
+            ExecutionException exception = new ExecutionException(ex);
+            LOGGER.throwing(CLASS_NAME, "execute", exception);
+            throw exception;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, future);
+        }
+
+        LOGGER.exiting(CLASS_NAME, "execute", value);
+        return value;
+    }
+
+    /**
+     * 指定されたキーの処理を非同期に実行する。
+     * 同じキーの処理が実行中の場合には、その処理の結果で完了するCompletableFutureを返す。
+     * 返されるCompletableFutureは呼び出し毎に異なるため、完了させたり取り消したりしても他の呼び出し元には影響しない。
+     * @param key 処理を識別するキー
+     * @param supplier 処理を開始してその結果で完了するCompletableFutureを返すSupplier
+     * @return 処理の結果で完了するCompletableFuture
+     */
+    public CompletableFuture<V> executeAsync(final K key, Supplier<CompletableFuture<V>> supplier) {
+        LOGGER.entering(CLASS_NAME, "executeAsync", new Object[]{key, supplier});
+
+        final CompletableFuture<V> future = new CompletableFuture<V>();
+        CompletableFuture<V> current = inFlight.putIfAbsent(key, future);
+
+        if (current != null) {
+            collapsed.increment();
+            CompletableFuture<V> result = share(current);
+            LOGGER.exiting(CLASS_NAME, "executeAsync", result);
+            return result;
+        }
+
+        executions.increment();
+
+        CompletableFuture<V> result;
+        try {
+            result = supplier.get();
+        } catch (Throwable t) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(t);
+            LOGGER.exiting(CLASS_NAME, "executeAsync", future);
+            return share(future);
+        }
+
+        result.whenComplete(new BiConsumer<V, Throwable>() {
+            @Override
+            public void accept(V value, Throwable throwable) {
+                inFlight.remove(key, future);
+                if (throwable == null) {
+                    future.complete(value);
+                } else {
+                    future.completeExceptionally(throwable);
+                }
+            }
+        });
+
+        CompletableFuture<V> shared = share(future);
+        LOGGER.exiting(CLASS_NAME, "executeAsync", shared);
+        return shared;
+    }
+
+    /**
+     * 実行中の処理の数を返す。
+     * @return 実行中の処理の数
+     */
+    public int countInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * 実際に処理を実行した回数を返す。
+     * @return 処理を実行した回数
+     */
+    public long countExecutions() {
+        return executions.getCount();
+    }
+
+    /**
+     * 実行中の処理の結果を共有することで処理の実行を省略した回数を返す。
+     * @return 処理の実行を省略した回数
+     */
+    public long countCollapsed() {
+        return collapsed.getCount();
+    }
+
+    /**
+     * 処理の実行回数、省略回数、実行中の処理の数をGaugeとして指定されたMetricsRegistryに登録する。
+     * それぞれ「name.executions」「name.collapsed」「name.inflight」という名前で登録される。
+     * @param metricsRegistry 登録先のMetricsRegistry
+     * @param name メトリクスの名前の接頭辞
+     */
+    public void registerMetrics(MetricsRegistry metricsRegistry, String name) {
+        LOGGER.entering(CLASS_NAME, "registerMetrics", new Object[]{metricsRegistry, name});
+
+        metricsRegistry.gauge(name + ".executions", new Gauge() {
+            @Override
+            public long getValue() {
+                return countExecutions();
+            }
+        });
+
+        metricsRegistry.gauge(name + ".collapsed", new Gauge() {
+            @Override
+            public long getValue() {
+                return countCollapsed();
+            }
+        });
+
+        metricsRegistry.gauge(name + ".inflight", new Gauge() {
+            @Override
+            public long getValue() {
+                return countInFlight();
+            }
+        });
+
+        LOGGER.exiting(CLASS_NAME, "registerMetrics");
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight(inFlight=" + countInFlight() + ", executions=" + countExecutions() + ", collapsed=" + countCollapsed() + ")";
+    }
+}
@@ -1,28 +1,23 @@
 package echowand.util;
 
-import java.util.Timer;
 import java.util.TimerTask;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
 
 /**
- *
+ * 指定された時間の経過後にTimeoutObserverに通知を行う。
+ * タイムアウトはHashedWheelTimer.getDefault()で管理される。
  * @author ymakino
  */
 public class TimeoutTask extends TimerTask {
     
     private TimeoutObserver observer;
     
-    private static Timer timer;
+    private HashedWheelTimer.Timeout timeoutHandle;
 
     private long timeoutPeriod;
     private boolean timedOut;
     private boolean interrupted;
     
-    static {
-        timer = new Timer();
-    }
-
     public TimeoutTask(long timeout) {
         this(null, timeout);
     }
@@ -34,8 +29,8 @@ public class TimeoutTask extends TimerTask {
         interrupted = false;
     }
     
-    public void start() {
-        timer.schedule(this, timeoutPeriod);
+    public synchronized void start() {
+        timeoutHandle = HashedWheelTimer.getDefault().newTimeout(this, timeoutPeriod, TimeUnit.MILLISECONDS);
     }
 
     public boolean isTimedOut() {
@@ -71,4 +66,15 @@ public class TimeoutTask extends TimerTask {
         
         return true;
     }
+
+    @Override
+    public synchronized boolean cancel() {
+        boolean result = super.cancel();
+        
+        if (timeoutHandle != null) {
+            result |= timeoutHandle.cancel();
+        }
+        
+        return result;
+    }
 }
\ No newline at end of file
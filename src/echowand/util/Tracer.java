@@ -0,0 +1,193 @@
+package echowand.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 頻繁に呼び出されるメソッドのためのトレース出力
+ * Loggerのentering、exiting、throwingと同じ出力をFINERで行うが、出力するかどうかは事前に判定した結果を利用する。
+ * 出力しない場合には、引数の配列の生成もLoggerの呼び出しも行われない。
+ * 判定結果はsetLevelかrefreshを呼び出した時点で更新されるため、Loggerのレベルを直接変更した場合にはrefreshを呼び出す必要がある。
+ * @author ymakino
+ */
+public final class Tracer {
+    private static final CopyOnWriteArrayList<Tracer> TRACERS = new CopyOnWriteArrayList<Tracer>();
+    
+    /*
+     * Loggers whose levels are changed by setLevel are kept here,
+     * because LogManager only keeps weak references to them and
+     * the configured levels could be lost.
+     */
+    private static final ConcurrentHashMap<String, Logger> CONFIGURED_LOGGERS = new ConcurrentHashMap<String, Logger>();
+
+    private final Logger logger;
+    private final String className;
+    private volatile boolean enabled;
+
+    private Tracer(Class<?> cls) {
+        this.logger = Logger.getLogger(cls.getName());
+        this.className = cls.getName();
+        this.enabled = logger.isLoggable(Level.FINER);
+    }
+
+    /**
+     * 指定されたクラスのためのTracerを生成する。
+     * 出力には指定されたクラス名のLoggerが利用される。
+     * @param cls トレースを行うクラス
+     * @return 生成したTracer
+     */
+    public static Tracer getTracer(Class<?> cls) {
+        Tracer tracer = new Tracer(cls);
+        TRACERS.add(tracer);
+        return tracer;
+    }
+
+    /**
+     * 指定された名前のLoggerのレベルを変更し、全てのTracerの判定結果を更新する。
+     * パッケージ名を指定することで、パッケージ単位でトレースの出力を切り替えることができる。
+     * nullを指定した場合には親のLoggerのレベルが利用される。
+     * @param name Loggerの名前
+     * @param level 設定するレベル
+     */
+    public static void setLevel(String name, Level level) {
+        Logger logger = Logger.getLogger(name);
+        CONFIGURED_LOGGERS.put(name, logger);
+        logger.setLevel(level);
+        refresh();
+    }
+
+    /**
+     * 全てのTracerについて、Loggerの現在のレベルから出力を行うかどうかを判定し直す。
+     */
+    public static void refresh() {
+        for (Tracer tracer : TRACERS) {
+            tracer.enabled = tracer.logger.isLoggable(Level.FINER);
+        }
+    }
+
+    /**
+     * トレースを出力するかどうかを返す。
+     * @return 出力する場合にはtrue、そうでなければfalse
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * メソッドの開始を出力する。
+     * @param sourceMethod メソッド名
+     */
+    public void entering(String sourceMethod) {
+        if (enabled) {
+            logger.entering(className, sourceMethod);
+        }
+    }
+
+    /**
+     * メソッドの開始を出力する。
+     * @param sourceMethod メソッド名
+     * @param param1 メソッドの引数
+     */
+    public void entering(String sourceMethod, Object param1) {
+        if (enabled) {
+            logger.entering(className, sourceMethod, param1);
+        }
+    }
+
+    /**
+     * メソッドの開始を出力する。
+     * @param sourceMethod メソッド名
+     * @param param1 メソッドの1番目の引数
+     * @param param2 メソッドの2番目の引数
+     */
+    public void entering(String sourceMethod, Object param1, Object param2) {
+        if (enabled) {
+            logger.entering(className, sourceMethod, new Object[]{param1, param2});
+        }
+    }
+
+    /**
+     * メソッドの開始を出力する。
+     * @param sourceMethod メソッド名
+     * @param param1 メソッドの1番目の引数
+     * @param param2 メソッドの2番目の引数
+     * @param param3 メソッドの3番目の引数
+     */
+    public void entering(String sourceMethod, Object param1, Object param2, Object param3) {
+        if (enabled) {
+            logger.entering(className, sourceMethod, new Object[]{param1, param2, param3});
+        }
+    }
+
+    /**
+     * メソッドの開始を出力する。
+     * @param sourceMethod メソッド名
+     * @param param1 メソッドの1番目の引数
+     * @param param2 メソッドの2番目の引数
+     * @param param3 メソッドの3番目の引数
+     * @param param4 メソッドの4番目の引数
+     */
+    public void entering(String sourceMethod, Object param1, Object param2, Object param3, Object param4) {
+        if (enabled) {
+            logger.entering(className, sourceMethod, new Object[]{param1, param2, param3, param4});
+        }
+    }
+
+    /**
+     * メソッドの終了を出力する。
+     * @param sourceMethod メソッド名
+     */
+    public void exiting(String sourceMethod) {
+        if (enabled) {
+            logger.exiting(className, sourceMethod);
+        }
+    }
+
+    /**
+     * メソッドの終了を出力する。
+     * @param sourceMethod メソッド名
+     * @param result メソッドの返り値
+     */
+    public void exiting(String sourceMethod, Object result) {
+        if (enabled) {
+            logger.exiting(className, sourceMethod, result);
+        }
+    }
+
+    /**
+     * メソッドの終了を出力する。
+     * 返り値のボクシングを避けるためにbooleanの返り値を直接受け取る。
+     * @param sourceMethod メソッド名
+     * @param result メソッドの返り値
+     */
+    public void exiting(String sourceMethod, boolean result) {
+        if (enabled) {
+            logger.exiting(className, sourceMethod, result);
+        }
+    }
+
+    /**
+     * メソッドの終了を出力する。
+     * 返り値のボクシングを避けるためにintの返り値を直接受け取る。
+     * @param sourceMethod メソッド名
+     * @param result メソッドの返り値
+     */
+    public void exiting(String sourceMethod, int result) {
+        if (enabled) {
+            logger.exiting(className, sourceMethod, result);
+        }
+    }
+
+    /**
+     * メソッドが例外を発生させたことを出力する。
+     * @param sourceMethod メソッド名
+     * @param thrown 発生させた例外
+     */
+    public void throwing(String sourceMethod, Throwable thrown) {
+        if (enabled) {
+            logger.throwing(className, sourceMethod, thrown);
+        }
+    }
+}
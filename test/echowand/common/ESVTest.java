@@ -52,6 +52,27 @@ public class ESVTest {
         assertTrue(ESV.SetGet_SNA.isSetGet());
     }
     
+    @Test
+    public void testIsResponse() {
+        assertFalse(ESV.Invalid.isResponse());
+        assertFalse(ESV.SetI.isResponse());
+        assertFalse(ESV.SetC.isResponse());
+        assertFalse(ESV.Get.isResponse());
+        assertFalse(ESV.INF_REQ.isResponse());
+        assertFalse(ESV.SetGet.isResponse());
+        assertTrue(ESV.Set_Res.isResponse());
+        assertTrue(ESV.Get_Res.isResponse());
+        assertFalse(ESV.INF.isResponse());
+        assertFalse(ESV.INFC.isResponse());
+        assertTrue(ESV.INFC_Res.isResponse());
+        assertTrue(ESV.SetGet_Res.isResponse());
+        assertTrue(ESV.SetI_SNA.isResponse());
+        assertTrue(ESV.SetC_SNA.isResponse());
+        assertTrue(ESV.Get_SNA.isResponse());
+        assertTrue(ESV.INF_SNA.isResponse());
+        assertTrue(ESV.SetGet_SNA.isResponse());
+    }
+    
     @Test
     public void testIsInvalid() {
         assertTrue(ESV.Invalid.isInvalid());
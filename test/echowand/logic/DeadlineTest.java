@@ -0,0 +1,37 @@
+package echowand.logic;
+
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class DeadlineTest {
+    
+    @Test
+    public void testRemaining() {
+        Deadline deadline = Deadline.after(10, TimeUnit.SECONDS);
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remainingMillis() > 9000);
+        assertTrue(deadline.remainingMillis() <= 10000);
+        assertTrue(deadline.remaining(TimeUnit.SECONDS) >= 9);
+    }
+    
+    @Test
+    public void testExpired() {
+        Deadline deadline = Deadline.afterMillis(-10);
+        assertTrue(deadline.isExpired());
+        assertEquals(0, deadline.remainingMillis());
+    }
+    
+    @Test
+    public void testMin() {
+        Deadline early = Deadline.afterMillis(100);
+        Deadline late = Deadline.afterMillis(10000);
+        assertSame(early, early.min(late));
+        assertSame(early, late.min(early));
+        assertSame(late, late.min(null));
+    }
+}
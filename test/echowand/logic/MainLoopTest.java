@@ -3,11 +3,24 @@ package echowand.logic;
 import echowand.logic.MainLoop;
 import echowand.logic.Listener;
 import echowand.object.LocalObjectManager;
+import echowand.common.EOJ;
+import echowand.common.ESV;
+import echowand.net.CommonFrame;
 import echowand.net.Frame;
+import echowand.net.Node;
 import echowand.net.InternalSubnet;
 import echowand.net.Subnet;
 import echowand.net.SubnetException;
+import echowand.util.MetricsRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
 import org.junit.*;
 
 /**
@@ -36,4 +49,180 @@ public class MainLoopTest {
         echonet.removeListener(listener);
         assertEquals(0, echonet.countListeners());
     }
+    
+    @Test
+    public void testParallelOrdering() throws SubnetException, InterruptedException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        final Map<Node, List<Short>> received = new HashMap<Node, List<Short>>();
+        
+        MainLoop mainLoop = new MainLoop(4);
+        assertEquals(4, mainLoop.getWorkerCount());
+        mainLoop.setSubnet(subnet);
+        mainLoop.addListener(new Listener() {
+            @Override
+            public boolean process(Subnet subnet, Frame frame, boolean processed) {
+                synchronized (received) {
+                    List<Short> tids = received.get(frame.getSender());
+                    if (tids == null) {
+                        tids = new ArrayList<Short>();
+                        received.put(frame.getSender(), tids);
+                    }
+                    tids.add(frame.getCommonFrame().getTID());
+                    received.notifyAll();
+                }
+                return true;
+            }
+        });
+        
+        Thread thread = new Thread(mainLoop);
+        thread.start();
+        
+        LinkedList<Node> senders = new LinkedList<Node>();
+        for (int i=0; i<8; i++) {
+            senders.add(subnet.getRemoteNode("node" + i));
+        }
+        
+        int count = 0;
+        for (short tid=0; tid<20; tid++) {
+            for (Node sender : senders) {
+                CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("0ef001"), ESV.INF);
+                cf.setTID(tid);
+                subnet.send(new Frame(sender, subnet.getLocalNode(), cf));
+                count++;
+            }
+        }
+        
+        synchronized (received) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (countFrames(received) < count && System.currentTimeMillis() < deadline) {
+                received.wait(100);
+            }
+        }
+        
+        thread.interrupt();
+        
+        assertEquals(count, countFrames(received));
+        for (Node sender : senders) {
+            List<Short> tids = received.get(sender);
+            for (int i=0; i<tids.size(); i++) {
+                assertEquals((short)i, (short)tids.get(i));
+            }
+        }
+    }
+    
+    @Test
+    public void testParallelListenerException() throws SubnetException, InterruptedException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        final List<Short> received = new ArrayList<Short>();
+        
+        MainLoop mainLoop = new MainLoop(1);
+        mainLoop.setWorkerQueueCapacity(4);
+        assertEquals(4, mainLoop.getWorkerQueueCapacity());
+        mainLoop.setSubnet(subnet);
+        mainLoop.addListener(new Listener() {
+            @Override
+            public boolean process(Subnet subnet, Frame frame, boolean processed) {
+                if (frame.getCommonFrame().getTID() == 0) {
+                    throw new IllegalStateException("test");
+                }
+                synchronized (received) {
+                    received.add(frame.getCommonFrame().getTID());
+                    received.notifyAll();
+                }
+                return true;
+            }
+        });
+        
+        Thread thread = new Thread(mainLoop);
+        thread.start();
+        
+        Node sender = subnet.getRemoteNode("node");
+        for (short tid=0; tid<20; tid++) {
+            CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("0ef001"), ESV.INF);
+            cf.setTID(tid);
+            subnet.send(new Frame(sender, subnet.getLocalNode(), cf));
+        }
+        
+        synchronized (received) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (received.size() < 19 && System.currentTimeMillis() < deadline) {
+                received.wait(100);
+            }
+        }
+        
+        thread.interrupt();
+        
+        assertEquals(19, received.size());
+        for (int i=0; i<received.size(); i++) {
+            assertEquals((short)(i + 1), (short)received.get(i));
+        }
+    }
+    
+    @Test
+    public void testBacklogGauge() throws SubnetException, InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        
+        MainLoop mainLoop1 = new MainLoop(1);
+        mainLoop1.setSubnet(InternalSubnet.startSubnet());
+        mainLoop1.setMetricsRegistry(registry);
+        assertNull(registry.getGauge("mainloop.backlog"));
+        
+        Thread thread1 = new Thread(mainLoop1);
+        thread1.start();
+        waitGauge(registry, true);
+        
+        MainLoop mainLoop2 = new MainLoop(1);
+        mainLoop2.setSubnet(InternalSubnet.startSubnet());
+        mainLoop2.setMetricsRegistry(registry);
+        Thread thread2 = new Thread(mainLoop2);
+        Object gauge1 = registry.getGauge("mainloop.backlog");
+        thread2.start();
+        for (int i=0; i<500 && registry.getGauge("mainloop.backlog") == gauge1; i++) {
+            Thread.sleep(10);
+        }
+        assertNotSame(gauge1, registry.getGauge("mainloop.backlog"));
+        
+        thread1.interrupt();
+        thread1.join(5000);
+        assertNotNull(registry.getGauge("mainloop.backlog"));
+        
+        thread2.interrupt();
+        thread2.join(5000);
+        assertNull(registry.getGauge("mainloop.backlog"));
+    }
+    
+    private void waitGauge(MetricsRegistry registry, boolean exists) throws InterruptedException {
+        for (int i=0; i<500 && (registry.getGauge("mainloop.backlog") != null) != exists; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(exists, registry.getGauge("mainloop.backlog") != null);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidWorkerQueueCapacity() {
+        new MainLoop(1).setWorkerQueueCapacity(0);
+    }
+    
+    private int countFrames(Map<Node, List<Short>> received) {
+        synchronized (received) {
+            int count = 0;
+            for (List<Short> tids : received.values()) {
+                count += tids.size();
+            }
+            return count;
+        }
+    }
+    
+    @Test
+    public void testRunExclusive() {
+        MainLoop mainLoop = new MainLoop();
+        final boolean[] done = new boolean[1];
+        mainLoop.runExclusive(new Runnable() {
+            @Override
+            public void run() {
+                done[0] = true;
+            }
+        });
+        assertEquals(true, done[0]);
+    }
 }
@@ -0,0 +1,137 @@
+package echowand.logic;
+
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.net.CommonFrame;
+import echowand.net.Frame;
+import echowand.net.InternalSubnet;
+import echowand.net.StandardPayload;
+import echowand.net.SubnetException;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class PreparedRequestTest {
+    public InternalSubnet subnet;
+    
+    @Before
+    public void setUp() throws SubnetException {
+        subnet = InternalSubnet.startSubnet();
+    }
+    
+    @After
+    public void tearDown() {
+        subnet.stopService();
+    }
+    
+    private SetGetTransactionConfig createGetConfig() {
+        SetGetTransactionConfig config = new SetGetTransactionConfig();
+        config.setSenderNode(subnet.getLocalNode());
+        config.setReceiverNode(subnet.getLocalNode());
+        config.setSourceEOJ(new EOJ("0ef001"));
+        config.setDestinationEOJ(new EOJ("001101"));
+        config.addGet(EPC.x80);
+        config.addGet(EPC.xE0);
+        return config;
+    }
+    
+    @Test
+    public void testCreateCommonFrame() {
+        SetGetTransactionConfig config = createGetConfig();
+        PreparedRequest request = new PreparedRequest(config);
+        
+        assertEquals(ESV.Get, request.getESV());
+        assertEquals(1, request.getCountPayloads());
+        assertEquals(subnet.getLocalNode(), request.getReceiverNode());
+        assertEquals(new EOJ("001101"), request.getDestinationEOJ());
+        
+        CommonFrame frame1 = request.createCommonFrame(0, (short)0x1234);
+        CommonFrame frame2 = request.createCommonFrame(0, (short)0x5678);
+        assertEquals((short)0x1234, frame1.getTID());
+        assertEquals((short)0x5678, frame2.getTID());
+        assertNotNull(frame1.getView());
+        assertSame(frame1.getView(), frame2.getView());
+        assertEquals((byte)0x56, frame2.toBytes()[2]);
+        assertEquals((byte)0x78, frame2.toBytes()[3]);
+        
+        CommonFrame expected = new CommonFrame();
+        StandardPayload payload = new StandardPayload(new EOJ("0ef001"), new EOJ("001101"), ESV.Get);
+        config.addPayloadProperties(0, payload);
+        expected.setEDATA(payload);
+        expected.setTID((short)0x1234);
+        assertArrayEquals(expected.toBytes(), frame1.toBytes());
+        
+        StandardPayload decoded = frame2.getEDATA(StandardPayload.class);
+        assertEquals(2, decoded.getFirstOPC());
+        assertEquals(EPC.xE0, decoded.getFirstPropertyAt(1).getEPC());
+        
+        StandardPayload properties = new StandardPayload();
+        request.addPayloadProperties(0, properties);
+        assertEquals(2, properties.getFirstOPC());
+        assertEquals(EPC.x80, properties.getFirstPropertyAt(0).getEPC());
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testImmutableEOJ() {
+        PreparedRequest request = new PreparedRequest(createGetConfig());
+        request.setDestinationEOJ(new EOJ("001102"));
+    }
+    
+    @Test
+    public void testImmutable() {
+        PreparedRequest request = new PreparedRequest(createGetConfig());
+        
+        try {
+            request.setSenderNode(subnet.getGroupNode());
+            fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        
+        try {
+            request.setReceiverNode(subnet.getGroupNode());
+            fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        
+        try {
+            request.setSourceEOJ(new EOJ("05ff02"));
+            fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        
+        try {
+            request.setExpectedResponses(TransactionConfig.EXPECTED_RESPONSES_UNLIMITED);
+            fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        
+        assertEquals(subnet.getLocalNode(), request.getReceiverNode());
+        assertEquals(TransactionConfig.EXPECTED_RESPONSES_AUTO, request.getExpectedResponses());
+    }
+    
+    @Test
+    public void testExecute() throws SubnetException {
+        TransactionManager manager = new TransactionManager(subnet);
+        PreparedRequest request = new PreparedRequest(createGetConfig());
+        
+        for (int i=0; i<2; i++) {
+            Transaction transaction = new Transaction(subnet, manager, request);
+            transaction.execute();
+            
+            Frame frame = subnet.receive();
+            CommonFrame cf = frame.getCommonFrame();
+            assertEquals(transaction.getTID(), cf.getTID());
+            
+            StandardPayload payload = cf.getEDATA(StandardPayload.class);
+            assertEquals(ESV.Get, payload.getESV());
+            assertEquals(new EOJ("001101"), payload.getDEOJ());
+            assertEquals(2, payload.getFirstOPC());
+            
+            transaction.finish();
+        }
+    }
+}
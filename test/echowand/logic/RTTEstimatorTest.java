@@ -0,0 +1,55 @@
+package echowand.logic;
+
+import echowand.net.InternalSubnet;
+import echowand.net.Node;
+import echowand.net.SubnetException;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class RTTEstimatorTest {
+    
+    @Test
+    public void testEstimate() throws SubnetException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        Node node = subnet.getRemoteNode("node");
+        RTTEstimator estimator = new RTTEstimator();
+        
+        assertFalse(estimator.hasEstimate(node));
+        assertEquals(500, estimator.getRetransmissionTimeout(node, 500));
+        
+        estimator.addSample(node, 100);
+        assertTrue(estimator.hasEstimate(node));
+        assertEquals(100.0, estimator.getSmoothedRTT(node), 0.001);
+        assertEquals(300, estimator.getRetransmissionTimeout(node, 500));
+        
+        for (int i=0; i<100; i++) {
+            estimator.addSample(node, 100);
+        }
+        assertEquals(100.0, estimator.getSmoothedRTT(node), 0.001);
+        long rto = estimator.getRetransmissionTimeout(node, 500);
+        assertTrue(rto >= 100 && rto <= 101);
+        
+        Node fastNode = subnet.getRemoteNode("fast");
+        estimator.addSample(fastNode, 1);
+        assertEquals(RTTEstimator.MIN_RTO, estimator.getRetransmissionTimeout(fastNode, 500));
+        
+        estimator.reset(node);
+        assertFalse(estimator.hasEstimate(node));
+    }
+    
+    @Test
+    public void testRetryTimeout() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 2.0, 0.0, false);
+        assertEquals(100, policy.getRetryTimeout(100, 0));
+        assertEquals(200, policy.getRetryTimeout(100, 1));
+        assertEquals(400, policy.getRetryTimeout(100, 2));
+        
+        RetryPolicy jitterPolicy = new RetryPolicy(3, 100, 2.0, 0.5, false);
+        long timeout = jitterPolicy.getRetryTimeout(100, 1);
+        assertTrue(timeout >= 200 && timeout <= 300);
+    }
+}
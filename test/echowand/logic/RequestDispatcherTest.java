@@ -21,6 +21,8 @@ import echowand.info.DeviceObjectInfo;
 import echowand.object.LocalObjectManager;
 import echowand.object.LocalObject;
 import echowand.info.TemperatureSensorInfo;
+import echowand.util.Histogram;
+import echowand.util.MetricsRegistry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.*;
@@ -184,6 +186,59 @@ public class RequestDispatcherTest {
         commonFrame.setEDATA(new SimplePayload());
         assertFalse(dispatcher.process(subnet, frame, false));
     }
+    
+    @Test
+    public void testTargetedRouting() throws SubnetException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        RequestDispatcher dispatcher = new RequestDispatcher();
+        
+        CountingRequestProcessor infProcessor = new CountingRequestProcessor(ESV.INF, new EOJ("001101"));
+        CountingRequestProcessor getProcessor = new CountingRequestProcessor(ESV.Get, null);
+        dispatcher.addRequestProcessor(infProcessor);
+        dispatcher.addRequestProcessor(getProcessor);
+        dispatcher.addRequestProcessor(new ReturnTrueRequestProcessor());
+        
+        assertEquals(3, dispatcher.countRequestProcessors());
+        assertEquals(2, dispatcher.countRequestProcessors(ESV.INF));
+        assertEquals(2, dispatcher.countRequestProcessors(ESV.Get));
+        assertEquals(1, dispatcher.countRequestProcessors(ESV.SetC));
+        
+        CommonFrame inf1 = new CommonFrame(new EOJ("001101"), new EOJ("001101"), ESV.INF);
+        CommonFrame inf2 = new CommonFrame(new EOJ("001101"), new EOJ("001102"), ESV.INF);
+        CommonFrame get = new CommonFrame(new EOJ("0ef001"), new EOJ("001101"), ESV.Get);
+        
+        assertTrue(dispatcher.process(subnet, new Frame(subnet.getLocalNode(), subnet.getLocalNode(), inf1), false));
+        assertTrue(dispatcher.process(subnet, new Frame(subnet.getLocalNode(), subnet.getLocalNode(), inf2), false));
+        assertTrue(dispatcher.process(subnet, new Frame(subnet.getLocalNode(), subnet.getLocalNode(), get), false));
+        
+        assertEquals(1, infProcessor.count);
+        assertEquals(1, getProcessor.count);
+        
+        dispatcher.removeRequestProcessor(infProcessor);
+        assertEquals(1, dispatcher.countRequestProcessors(ESV.INF));
+        assertEquals(2, dispatcher.countRequestProcessors(ESV.Get));
+    }
+    
+    @Test
+    public void testDispatchMetrics() throws SubnetException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        RequestDispatcher dispatcher = new RequestDispatcher();
+        dispatcher.addRequestProcessor(new ReturnTrueRequestProcessor());
+        
+        MetricsRegistry registry = new MetricsRegistry();
+        dispatcher.setMetricsRegistry(registry);
+        
+        CommonFrame get = new CommonFrame(new EOJ("0ef001"), new EOJ("001101"), ESV.Get);
+        assertTrue(dispatcher.process(subnet, new Frame(subnet.getLocalNode(), subnet.getLocalNode(), get), false));
+        assertTrue(dispatcher.process(subnet, new Frame(subnet.getLocalNode(), subnet.getLocalNode(), get), false));
+        
+        Histogram histogram = registry.getHistogram("dispatch." + ReturnTrueRequestProcessor.class.getName());
+        assertEquals(2, histogram.getCount());
+        
+        dispatcher.setMetricsRegistry(null);
+        assertTrue(dispatcher.process(subnet, new Frame(subnet.getLocalNode(), subnet.getLocalNode(), get), false));
+        assertEquals(2, histogram.getCount());
+    }
 }
 
 class ReturnTrueRequestProcessor implements RequestProcessor {
@@ -202,3 +257,23 @@ class ReturnTrueRequestProcessor implements RequestProcessor {
     @Override
     public boolean processINFC(Subnet subnet, Frame frame, boolean processed){ return true; }
 }
+
+class CountingRequestProcessor extends DefaultRequestProcessor {
+    public ESV esv;
+    public EOJ deoj;
+    public int count = 0;
+    
+    public CountingRequestProcessor(ESV esv, EOJ deoj) {
+        this.esv = esv;
+        this.deoj = deoj;
+    }
+    
+    @Override
+    public boolean isTargetESV(ESV esv) { return this.esv == esv; }
+    @Override
+    public boolean isTargetDEOJ(EOJ deoj) { return this.deoj == null || this.deoj.equals(deoj); }
+    @Override
+    public boolean processGet(Subnet subnet, Frame frame, boolean processed){ count++; return true; }
+    @Override
+    public boolean processINF(Subnet subnet, Frame frame, boolean processed){ count++; return true; }
+}
@@ -1,6 +1,8 @@
 package echowand.logic;
 
+import echowand.common.Data;
 import echowand.common.EOJ;
+import echowand.common.EPC;
 import echowand.logic.TransactionConfig;
 import echowand.common.ESV;
 import echowand.net.InternalSubnet;
@@ -56,4 +58,34 @@ public class TransactionConfigTest {
         assertEquals(new EOJ("123456"), config.getSourceEOJ());
         assertEquals(new EOJ("789abc"), config.getDestinationEOJ());
     }
+    
+    @Test
+    public void testResolveExpectedResponses() throws SubnetException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        SetGetTransactionConfig config = new SetGetTransactionConfig();
+        config.addGet(EPC.x80);
+        config.setSenderNode(subnet.getLocalNode());
+        config.setReceiverNode(subnet.getRemoteNode("remote"));
+        config.setDestinationEOJ(new EOJ("001101"));
+        assertEquals(TransactionConfig.EXPECTED_RESPONSES_AUTO, config.getExpectedResponses());
+        assertEquals(1, config.resolveExpectedResponses(subnet.getGroupNode()));
+        
+        config.setDestinationEOJ(new EOJ("001100"));
+        assertEquals(0, config.resolveExpectedResponses(subnet.getGroupNode()));
+        
+        config.setDestinationEOJ(new EOJ("001101"));
+        config.setReceiverNode(subnet.getGroupNode());
+        assertEquals(0, config.resolveExpectedResponses(subnet.getGroupNode()));
+        
+        config.setExpectedResponses(3);
+        assertEquals(3, config.resolveExpectedResponses(subnet.getGroupNode()));
+        
+        SetGetTransactionConfig setIConfig = new SetGetTransactionConfig();
+        setIConfig.setResponseRequired(false);
+        setIConfig.addSet(EPC.x80, new Data((byte)0x30));
+        setIConfig.setReceiverNode(subnet.getRemoteNode("remote"));
+        setIConfig.setDestinationEOJ(new EOJ("001101"));
+        assertEquals(ESV.SetI, setIConfig.getESV());
+        assertEquals(0, setIConfig.resolveExpectedResponses(subnet.getGroupNode()));
+    }
 }
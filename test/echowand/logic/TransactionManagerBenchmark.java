@@ -0,0 +1,55 @@
+package echowand.logic;
+
+import echowand.common.EOJ;
+import echowand.common.ESV;
+import echowand.net.CommonFrame;
+import echowand.net.Frame;
+import echowand.net.InternalSubnet;
+import echowand.net.SubnetException;
+import java.util.LinkedList;
+
+/**
+ * 処理中のTransaction数に対するTransactionManager.processの処理時間を計測する。
+ * @author Yoshiki Makino
+ */
+public class TransactionManagerBenchmark {
+    private static final int[] SIZES = {10, 100, 1000, 10000};
+    private static final int WARMUP = 200000;
+    private static final int ITERATIONS = 1000000;
+
+    private static long measure(TransactionManager transactionManager, InternalSubnet subnet, Frame frame, int iterations) {
+        long start = System.nanoTime();
+        for (int i=0; i<iterations; i++) {
+            transactionManager.process(subnet, frame, false);
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws SubnetException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+
+        for (int size : SIZES) {
+            TransactionManager transactionManager = new TransactionManager(subnet);
+            LinkedList<Transaction> transactions = new LinkedList<Transaction>();
+
+            for (int i=0; i<size; i++) {
+                Transaction transaction = transactionManager.createTransaction(new SetGetTransactionConfig());
+                transactionManager.addTransaction(transaction);
+                transactions.add(transaction);
+            }
+
+            CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("0ef001"), ESV.Get_Res);
+            cf.setTID((short)(transactions.getLast().getTID() + 1));
+            Frame frame = new Frame(subnet.getRemoteNode("remote"), subnet.getLocalNode(), cf);
+
+            measure(transactionManager, subnet, frame, WARMUP);
+            long elapsed = measure(transactionManager, subnet, frame, ITERATIONS);
+
+            System.out.println(String.format("transactions=%d: %.1f ns/process", size, (double)elapsed / ITERATIONS));
+
+            for (Transaction transaction : transactions) {
+                transactionManager.removeTransaction(transaction);
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ import echowand.object.LocalObjectManager;
 import echowand.object.LocalObject;
 import echowand.info.TemperatureSensorInfo;
 import echowand.logic.SetGetTransactionConfig;
+import echowand.util.MetricsRegistry;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -75,4 +76,89 @@ public class TransactionManagerTest {
         assertTrue(t != null);
         assertEquals(config, t.getTransactionConfig());
     }
+    
+    @Test
+    public void testAddAndRemoveTransaction() throws SubnetException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        Transaction t1 = transactionManager.createTransaction(new SetGetTransactionConfig());
+        Transaction t2 = transactionManager.createTransaction(new SetGetTransactionConfig());
+        
+        assertEquals(0, transactionManager.countActiveTransactions());
+        assertFalse(transactionManager.hasTransaction(t1.getTID()));
+        
+        transactionManager.addTransaction(t1);
+        transactionManager.addTransaction(t2);
+        assertEquals(2, transactionManager.countActiveTransactions());
+        assertTrue(transactionManager.hasTransaction(t1.getTID()));
+        assertTrue(transactionManager.hasTransaction(t2.getTID()));
+        
+        transactionManager.removeTransaction(t1);
+        assertEquals(1, transactionManager.countActiveTransactions());
+        assertFalse(transactionManager.hasTransaction(t1.getTID()));
+        assertTrue(transactionManager.hasTransaction(t2.getTID()));
+        
+        transactionManager.removeTransaction(t1);
+        assertEquals(1, transactionManager.countActiveTransactions());
+        
+        transactionManager.removeTransaction(t2);
+        assertEquals(0, transactionManager.countActiveTransactions());
+        assertFalse(transactionManager.hasTransaction(t2.getTID()));
+    }
+    
+    @Test
+    public void testAllocateTID() throws SubnetException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        
+        Transaction t1 = transactionManager.createTransaction(new SetGetTransactionConfig());
+        assertEquals((short)1, t1.getTID());
+        transactionManager.addTransaction(t1);
+        
+        for (int i=2; i<=0xffff; i++) {
+            assertEquals((short)i, transactionManager.allocateTID());
+        }
+        assertEquals(1, transactionManager.countTIDWraps());
+        
+        assertEquals((short)2, transactionManager.allocateTID());
+        assertEquals(1, transactionManager.countSkippedTIDs());
+        assertEquals(0, transactionManager.countReusedTIDs());
+        assertEquals(0xffff + 1, transactionManager.countAllocatedTIDs());
+        
+        transactionManager.removeTransaction(t1);
+    }
+    
+    @Test
+    public void testNodeMetrics() throws SubnetException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        MetricsRegistry registry = new MetricsRegistry();
+        Node node1 = subnet.getLocalNode();
+        Node node2 = subnet.getGroupNode();
+        
+        transactionManager.setMetricsRegistry(registry);
+        assertEquals(TransactionManager.DEFAULT_MAX_NODE_METRICS, transactionManager.getMaxNodeMetrics());
+        transactionManager.setMaxNodeMetrics(1);
+        
+        transactionManager.recordRTT(node1, 100);
+        transactionManager.recordRTT(node2, 200);
+        transactionManager.recordTimeout(node1);
+        transactionManager.recordRetry(node2);
+        
+        assertEquals(2, registry.getHistogram("transaction.rtt").getCount());
+        assertEquals(1, registry.getHistogram("transaction.rtt." + node1).getCount());
+        assertNull(registry.getHistogram("transaction.rtt." + node2));
+        assertEquals(1, registry.getCounter("transaction.timeouts." + node1).getCount());
+        assertEquals(1, registry.getCounter("transaction.retries").getCount());
+        assertEquals(1, transactionManager.countNodeMetrics());
+        
+        assertTrue(transactionManager.removeNodeMetrics(node1));
+        assertFalse(transactionManager.removeNodeMetrics(node1));
+        assertNull(registry.getHistogram("transaction.rtt." + node1));
+        assertNull(registry.getCounter("transaction.timeouts." + node1));
+        assertEquals(0, transactionManager.countNodeMetrics());
+        
+        transactionManager.recordRTT(node2, 200);
+        assertEquals(1, registry.getHistogram("transaction.rtt." + node2).getCount());
+    }
 }
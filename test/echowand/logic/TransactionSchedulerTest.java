@@ -0,0 +1,258 @@
+package echowand.logic;
+
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.net.Frame;
+import echowand.net.InternalSubnet;
+import echowand.net.Node;
+import echowand.net.Subnet;
+import echowand.net.SubnetException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class TransactionSchedulerTest {
+    private InternalSubnet subnet;
+    private TransactionManager transactionManager;
+    
+    @Before
+    public void setUp() throws SubnetException {
+        subnet = InternalSubnet.startSubnet();
+        transactionManager = new TransactionManager(subnet);
+    }
+    
+    private Transaction createTransaction(Node node) {
+        SetGetTransactionConfig config = new SetGetTransactionConfig();
+        config.setSenderNode(subnet.getLocalNode());
+        config.setReceiverNode(node);
+        config.setSourceEOJ(new EOJ("0ef001"));
+        config.setDestinationEOJ(new EOJ("001101"));
+        config.addGet(EPC.x80);
+        
+        Transaction transaction = transactionManager.createTransaction(config);
+        transaction.setTimeout(-1);
+        return transaction;
+    }
+    
+    private List<Short> receiveTIDs(int count) throws SubnetException {
+        ArrayList<Short> tids = new ArrayList<Short>();
+        for (int i=0; i<count; i++) {
+            Frame frame = subnet.receiveNoWait();
+            if (frame == null) {
+                break;
+            }
+            tids.add(frame.getCommonFrame().getTID());
+        }
+        return tids;
+    }
+    
+    @Test
+    public void testMaxInFlightPerNode() throws SubnetException {
+        TransactionScheduler scheduler = new TransactionScheduler(1);
+        transactionManager.setTransactionScheduler(scheduler);
+        assertEquals(scheduler, transactionManager.getTransactionScheduler());
+        
+        Node node = subnet.getLocalNode();
+        Transaction t1 = createTransaction(node);
+        Transaction t2 = createTransaction(node);
+        
+        t1.execute();
+        t2.execute();
+        
+        assertTrue(t1.isWaitingResponse());
+        assertTrue(t2.isWaitingResponse());
+        assertEquals(1, scheduler.countInFlight(node));
+        assertEquals(1, scheduler.countWaiting(node));
+        assertEquals(1, transactionManager.countActiveTransactions());
+        
+        List<Short> tids = receiveTIDs(2);
+        assertEquals(1, tids.size());
+        assertEquals(t1.getTID(), (short)tids.get(0));
+        
+        t1.finish();
+        assertEquals(1, scheduler.countInFlight(node));
+        assertEquals(0, scheduler.countWaiting(node));
+        
+        tids = receiveTIDs(2);
+        assertEquals(1, tids.size());
+        assertEquals(t2.getTID(), (short)tids.get(0));
+        
+        t2.finish();
+        assertEquals(0, scheduler.countInFlight());
+        assertEquals(2, scheduler.countSubmitted());
+        assertEquals(1, scheduler.countQueued());
+        assertEquals(2, scheduler.countCompleted());
+    }
+    
+    @Test
+    public void testRoundRobin() throws SubnetException {
+        TransactionScheduler scheduler = new TransactionScheduler(TransactionScheduler.UNLIMITED, 1);
+        transactionManager.setTransactionScheduler(scheduler);
+        
+        Node node1 = subnet.getLocalNode();
+        Node node2 = subnet.getGroupNode();
+        
+        Transaction t0 = createTransaction(node1);
+        Transaction t1a = createTransaction(node1);
+        Transaction t1b = createTransaction(node1);
+        Transaction t2a = createTransaction(node2);
+        
+        t0.execute();
+        t1a.execute();
+        t1b.execute();
+        t2a.execute();
+        assertEquals(3, scheduler.countWaiting());
+        
+        t0.finish();
+        assertTrue(scheduler.countInFlight(node2) == 1);
+        t2a.finish();
+        assertTrue(scheduler.countInFlight(node1) == 1);
+        assertEquals(1, scheduler.countWaiting());
+        t1a.finish();
+        t1b.finish();
+        assertEquals(0, scheduler.countWaiting());
+        assertEquals(0, scheduler.countInFlight());
+    }
+    
+    @Test
+    public void testFinishWaitingTransaction() throws SubnetException {
+        TransactionScheduler scheduler = new TransactionScheduler(1);
+        transactionManager.setTransactionScheduler(scheduler);
+        
+        Node node = subnet.getLocalNode();
+        Transaction t1 = createTransaction(node);
+        Transaction t2 = createTransaction(node);
+        
+        t1.execute();
+        t2.execute();
+        t2.finish();
+        
+        assertTrue(t2.isDone());
+        assertEquals(0, scheduler.countWaiting());
+        
+        t1.finish();
+        assertEquals(0, scheduler.countInFlight());
+        assertEquals(1, scheduler.countCompleted());
+    }
+    
+    @Test
+    public void testStartAfterFinishListeners() throws SubnetException {
+        TransactionScheduler scheduler = new TransactionScheduler(1);
+        transactionManager.setTransactionScheduler(scheduler);
+        
+        Node node = subnet.getLocalNode();
+        Transaction t1 = createTransaction(node);
+        Transaction t2 = createTransaction(node);
+        final List<Integer> sentBeforeFinish = new ArrayList<Integer>();
+        
+        t1.addTransactionListener(new TransactionListener() {
+            @Override
+            public void begin(Transaction t) {
+            }
+
+            @Override
+            public void send(Transaction t, Subnet subnet, Frame frame, boolean success) {
+            }
+
+            @Override
+            public void receive(Transaction t, Subnet subnet, Frame frame) {
+            }
+
+            @Override
+            public void finish(Transaction t) {
+                try {
+                    sentBeforeFinish.add(receiveTIDs(2).size());
+                } catch (SubnetException ex) {
+                    fail();
+                }
+            }
+        });
+        
+        t1.execute();
+        t2.execute();
+        receiveTIDs(1);
+        
+        t1.finish();
+        assertEquals(1, sentBeforeFinish.size());
+        assertEquals(0, (int)sentBeforeFinish.get(0));
+        assertEquals(1, receiveTIDs(2).size());
+        t2.finish();
+    }
+    
+    @Test
+    public void testManyImmediatelyFinishedTransactions() throws SubnetException {
+        TransactionScheduler scheduler = new TransactionScheduler(1);
+        transactionManager.setTransactionScheduler(scheduler);
+        
+        Node node = subnet.getLocalNode();
+        Transaction first = createTransaction(node);
+        first.execute();
+        
+        ArrayList<Transaction> transactions = new ArrayList<Transaction>();
+        for (int i=0; i<20000; i++) {
+            Transaction transaction = createTransaction(node);
+            transaction.setTimeout(0);
+            transaction.execute();
+            transactions.add(transaction);
+        }
+        assertEquals(20000, scheduler.countWaiting(node));
+        
+        first.finish();
+        
+        for (Transaction transaction : transactions) {
+            assertTrue(transaction.isDone());
+        }
+        assertEquals(0, scheduler.countWaiting());
+        assertEquals(0, scheduler.countInFlight());
+        assertEquals(20001, scheduler.countCompleted());
+    }
+    
+    @Test
+    public void testTIDReservedWhileQueued() throws SubnetException {
+        TransactionScheduler scheduler = new TransactionScheduler(1);
+        transactionManager.setTransactionScheduler(scheduler);
+        
+        Node node = subnet.getLocalNode();
+        Transaction t1 = createTransaction(node);
+        Transaction t2 = createTransaction(node);
+        Transaction t3 = createTransaction(node);
+        
+        t1.execute();
+        t2.execute();
+        assertEquals(1, scheduler.countWaiting(node));
+        assertFalse(transactionManager.hasTransaction(t2.getTID()));
+        
+        for (int i=0; i<0x20000; i++) {
+            short tid = transactionManager.allocateTID();
+            assertTrue(tid != t1.getTID());
+            assertTrue(tid != t2.getTID());
+            assertTrue(tid != t3.getTID());
+        }
+        assertTrue(transactionManager.countTIDWraps() >= 2);
+        
+        Transaction t4 = createTransaction(node);
+        assertTrue(t4.getTID() != t1.getTID());
+        assertTrue(t4.getTID() != t2.getTID());
+        assertTrue(t4.getTID() != t3.getTID());
+        
+        t1.finish();
+        List<Short> tids = receiveTIDs(2);
+        assertEquals(2, tids.size());
+        assertEquals(t2.getTID(), (short)tids.get(1));
+        
+        t2.finish();
+        t3.finish();
+        t4.finish();
+        
+        boolean reused = false;
+        for (int i=0; i<0x10000 && !reused; i++) {
+            reused = transactionManager.allocateTID() == t2.getTID();
+        }
+        assertTrue(reused);
+    }
+}
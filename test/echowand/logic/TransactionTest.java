@@ -12,6 +12,11 @@ import echowand.common.ESV;
 import echowand.common.EOJ;
 import echowand.common.EPC;
 import echowand.net.Inet4Subnet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.*;
@@ -203,6 +208,88 @@ public class TransactionTest {
         assertTrue(t.isDone());
     }
     
+    @Test
+    public void testExecuteAsync() throws SubnetException, InterruptedException, ExecutionException, TimeoutException {
+        Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
+        t.setTimeout(100);
+        
+        CompletableFuture<List<Frame>> future = t.executeAsync();
+        assertFalse(future.isDone());
+        
+        Frame reqFrame = subnet.receive();
+        Frame resFrame = createReplyFrame(reqFrame);
+        t.receiveResponse(resFrame);
+        
+        List<Frame> frames = future.get(1, TimeUnit.SECONDS);
+        assertEquals(1, frames.size());
+        assertEquals(resFrame, frames.get(0));
+        assertTrue(t.isDone());
+        
+        assertTrue(t.executeAsync().isCompletedExceptionally());
+    }
+    
+    @Test
+    public void testExecuteAsyncFail() throws InterruptedException, TimeoutException {
+        Transaction t = new Transaction(failSendSubnet, failSendTransactionManager, failSendTransactionConfig);
+        
+        try {
+            t.executeAsync().get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SubnetException);
+        }
+    }
+    
+    private SetGetTransactionConfig createRetryTransactionConfig() {
+        SetGetTransactionConfig config = new SetGetTransactionConfig();
+        config.setSenderNode(subnet.getLocalNode());
+        config.setReceiverNode(subnet.getLocalNode());
+        config.setSourceEOJ(new EOJ("0ef001"));
+        config.setDestinationEOJ(new EOJ("001101"));
+        config.addGet(EPC.x80);
+        config.setRetryPolicy(new RetryPolicy(2, 50, 1.0, 0.0, false));
+        return config;
+    }
+    
+    @Test
+    public void testRetry() throws SubnetException, InterruptedException {
+        SetGetTransactionConfig config = createRetryTransactionConfig();
+        config.setExpectedResponses(TransactionConfig.EXPECTED_RESPONSES_UNLIMITED);
+        Transaction t = new Transaction(subnet, transactionManager, config);
+        t.setTimeout(1000);
+        t.execute();
+        
+        Frame reqFrame1 = subnet.receive();
+        Frame reqFrame2 = subnet.receive();
+        assertEquals(t.getTID(), reqFrame2.getCommonFrame().getTID());
+        assertEquals(1, t.countRetries());
+        
+        Frame resFrame = createReplyFrame(reqFrame2);
+        assertTrue(t.receiveResponse(resFrame));
+        assertTrue(t.receiveResponse(createReplyFrame(reqFrame1)));
+        assertEquals(1, t.countResponses());
+        
+        Thread.sleep(150);
+        assertEquals(1, t.countRetries());
+        assertNull(subnet.receiveNoWait());
+        assertFalse(transactionManager.getRTTEstimator().hasEstimate(subnet.getLocalNode()));
+        
+        t.finish();
+    }
+    
+    @Test
+    public void testRetryRTTSample() throws SubnetException {
+        Transaction t = new Transaction(subnet, transactionManager, createRetryTransactionConfig());
+        t.setTimeout(1000);
+        t.execute();
+        
+        Frame reqFrame = subnet.receive();
+        assertTrue(t.receiveResponse(createReplyFrame(reqFrame)));
+        assertEquals(0, t.countRetries());
+        assertTrue(transactionManager.getRTTEstimator().hasEstimate(subnet.getLocalNode()));
+        assertTrue(t.isDone());
+    }
+    
     @Test
     public void testInterrupt() {
         Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
@@ -437,6 +524,55 @@ public class TransactionTest {
         }
     }
     
+    @Test
+    public void testCancel() throws SubnetException {
+        Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
+        t.setTimeout(-1);
+        
+        TransactionListenerTest listener = new TransactionListenerTest();
+        t.addTransactionListener(listener);
+        
+        t.execute();
+        assertEquals(1, transactionManager.countActiveTransactions());
+        assertFalse(t.isCancelled());
+        
+        assertTrue(t.cancel());
+        assertTrue(t.isCancelled());
+        assertTrue(t.isDone());
+        assertFalse(t.isWaitingResponse());
+        assertTrue(listener.finished);
+        assertEquals(0, transactionManager.countActiveTransactions());
+        
+        assertFalse(t.cancel());
+    }
+    
+    @Test
+    public void testDeadline() throws SubnetException, InterruptedException {
+        Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
+        t.setTimeout(-1);
+        t.setDeadline(Deadline.afterMillis(100));
+        
+        t.execute();
+        assertTrue(t.isWaitingResponse());
+        Thread.sleep(300);
+        assertTrue(t.isDone());
+    }
+    
+    @Test
+    public void testDeadlineExpired() throws SubnetException {
+        Transaction t = new Transaction(subnet, transactionManager, transactionConfig1);
+        t.setTimeout(1000);
+        t.setDeadline(Deadline.afterMillis(-1));
+        
+        TransactionListenerTest listener = new TransactionListenerTest();
+        t.addTransactionListener(listener);
+        
+        t.execute();
+        assertTrue(t.isDone());
+        assertEquals(0, listener.sendCount);
+        assertEquals(0, transactionManager.countActiveTransactions());
+    }
+    
     public class TransactionListenerTest implements TransactionListener {
             public int sendCount = 0;
             public int receiveCount = 0;
@@ -0,0 +1,181 @@
+package echowand.net;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class BoundedReceiveQueueTest {
+
+    @Test
+    public void testPutAndTake() throws SimpleSynchronousQueueException, InterruptedException {
+        BoundedReceiveQueue<Integer> queue = new BoundedReceiveQueue<Integer>(4, ReceiveQueueOverflowPolicy.BLOCK);
+
+        queue.put(1);
+        queue.put(2);
+        queue.put(3);
+        assertEquals(3, queue.size());
+
+        assertEquals(Integer.valueOf(1), queue.take());
+        assertEquals(Integer.valueOf(2), queue.take());
+        queue.put(4);
+        queue.put(5);
+        queue.put(6);
+        assertEquals(4, queue.size());
+        assertEquals(4, queue.getMaxSize());
+
+        assertEquals(Integer.valueOf(3), queue.take());
+        assertEquals(Integer.valueOf(4), queue.take());
+        assertEquals(Integer.valueOf(5), queue.take());
+        assertEquals(Integer.valueOf(6), queue.take());
+        assertEquals(0, queue.size());
+        assertEquals(6, queue.countPut());
+        assertEquals(0, queue.countDropped());
+    }
+
+    @Test
+    public void testDropNewest() throws SimpleSynchronousQueueException, InterruptedException {
+        BoundedReceiveQueue<Integer> queue = new BoundedReceiveQueue<Integer>(2, ReceiveQueueOverflowPolicy.DROP_NEWEST);
+
+        queue.put(1);
+        queue.put(2);
+        queue.put(3);
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.countDropped());
+
+        assertEquals(Integer.valueOf(1), queue.take());
+        assertEquals(Integer.valueOf(2), queue.take());
+    }
+
+    @Test
+    public void testDropOldest() throws SimpleSynchronousQueueException, InterruptedException {
+        BoundedReceiveQueue<Integer> queue = new BoundedReceiveQueue<Integer>(2, ReceiveQueueOverflowPolicy.DROP_OLDEST);
+
+        queue.put(1);
+        queue.put(2);
+        queue.put(3);
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.countDropped());
+
+        assertEquals(Integer.valueOf(2), queue.take());
+        assertEquals(Integer.valueOf(3), queue.take());
+    }
+
+    @Test
+    public void testBlock() throws SimpleSynchronousQueueException, InterruptedException {
+        final BoundedReceiveQueue<Integer> queue = new BoundedReceiveQueue<Integer>(1, ReceiveQueueOverflowPolicy.BLOCK);
+
+        queue.put(1);
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    queue.put(2);
+                } catch (Exception ex) {
+                }
+            }
+        };
+        thread.start();
+
+        thread.join(100);
+        assertTrue(thread.isAlive());
+
+        assertEquals(Integer.valueOf(1), queue.take());
+        thread.join(1000);
+        assertFalse(thread.isAlive());
+        assertEquals(Integer.valueOf(2), queue.take());
+    }
+
+    @Test
+    public void testPoll() throws SimpleSynchronousQueueException, InterruptedException {
+        BoundedReceiveQueue<Integer> queue = new BoundedReceiveQueue<Integer>(1, ReceiveQueueOverflowPolicy.BLOCK);
+
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        queue.put(1);
+        assertEquals(Integer.valueOf(1), queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testDisable() throws InterruptedException {
+        final BoundedReceiveQueue<Integer> queue = new BoundedReceiveQueue<Integer>(1, ReceiveQueueOverflowPolicy.BLOCK);
+        final boolean[] failed = new boolean[1];
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    queue.take();
+                } catch (SimpleSynchronousQueueException ex) {
+                    failed[0] = true;
+                } catch (InterruptedException ex) {
+                }
+            }
+        };
+        thread.start();
+
+        thread.join(100);
+        assertTrue(thread.isAlive());
+
+        queue.disable();
+        thread.join(1000);
+        assertFalse(thread.isAlive());
+        assertTrue(failed[0]);
+        assertFalse(queue.isEnabled());
+
+        try {
+            queue.put(1);
+            fail();
+        } catch (SimpleSynchronousQueueException ex) {
+        }
+
+        queue.enable();
+        assertTrue(queue.isEnabled());
+    }
+
+    @Test
+    public void testDiscardHandler() throws SimpleSynchronousQueueException, InterruptedException {
+        final List<Integer> discarded = new ArrayList<Integer>();
+        Consumer<Integer> handler = new Consumer<Integer>() {
+            @Override
+            public void accept(Integer value) {
+                discarded.add(value);
+            }
+        };
+
+        BoundedReceiveQueue<Integer> newest = new BoundedReceiveQueue<Integer>(2, ReceiveQueueOverflowPolicy.DROP_NEWEST);
+        newest.setDiscardHandler(handler);
+        assertSame(handler, newest.getDiscardHandler());
+        newest.put(1);
+        newest.put(2);
+        newest.put(3);
+        assertEquals(Arrays.asList(3), discarded);
+
+        BoundedReceiveQueue<Integer> oldest = new BoundedReceiveQueue<Integer>(2, ReceiveQueueOverflowPolicy.DROP_OLDEST);
+        oldest.setDiscardHandler(handler);
+        oldest.put(4);
+        oldest.put(5);
+        oldest.put(6);
+        assertEquals(Arrays.asList(3, 4), discarded);
+
+        oldest.disable();
+        oldest.enable();
+        assertEquals(Arrays.asList(3, 4, 5, 6), discarded);
+
+        newest.clear();
+        assertEquals(0, newest.size());
+        assertEquals(Arrays.asList(3, 4, 5, 6, 1, 2), discarded);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new BoundedReceiveQueue<Integer>(0, ReceiveQueueOverflowPolicy.BLOCK);
+    }
+}
@@ -172,4 +172,110 @@ public class CommonFrameTest {
         assertNotNull(commonFrame2.getEDATA(StandardPayload.class));
         assertNull(commonFrame2.getEDATA(SimplePayload.class));
     }
+    
+    @Test
+    public void testLazyCreationFromByteBuffer() throws InvalidDataException {
+        ByteBuffer buffer = ByteBuffer.allocate(14);
+        buffer.put((byte)0x10);
+        buffer.put((byte)0x81);
+        buffer.putShort((short)0x0001);
+        buffer.put(new EOJ("123456").toBytes());
+        buffer.put(new EOJ("abcdef").toBytes());
+        buffer.put(ESV.Get.toByte());
+        buffer.put((byte)0x01);
+        buffer.put(new Property(EPC.x80).toBytes());
+        buffer.flip();
+        
+        CommonFrame f = new CommonFrame(buffer);
+        assertEquals((short)0x0001, f.getTID());
+        assertTrue(f.isStandardPayload());
+        assertNotNull(f.getView());
+        assertEquals(ESV.Get, f.getView().getESV());
+        
+        StandardPayload payload = f.getEDATA(StandardPayload.class);
+        assertNull(f.getView());
+        assertEquals(new EOJ("123456"), payload.getSEOJ());
+        assertEquals(EPC.x80, payload.getFirstPropertyAt(0).getEPC());
+        assertArrayEquals(buffer.array(), f.toBytes());
+    }
+    
+    @Test(expected=InvalidDataException.class)
+    public void testLazyCreationWithInvalidByteBuffer() throws InvalidDataException {
+        new CommonFrame(ByteBuffer.wrap(new byte[]{(byte)0x10, (byte)0x81, (byte)0x00, (byte)0x01, (byte)0x00}));
+    }
+    
+    @Test
+    public void testWriteTo() {
+        CommonFrame f = new CommonFrame(new EOJ("0ef001"), new EOJ("001101"), ESV.SetGet);
+        f.setTID((short)0x1234);
+        StandardPayload payload = f.getEDATA(StandardPayload.class);
+        payload.addFirstProperty(new Property(EPC.x88, new Data((byte)0x12, (byte)0x34)));
+        payload.addSecondProperty(new Property(EPC.x80));
+        
+        byte[] expected = f.toBytes();
+        assertEquals(expected.length, f.size());
+        
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put((byte)0xff);
+        assertEquals(expected.length, f.writeTo(buffer));
+        assertEquals(1 + expected.length, buffer.position());
+        
+        byte[] written = new byte[expected.length];
+        System.arraycopy(buffer.array(), 1, written, 0, expected.length);
+        assertArrayEquals(expected, written);
+    }
+    
+    @Test
+    public void testWriteToWithDefaultPayload() {
+        CommonFrame f = new CommonFrame();
+        f.setTID((short)0x1234);
+        f.setEDATA(new Payload() {
+            @Override
+            public int size() {
+                return 2;
+            }
+            
+            @Override
+            public byte[] toBytes() {
+                return new byte[]{(byte)0xab, (byte)0xcd};
+            }
+        });
+        
+        byte[] expected = f.toBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+        assertEquals(expected.length, f.writeTo(buffer));
+        assertArrayEquals(expected, buffer.array());
+    }
+    
+    @Test
+    public void testWriteToWithShortBuffer() {
+        CommonFrame f = new CommonFrame(new EOJ("0ef001"), new EOJ("001101"), ESV.Get);
+        f.getEDATA(StandardPayload.class).addFirstProperty(new Property(EPC.x80));
+        ByteBuffer buffer = ByteBuffer.allocate(f.size() - 1);
+        
+        try {
+            f.writeTo(buffer);
+            fail();
+        } catch (java.nio.BufferOverflowException ex) {
+        }
+        
+        assertEquals(0, buffer.position());
+    }
+    
+    @Test
+    public void testWriteToWithoutDecoding() throws InvalidDataException {
+        byte[] bytes = new byte[]{(byte)0x10, (byte)0x81, (byte)0x00, (byte)0x01,
+            (byte)0x00, (byte)0x11, (byte)0x01, (byte)0x0e, (byte)0xf0, (byte)0x01,
+            (byte)0x72, (byte)0x01, (byte)0x80, (byte)0x01, (byte)0x30};
+        CommonFrame f = new CommonFrame(ByteBuffer.wrap(bytes));
+        f.setTID((short)0x5678);
+        
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        assertEquals(bytes.length, f.writeTo(buffer));
+        assertNotNull(f.getView());
+        
+        bytes[2] = (byte)0x56;
+        bytes[3] = (byte)0x78;
+        assertArrayEquals(bytes, buffer.array());
+    }
 }
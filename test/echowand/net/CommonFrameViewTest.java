@@ -0,0 +1,169 @@
+package echowand.net;
+
+import echowand.common.Data;
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class CommonFrameViewTest {
+
+    private byte[] createGetResBytes() {
+        return new byte[]{(byte)0x10, (byte)0x81, (byte)0x12, (byte)0x34,
+            (byte)0x00, (byte)0x11, (byte)0x01, (byte)0x0e, (byte)0xf0, (byte)0x01,
+            (byte)0x72, (byte)0x02,
+            (byte)0x80, (byte)0x01, (byte)0x30,
+            (byte)0xe0, (byte)0x02, (byte)0x01, (byte)0x02};
+    }
+
+    @Test
+    public void testHeader() throws InvalidDataException {
+        CommonFrameView view = new CommonFrameView(createGetResBytes());
+        assertEquals((byte)0x10, view.getEHD1());
+        assertEquals((byte)0x81, view.getEHD2());
+        assertTrue(view.isEchonetLite());
+        assertTrue(view.isStandardPayload());
+        assertEquals((short)0x1234, view.getTID());
+        assertEquals(19, view.size());
+    }
+
+    @Test
+    public void testPayload() throws InvalidDataException {
+        CommonFrameView view = new CommonFrameView(createGetResBytes());
+        assertEquals(new EOJ("001101"), view.getSEOJ());
+        assertEquals(new EOJ("0ef001"), view.getDEOJ());
+        assertEquals(ESV.Get_Res, view.getESV());
+        assertEquals(2, view.getFirstOPC());
+        assertEquals(0, view.getSecondOPC());
+
+        assertEquals(EPC.x80, view.getFirstEPCAt(0));
+        assertEquals(1, view.getFirstPDCAt(0));
+        assertEquals(new Data((byte)0x30), view.getFirstEDTAt(0));
+
+        assertEquals(EPC.xE0, view.getFirstEPCAt(1));
+        assertEquals(2, view.getFirstPDCAt(1));
+        assertEquals(new Data((byte)0x01, (byte)0x02), view.getFirstEDTAt(1));
+        assertEquals(EPC.xE0, view.getFirstPropertyAt(1).getEPC());
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testInvalidIndex() throws InvalidDataException {
+        CommonFrameView view = new CommonFrameView(createGetResBytes());
+        view.getFirstEPCAt(2);
+    }
+
+    @Test
+    public void testOffset() throws InvalidDataException {
+        byte[] frameBytes = createGetResBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(frameBytes.length + 8);
+        buffer.position(4);
+        buffer.put(frameBytes);
+        buffer.flip();
+        buffer.position(4);
+
+        CommonFrameView view = new CommonFrameView(buffer);
+        assertEquals(4, buffer.position());
+        assertEquals((short)0x1234, view.getTID());
+        assertEquals(new Data((byte)0x01, (byte)0x02), view.getFirstEDTAt(1));
+    }
+
+    @Test
+    public void testDirectBuffer() throws InvalidDataException {
+        byte[] frameBytes = createGetResBytes();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(frameBytes.length);
+        buffer.put(frameBytes);
+        buffer.flip();
+
+        CommonFrameView view = new CommonFrameView(buffer);
+        assertEquals(new Data((byte)0x01, (byte)0x02), view.getFirstEDTAt(1));
+        assertArrayEquals(frameBytes, view.toCommonFrame().toBytes());
+    }
+
+    @Test
+    public void testSetGet() throws InvalidDataException {
+        byte[] bytes = new byte[]{(byte)0x10, (byte)0x81, (byte)0x00, (byte)0x01,
+            (byte)0x0e, (byte)0xf0, (byte)0x01, (byte)0x00, (byte)0x11, (byte)0x01,
+            (byte)0x6e, (byte)0x01,
+            (byte)0x80, (byte)0x01, (byte)0x30,
+            (byte)0x01, (byte)0xe0, (byte)0x00};
+        CommonFrameView view = new CommonFrameView(bytes);
+        assertEquals(ESV.SetGet, view.getESV());
+        assertEquals(1, view.getFirstOPC());
+        assertEquals(1, view.getSecondOPC());
+        assertEquals(EPC.xE0, view.getSecondEPCAt(0));
+        assertEquals(0, view.getSecondPDCAt(0));
+        assertEquals(0, view.getSecondEDTAt(0).size());
+
+        StandardPayload payload = (StandardPayload)view.toPayload();
+        assertEquals(1, payload.getFirstOPC());
+        assertEquals(1, payload.getSecondOPC());
+        assertEquals(EPC.xE0, payload.getSecondPropertyAt(0).getEPC());
+    }
+
+    @Test
+    public void testToCommonFrame() throws InvalidDataException {
+        byte[] bytes = createGetResBytes();
+        CommonFrame expected = new CommonFrame(bytes);
+        CommonFrame actual = new CommonFrameView(bytes).toCommonFrame();
+        assertArrayEquals(expected.toBytes(), actual.toBytes());
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testSharedView() throws InvalidDataException {
+        byte[] bytes = createGetResBytes();
+        CommonFrameView view = new CommonFrameView(bytes);
+        CommonFrame frame1 = new CommonFrame(view);
+        CommonFrame frame2 = new CommonFrame(view);
+        frame2.setTID((short)0xabcd);
+
+        assertSame(frame1.getView(), frame2.getView());
+        assertEquals((short)0x1234, frame1.getTID());
+        assertEquals((short)0xabcd, frame2.getTID());
+        assertEquals((short)0x1234, view.getTID());
+
+        byte[] bytes1 = frame1.toBytes();
+        byte[] bytes2 = frame2.toBytes();
+        assertEquals((byte)0xab, bytes2[2]);
+        assertEquals((byte)0xcd, bytes2[3]);
+        bytes2[2] = (byte)0x12;
+        bytes2[3] = (byte)0x34;
+        assertArrayEquals(bytes1, bytes2);
+    }
+
+    @Test
+    public void testArbitraryPayload() throws InvalidDataException {
+        byte[] bytes = new byte[]{(byte)0x10, (byte)0x82, (byte)0x00, (byte)0x01,
+            (byte)0x01, (byte)0x02, (byte)0x03};
+        CommonFrameView view = new CommonFrameView(bytes);
+        assertFalse(view.isStandardPayload());
+        assertEquals(ESV.Invalid, view.getESV());
+        assertNull(view.getSEOJ());
+        assertEquals(7, view.size());
+        assertArrayEquals(bytes, view.toCommonFrame().toBytes());
+    }
+
+    @Test(expected=InvalidDataException.class)
+    public void testTruncatedHeader() throws InvalidDataException {
+        new CommonFrameView(new byte[]{(byte)0x10, (byte)0x81, (byte)0x00});
+    }
+
+    @Test(expected=InvalidDataException.class)
+    public void testTruncatedProperty() throws InvalidDataException {
+        byte[] bytes = createGetResBytes();
+        new CommonFrameView(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+    }
+
+    @Test(expected=InvalidDataException.class)
+    public void testTruncatedSetGet() throws InvalidDataException {
+        new CommonFrameView(new byte[]{(byte)0x10, (byte)0x81, (byte)0x00, (byte)0x01,
+            (byte)0x0e, (byte)0xf0, (byte)0x01, (byte)0x00, (byte)0x11, (byte)0x01,
+            (byte)0x6e, (byte)0x00});
+    }
+}
@@ -35,4 +35,45 @@ public class FrameTest {
             fail();
         }
     }
+    
+    @Test
+    public void testStageTime() {
+        CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("002201"), ESV.Get);
+        Frame frame = new Frame(null, null, cf);
+        
+        assertFalse(frame.hasStageTime(FrameStage.RECEIVED));
+        assertEquals(-1, frame.getStageTime(FrameStage.RECEIVED, -1));
+        assertEquals(-1, frame.getElapsedNanos(FrameStage.RECEIVED, FrameStage.DEQUEUED));
+        
+        frame.setStageTime(FrameStage.RECEIVED, 1000);
+        frame.setStageTime(FrameStage.DEQUEUED, 1500);
+        assertTrue(frame.hasStageTime(FrameStage.RECEIVED));
+        assertEquals(1000, frame.getStageTime(FrameStage.RECEIVED, -1));
+        assertEquals(500, frame.getElapsedNanos(FrameStage.RECEIVED, FrameStage.DEQUEUED));
+        assertEquals(-1, frame.getElapsedNanos(FrameStage.RECEIVED, FrameStage.RESPONDED));
+        
+        frame.clearStageTime(FrameStage.RECEIVED);
+        assertFalse(frame.hasStageTime(FrameStage.RECEIVED));
+        
+        long before = System.nanoTime();
+        frame.markStage(FrameStage.RESPONDED);
+        assertTrue(frame.getStageTime(FrameStage.RESPONDED, -1) >= before);
+    }
+    
+    @Test
+    public void testTimestamp() {
+        CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("002201"), ESV.Get);
+        Frame frame = new Frame(null, null, cf);
+        
+        assertFalse(frame.hasTimestamp());
+        assertEquals(-1, frame.getTimestamp(-1));
+        
+        frame.setTimestamp(1000);
+        assertTrue(frame.hasTimestamp());
+        assertEquals(1000, frame.getTimestamp(-1));
+        
+        frame.clearTimestamp();
+        assertFalse(frame.hasTimestamp());
+        assertEquals(-1, frame.getTimestamp(-1));
+    }
 }
@@ -38,6 +38,10 @@ public class Inet4SubnetTest {
         return new Inet4Subnet((Inet4Address)addr);
     }
     
+    public InetSubnet newInetSubnet(UDPNetworkType udpNetworkType) throws SubnetException {
+        return new Inet4Subnet(udpNetworkType);
+    }
+    
     public InetSubnet newInetSubnet(NetworkInterface nif) throws SubnetException {
         return new Inet4Subnet(nif);
     }
@@ -134,6 +138,33 @@ public class Inet4SubnetTest {
         sendTest(invalidAddr, false);
     }
 
+    @Test
+    public void testSendAndReceiveWithNIO() throws SubnetException, UnknownHostException {
+        subnet = newInetSubnet(UDPNetworkType.NIO);
+        assertEquals(UDPNetworkType.NIO, subnet.getUDPNetworkType());
+        subnet.startService();
+
+        sendTest(subnet.getGroupNode(), true);
+        sendTest(subnet.getLocalNode(), true);
+
+        Node node = subnet.getRemoteNode(getLocalAddress());
+        sendTest(node, true);
+    }
+
+    @Test
+    public void testCreationWithNIO() throws SubnetException {
+        subnet = newInetSubnet(UDPNetworkType.NIO);
+        
+        assertTrue(subnet.startService());
+        assertTrue(subnet.isInService());
+        
+        assertTrue(subnet.stopService());
+        assertFalse(subnet.isInService());
+        
+        assertTrue(subnet.startService());
+        assertTrue(subnet.stopService());
+    }
+
     @Test
     public void testCreation() throws SubnetException {
         assertFalse(subnet.stopService());
@@ -21,6 +21,11 @@ public class Inet6SubnetTest extends Inet4SubnetTest {
         return new Inet6Subnet((Inet6Address)addr);
     }
     
+    @Override
+    public InetSubnet newInetSubnet(UDPNetworkType udpNetworkType) throws SubnetException {
+        return new Inet6Subnet(udpNetworkType);
+    }
+    
     @Override
     public InetSubnet newInetSubnet(NetworkInterface nif) throws SubnetException {
         return new Inet6Subnet(nif);
@@ -0,0 +1,115 @@
+package echowand.net;
+
+import echowand.common.EOJ;
+import echowand.common.ESV;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author ymakino
+ */
+public class NIOUDPNetworkTest {
+    private static final int PORT_NUMBER = 36100;
+    
+    private DatagramChannel receiver;
+    private NIOUDPNetwork network;
+    
+    /**
+     * 送信バッファに空きがない状態を再現するため、指定された回数だけ送信せずに0を返すNIOUDPNetwork
+     */
+    private static class FullBufferNIOUDPNetwork extends NIOUDPNetwork {
+        private final AtomicInteger fullCount;
+        private final AtomicInteger attempts = new AtomicInteger(0);
+        
+        public FullBufferNIOUDPNetwork(int fullCount) throws IOException {
+            super(InetAddress.getByName("224.0.23.0"), PORT_NUMBER);
+            this.fullCount = new AtomicInteger(fullCount);
+        }
+        
+        @Override
+        protected int sendDatagram(DatagramChannel channel, ByteBuffer buffer, SocketAddress target) throws IOException {
+            attempts.incrementAndGet();
+            if (fullCount.getAndDecrement() > 0) {
+                return 0;
+            }
+            return super.sendDatagram(channel, buffer, target);
+        }
+    }
+    
+    @Before
+    public void setUp() throws IOException {
+        receiver = DatagramChannel.open();
+        receiver.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        if (network != null) {
+            network.stopService();
+        }
+        receiver.close();
+    }
+    
+    private InetNodeInfo getReceiverNodeInfo() {
+        return new InetNodeInfo(receiver.socket().getLocalAddress(), receiver.socket().getLocalPort());
+    }
+    
+    private CommonFrame createFrame() {
+        CommonFrame cf = new CommonFrame(new EOJ("0ef001"), new EOJ("001101"), ESV.Get);
+        cf.setTID((short)0x1234);
+        return cf;
+    }
+    
+    @Test
+    public void testSetSendTimeout() throws IOException {
+        network = new FullBufferNIOUDPNetwork(0);
+        assertEquals(NIOUDPNetwork.DEFAULT_SEND_TIMEOUT, network.getSendTimeout());
+        assertFalse(network.setSendTimeout(-1));
+        assertTrue(network.setSendTimeout(100));
+        assertEquals(100, network.getSendTimeout());
+    }
+    
+    @Test
+    public void testSendWithFullBuffer() throws NetworkException, IOException {
+        FullBufferNIOUDPNetwork fullNetwork = new FullBufferNIOUDPNetwork(3);
+        network = fullNetwork;
+        network.startService();
+        
+        CommonFrame cf = createFrame();
+        network.send(getReceiverNodeInfo(), cf);
+        assertEquals(4, fullNetwork.attempts.get());
+        
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        receiver.receive(buffer);
+        buffer.flip();
+        byte[] received = new byte[buffer.remaining()];
+        buffer.get(received);
+        assertArrayEquals(cf.toBytes(), received);
+    }
+    
+    @Test
+    public void testSendFailsWhenBufferStaysFull() throws NetworkException, IOException {
+        FullBufferNIOUDPNetwork fullNetwork = new FullBufferNIOUDPNetwork(Integer.MAX_VALUE);
+        network = fullNetwork;
+        network.setSendTimeout(50);
+        network.startService();
+        
+        long start = System.currentTimeMillis();
+        try {
+            network.send(getReceiverNodeInfo(), createFrame());
+            fail();
+        } catch (NetworkException ex) {
+        }
+        
+        assertTrue(System.currentTimeMillis() - start >= 40);
+        assertTrue(fullNetwork.attempts.get() > 1);
+    }
+}
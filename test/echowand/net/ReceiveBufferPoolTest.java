@@ -0,0 +1,107 @@
+package echowand.net;
+
+import echowand.common.ESV;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author ymakino
+ */
+public class ReceiveBufferPoolTest {
+    
+    @Test
+    public void testAcquireAndRelease() {
+        ReceiveBufferPool pool = new ReceiveBufferPool(1500, 2);
+        assertEquals(1500, pool.getBufferSize());
+        assertEquals(2, pool.getCapacity());
+        assertFalse(pool.isDirect());
+        
+        ReceiveBuffer buffer1 = pool.acquire();
+        assertEquals(1, pool.countMisses());
+        assertEquals(0, pool.countHits());
+        assertEquals(1500, buffer1.getByteBuffer().capacity());
+        assertEquals(1500, buffer1.getDatagramPacket().getLength());
+        
+        buffer1.release();
+        assertEquals(1, pool.countAvailable());
+        
+        ReceiveBuffer buffer2 = pool.acquire();
+        assertSame(buffer1, buffer2);
+        assertEquals(1, pool.countHits());
+        assertEquals(0, pool.countAvailable());
+    }
+    
+    @Test
+    public void testReleaseTwice() {
+        ReceiveBufferPool pool = new ReceiveBufferPool(1500, 2);
+        ReceiveBuffer buffer = pool.acquire();
+        buffer.release();
+        buffer.release();
+        assertEquals(1, pool.countAvailable());
+        assertNotSame(pool.acquire(), pool.acquire());
+    }
+    
+    @Test
+    public void testDiscard() {
+        ReceiveBufferPool pool = new ReceiveBufferPool(1500, 1);
+        ReceiveBuffer buffer1 = pool.acquire();
+        ReceiveBuffer buffer2 = pool.acquire();
+        buffer1.release();
+        buffer2.release();
+        assertEquals(1, pool.countAvailable());
+        assertEquals(1, pool.countDiscards());
+        assertEquals(2, pool.countMisses());
+    }
+    
+    @Test
+    public void testDirect() {
+        ReceiveBufferPool pool = new ReceiveBufferPool(1500, 1, true);
+        ReceiveBuffer buffer = pool.acquire();
+        assertTrue(buffer.getByteBuffer().isDirect());
+        assertNull(buffer.getDatagramPacket());
+    }
+    
+    @Test
+    public void testCommonFrameReleaseBuffer() throws InvalidDataException {
+        byte[] bytes = new byte[]{(byte)0x10, (byte)0x81, (byte)0x00, (byte)0x01,
+            (byte)0x00, (byte)0x11, (byte)0x01, (byte)0x0e, (byte)0xf0, (byte)0x01,
+            (byte)0x72, (byte)0x01, (byte)0x80, (byte)0x01, (byte)0x30};
+        ReceiveBufferPool pool = new ReceiveBufferPool(1500, 1);
+        ReceiveBuffer buffer = pool.acquire();
+        buffer.getByteBuffer().put(bytes);
+        buffer.getByteBuffer().flip();
+        
+        CommonFrame commonFrame = new CommonFrame(buffer);
+        assertEquals(0, pool.countAvailable());
+        
+        commonFrame.releaseBuffer();
+        assertEquals(1, pool.countAvailable());
+        
+        ByteBuffer reused = pool.acquire().getByteBuffer();
+        reused.put(new byte[bytes.length]);
+        
+        assertEquals(ESV.Get_Res, commonFrame.getView().getESV());
+        assertArrayEquals(bytes, commonFrame.toBytes());
+        assertEquals((byte)0x30, commonFrame.getEDATA(StandardPayload.class).getFirstPropertyAt(0).getEDT().get(0));
+    }
+    
+    @Test
+    public void testCommonFrameDecodeReleasesBuffer() throws InvalidDataException {
+        byte[] bytes = new byte[]{(byte)0x10, (byte)0x81, (byte)0x00, (byte)0x01,
+            (byte)0x00, (byte)0x11, (byte)0x01, (byte)0x0e, (byte)0xf0, (byte)0x01,
+            (byte)0x72, (byte)0x00};
+        ReceiveBufferPool pool = new ReceiveBufferPool(1500, 1);
+        ReceiveBuffer buffer = pool.acquire();
+        buffer.getByteBuffer().put(bytes);
+        buffer.getByteBuffer().flip();
+        
+        CommonFrame commonFrame = new CommonFrame(buffer);
+        assertNotNull(commonFrame.getEDATA());
+        assertEquals(1, pool.countAvailable());
+        
+        commonFrame.releaseBuffer();
+        assertEquals(1, pool.countAvailable());
+    }
+}
@@ -6,6 +6,7 @@ import echowand.net.Frame;
 import echowand.net.Property;
 import echowand.net.StandardPayload;
 import echowand.net.InternalSubnet;
+import echowand.net.Node;
 import echowand.net.SubnetException;
 import echowand.net.Subnet;
 import echowand.common.EOJ;
@@ -19,6 +20,7 @@ import echowand.logic.TransactionManager;
 import echowand.object.RemoteObject;
 import echowand.util.Collector;
 import echowand.util.Selector;
+import echowand.util.SingleFlight;
 import java.util.LinkedList;
 import java.util.List;
 import static org.junit.Assert.*;
@@ -208,4 +210,153 @@ public class RemoteObjectManagerTest {
         
         assertEquals(subnet.getLocalNode(), manager.getNodes().get(0));
     }
+    
+    @Test
+    public void testGetAtClassEOJAndEOJ() throws SubnetException {
+        InternalSubnet subnet1 = InternalSubnet.startSubnet("subnet1");
+        InternalSubnet subnet2 = InternalSubnet.startSubnet("subnet2");
+        TransactionManager transactionManager = new TransactionManager(subnet1);
+        RemoteObjectManager manager = new RemoteObjectManager();
+        
+        RemoteObject object1 = new RemoteObject(subnet1, subnet1.getLocalNode(), new EOJ("013001"), transactionManager);
+        RemoteObject object2 = new RemoteObject(subnet1, subnet1.getLocalNode(), new EOJ("013002"), transactionManager);
+        RemoteObject object3 = new RemoteObject(subnet1, subnet2.getLocalNode(), new EOJ("013001"), transactionManager);
+        RemoteObject object4 = new RemoteObject(subnet1, subnet2.getLocalNode(), new EOJ("001101"), transactionManager);
+        manager.add(object1);
+        manager.add(object2);
+        manager.add(object3);
+        manager.add(object4);
+        
+        assertEquals(3, manager.getAtClassEOJ(new ClassEOJ("0130")).size());
+        assertEquals(1, manager.getAtClassEOJ(new ClassEOJ("0011")).size());
+        assertEquals(0, manager.getAtClassEOJ(new ClassEOJ("0012")).size());
+        assertEquals(2, manager.getAtEOJ(new EOJ("013001")).size());
+        assertTrue(manager.getAtEOJ(new EOJ("013001")).contains(object3));
+        
+        RemoteObject object5 = new RemoteObject(subnet1, subnet1.getLocalNode(), new EOJ("013001"), transactionManager);
+        assertFalse(manager.add(object5));
+        assertEquals(2, manager.getAtEOJ(new EOJ("013001")).size());
+        
+        assertTrue(manager.remove(object1));
+        assertEquals(2, manager.getAtClassEOJ(new ClassEOJ("0130")).size());
+        assertEquals(1, manager.getAtEOJ(new EOJ("013001")).size());
+        
+        assertEquals(2, manager.removeAtNode(subnet2.getLocalNode()));
+        assertEquals(0, manager.getAtEOJ(new EOJ("013001")).size());
+        assertEquals(0, manager.getAtClassEOJ(new ClassEOJ("0011")).size());
+        assertEquals(1, manager.getNodes().size());
+        
+        assertTrue(manager.remove(object2));
+        assertTrue(manager.getNodes().isEmpty());
+    }
+    
+    @Test
+    public void testNodeTimeout() throws SubnetException, InterruptedException {
+        InternalSubnet subnet1 = InternalSubnet.startSubnet("subnet1");
+        InternalSubnet subnet2 = InternalSubnet.startSubnet("subnet2");
+        TransactionManager transactionManager = new TransactionManager(subnet1);
+        RemoteObjectManager manager = new RemoteObjectManager();
+        
+        manager.add(new RemoteObject(subnet1, subnet1.getLocalNode(), new EOJ("013001"), transactionManager));
+        manager.add(new RemoteObject(subnet1, subnet2.getLocalNode(), new EOJ("013001"), transactionManager));
+        
+        assertEquals(-1, manager.getIdleTime(subnet1.getGroupNode()));
+        assertTrue(manager.getIdleTime(subnet1.getLocalNode()) >= 0);
+        
+        assertEquals(0, manager.getNodeTimeout());
+        assertFalse(manager.setNodeTimeout(-1));
+        assertTrue(manager.evictIdleNodes().isEmpty());
+        
+        assertTrue(manager.setNodeTimeout(100));
+        assertEquals(100, manager.getNodeTimeout());
+        
+        for (int i=0; i<4; i++) {
+            Thread.sleep(50);
+            CommonFrame cf = new CommonFrame(new EOJ("013001"), new EOJ("0ef001"), ESV.INF);
+            manager.process(subnet1, new Frame(subnet1.getLocalNode(), subnet1.getGroupNode(), cf), false);
+        }
+        
+        assertEquals(1, manager.getNodes().size());
+        assertEquals(subnet1.getLocalNode(), manager.getNodes().get(0));
+        assertNull(manager.get(subnet2.getLocalNode(), new EOJ("013001")));
+        assertEquals(1, manager.getAtEOJ(new EOJ("013001")).size());
+        
+        Thread.sleep(150);
+        assertEquals(1, manager.evictIdleNodes().size());
+        assertTrue(manager.getNodes().isEmpty());
+        assertTrue(manager.getAtClassEOJ(new ClassEOJ("0130")).isEmpty());
+    }
+    
+    @Test
+    public void testSingleFlight() throws SubnetException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        RemoteObjectManager manager = new RemoteObjectManager();
+        SingleFlight<Object, Object> singleFlight = new SingleFlight<Object, Object>();
+        SingleFlight<Object, Object> otherSingleFlight = new SingleFlight<Object, Object>();
+        
+        RemoteObject object1 = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("013001"), transactionManager);
+        manager.add(object1);
+        assertNull(manager.getSingleFlight());
+        assertSame(RemoteObject.getDefaultSingleFlight(), object1.getSingleFlight());
+        
+        manager.setSingleFlight(singleFlight);
+        assertSame(singleFlight, manager.getSingleFlight());
+        
+        RemoteObject object2 = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("013002"), transactionManager);
+        RemoteObject object3 = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("013003"), transactionManager);
+        RemoteObject object4 = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("013004"), transactionManager);
+        object3.setSingleFlight(otherSingleFlight);
+        object4.setSingleFlight(null);
+        manager.add(object2);
+        manager.add(object3);
+        manager.add(object4);
+        
+        assertSame(singleFlight, object2.getSingleFlight());
+        assertSame(otherSingleFlight, object3.getSingleFlight());
+        assertNull(object4.getSingleFlight());
+    }
+    
+    @Test
+    public void testObserver() throws SubnetException, InterruptedException {
+        InternalSubnet subnet1 = InternalSubnet.startSubnet("subnet1");
+        InternalSubnet subnet2 = InternalSubnet.startSubnet("subnet2");
+        TransactionManager transactionManager = new TransactionManager(subnet1);
+        RemoteObjectManager manager = new RemoteObjectManager();
+        final LinkedList<Node> removedNodes = new LinkedList<Node>();
+        
+        RemoteObjectManagerObserver observer = new RemoteObjectManagerObserver() {
+            @Override
+            public void notifyNodeRemoved(RemoteObjectManager manager, Node node) {
+                removedNodes.add(node);
+            }
+        };
+        assertTrue(manager.addObserver(observer));
+        
+        RemoteObject object1 = new RemoteObject(subnet1, subnet1.getLocalNode(), new EOJ("013001"), transactionManager);
+        RemoteObject object2 = new RemoteObject(subnet1, subnet1.getLocalNode(), new EOJ("013002"), transactionManager);
+        manager.add(object1);
+        manager.add(object2);
+        manager.add(new RemoteObject(subnet1, subnet2.getLocalNode(), new EOJ("013001"), transactionManager));
+        
+        assertTrue(manager.remove(object1));
+        assertTrue(removedNodes.isEmpty());
+        assertTrue(manager.remove(object2));
+        assertEquals(1, removedNodes.size());
+        assertEquals(subnet1.getLocalNode(), removedNodes.get(0));
+        
+        assertEquals(0, manager.removeAtNode(subnet1.getLocalNode()));
+        assertEquals(1, removedNodes.size());
+        
+        assertTrue(manager.setNodeTimeout(10));
+        Thread.sleep(20);
+        assertEquals(1, manager.evictIdleNodes().size());
+        assertEquals(2, removedNodes.size());
+        assertEquals(subnet2.getLocalNode(), removedNodes.get(1));
+        
+        assertTrue(manager.removeObserver(observer));
+        manager.add(object1);
+        assertEquals(1, manager.removeAtNode(subnet1.getLocalNode()));
+        assertEquals(2, removedNodes.size());
+    }
 }
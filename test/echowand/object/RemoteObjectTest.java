@@ -17,6 +17,16 @@ import echowand.common.EPC;
 import echowand.common.PropertyMap;
 import echowand.common.Data;
 import echowand.logic.TransactionManager;
+import echowand.util.SingleFlight;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static org.junit.Assert.*;
@@ -194,6 +204,36 @@ public class RemoteObjectTest {
         ObjectData bigData = object.getData(EPC.xE1);
     }
 
+    @Test
+    public void testGetAndSetAsync() throws SubnetException, InterruptedException, ExecutionException, TimeoutException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        
+        new ResponseThread(subnet, transactionManager).start();
+        assertTrue(object.setDataAsync(EPC.x80, new ObjectData((byte) 0x43)).get(5, TimeUnit.SECONDS));
+        
+        new ResponseThread(subnet, transactionManager).start();
+        assertEquals(new ObjectData((byte) 0x43), object.getDataAsync(EPC.x80).get(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testGetAsyncFail() throws SubnetException, InterruptedException, TimeoutException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        
+        object.setTimeout(500);
+        
+        new ResponseThread(subnet, transactionManager).start();
+        try {
+            object.getDataAsync(EPC.xE1).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EchonetObjectException);
+        }
+    }
+    
     @Test
     public void testSet() throws SubnetException {
         InternalSubnet subnet = InternalSubnet.startSubnet();
@@ -313,6 +353,233 @@ public class RemoteObjectTest {
         }
     }
     
+    public Frame createPropertyMapsFrame(Subnet subnet, Frame reqFrame) {
+        short tid = reqFrame.getCommonFrame().getTID();
+        StandardPayload reqPayload = reqFrame.getCommonFrame().getEDATA(StandardPayload.class);
+        CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("0EF001"), ESV.Get_Res);
+        StandardPayload payload = cf.getEDATA(StandardPayload.class);
+        for (int i=0; i<reqPayload.getFirstOPC(); i++) {
+            EPC epc = reqPayload.getFirstPropertyAt(i).getEPC();
+            PropertyMap pmap = new PropertyMap();
+            pmap.set(EPC.x80);
+            if (epc == EPC.x9F) {
+                pmap.set(EPC.xE0);
+            }
+            payload.addFirstProperty(new Property(epc, new Data(pmap.toBytes())));
+        }
+        cf.setTID(tid);
+        return new Frame(subnet.getLocalNode(), subnet.getLocalNode(), cf);
+    }
+    
+    @Test
+    public void testPropertyMapCache() throws SubnetException, EchonetObjectException {
+        final InternalSubnet subnet = InternalSubnet.startSubnet();
+        final TransactionManager transactionManager = new TransactionManager(subnet);
+        final AtomicInteger requests = new AtomicInteger(0);
+        RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (;;) {
+                        Frame frame = subnet.receive();
+                        requests.incrementAndGet();
+                        transactionManager.process(subnet, createPropertyMapsFrame(subnet, frame), false);
+                    }
+                } catch (SubnetException e) {
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        
+        assertEquals(RemoteObject.DEFAULT_PROPERTYMAP_TTL, object.getPropertyMapTTL());
+        
+        assertTrue(object.contains(EPC.x80));
+        assertEquals(1, requests.get());
+        assertTrue(object.isGettable(EPC.xE0));
+        assertFalse(object.isSettable(EPC.xE0));
+        assertFalse(object.isObservable(EPC.xE0));
+        assertFalse(object.contains(EPC.xF0));
+        assertEquals(1, requests.get());
+        
+        object.notifyData(EPC.x9E, new ObjectData(new PropertyMap().toBytes()));
+        assertTrue(object.isGettable(EPC.x80));
+        assertEquals(1, requests.get());
+        assertTrue(object.isSettable(EPC.x80));
+        assertEquals(2, requests.get());
+        
+        assertFalse(object.setPropertyMapTTL(-1));
+        assertTrue(object.setPropertyMapTTL(0));
+        assertTrue(object.isGettable(EPC.x80));
+        assertTrue(object.isGettable(EPC.x80));
+        assertEquals(4, requests.get());
+        
+        assertTrue(object.setPropertyMapTTL(60000));
+        assertTrue(object.prefetchPropertyMaps());
+        assertEquals(5, requests.get());
+        assertTrue(object.contains(EPC.xE0));
+        assertEquals(5, requests.get());
+        
+        object.invalidatePropertyMaps();
+        assertTrue(object.isObservable(EPC.x80));
+        assertEquals(6, requests.get());
+    }
+    
+    public Frame createMultipleFrame(Subnet subnet, Frame reqFrame) {
+        short tid = reqFrame.getCommonFrame().getTID();
+        StandardPayload reqPayload = reqFrame.getCommonFrame().getEDATA(StandardPayload.class);
+        boolean isGet = reqPayload.getESV() == ESV.Get;
+        boolean failed = false;
+        CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("0EF001"), isGet ? ESV.Get_Res : ESV.Set_Res);
+        StandardPayload payload = cf.getEDATA(StandardPayload.class);
+        for (int i=0; i<reqPayload.getFirstOPC(); i++) {
+            Property reqProperty = reqPayload.getFirstPropertyAt(i);
+            EPC epc = reqProperty.getEPC();
+            if (epc == EPC.xE1) {
+                failed = true;
+                payload.addFirstProperty(reqProperty);
+            } else if (isGet) {
+                payload.addFirstProperty(new Property(epc, new Data(epc.toByte())));
+            } else {
+                payload.addFirstProperty(new Property(epc));
+            }
+        }
+        if (failed) {
+            payload.setESV(isGet ? ESV.Get_SNA : ESV.SetC_SNA);
+        }
+        cf.setTID(tid);
+        return new Frame(subnet.getLocalNode(), subnet.getLocalNode(), cf);
+    }
+    
+    @Test
+    public void testGetAndSetMultiple() throws SubnetException, EchonetObjectException {
+        final InternalSubnet subnet = InternalSubnet.startSubnet();
+        final TransactionManager transactionManager = new TransactionManager(subnet);
+        final AtomicInteger requests = new AtomicInteger(0);
+        RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (;;) {
+                        Frame frame = subnet.receive();
+                        requests.incrementAndGet();
+                        transactionManager.process(subnet, createMultipleFrame(subnet, frame), false);
+                    }
+                } catch (SubnetException e) {
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        
+        assertFalse(object.setMaxPropertiesPerFrame(0));
+        assertFalse(object.setMaxPropertiesPerFrame(256));
+        assertTrue(object.setMaxPropertiesPerFrame(2));
+        assertEquals(2, object.getMaxPropertiesPerFrame());
+        
+        Map<EPC, ObjectData> dataMap = object.getData(Arrays.asList(EPC.x80, EPC.xE0, EPC.xE1, EPC.xE2, EPC.xE3));
+        assertEquals(3, requests.get());
+        assertEquals(Arrays.asList(EPC.x80, EPC.xE0, EPC.xE1, EPC.xE2, EPC.xE3), Arrays.asList(dataMap.keySet().toArray()));
+        assertEquals(new ObjectData((byte)0x80), dataMap.get(EPC.x80));
+        assertEquals(new ObjectData((byte)0xe0), dataMap.get(EPC.xE0));
+        assertNull(dataMap.get(EPC.xE1));
+        assertEquals(new ObjectData((byte)0xe2), dataMap.get(EPC.xE2));
+        assertEquals(new ObjectData((byte)0xe3), dataMap.get(EPC.xE3));
+        
+        assertTrue(object.setMaxPropertiesPerFrame(10));
+        LinkedHashMap<EPC, ObjectData> properties = new LinkedHashMap<EPC, ObjectData>();
+        properties.put(EPC.x80, new ObjectData((byte)0x30));
+        properties.put(EPC.xE1, new ObjectData((byte)0x01));
+        properties.put(EPC.xE2, new ObjectData((byte)0x02));
+        Map<EPC, Boolean> resultMap = object.setData(properties);
+        assertEquals(4, requests.get());
+        assertTrue(resultMap.get(EPC.x80));
+        assertFalse(resultMap.get(EPC.xE1));
+        assertTrue(resultMap.get(EPC.xE2));
+        
+        properties.clear();
+        for (EPC epc : Arrays.asList(EPC.xE0, EPC.xE2, EPC.xE3, EPC.xE4, EPC.xE5)) {
+            properties.put(epc, new ObjectData(new byte[250]));
+        }
+        resultMap = object.setData(properties);
+        assertEquals(6, requests.get());
+        assertEquals(5, resultMap.size());
+        for (boolean result : resultMap.values()) {
+            assertTrue(result);
+        }
+    }
+    
+    @Test
+    public void testSingleFlight() throws Exception {
+        final InternalSubnet subnet = InternalSubnet.startSubnet();
+        final TransactionManager transactionManager = new TransactionManager(subnet);
+        final AtomicInteger requests = new AtomicInteger(0);
+        final SingleFlight<Object, Object> singleFlight = new SingleFlight<Object, Object>();
+        final RemoteObject object1 = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        RemoteObject object2 = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        
+        assertSame(RemoteObject.getDefaultSingleFlight(), object1.getSingleFlight());
+        object1.setSingleFlight(singleFlight);
+        object2.setSingleFlight(singleFlight);
+        
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (;;) {
+                        Frame frame = subnet.receive();
+                        requests.incrementAndGet();
+                        for (int i=0; i<500 && singleFlight.countCollapsed() < 2; i++) {
+                            Thread.sleep(10);
+                        }
+                        transactionManager.process(subnet, createGetFrame(subnet, frame), false);
+                    }
+                } catch (SubnetException e) {
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        
+        final AtomicReference<ObjectData> result = new AtomicReference<ObjectData>();
+        Thread getThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    result.set(object1.getData(EPC.x80));
+                } catch (EchonetObjectException e) {
+                }
+            }
+        };
+        getThread.start();
+        
+        for (int i=0; i<500 && singleFlight.countInFlight() == 0; i++) {
+            Thread.sleep(10);
+        }
+        
+        CompletableFuture<ObjectData> future = object2.getDataAsync(EPC.x80);
+        assertEquals(new ObjectData(data), object2.getData(EPC.x80));
+        assertEquals(new ObjectData(data), future.get(5, TimeUnit.SECONDS));
+        getThread.join(5000);
+        assertEquals(new ObjectData(data), result.get());
+        
+        assertEquals(1, requests.get());
+        assertEquals(1, singleFlight.countExecutions());
+        assertEquals(2, singleFlight.countCollapsed());
+        assertEquals(0, singleFlight.countInFlight());
+        
+        object2.setSingleFlight(null);
+        assertNull(object2.getSingleFlight());
+        assertEquals(new ObjectData(data), object2.getData(EPC.x80));
+        assertEquals(2, requests.get());
+        assertEquals(1, singleFlight.countExecutions());
+    }
+    
     @Test
     public void testAccessPermission() throws SubnetException {
         InternalSubnet subnet = InternalSubnet.startSubnet();
@@ -0,0 +1,198 @@
+package echowand.object;
+
+import echowand.common.Data;
+import echowand.common.EOJ;
+import echowand.common.EPC;
+import echowand.common.ESV;
+import echowand.logic.TransactionManager;
+import echowand.net.CommonFrame;
+import echowand.net.InvalidDataException;
+import echowand.net.Frame;
+import echowand.net.InternalSubnet;
+import echowand.net.Node;
+import echowand.net.Property;
+import echowand.net.StandardPayload;
+import echowand.net.Subnet;
+import echowand.net.SubnetException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Yoshiki Makino
+ */
+public class RemotePropertyCacheTest {
+
+    private Frame createFrame(Subnet subnet, ESV esv, short tid, Property... properties) {
+        CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("0EF001"), esv);
+        StandardPayload payload = cf.getEDATA(StandardPayload.class);
+        for (Property property : properties) {
+            payload.addFirstProperty(property);
+        }
+        cf.setTID(tid);
+        return new Frame(subnet.getLocalNode(), subnet.getLocalNode(), cf);
+    }
+
+    @Test
+    public void testProcess() throws SubnetException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        RemotePropertyCache cache = new RemotePropertyCache();
+        EOJ eoj = new EOJ("001101");
+
+        assertFalse(cache.process(subnet, createFrame(subnet, ESV.INF, (short)0, new Property(EPC.x80, new Data((byte)0x30))), false));
+        assertEquals(new ObjectData((byte)0x30), cache.get(subnet.getLocalNode(), eoj, EPC.x80));
+        assertTrue(cache.isFresh(subnet.getLocalNode(), eoj, EPC.x80));
+
+        cache.process(subnet, createFrame(subnet, ESV.Get_SNA, (short)0, new Property(EPC.x80), new Property(EPC.xE0, new Data((byte)0x12))), false);
+        assertEquals(new ObjectData((byte)0x30), cache.get(subnet.getLocalNode(), eoj, EPC.x80));
+        assertEquals(new ObjectData((byte)0x12), cache.get(subnet.getLocalNode(), eoj, EPC.xE0));
+
+        cache.process(subnet, createFrame(subnet, ESV.Set_Res, (short)0, new Property(EPC.xE1, new Data((byte)0x34))), false);
+        assertNull(cache.get(subnet.getLocalNode(), eoj, EPC.xE1));
+
+        CommonFrame cf = new CommonFrame(new EOJ("001101"), new EOJ("0EF001"), ESV.SetGet_Res);
+        StandardPayload payload = cf.getEDATA(StandardPayload.class);
+        payload.addFirstProperty(new Property(EPC.xE2));
+        payload.addSecondProperty(new Property(EPC.xE3, new Data((byte)0x56)));
+        cache.process(subnet, new Frame(subnet.getLocalNode(), subnet.getLocalNode(), cf), true);
+        assertNull(cache.get(subnet.getLocalNode(), eoj, EPC.xE2));
+        assertEquals(new ObjectData((byte)0x56), cache.get(subnet.getLocalNode(), eoj, EPC.xE3));
+
+        assertEquals(3, cache.size());
+        cache.invalidate(subnet.getLocalNode(), eoj, EPC.x80);
+        assertNull(cache.get(subnet.getLocalNode(), eoj, EPC.x80));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testProcessWithoutDecoding() throws SubnetException, InvalidDataException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        RemotePropertyCache cache = new RemotePropertyCache();
+        EOJ eoj = new EOJ("001101");
+
+        byte[] request = createFrame(subnet, ESV.Get, (short)1, new Property(EPC.x80)).getCommonFrame().toBytes();
+        Frame requestFrame = new Frame(subnet.getLocalNode(), subnet.getLocalNode(), new CommonFrame(ByteBuffer.wrap(request)));
+        cache.process(subnet, requestFrame, false);
+        assertNotNull(requestFrame.getCommonFrame().getView());
+        assertEquals(0, cache.size());
+
+        byte[] response = createFrame(subnet, ESV.Get_Res, (short)1, new Property(EPC.x80, new Data((byte)0x30))).getCommonFrame().toBytes();
+        Frame responseFrame = new Frame(subnet.getLocalNode(), subnet.getLocalNode(), new CommonFrame(ByteBuffer.wrap(response)));
+        cache.process(subnet, responseFrame, false);
+        assertEquals(new ObjectData((byte)0x30), cache.get(subnet.getLocalNode(), eoj, EPC.x80));
+    }
+
+    @Test
+    public void testGetData() throws SubnetException, EchonetObjectException, InterruptedException {
+        final InternalSubnet subnet = InternalSubnet.startSubnet();
+        final TransactionManager transactionManager = new TransactionManager(subnet);
+        final AtomicInteger requests = new AtomicInteger(0);
+        RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        RemotePropertyCache cache = new RemotePropertyCache();
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (;;) {
+                        Frame frame = subnet.receive();
+                        byte value = (byte)requests.incrementAndGet();
+                        short tid = frame.getCommonFrame().getTID();
+                        transactionManager.process(subnet, createFrame(subnet, ESV.Get_Res, tid, new Property(EPC.x80, new Data(value))), false);
+                    }
+                } catch (SubnetException e) {
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+
+        assertFalse(cache.setMaxAge(-1));
+        assertFalse(cache.setMaxStale(-1));
+        assertEquals(RemotePropertyCache.DEFAULT_MAX_AGE, cache.getMaxAge());
+        assertEquals(RemotePropertyCache.DEFAULT_MAX_STALE, cache.getMaxStale());
+
+        assertEquals(new ObjectData((byte)1), cache.getData(object, EPC.x80));
+        assertEquals(new ObjectData((byte)1), cache.getData(object, EPC.x80));
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.countHits());
+        assertEquals(1, cache.countMisses());
+
+        assertTrue(cache.setMaxAge(0));
+        Thread.sleep(5);
+        assertEquals(new ObjectData((byte)1), cache.getData(object, EPC.x80));
+        assertEquals(1, cache.countStaleHits());
+
+        for (int i=0; i<500 && !new ObjectData((byte)2).equals(cache.get(object.getNode(), object.getEOJ(), EPC.x80)); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, requests.get());
+        assertEquals(new ObjectData((byte)2), cache.get(object.getNode(), object.getEOJ(), EPC.x80));
+
+        assertTrue(cache.setMaxStale(0));
+        Thread.sleep(5);
+        assertNull(cache.get(object.getNode(), object.getEOJ(), EPC.x80));
+        assertEquals(new ObjectData((byte)3), cache.getData(object, EPC.x80));
+        assertEquals(3, requests.get());
+        assertEquals(2, cache.countMisses());
+    }
+
+    @Test
+    public void testRefreshFailure() throws SubnetException, InterruptedException {
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        RemoteObject object = new RemoteObject(subnet, subnet.getLocalNode(), new EOJ("001101"), transactionManager);
+        object.setTimeout(50);
+        RemotePropertyCache cache = new RemotePropertyCache();
+
+        cache.put(object.getNode(), object.getEOJ(), EPC.x80, new ObjectData((byte)0x30));
+        cache.setMaxAge(0);
+        Thread.sleep(5);
+
+        try {
+            assertEquals(new ObjectData((byte)0x30), cache.getData(object, EPC.x80));
+            assertNotNull(subnet.receiveNoWait());
+            Thread.sleep(200);
+            assertEquals(new ObjectData((byte)0x30), cache.getData(object, EPC.x80));
+            assertNotNull(subnet.receiveNoWait());
+        } catch (EchonetObjectException ex) {
+            fail();
+        }
+        assertEquals(2, cache.countStaleHits());
+    }
+
+    @Test
+    public void testEviction() throws InterruptedException {
+        RemotePropertyCache cache = new RemotePropertyCache();
+        InternalSubnet subnet = new InternalSubnet();
+        Node node1 = subnet.getLocalNode();
+        Node node2 = subnet.getGroupNode();
+        EOJ eoj = new EOJ("001101");
+
+        assertFalse(cache.setMaxEntries(0));
+        assertEquals(RemotePropertyCache.DEFAULT_MAX_ENTRIES, cache.getMaxEntries());
+        assertTrue(cache.setMaxEntries(3));
+
+        cache.put(node1, eoj, EPC.x80, new ObjectData((byte)0x30));
+        cache.put(node1, eoj, EPC.xE0, new ObjectData((byte)0x01));
+        cache.put(node2, eoj, EPC.x80, new ObjectData((byte)0x31));
+        cache.put(node2, eoj, EPC.xE0, new ObjectData((byte)0x02));
+        assertEquals(3, cache.size());
+        assertNull(cache.get(node2, eoj, EPC.xE0));
+
+        cache.put(node2, eoj, EPC.x80, new ObjectData((byte)0x32));
+        assertEquals(new ObjectData((byte)0x32), cache.get(node2, eoj, EPC.x80));
+
+        assertEquals(2, cache.invalidateNode(node1));
+        assertEquals(1, cache.size());
+
+        cache.setMaxAge(0);
+        cache.setMaxStale(0);
+        Thread.sleep(5);
+        assertEquals(1, cache.evictExpired());
+        assertEquals(0, cache.size());
+    }
+}
@@ -1,10 +1,16 @@
 package echowand.service.result;
 
 import echowand.common.Data;
+import echowand.common.EOJ;
 import echowand.common.EPC;
 import echowand.common.ESV;
+import echowand.logic.SetGetTransactionConfig;
+import echowand.logic.Transaction;
+import echowand.logic.TransactionManager;
+import echowand.net.InternalSubnet;
 import echowand.net.Property;
 import echowand.net.StandardPayload;
+import echowand.net.SubnetException;
 import echowand.service.TimestampManager;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -77,4 +83,36 @@ public class GetResultTest {
         assertEquals(true, getResult.isValidProperty(property));
     }
     
+
+    /**
+     * Test of cancel method, of class GetResult.
+     */
+    @Test
+    public void testCancel() throws SubnetException {
+        System.out.println("cancel");
+        InternalSubnet subnet = InternalSubnet.startSubnet();
+        TransactionManager transactionManager = new TransactionManager(subnet);
+        
+        SetGetTransactionConfig config = new SetGetTransactionConfig();
+        config.setSenderNode(subnet.getLocalNode());
+        config.setReceiverNode(subnet.getGroupNode());
+        config.setSourceEOJ(new EOJ("001101"));
+        config.setDestinationEOJ(new EOJ("0ef001"));
+        config.addGet(EPC.x80);
+        
+        Transaction transaction = new Transaction(subnet, transactionManager, config);
+        transaction.setTimeout(-1);
+        
+        GetResult getResult = new GetResult(new TimestampManager());
+        getResult.setTransaction(transaction);
+        transaction.execute();
+        
+        assertFalse(getResult.isDone());
+        assertTrue(getResult.cancel());
+        assertTrue(getResult.isDone());
+        assertTrue(getResult.isCancelled());
+        assertTrue(transaction.isCancelled());
+        assertEquals(0, transactionManager.countActiveTransactions());
+        assertFalse(getResult.cancel());
+    }
 }
@@ -0,0 +1,91 @@
+package echowand.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author ymakino
+ */
+public class HashedWheelTimerTest {
+
+    @Test
+    public void testNewTimeout() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, timer.countPendingTimeouts());
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.countPendingTimeouts());
+
+        timer.stop();
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8);
+        final AtomicInteger count = new AtomicInteger(0);
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.countPendingTimeouts());
+
+        Thread.sleep(100);
+        assertEquals(0, count.get());
+
+        timer.stop();
+    }
+
+    @Test
+    public void testManyTimeouts() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 16);
+        final AtomicInteger count = new AtomicInteger(0);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+
+        int cancelled = 0;
+        for (int i=0; i<20000; i++) {
+            HashedWheelTimer.Timeout timeout = timer.newTimeout(task, i % 100, TimeUnit.MILLISECONDS);
+            if (i % 2 == 1 && timeout.cancel()) {
+                cancelled++;
+            }
+        }
+        assertTrue(cancelled > 0);
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (timer.countPendingTimeouts() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, timer.countPendingTimeouts());
+        assertEquals(20000 - cancelled, count.get());
+
+        timer.stop();
+    }
+}
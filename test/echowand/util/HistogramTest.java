@@ -0,0 +1,49 @@
+package echowand.util;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author ymakino
+ */
+public class HistogramTest {
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile50());
+    }
+
+    @Test
+    public void testRecord() {
+        Histogram histogram = new Histogram();
+        for (int i=1; i<=100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getMean());
+        assertEquals(100, histogram.getMax());
+        assertEquals(63, histogram.getPercentile50());
+        assertEquals(100, histogram.getPercentile99());
+        assertEquals(100, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testRecordNegative() {
+        Histogram histogram = new Histogram();
+        histogram.record(-10);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile50());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new Histogram().getPercentile(101);
+    }
+}
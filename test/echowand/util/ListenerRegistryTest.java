@@ -0,0 +1,55 @@
+package echowand.util;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author ymakino
+ */
+public class ListenerRegistryTest {
+
+    @Test
+    public void testAddAndRemove() {
+        ListenerRegistry<String> registry = new ListenerRegistry<String>(String.class);
+        assertTrue(registry.isEmpty());
+        assertEquals(0, registry.getListeners().length);
+
+        assertTrue(registry.add("a"));
+        assertTrue(registry.add("c"));
+        assertTrue(registry.add(1, "b"));
+        assertEquals(3, registry.size());
+        assertArrayEquals(new String[]{"a", "b", "c"}, registry.getListeners());
+        assertEquals("b", registry.get(1));
+        assertTrue(registry.contains("c"));
+
+        assertTrue(registry.remove("b"));
+        assertFalse(registry.remove("b"));
+        assertArrayEquals(new String[]{"a", "c"}, registry.getListeners());
+
+        registry.clear();
+        assertTrue(registry.isEmpty());
+        assertFalse(registry.contains("a"));
+    }
+
+    @Test
+    public void testSnapshot() {
+        ListenerRegistry<String> registry = new ListenerRegistry<String>(String.class);
+        registry.add("a");
+        registry.add("b");
+
+        String[] snapshot = registry.getListeners();
+        assertSame(snapshot, registry.getListeners());
+
+        registry.remove("a");
+        registry.add("c");
+        assertArrayEquals(new String[]{"a", "b"}, snapshot);
+        assertArrayEquals(new String[]{"b", "c"}, registry.getListeners());
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testInvalidIndex() {
+        ListenerRegistry<String> registry = new ListenerRegistry<String>(String.class);
+        registry.add(1, "a");
+    }
+}
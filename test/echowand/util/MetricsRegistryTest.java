@@ -0,0 +1,113 @@
+package echowand.util;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author ymakino
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void testCounterAndHistogram() {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertNull(registry.getCounter("c"));
+
+        Counter counter = registry.counter("c");
+        assertSame(counter, registry.counter("c"));
+        assertSame(counter, registry.getCounter("c"));
+        counter.increment();
+        counter.add(2);
+        assertEquals(3, registry.getCounter("c").getCount());
+
+        Histogram histogram = registry.histogram("h");
+        assertSame(histogram, registry.histogram("h"));
+
+        assertEquals(2, registry.getNames().size());
+        assertTrue(registry.getNames().contains("c"));
+        assertTrue(registry.getNames().contains("h"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testTypeMismatch() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("m");
+        registry.histogram("m");
+    }
+
+    @Test
+    public void testGauge() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Gauge gauge = new Gauge() {
+            @Override
+            public long getValue() {
+                return 42;
+            }
+        };
+
+        assertSame(gauge, registry.gauge("g", gauge));
+        assertSame(gauge, registry.gauge("g", new Gauge() {
+            @Override
+            public long getValue() {
+                return 0;
+            }
+        }));
+        assertEquals(42, registry.getGauge("g").getValue());
+    }
+
+    @Test
+    public void testReplaceGaugeAndRemove() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Gauge gauge1 = new Gauge() {
+            @Override
+            public long getValue() {
+                return 1;
+            }
+        };
+        Gauge gauge2 = new Gauge() {
+            @Override
+            public long getValue() {
+                return 2;
+            }
+        };
+
+        registry.replaceGauge("g", gauge1);
+        registry.replaceGauge("g", gauge2);
+        assertSame(gauge2, registry.getGauge("g"));
+
+        assertFalse(registry.remove("g", gauge1));
+        assertSame(gauge2, registry.getGauge("g"));
+        assertTrue(registry.remove("g", gauge2));
+        assertNull(registry.getGauge("g"));
+
+        Counter counter = registry.counter("c");
+        assertTrue(registry.remove("c", counter));
+        assertNull(registry.getCounter("c"));
+    }
+
+    @Test
+    public void testRegisterMBeans() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("frame.received").add(5);
+
+        assertTrue(registry.registerMBeans(server, "echowand.test"));
+        assertFalse(registry.registerMBeans(server, "echowand.test"));
+
+        registry.histogram("dispatch").record(10);
+
+        ObjectName counterName = new ObjectName("echowand.test:type=Counter,name=" + ObjectName.quote("frame.received"));
+        ObjectName histogramName = new ObjectName("echowand.test:type=Histogram,name=" + ObjectName.quote("dispatch"));
+        assertEquals(5L, server.getAttribute(counterName, "Count"));
+        assertEquals(10L, server.getAttribute(histogramName, "Max"));
+
+        assertTrue(registry.unregisterMBeans());
+        assertFalse(server.isRegistered(counterName));
+        assertFalse(server.isRegistered(histogramName));
+        assertFalse(registry.unregisterMBeans());
+    }
+}
@@ -0,0 +1,223 @@
+package echowand.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author ymakino
+ */
+public class SingleFlightTest {
+
+    private void waitCollapsed(SingleFlight<?, ?> singleFlight, long count) throws InterruptedException {
+        for (int i=0; i<500 && singleFlight.countCollapsed() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, singleFlight.countCollapsed());
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<String, String>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicReference<String> followerResult = new AtomicReference<String>();
+
+        Thread leader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    singleFlight.execute("key", new Callable<String>() {
+                        @Override
+                        public String call() throws InterruptedException {
+                            started.countDown();
+                            release.await();
+                            return "value";
+                        }
+                    });
+                } catch (Exception ex) {
+                    fail();
+                }
+            }
+        };
+        leader.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(1, singleFlight.countInFlight());
+
+        Thread follower = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    followerResult.set(singleFlight.execute("key", new Callable<String>() {
+                        @Override
+                        public String call() {
+                            return "other";
+                        }
+                    }));
+                } catch (Exception ex) {
+                    fail();
+                }
+            }
+        };
+        follower.start();
+        waitCollapsed(singleFlight, 1);
+
+        assertEquals("another", singleFlight.execute("another", new Callable<String>() {
+            @Override
+            public String call() {
+                return "another";
+            }
+        }));
+
+        release.countDown();
+        leader.join(5000);
+        follower.join(5000);
+
+        assertEquals("value", followerResult.get());
+        assertEquals(2, singleFlight.countExecutions());
+        assertEquals(1, singleFlight.countCollapsed());
+        assertEquals(0, singleFlight.countInFlight());
+    }
+
+    @Test
+    public void testExecuteFailed() throws InterruptedException {
+        SingleFlight<String, String> singleFlight = new SingleFlight<String, String>();
+        final Exception cause = new Exception("failed");
+
+        try {
+            singleFlight.execute("key", new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    throw cause;
+                }
+            });
+            fail();
+        } catch (ExecutionException ex) {
+            assertSame(cause, ex.getCause());
+        }
+
+        assertEquals(0, singleFlight.countInFlight());
+    }
+
+    @Test
+    public void testExecuteError() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<String, String>();
+        final AssertionError cause = new AssertionError("error");
+
+        try {
+            singleFlight.execute("key", new Callable<String>() {
+                @Override
+                public String call() {
+                    throw cause;
+                }
+            });
+            fail();
+        } catch (AssertionError ex) {
+            assertSame(cause, ex);
+        }
+
+        assertEquals(0, singleFlight.countInFlight());
+        assertEquals("value", singleFlight.execute("key", new Callable<String>() {
+            @Override
+            public String call() {
+                return "value";
+            }
+        }));
+
+        CompletableFuture<String> future = singleFlight.executeAsync("key", new Supplier<CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> get() {
+                throw cause;
+            }
+        });
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException ex) {
+            assertSame(cause, ex.getCause());
+        }
+        assertEquals(0, singleFlight.countInFlight());
+    }
+
+    @Test
+    public void testExecuteAsync() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<String, String>();
+        final CompletableFuture<String> source = new CompletableFuture<String>();
+        Supplier<CompletableFuture<String>> supplier = new Supplier<CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> get() {
+                return source;
+            }
+        };
+
+        CompletableFuture<String> future1 = singleFlight.executeAsync("key", supplier);
+        CompletableFuture<String> future2 = singleFlight.executeAsync("key", new Supplier<CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> get() {
+                fail();
+                return null;
+            }
+        });
+        CompletableFuture<String> future3 = singleFlight.executeAsync("key", supplier);
+
+        assertEquals(1, singleFlight.countExecutions());
+        assertEquals(2, singleFlight.countCollapsed());
+        assertEquals(1, singleFlight.countInFlight());
+
+        future3.cancel(false);
+        source.complete("value");
+
+        assertEquals("value", future1.get(5, TimeUnit.SECONDS));
+        assertEquals("value", future2.get(5, TimeUnit.SECONDS));
+        assertTrue(future3.isCancelled());
+        assertEquals(0, singleFlight.countInFlight());
+
+        CompletableFuture<String> future4 = singleFlight.executeAsync("key", new Supplier<CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> get() {
+                CompletableFuture<String> failed = new CompletableFuture<String>();
+                failed.completeExceptionally(new IllegalStateException());
+                return failed;
+            }
+        });
+
+        try {
+            future4.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(2, singleFlight.countExecutions());
+    }
+
+    @Test
+    public void testRegisterMetrics() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<String, String>();
+        MetricsRegistry registry = new MetricsRegistry();
+        singleFlight.registerMetrics(registry, "sf");
+
+        final CompletableFuture<String> source = new CompletableFuture<String>();
+        singleFlight.executeAsync("key", new Supplier<CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> get() {
+                return source;
+            }
+        });
+        singleFlight.executeAsync("key", null);
+
+        assertEquals(1, registry.getGauge("sf.executions").getValue());
+        assertEquals(1, registry.getGauge("sf.collapsed").getValue());
+        assertEquals(1, registry.getGauge("sf.inflight").getValue());
+
+        source.complete("value");
+        assertEquals(0, registry.getGauge("sf.inflight").getValue());
+    }
+}
@@ -0,0 +1,85 @@
+package echowand.util;
+
+import java.util.LinkedList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author ymakino
+ */
+public class TracerTest {
+    private static final String LOGGER_NAME = TracerTest.class.getName();
+    
+    private Logger logger;
+    private LinkedList<LogRecord> records;
+    private Handler handler;
+    
+    @Before
+    public void setUp() {
+        logger = Logger.getLogger(LOGGER_NAME);
+        records = new LinkedList<LogRecord>();
+        handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        handler.setLevel(Level.ALL);
+        logger.addHandler(handler);
+    }
+    
+    @After
+    public void tearDown() {
+        logger.removeHandler(handler);
+        Tracer.setLevel(LOGGER_NAME, null);
+    }
+
+    @Test
+    public void testDisabled() {
+        Tracer.setLevel(LOGGER_NAME, Level.INFO);
+        Tracer tracer = Tracer.getTracer(TracerTest.class);
+        
+        assertFalse(tracer.isEnabled());
+        tracer.entering("method", "a", "b");
+        tracer.exiting("method", true);
+        tracer.throwing("method", new Exception());
+        assertEquals(0, records.size());
+    }
+
+    @Test
+    public void testEnabled() {
+        Tracer tracer = Tracer.getTracer(TracerTest.class);
+        Tracer.setLevel(LOGGER_NAME, Level.FINER);
+        
+        assertTrue(tracer.isEnabled());
+        tracer.entering("method", "a", "b", "c");
+        tracer.exiting("method", 10);
+        assertEquals(2, records.size());
+        
+        LogRecord entering = records.get(0);
+        assertEquals(LOGGER_NAME, entering.getSourceClassName());
+        assertEquals("method", entering.getSourceMethodName());
+        assertArrayEquals(new Object[]{"a", "b", "c"}, entering.getParameters());
+        
+        LogRecord exiting = records.get(1);
+        assertArrayEquals(new Object[]{10}, exiting.getParameters());
+        
+        Tracer.setLevel(LOGGER_NAME, Level.INFO);
+        assertFalse(tracer.isEnabled());
+        tracer.entering("method");
+        assertEquals(2, records.size());
+    }
+}